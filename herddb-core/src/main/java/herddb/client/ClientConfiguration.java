@@ -103,6 +103,21 @@ public class ClientConfiguration {
     public static final String PROPERTY_CLIENT_CONNECT_LOCALVM_SERVER = "client.network.connect.localvm";
     public static final boolean PROPERTY_CLIENT_CONNECT_LOCALVM_SERVER_DEFAULT = true;
 
+    /**
+     * Number of chunks of a ResultSet that the server is allowed to push to
+     * the client without waiting for the client to consume them. Zero disables
+     * the streaming mode, and every chunk is fetched with a round trip.
+     */
+    public static final String PROPERTY_SCANNER_STREAMING_WINDOW = "client.scanner.streaming.window";
+    public static final int PROPERTY_SCANNER_STREAMING_WINDOW_DEFAULT = 4;
+
+    /**
+     * Ask the server to send ResultSets in the column-major format, servers
+     * which do not support it will ignore the request
+     */
+    public static final String PROPERTY_COLUMNAR_RESULTSETS = "client.resultset.columnar";
+    public static final boolean PROPERTY_COLUMNAR_RESULTSETS_DEFAULT = true;
+
 
     public ClientConfiguration(Properties properties) {
         this.properties = new Properties();
@@ -25,7 +25,9 @@ import herddb.client.impl.LeaderChangedException;
 import herddb.client.impl.RetryRequestException;
 import herddb.model.TransactionContext;
 import herddb.network.ServerHostData;
+import herddb.proto.PduCodec;
 import herddb.utils.Futures;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -334,6 +336,85 @@ public class HDBConnection implements AutoCloseable {
         throw new HDBException("client is closed");
     }
 
+    /**
+     * Reads a record given the values of the columns of its primary key, in
+     * the order of the primary key. The server does not need to parse and to
+     * plan SQL.
+     *
+     * @param tableSpace
+     * @param table
+     * @param tx
+     * @param key
+     * @return
+     * @throws ClientSideMetadataProviderException
+     * @throws HDBException
+     */
+    public GetResult executeGetByKey(String tableSpace, String table, long tx, List<Object> key) throws ClientSideMetadataProviderException, HDBException {
+        int trialCount = 0;
+        while (!closed) {
+            try {
+                RoutedClientSideConnection route = getRouteToTableSpace(tableSpace);
+                return route.executeGetByKey(tableSpace, table, tx, key);
+            } catch (RetryRequestException retry) {
+                LOGGER.log(Level.SEVERE, "error " + retry, retry);
+                handleRetryError(retry, trialCount++);
+            }
+        }
+        throw new HDBException("client is closed");
+    }
+
+    /**
+     * Inserts or replaces a record, like an UPSERT but without SQL. Columns
+     * which are not in the record are set to null.
+     *
+     * @param tableSpace
+     * @param table
+     * @param tx
+     * @param record values of the columns, including the primary key
+     * @return
+     * @throws ClientSideMetadataProviderException
+     * @throws HDBException
+     * @see #executeGetByKey(java.lang.String, java.lang.String, long, java.util.List)
+     */
+    public DMLResult executePutByKey(String tableSpace, String table, long tx, Map<String, Object> record) throws ClientSideMetadataProviderException, HDBException {
+        List<Object> values = new ArrayList<>(record.size() * 2);
+        record.forEach((column, value) -> {
+            values.add(column);
+            values.add(value);
+        });
+        return executeUpdateByKey(tableSpace, table, PduCodec.KeyValueOperation.OPERATION_PUT, tx, values);
+    }
+
+    /**
+     * Deletes a record given the values of the columns of its primary key.
+     *
+     * @param tableSpace
+     * @param table
+     * @param tx
+     * @param key
+     * @return
+     * @throws ClientSideMetadataProviderException
+     * @throws HDBException
+     * @see #executeGetByKey(java.lang.String, java.lang.String, long, java.util.List)
+     */
+    public DMLResult executeDeleteByKey(String tableSpace, String table, long tx, List<Object> key) throws ClientSideMetadataProviderException, HDBException {
+        return executeUpdateByKey(tableSpace, table, PduCodec.KeyValueOperation.OPERATION_DELETE, tx, key);
+    }
+
+    private DMLResult executeUpdateByKey(String tableSpace, String table, byte operation, long tx, List<Object> values) throws ClientSideMetadataProviderException, HDBException {
+        int trialCount = 0;
+        while (!closed) {
+            try {
+                RoutedClientSideConnection route = getRouteToTableSpace(tableSpace);
+                return route.executeUpdateByKey(tableSpace, table, operation, tx, values);
+            } catch (RetryRequestException retry) {
+                LOGGER.log(Level.SEVERE, "error " + retry, retry);
+                handleRetryError(retry, trialCount++);
+            }
+        }
+        throw new HDBException("client is closed");
+    }
+
     public ScanResultSet executeScan(String tableSpace, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize) throws ClientSideMetadataProviderException, HDBException, InterruptedException {
         if (discoverTablespaceFromSql) {
             tableSpace = discoverTablespace(tableSpace, query);
@@ -352,6 +433,57 @@ public class HDBConnection implements AutoCloseable {
         throw new HDBException("client is closed");
     }
 
+    /**
+     * Like {@link #executeScan(java.lang.String, java.lang.String, boolean, java.util.List, long, int, int)}
+     * but it does not wait for the first chunk of data. Many requests can be
+     * in flight on the same connection, replies are matched to requests by
+     * their id.
+     */
+    public CompletableFuture<ScanResultSet> executeScanAsync(String tableSpace, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize) {
+        if (discoverTablespaceFromSql) {
+            tableSpace = discoverTablespace(tableSpace, query);
+        }
+        if (closed) {
+            return Futures.exception(new HDBException("client is closed"));
+        }
+        CompletableFuture<ScanResultSet> res = new CompletableFuture<>();
+
+        AtomicInteger count = new AtomicInteger(0);
+        executeScanAsyncInternal(tableSpace, res, query, usePreparedStatement, params, tx, maxRows, fetchSize, count);
+        return res;
+    }
+
+    private void executeScanAsyncInternal(String tableSpace, CompletableFuture<ScanResultSet> res, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize, AtomicInteger count) {
+        RoutedClientSideConnection route;
+        try {
+            route = getRouteToTableSpace(tableSpace);
+        } catch (ClientSideMetadataProviderException | HDBException err) {
+            res.completeExceptionally(err);
+            return;
+        }
+        route.executeScanAsync(tableSpace, query, usePreparedStatement, params, tx, maxRows, fetchSize)
+                .whenComplete((scanResultSet, error) -> {
+                    if (error != null) {
+                        if (error instanceof RetryRequestException
+                                && !closed) {
+                            try {
+                                handleRetryError(error, count.getAndIncrement());
+                            } catch (ClientSideMetadataProviderException | HDBException err) {
+                                res.completeExceptionally(err);
+                                return;
+                            }
+                            LOGGER.log(Level.INFO, "retry #{0} {1}: {2}", new Object[]{count, query, error});
+                            executeScanAsyncInternal(tableSpace, res, query, usePreparedStatement, params, tx, maxRows, fetchSize, count);
+                        } else {
+                            res.completeExceptionally(error);
+                        }
+                    } else if (!res.complete(scanResultSet)) {
+                        // the caller is no more interested in the results
+                        scanResultSet.close();
+                    }
+                });
+    }
+
     private void handleRetryError(Throwable retry, int trialCount) throws HDBException, ClientSideMetadataProviderException {
         LOGGER.log(Level.INFO, "retry #{0}:" + retry, trialCount); // no stracktrace
         int sleepTimeout = client.getOperationRetryDelay();
@@ -62,6 +62,8 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.StatsLogger;
 
 /**
  * A real connection to a server
@@ -84,6 +86,11 @@ public class RoutedClientSideConnection implements ChannelEventListener {
     private final ClientSideQueryCache preparedStatements = new ClientSideQueryCache();
 
     private final Map<String, TableSpaceDumpReceiver> dumpReceivers = new ConcurrentHashMap<>();
+    private final Map<Long, ScanResultSetImpl> streamingScanners = new ConcurrentHashMap<>();
+    private final int streamingWindow;
+    private final boolean columnarResultSets;
+    private final Counter pushedScannerChunks;
+    private final Counter fetchedScannerChunks;
 
     public RoutedClientSideConnection(HDBConnection connection, String nodeId, ServerHostData server) {
         this.connection = connection;
@@ -92,6 +99,11 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
         this.timeout = connection.getClient().getConfiguration().getLong(ClientConfiguration.PROPERTY_TIMEOUT, ClientConfiguration.PROPERTY_TIMEOUT_DEFAULT);
         this.clientId = connection.getClient().getConfiguration().getString(ClientConfiguration.PROPERTY_CLIENTID, ClientConfiguration.PROPERTY_CLIENTID_DEFAULT);
+        this.streamingWindow = connection.getClient().getConfiguration().getInt(ClientConfiguration.PROPERTY_SCANNER_STREAMING_WINDOW, ClientConfiguration.PROPERTY_SCANNER_STREAMING_WINDOW_DEFAULT);
+        this.columnarResultSets = connection.getClient().getConfiguration().getBoolean(ClientConfiguration.PROPERTY_COLUMNAR_RESULTSETS, ClientConfiguration.PROPERTY_COLUMNAR_RESULTSETS_DEFAULT);
+        StatsLogger statsLogger = connection.getClient().getStatsLogger();
+        this.pushedScannerChunks = statsLogger.getCounter("pushedScannerChunks");
+        this.fetchedScannerChunks = statsLogger.getCounter("fetchedScannerChunks");
     }
 
     public String getNodeId() {
@@ -155,8 +167,20 @@ public class RoutedClientSideConnection implements ChannelEventListener {
     @SuppressFBWarnings(value = "SF_SWITCH_NO_DEFAULT")
     @SuppressWarnings("empty-statement")
     public void requestReceived(Pdu message, Channel channel) {
+        boolean releaseMessage = true;
         try {
             switch (message.type) {
+                case Pdu.TYPE_PUSH_RESULTSET_CHUNK: {
+                    long scannerId = PduCodec.PushResultSetChunk.readScannerId(message);
+                    ScanResultSetImpl scanner = streamingScanners.get(scannerId);
+                    if (scanner != null && scanner.chunkReceived(message)) {
+                        pushedScannerChunks.inc();
+                        releaseMessage = false;
+                    } else {
+                        LOGGER.log(Level.FINE, "discarding data for scanner {0}, it is closed", scannerId);
+                    }
+                }
+                break;
                 case Pdu.TYPE_TABLESPACE_DUMP_DATA: {
                     String dumpId = PduCodec.TablespaceDumpData.readDumpId(message);
                     TableSpaceDumpReceiver receiver = dumpReceivers.get(dumpId);
@@ -255,7 +279,9 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
             }
         } finally {
-            message.close();
+            if (releaseMessage) {
+                message.close();
+            }
         }
     }
 
@@ -271,7 +297,12 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         } finally {
             connectionLock.writeLock().unlock();
         }
-
+        // wake up the readers of scanners bound to the channel
+        streamingScanners.values().forEach(scanner -> {
+            if (scanner.channel == channel) {
+                scanner.streamFailed("channel " + channel + " closed");
+            }
+        });
     }
 
     Channel getChannel() {
@@ -601,6 +632,48 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
+    GetResult executeGetByKey(String tableSpace, String table, long tx, List<Object> key) throws HDBException, ClientSideMetadataProviderException {
+        try (Pdu reply = executeKeyValueOperation(tableSpace, table, PduCodec.KeyValueOperation.OPERATION_GET, tx, key)) {
+            long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
+            long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
+            Map<RawString, Object> data = null;
+            if (updateCount > 0 && PduCodec.ExecuteStatementResult.hasRecord(reply)) {
+                data = readParametersListAsMap(PduCodec.ExecuteStatementResult.readRecord(reply));
+            }
+            return new GetResult(data, transactionId);
+        }
+    }
+
+    DMLResult executeUpdateByKey(String tableSpace, String table, byte operation, long tx, List<Object> values) throws HDBException, ClientSideMetadataProviderException {
+        try (Pdu reply = executeKeyValueOperation(tableSpace, table, operation, tx, values)) {
+            long updateCount = PduCodec.ExecuteStatementResult.readUpdateCount(reply);
+            long transactionId = PduCodec.ExecuteStatementResult.readTx(reply);
+            return new DMLResult(updateCount, null, null, transactionId);
+        }
+    }
+
+    private Pdu executeKeyValueOperation(String tableSpace, String table, byte operation, long tx, List<Object> values) throws HDBException, ClientSideMetadataProviderException {
+        Channel channel = ensureOpen();
+        try {
+            long requestId = channel.generateRequestId();
+            ByteBuf message = PduCodec.KeyValueOperation.write(requestId, tableSpace, table, operation, tx, values);
+            Pdu reply = channel.sendMessageWithPduReply(requestId, message, timeout);
+            if (reply.type == Pdu.TYPE_ERROR) {
+                handleGenericError(reply, 0, true);
+            } else if (reply.type != Pdu.TYPE_EXECUTE_STATEMENT_RESULT) {
+                HDBException err = new HDBException(reply);
+                reply.close();
+                throw err;
+            }
+            return reply;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new HDBException(err);
+        } catch (TimeoutException err) {
+            throw new HDBException(err);
+        }
+    }
+
     Map<RawString, Object> readParametersListAsMap(PduCodec.ObjectListReader parametersReader) {
         Map<RawString, Object> data = new HashMap<>();
         for (int i = 0; i < parametersReader.getNumParams(); i += 2) {
@@ -715,7 +788,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             long statementId = usePreparedStatement ? prepareQuery(tableSpace, query) : 0;
             query = statementId > 0 ? "" : query;
             ByteBuf message = PduCodec.OpenScanner.write(requestId, tableSpace, query, scannerId, tx, params, statementId,
-                    fetchSize, maxRows);
+                    fetchSize, maxRows, columnarResultSets);
             LOGGER.log(Level.FINEST, "open scanner {0} for query {1}, params {2}", new Object[]{scannerId, query, params});
             reply = channel.sendMessageWithPduReply(requestId, message, timeout);
 
@@ -748,6 +821,47 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
+    CompletableFuture<ScanResultSet> executeScanAsync(String tableSpace, String query, boolean usePreparedStatement, List<Object> params, long tx, int maxRows, int fetchSize) {
+        CompletableFuture<ScanResultSet> res = new CompletableFuture<>();
+        try {
+            Channel channel = ensureOpen();
+            long scannerId = scannerIdGenerator.incrementAndGet();
+            long requestId = channel.generateRequestId();
+            long statementId = usePreparedStatement ? prepareQuery(tableSpace, query) : 0;
+            query = statementId > 0 ? "" : query;
+            ByteBuf message = PduCodec.OpenScanner.write(requestId, tableSpace, query, scannerId, tx, params, statementId,
+                    fetchSize, maxRows, columnarResultSets);
+            LOGGER.log(Level.FINEST, "open scanner {0} for query {1}, params {2}", new Object[]{scannerId, query, params});
+            channel.sendRequestWithAsyncReply(requestId, message, timeout,
+                    (reply, error) -> {
+                        if (error != null) {
+                            res.completeExceptionally(error);
+                            return;
+                        }
+                        try {
+                            if (reply.type == Pdu.TYPE_ERROR) {
+                                handleGenericError(reply, statementId, true);
+                                return;
+                            } else if (reply.type != Pdu.TYPE_RESULTSET_CHUNK) {
+                                HDBException err = new HDBException(reply);
+                                reply.close();
+                                throw err;
+                            }
+                            boolean last = PduCodec.ResultSetChunk.readIsLast(reply);
+                            long transactionId = PduCodec.ResultSetChunk.readTx(reply);
+                            // the RecordsBatch takes the ownership of the Pdu
+                            RecordsBatch data = PduCodec.ResultSetChunk.startReadingData(reply);
+                            res.complete(new ScanResultSetImpl(scannerId, data, fetchSize, last, transactionId, channel));
+                        } catch (HDBException | ClientSideMetadataProviderException err) {
+                            res.completeExceptionally(err);
+                        }
+                    });
+        } catch (HDBException | ClientSideMetadataProviderException err) {
+            res.completeExceptionally(err);
+        }
+        return res;
+    }
+
     void dumpTableSpace(String tableSpace, int fetchSize, boolean includeTransactionLog, TableSpaceDumpReceiver receiver) throws HDBException, ClientSideMetadataProviderException {
         Channel channel = ensureOpen();
         try {
@@ -871,6 +985,14 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         boolean noMoreData;
         int fetchSize;
         boolean lastChunk;
+        // streaming mode, chunks pushed by the server, by sequence number
+        boolean streamingRequested;
+        boolean streaming;
+        final Map<Integer, Pdu> pushedChunks = new HashMap<>();
+        int nextSequence;
+        int consumedChunks;
+        String streamError;
+        boolean streamClosed;
         // it is important that all of the data is streamed
         // from the same channel
         // on the server side the ResultSet is bound to the connection
@@ -903,10 +1025,97 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             return metadata;
         }
 
+        /**
+         * Asks the server to push the next chunks without waiting for a
+         * {@link PduCodec.FetchScannerData} request, the server will send at
+         * most streamingWindow chunks that have not been consumed yet.
+         * If the server does not support streaming mode we keep on fetching
+         * data with a round trip for each chunk. Streaming starts only after
+         * the first chunk has been consumed, this way the server does not
+         * waste resources for clients which read only the first rows.
+         *
+         * @throws HDBException
+         */
+        private void startStreaming() throws HDBException {
+            streamingRequested = true;
+            streamingScanners.put(scannerId, this);
+            long requestId = channel.generateRequestId();
+            ByteBuf message = PduCodec.StreamScannerData.write(requestId, scannerId, fetchSize, streamingWindow, true);
+            try (Pdu reply = channel.sendMessageWithPduReply(requestId, message, timeout)) {
+                if (reply.type == Pdu.TYPE_ACK) {
+                    streaming = true;
+                } else {
+                    LOGGER.log(Level.FINE, "streaming mode not available for scanner {0}: {1}", new Object[]{scannerId, reply});
+                    streamingScanners.remove(scannerId);
+                }
+            } catch (InterruptedException err) {
+                streamingScanners.remove(scannerId);
+                Thread.currentThread().interrupt();
+                throw new HDBException(err);
+            } catch (TimeoutException err) {
+                streamingScanners.remove(scannerId);
+                throw new HDBException(err);
+            }
+        }
+
+        /**
+         * Called by the network layer, this scanner takes ownership of the
+         * message
+         *
+         * @param message
+         * @return false if the scanner does not accept data anymore
+         */
+        private synchronized boolean chunkReceived(Pdu message) {
+            if (streamClosed) {
+                return false;
+            }
+            pushedChunks.put(PduCodec.PushResultSetChunk.readSequence(message), message);
+            notifyAll();
+            return true;
+        }
+
+        private synchronized void streamFailed(String error) {
+            if (streamError == null) {
+                streamError = error;
+            }
+            notifyAll();
+        }
+
+        private synchronized Pdu takeChunk() throws InterruptedException, TimeoutException, HDBException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (true) {
+                Pdu chunk = pushedChunks.remove(nextSequence);
+                if (chunk != null) {
+                    nextSequence++;
+                    return chunk;
+                }
+                if (streamError != null) {
+                    throw new HDBException(streamError);
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new TimeoutException("no data received for scanner " + scannerId + " in " + timeout + " ms");
+                }
+                wait(remaining);
+            }
+        }
+
+        private void closeStream() {
+            streamingScanners.remove(scannerId);
+            synchronized (this) {
+                streamClosed = true;
+                pushedChunks.values().forEach(Pdu::close);
+                pushedChunks.clear();
+            }
+        }
+
         @Override
         public void close() {
             finished = true;
             releaseBuffer();
+            if (streaming) {
+                closeStream();
+            }
 
             if (!noMoreData) {
                 // try to release resources on the server
@@ -943,12 +1152,20 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                 noMoreData = true;
                 return;
             }
+            if (!streamingRequested && streamingWindow > 0) {
+                startStreaming();
+            }
+            if (streaming) {
+                fillBufferFromStream();
+                return;
+            }
 
             Pdu result = null;
             try {
                 long requestId = channel.generateRequestId();
                 ByteBuf message = PduCodec.FetchScannerData.write(requestId, scannerId, fetchSize);
                 result = channel.sendMessageWithPduReply(requestId, message, timeout);
+                fetchedScannerChunks.inc();
 
                 //LOGGER.log(Level.SEVERE, "fillBuffer result " + result);
                 if (result.type == Pdu.TYPE_ERROR) {
@@ -986,6 +1203,57 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             }
         }
 
+        private void fillBufferFromStream() throws HDBException {
+            Pdu result = null;
+            try {
+                result = takeChunk();
+                byte status = PduCodec.PushResultSetChunk.readStatus(result);
+                if (status == PduCodec.PushResultSetChunk.STATUS_ERROR) {
+                    finished = true;
+                    noMoreData = true;
+                    closeStream();
+                    try {
+                        throw new HDBException(PduCodec.PushResultSetChunk.readError(result));
+                    } finally {
+                        result.close();
+                    }
+                }
+                lastChunk = status == PduCodec.PushResultSetChunk.STATUS_LAST;
+                fetchBuffer = PduCodec.PushResultSetChunk.startReadingData(result);
+                if (!fetchBuffer.hasNext()) {
+                    noMoreData = true;
+                }
+                if (lastChunk) {
+                    // the server already released the scanner
+                    closeStream();
+                    return;
+                }
+                // grant credit to the server in batches, in order not to send a message for each chunk
+                consumedChunks++;
+                if (consumedChunks >= Math.max(1, streamingWindow / 2)) {
+                    long requestId = channel.generateRequestId();
+                    ByteBuf message = PduCodec.StreamScannerData.write(requestId, scannerId, fetchSize, consumedChunks, false);
+                    consumedChunks = 0;
+                    channel.sendOneWayMessage(message, (Throwable error) -> {
+                        if (error != null) {
+                            streamFailed("cannot grant credit to scanner " + scannerId + ": " + error);
+                        }
+                    });
+                }
+            } catch (InterruptedException err) {
+                if (result != null) {
+                    result.close();
+                }
+                Thread.currentThread().interrupt();
+                throw new HDBException(err);
+            } catch (TimeoutException err) {
+                if (result != null) {
+                    result.close();
+                }
+                throw new HDBException(err);
+            }
+        }
+
         private boolean ensureNext() throws HDBException {
             if (next != null) {
                 return true;
@@ -27,6 +27,7 @@ import herddb.core.PostCheckpointAction;
 import herddb.core.RecordSetFactory;
 import herddb.file.FileRecordSetFactory;
 import herddb.index.KeyToPageIndex;
+import herddb.index.OffHeapKeyToPageIndex;
 import herddb.index.blink.BLinkKeyToPageIndex;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
@@ -1598,7 +1599,10 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
 
     @Override
     public KeyToPageIndex createKeyToPageMap(String tablespace, String name, MemoryManager memoryManager) throws DataStorageManagerException {
-        return new BLinkKeyToPageIndex(tablespace, name, memoryManager, this);
+        if (isOffHeapKeyToPageIndex()) {
+            return new OffHeapKeyToPageIndex();
+        }
+        return new BLinkKeyToPageIndex(tablespace, name, memoryManager, this, isOffHeapKeyToPageLeaves());
     }
 
     @Override
@@ -48,6 +48,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -64,6 +65,7 @@ public final class RecordSerializer {
     public static Object deserialize(Bytes data, int type) {
         switch (type) {
             case ColumnTypes.BYTEARRAY:
+            case ColumnTypes.NOTNULL_BYTEARRAY:
                 return data.to_array();
             case ColumnTypes.INTEGER:
             case ColumnTypes.NOTNULL_INTEGER:
@@ -75,12 +77,15 @@ public final class RecordSerializer {
             case ColumnTypes.NOTNULL_STRING:
                 return data.to_RawString();
             case ColumnTypes.TIMESTAMP:
+            case ColumnTypes.NOTNULL_TIMESTAMP:
                 return data.to_timestamp();
             case ColumnTypes.NULL:
                 return null;
             case ColumnTypes.BOOLEAN:
+            case ColumnTypes.NOTNULL_BOOLEAN:
                 return data.to_boolean();
             case ColumnTypes.DOUBLE:
+            case ColumnTypes.NOTNULL_DOUBLE:
                 return data.to_double();
             default:
                 throw new IllegalArgumentException("bad column type " + type);
@@ -837,6 +842,45 @@ public final class RecordSerializer {
         }
     }
 
+    /**
+     * Serializes a primary key given the values of its columns, in the order
+     * of the primary key of the table. Values are converted to the types of
+     * the columns
+     *
+     * @param values
+     * @param table
+     * @return
+     * @throws StatementExecutionException if a value cannot be converted
+     */
+    public static Bytes serializePrimaryKeyValues(List<Object> values, Table table) throws StatementExecutionException {
+        String[] primaryKey = table.primaryKey;
+        if (values.size() != primaryKey.length) {
+            throw new StatementExecutionException("table " + table.name + " has " + primaryKey.length + " columns in the primary key "
+                    + Arrays.toString(primaryKey) + ", but " + values.size() + " values were given");
+        }
+        if (primaryKey.length == 1) {
+            Column c = table.getColumn(primaryKey[0]);
+            return Bytes.from_array(serialize(convertPrimaryKeyValue(c, values.get(0)), c.type));
+        }
+        VisibleByteArrayOutputStream key = new VisibleByteArrayOutputStream(primaryKey.length * Long.BYTES);
+        try (ExtendedDataOutputStream doo_key = new ExtendedDataOutputStream(key)) {
+            for (int i = 0; i < primaryKey.length; i++) {
+                Column c = table.getColumn(primaryKey[i]);
+                serializeTo(convertPrimaryKeyValue(c, values.get(i)), c.type, doo_key);
+            }
+        } catch (IOException err) {
+            throw new RuntimeException(err);
+        }
+        return Bytes.from_array(key.toByteArrayNoCopy());
+    }
+
+    private static Object convertPrimaryKeyValue(Column c, Object v) throws StatementExecutionException {
+        if (v == null) {
+            throw new StatementExecutionException("key field " + c.name + " cannot be null");
+        }
+        return convert(c.type, v);
+    }
+
     public static Bytes serializeIndexKey(DataAccessor record, ColumnsList index, String[] columns) {
         String[] indexedColumnsList = index.getPrimaryKey();
         if (indexedColumnsList.length == 1) {
@@ -954,6 +998,32 @@ public final class RecordSerializer {
         return result;
     }
 
+    /**
+     * Deserializes a key built by
+     * {@link #serializeIndexKey(herddb.utils.DataAccessor, herddb.model.ColumnsList, java.lang.String[])},
+     * the value of the i-th column is stored in the i-th element of the
+     * array. The key stops at the first null value, so values of the
+     * following columns are left null.
+     *
+     * @param key
+     * @param columns the indexed columns
+     * @param values
+     */
+    public static void deserializeIndexKey(Bytes key, Column[] columns, Object[] values) {
+        if (columns.length == 1) {
+            values[0] = deserialize(key, columns[0].type);
+            return;
+        }
+        try (ByteArrayCursor din = key.newCursor()) {
+            for (int i = 0; i < columns.length && !din.isEof(); i++) {
+                Bytes value = din.readBytesNoCopy();
+                values[i] = value != null ? deserialize(value, columns[i].type) : null;
+            }
+        } catch (IOException err) {
+            throw new IllegalArgumentException("malformed index key", err);
+        }
+    }
+
     public static Bytes serializeValue(Map<String, Object> record, Table table) {
         return Bytes.from_array(serializeValueRaw(record, table, 0));
     }
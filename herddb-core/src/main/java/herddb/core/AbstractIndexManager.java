@@ -178,7 +178,96 @@ public abstract class AbstractIndexManager implements AutoCloseable {
      * @throws StatementExecutionException
      */
     public Stream<Map.Entry<Bytes, Long>> recordSetScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext, KeyToPageIndex keyToPageIndex) throws DataStorageManagerException, StatementExecutionException {
-        return scanner(operation, context, tableContext).map((b) -> {
+        return mapToPages(scanner(operation, context, tableContext), keyToPageIndex);
+    }
+
+    /**
+     * Tells whether the index returns the PKs sorted by the value of the
+     * indexed columns, see {@link #sortedScanner}
+     *
+     * @param columnTypes types of the indexed columns
+     * @return
+     */
+    public boolean isSortedAscending(int[] columnTypes) {
+        return false;
+    }
+
+    /**
+     * Tells whether the index is able to return the PKs in descending order
+     * of the value of the indexed columns, see {@link #sortedScanner}
+     *
+     * @param columnTypes types of the indexed columns
+     * @return
+     */
+    public boolean isSortedDescending(int[] columnTypes) {
+        return false;
+    }
+
+    /**
+     * Like {@link #scanner} but PKs are returned sorted by the value of the
+     * indexed columns. A null operation means the whole index. Only sorted
+     * indexes support this function, see {@link #isSortedAscending(int[])}
+     *
+     * @param operation
+     * @param context
+     * @param tableContext
+     * @param descending
+     * @return a stream on the PK values of the tables which match the index
+     * @throws StatementExecutionException
+     */
+    protected Stream<Bytes> sortedScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext, boolean descending) throws StatementExecutionException {
+        throw new UnsupportedOperationException("index " + index.name + " is not sorted");
+    }
+
+    /**
+     * Like {@link #recordSetScanner} but records are returned in the order of
+     * the index
+     *
+     * @param operation
+     * @param context
+     * @param tableContext
+     * @param keyToPageIndex
+     * @param descending
+     * @return
+     * @throws DataStorageManagerException
+     * @throws StatementExecutionException
+     * @see #sortedScanner
+     */
+    public Stream<Map.Entry<Bytes, Long>> sortedRecordSetScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext, KeyToPageIndex keyToPageIndex, boolean descending) throws DataStorageManagerException, StatementExecutionException {
+        return mapToPages(sortedScanner(operation, context, tableContext, descending), keyToPageIndex);
+    }
+
+    /**
+     * Tells whether the index is able to return the value of the indexed
+     * columns together with the PKs, see {@link #entriesScanner}
+     *
+     * @return
+     */
+    public boolean supportsIndexOnlyScan() {
+        return false;
+    }
+
+    /**
+     * Like {@link #scanner} but for each PK the index returns the value of
+     * the indexed columns, as serialized by
+     * {@link herddb.codec.RecordSerializer#serializeIndexKey(herddb.utils.DataAccessor, herddb.model.ColumnsList, java.lang.String[])}.
+     * This way the TableManager can serve queries which access only the
+     * indexed columns and the PK without reading the records from the data
+     * pages. Only indexes which support index-only scans support this
+     * function, see {@link #supportsIndexOnlyScan()}
+     *
+     * @param operation
+     * @param context
+     * @param tableContext
+     * @return a stream of entries (value of the indexed columns, PK)
+     * @throws StatementExecutionException
+     */
+    public Stream<Map.Entry<Bytes, Bytes>> entriesScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        throw new UnsupportedOperationException("index " + index.name + " does not support index-only scans");
+    }
+
+    private static Stream<Map.Entry<Bytes, Long>> mapToPages(Stream<Bytes> keys, KeyToPageIndex keyToPageIndex) {
+        return keys.map((b) -> {
             Long idPage = keyToPageIndex.get(b);
             if (idPage == null) {
                 return null;
@@ -70,6 +70,19 @@ public interface AbstractTableManager extends AutoCloseable {
         return false;
     }
 
+    /**
+     * Accounts for rows of this table read by a scan executed in batch mode
+     */
+    default void batchRowsRead(int rows) {
+    }
+
+    /**
+     * Accounts for an aggregation computed in batch mode on the rows of this
+     * table
+     */
+    default void batchAggregationExecuted() {
+    }
+
     /**
      * Check if the table manage has been fully started
      */
@@ -89,6 +102,16 @@ public interface AbstractTableManager extends AutoCloseable {
      */
     TableCheckpoint checkpoint(boolean pin) throws DataStorageManagerException;
 
+    /**
+     * Perform a faster checkpoint, trying to finish before the given instant. New data must be flushed
+     * anyway, so the deadline only limits optional work like dirty pages cleanup and compaction.
+     *
+     * @param deadline time limit (as {@link System#currentTimeMillis()})
+     */
+    default TableCheckpoint checkpoint(long deadline, boolean pin) throws DataStorageManagerException {
+        return checkpoint(pin);
+    }
+
     /**
      * Performs a full deep checkpoint cleaning as much space as possible.
      * <p>
@@ -97,6 +97,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -131,6 +133,9 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
     private final Activator activatorJ;
     private final AtomicBoolean stopped = new AtomicBoolean();
     private final ExecutorService callbacksExecutor;
+    private final ExecutorService checkpointExecutor;
+    private final ForkJoinPool parallelScanPool;
+    private final long parallelScanMinRecords;
     private final AbstractSQLPlanner planner;
     private final ServerSidePreparedStatementCache preparedStatementsCache;
     private final Path tmpDirectory;
@@ -151,6 +156,7 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
     private long maxLogicalPageSize = ServerConfiguration.PROPERTY_MAX_LOGICAL_PAGE_SIZE_DEFAULT;
     private long maxDataUsedMemory = ServerConfiguration.PROPERTY_MAX_DATA_MEMORY_DEFAULT;
     private long maxPKUsedMemory = ServerConfiguration.PROPERTY_MAX_PK_MEMORY_DEFAULT;
+    private long maxOffHeapPageCacheMemory = ServerConfiguration.PROPERTY_MAX_PAGE_CACHE_OFFHEAP_MEMORY_DEFAULT;
 
     private boolean clearAtBoot = false;
     private boolean haltOnTableSpaceBootError = ServerConfiguration.PROPERTY_HALT_ON_TABLESPACE_BOOT_ERROR_DEAULT;
@@ -166,6 +172,28 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             return new FastThreadLocalThread(r, "db-dmlcall-" + count.incrementAndGet());
         }
     };
+    private static final ThreadFactory CHECKPOINT_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new FastThreadLocalThread(r, "db-checkpoint-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory PARALLEL_SCAN_THREAD_FACTORY =
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("db-scan-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
     private final ExecutorService followersThreadPool = Executors.newCachedThreadPool((Runnable r) -> {
         Thread t = new FastThreadLocalThread(r, r + "");
         t.setDaemon(true);
@@ -198,6 +226,24 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         } else {
             this.callbacksExecutor = Executors.newFixedThreadPool(asyncWorkerThreads, ASYNC_WORKERS_THREAD_FACTORY);
         }
+        int checkpointThreads = configuration.getInt(ServerConfiguration.PROPERTY_CHECKPOINT_THREADS,
+                ServerConfiguration.PROPERTY_CHECKPOINT_THREADS_DEFAULT);
+        if (checkpointThreads > 1) {
+            this.checkpointExecutor = Executors.newFixedThreadPool(checkpointThreads, CHECKPOINT_THREAD_FACTORY);
+        } else {
+            // tables are checkpointed on the thread which is running the checkpoint
+            this.checkpointExecutor = null;
+        }
+        int scanParallelism = configuration.getInt(ServerConfiguration.PROPERTY_SCAN_PARALLELISM,
+                ServerConfiguration.PROPERTY_SCAN_PARALLELISM_DEFAULT);
+        if (scanParallelism > 1) {
+            this.parallelScanPool = new ForkJoinPool(scanParallelism, PARALLEL_SCAN_THREAD_FACTORY, null, false);
+        } else {
+            // tables are scanned on the thread which is executing the query
+            this.parallelScanPool = null;
+        }
+        this.parallelScanMinRecords = configuration.getLong(ServerConfiguration.PROPERTY_SCAN_PARALLEL_MIN_RECORDS,
+                ServerConfiguration.PROPERTY_SCAN_PARALLEL_MIN_RECORDS_DEFAULT);
         this.recordSetFactory = dataStorageManager.createRecordSetFactory();
         this.metadataStorageManager = metadataStorageManager;
         this.dataStorageManager = dataStorageManager;
@@ -248,6 +294,9 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
                 ServerConfiguration.PROPERTY_MAX_PK_MEMORY,
                 ServerConfiguration.PROPERTY_MAX_PK_MEMORY_DEFAULT);
 
+        this.maxOffHeapPageCacheMemory = configuration.getLong(
+                ServerConfiguration.PROPERTY_MAX_PAGE_CACHE_OFFHEAP_MEMORY,
+                ServerConfiguration.PROPERTY_MAX_PAGE_CACHE_OFFHEAP_MEMORY_DEFAULT);
     }
 
     public boolean isHaltOnTableSpaceBootError() {
@@ -350,6 +399,14 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         this.maxPKUsedMemory = maxPKUsedMemory;
     }
 
+    public long getMaxOffHeapPageCacheMemory() {
+        return maxOffHeapPageCacheMemory;
+    }
+
+    public void setMaxOffHeapPageCacheMemory(long maxOffHeapPageCacheMemory) {
+        this.maxOffHeapPageCacheMemory = maxOffHeapPageCacheMemory;
+    }
+
     private final DBManagerStatsMXBean stats = new DBManagerStatsMXBean() {
 
         @Override
@@ -412,7 +469,7 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             maxPKUsedMemory = pk;
         }
 
-        memoryManager = new MemoryManager(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize);
+        memoryManager = new MemoryManager(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize, maxOffHeapPageCacheMemory);
 
         metadataStorageManager.start();
 
@@ -859,11 +916,20 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             ignore.printStackTrace();
         }
         followersThreadPool.shutdown();
+        if (memoryManager != null) {
+            memoryManager.close();
+        }
 
         if (serverConfiguration.getBoolean(ServerConfiguration.PROPERTY_JMX_ENABLE, ServerConfiguration.PROPERTY_JMX_ENABLE_DEFAULT)) {
             JMXUtils.unregisterDBManagerStatsMXBean();
         }
         callbacksExecutor.shutdown();
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdown();
+        }
+        if (parallelScanPool != null) {
+            parallelScanPool.shutdown();
+        }
     }
 
     public void checkpoint() throws DataStorageManagerException, LogNotAvailableException {
@@ -1415,6 +1481,28 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         return callbacksExecutor;
     }
 
+    /**
+     * Executor for concurrent table checkpoints
+     *
+     * @return the executor or null if tables must be checkpointed sequentially
+     */
+    public ExecutorService getCheckpointExecutor() {
+        return checkpointExecutor;
+    }
+
+    /**
+     * Pool for parallel scans of tables
+     *
+     * @return the pool or null if tables must be scanned by the thread which executes the query
+     */
+    public ForkJoinPool getParallelScanPool() {
+        return parallelScanPool;
+    }
+
+    public long getParallelScanMinRecords() {
+        return parallelScanMinRecords;
+    }
+
     public ServerSidePreparedStatementCache getPreparedStatementsCache() {
         return preparedStatementsCache;
     }
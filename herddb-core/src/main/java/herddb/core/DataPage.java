@@ -21,8 +21,11 @@
 package herddb.core;
 
 import herddb.model.Record;
+import herddb.storage.InPlaceRecordsMap;
 import herddb.utils.Bytes;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -185,6 +188,41 @@ public final class DataPage extends Page<TableManager> {
         return data.values();
     }
 
+    /**
+     * Records of the page are read in place from a mapped file, see {@link InPlaceRecordsMap}
+     */
+    boolean isReadInPlace() {
+        return data instanceof InPlaceRecordsMap;
+    }
+
+    /**
+     * Records to be rewritten during a checkpoint. Records read in place are copied to the heap.
+     *
+     * @return the records or null if the page was read in place and it has already been released
+     */
+    Collection<Record> getRecordsForCheckpoint() {
+        if (isReadInPlace()) {
+            return ((InPlaceRecordsMap) data).copyRecords();
+        }
+        return data.values();
+    }
+
+    /**
+     * Releases resources of a page read in place, to be called when the page is unloaded
+     */
+    void release() {
+        if (isReadInPlace()) {
+            ((InPlaceRecordsMap) data).close();
+        }
+    }
+
+    /**
+     * @return true if the page was read in place and its data is not accessible anymore
+     */
+    boolean isReleased() {
+        return isReadInPlace() && ((InPlaceRecordsMap) data).isReleased();
+    }
+
     Set<Bytes> getKeysForDebug() {
         return data.keySet();
     }
@@ -238,16 +276,46 @@ public final class DataPage extends Page<TableManager> {
     }
 
     /**
-     * Page deep equality. It checks every record in the page.
+     * Page deep equality. It checks every record in the page. A page read in
+     * place which has already been released cannot be compared anymore and it
+     * is considered equal.
      */
     boolean deepEquals(DataPage other) {
         if (!equals(other)) {
             return false;
         }
-        return data.equals(other.data);
+        Map<Bytes, Record> records = getRecordsForComparison();
+        Map<Bytes, Record> otherRecords = other.getRecordsForComparison();
+        if (records == null || otherRecords == null) {
+            return true;
+        }
+        return records.equals(otherRecords);
+    }
+
+    /**
+     * @return the records, copied to the heap if the page was read in place,
+     * or null if the page has already been released
+     */
+    private Map<Bytes, Record> getRecordsForComparison() {
+        if (!isReadInPlace()) {
+            return data;
+        }
+        List<Record> records = ((InPlaceRecordsMap) data).copyRecords();
+        if (records == null) {
+            return null;
+        }
+        Map<Bytes, Record> result = new HashMap<>(records.size());
+        for (Record record : records) {
+            result.put(record.key, record);
+        }
+        return result;
     }
 
     void flushRecordsCache() {
+        if (isReadInPlace()) {
+            // records are copied at every access, there is no cache
+            return;
+        }
         data.values().forEach(r -> r.clearCache());
     }
 
@@ -24,6 +24,7 @@ import herddb.model.Tuple;
 import herddb.utils.DataAccessor;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.stream.Stream;
 
 /**
  * Collect and sort a maximum number of {@link Tuple Tuples}.
@@ -86,4 +87,11 @@ public final class InStreamTupleSorter {
         }
     }
 
+    /**
+     * Returns collected tuples, sorted as stated from given comparator.
+     */
+    public Stream<DataAccessor> stream() {
+        return Arrays.stream(tuples, 0, count);
+    }
+
 }
@@ -44,7 +44,17 @@ public class MemoryManager {
     private final PageReplacementPolicy dataPageReplacementPolicy;
     private final PageReplacementPolicy pkPageReplacementPolicy;
 
+    private final OffHeapPageCache dataPageCache;
+
     public MemoryManager(long maxDataUsedMemory, long maxPKUsedMemory, long maxLogicalPageSize) {
+        this(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize, 0);
+    }
+
+    /**
+     * @param maxOffHeapPageCacheMemory maximum amount of direct memory used to cache unloaded data pages, 0 to
+     *                                  disable the cache
+     */
+    public MemoryManager(long maxDataUsedMemory, long maxPKUsedMemory, long maxLogicalPageSize, long maxOffHeapPageCacheMemory) {
 
         this.maxDataUsedMemory = maxDataUsedMemory;
         this.maxPKUsedMemory = maxPKUsedMemory;
@@ -85,6 +95,7 @@ public class MemoryManager {
                 pkPageReplacementPolicy = new ClockAdaptiveReplacement(pkPages);
         }
 
+        dataPageCache = maxOffHeapPageCacheMemory > 0 ? new OffHeapPageCache(maxOffHeapPageCacheMemory) : null;
     }
 
     public long getMaxDataUsedMemory() {
@@ -107,4 +118,20 @@ public class MemoryManager {
         return pkPageReplacementPolicy;
     }
 
+    /**
+     * Second level cache for data pages unloaded by the {@link #getDataPageReplacementPolicy() page replacement
+     * policy}
+     *
+     * @return the cache or null if it is not enabled
+     */
+    public OffHeapPageCache getDataPageCache() {
+        return dataPageCache;
+    }
+
+    public void close() {
+        if (dataPageCache != null) {
+            dataPageCache.clear();
+        }
+    }
+
 }
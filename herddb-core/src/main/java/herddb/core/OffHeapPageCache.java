@@ -0,0 +1,289 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.model.Record;
+import herddb.utils.ByteArrayCursor;
+import herddb.utils.Bytes;
+import io.netty.util.internal.PlatformDependent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Second level cache of data pages, below the {@link PageReplacementPolicy} of the {@link MemoryManager}.
+ * <p>
+ * When an immutable page is unloaded from the heap its records are serialized in direct memory, a
+ * subsequent load of the same page is served with a copy from direct memory instead of reading the page
+ * from the {@link herddb.storage.DataStorageManager}. Immutable pages never change once written and page
+ * ids are never reused by a table, so entries are only removed to free memory, when the page is dropped or
+ * when the table is closed.
+ * </p>
+ * <p>
+ * Entries are evicted in LRU order as soon as the configured memory limit is exceeded.
+ * </p>
+ */
+public final class OffHeapPageCache {
+
+    private static final Logger LOGGER = Logger.getLogger(OffHeapPageCache.class.getName());
+
+    /**
+     * Owner of cached pages, it is notified about evictions
+     */
+    public interface Owner {
+
+        void pageCacheEvicted(long pageId);
+    }
+
+    private static final class Key {
+
+        private final Owner owner;
+        private final long pageId;
+
+        Key(Owner owner, long pageId) {
+            this.owner = owner;
+            this.pageId = pageId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + Long.hashCode(pageId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return owner == other.owner && pageId == other.pageId;
+        }
+    }
+
+    private final long maxMemory;
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    /* Access ordered, guarded by itself */
+    private final LinkedHashMap<Key, ByteBuffer> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    public OffHeapPageCache(long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("invalid off-heap page cache size " + maxMemory);
+        }
+        this.maxMemory = maxMemory;
+        LOGGER.log(Level.INFO, "Maximum amount of off-heap memory for data pages cache {0}", (maxMemory / (1024 * 1024)) + " MB");
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public long getUsedMemory() {
+        return usedMemory.get();
+    }
+
+    public int getCachedPages() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * Stores a copy of the records of a page.
+     *
+     * @return false if the page does not fit in the cache
+     */
+    public boolean put(Owner owner, long pageId, Collection<Record> records) {
+        ByteBuffer buffer = serialize(records);
+        return buffer != null && put(owner, pageId, buffer);
+    }
+
+    /**
+     * Copies the records of a page to direct memory, the result is to be
+     * stored with {@link #put(herddb.core.OffHeapPageCache.Owner, long, java.nio.ByteBuffer)}
+     * or released with {@link #release(java.nio.ByteBuffer)}. No lock is
+     * held, so the caller can serialize a page before entering a critical
+     * section and publish it there.
+     *
+     * @return the serialized page or null if the page does not fit in the cache
+     */
+    public ByteBuffer serialize(Collection<Record> records) {
+        long size = 4;
+        for (Record record : records) {
+            size += serializedSize(record.key) + serializedSize(record.value);
+        }
+        if (size > maxMemory || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        buffer.putInt(records.size());
+        for (Record record : records) {
+            write(buffer, record.key);
+            write(buffer, record.value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Frees a page serialized with {@link #serialize(java.util.Collection)}
+     * which has not been stored
+     */
+    public void release(ByteBuffer buffer) {
+        PlatformDependent.freeDirectBuffer(buffer);
+    }
+
+    /**
+     * Stores a serialized page, the cache takes ownership of the buffer.
+     *
+     * @return false if the page has been evicted immediately
+     */
+    public boolean put(Owner owner, long pageId, ByteBuffer buffer) {
+        long size = buffer.capacity();
+        List<Map.Entry<Key, ByteBuffer>> evicted = new ArrayList<>();
+        ByteBuffer replaced;
+        synchronized (pages) {
+            replaced = pages.put(new Key(owner, pageId), buffer);
+            usedMemory.addAndGet(size - (replaced != null ? replaced.capacity() : 0));
+            Iterator<Map.Entry<Key, ByteBuffer>> it = pages.entrySet().iterator();
+            while (usedMemory.get() > maxMemory && it.hasNext()) {
+                Map.Entry<Key, ByteBuffer> eldest = it.next();
+                it.remove();
+                usedMemory.addAndGet(-eldest.getValue().capacity());
+                evicted.add(eldest);
+            }
+        }
+        if (replaced != null) {
+            PlatformDependent.freeDirectBuffer(replaced);
+        }
+        for (Map.Entry<Key, ByteBuffer> entry : evicted) {
+            PlatformDependent.freeDirectBuffer(entry.getValue());
+            entry.getKey().owner.pageCacheEvicted(entry.getKey().pageId);
+        }
+        // the page itself could have been evicted if larger than everything else
+        return evicted.stream().noneMatch(e -> e.getValue() == buffer);
+    }
+
+    /**
+     * Copies a page back to the heap, the page remains in the cache.
+     *
+     * @return the records or null if the page is not in the cache
+     */
+    public List<Record> get(Owner owner, long pageId) {
+        byte[] data;
+        synchronized (pages) {
+            ByteBuffer buffer = pages.get(new Key(owner, pageId));
+            if (buffer == null) {
+                return null;
+            }
+            // copy while holding the lock, the buffer could be released as soon as it is evicted
+            data = new byte[buffer.limit()];
+            buffer.duplicate().get(data);
+        }
+        try (ByteArrayCursor in = ByteArrayCursor.wrap(data)) {
+            int numRecords = in.readInt();
+            List<Record> result = new ArrayList<>(numRecords);
+            for (int i = 0; i < numRecords; i++) {
+                Bytes key = in.readBytesNoCopy();
+                Bytes value = in.readBytesNoCopy();
+                result.add(new Record(key, value));
+            }
+            return result;
+        } catch (IOException err) {
+            // cannot happen, we wrote the data
+            throw new IllegalStateException(err);
+        }
+    }
+
+    public void remove(Owner owner, long pageId) {
+        ByteBuffer removed;
+        synchronized (pages) {
+            removed = pages.remove(new Key(owner, pageId));
+            if (removed != null) {
+                usedMemory.addAndGet(-removed.capacity());
+            }
+        }
+        if (removed != null) {
+            PlatformDependent.freeDirectBuffer(removed);
+        }
+    }
+
+    /**
+     * Drops every page of the given owner
+     */
+    public void removeAll(Owner owner) {
+        List<ByteBuffer> removed = new ArrayList<>();
+        synchronized (pages) {
+            Iterator<Map.Entry<Key, ByteBuffer>> it = pages.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, ByteBuffer> entry = it.next();
+                if (Objects.equals(entry.getKey().owner, owner)) {
+                    it.remove();
+                    usedMemory.addAndGet(-entry.getValue().capacity());
+                    removed.add(entry.getValue());
+                }
+            }
+        }
+        removed.forEach(PlatformDependent::freeDirectBuffer);
+    }
+
+    public void clear() {
+        List<ByteBuffer> removed;
+        synchronized (pages) {
+            removed = new ArrayList<>(pages.values());
+            pages.clear();
+            usedMemory.set(0);
+        }
+        removed.forEach(PlatformDependent::freeDirectBuffer);
+    }
+
+    private static int serializedSize(Bytes bytes) {
+        return vIntSize(bytes.getLength()) + bytes.getLength();
+    }
+
+    private static void write(ByteBuffer buffer, Bytes bytes) {
+        int len = bytes.getLength();
+        while ((len & ~0x7F) != 0) {
+            buffer.put((byte) ((len & 0x7F) | 0x80));
+            len >>>= 7;
+        }
+        buffer.put((byte) len);
+        buffer.put(bytes.getBuffer(), bytes.getOffset(), bytes.getLength());
+    }
+
+    private static int vIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
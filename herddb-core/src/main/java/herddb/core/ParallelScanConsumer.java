@@ -0,0 +1,64 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.model.StatementExecutionException;
+import herddb.utils.DataAccessor;
+
+/**
+ * Receives the records of a parallel table scan. Every partition of the table
+ * is accumulated into its own partial result by a worker thread, partial
+ * results are merged by the thread which started the scan, in the order of
+ * the partitions.
+ *
+ * @param <P> type of the partial results
+ * @see TableManager#scanParallel(herddb.model.commands.ScanStatement, herddb.model.StatementEvaluationContext, boolean, ParallelScanConsumer)
+ */
+public interface ParallelScanConsumer<P> {
+
+    /**
+     * Creates the partial result for a new partition, called on a worker
+     * thread
+     *
+     * @return the partial result
+     */
+    P newPartialResult();
+
+    /**
+     * Accumulates a record which matches the predicate of the scan, called on
+     * the worker thread which owns the partial result
+     *
+     * @param partial
+     * @param tuple
+     * @throws StatementExecutionException
+     */
+    void accept(P partial, DataAccessor tuple) throws StatementExecutionException;
+
+    /**
+     * Merges the partial result of a partition, called on the thread which
+     * started the scan
+     *
+     * @param partial
+     * @return false in order to stop the scan
+     * @throws StatementExecutionException
+     */
+    boolean merge(P partial) throws StatementExecutionException;
+}
@@ -32,4 +32,14 @@ public abstract class RecordSetFactory {
     public abstract MaterializedRecordSet createRecordSet(String[] fieldNames, Column[] columns);
 
     public abstract MaterializedRecordSet createFixedSizeRecordSet(int size, String[] fieldNames, Column[] columns);
+
+    /**
+     * Maximum number of records kept in memory by a record set before swapping them to disk, operators use
+     * it as memory budget for their own structures
+     *
+     * @return the threshold, {@link Integer#MAX_VALUE} if record sets never swap
+     */
+    public int getSwapThreshold() {
+        return Integer.MAX_VALUE;
+    }
 }
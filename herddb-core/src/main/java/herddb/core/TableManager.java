@@ -26,7 +26,12 @@ import herddb.core.PageSet.DataPageMetaData;
 import herddb.core.stats.TableManagerStats;
 import herddb.index.IndexOperation;
 import herddb.index.KeyToPageIndex;
+import herddb.index.PrimaryIndexPrefixScan;
+import herddb.index.PrimaryIndexRangeScan;
 import herddb.index.PrimaryIndexSeek;
+import herddb.index.SecondaryIndexPrefixScan;
+import herddb.index.SecondaryIndexRangeScan;
+import herddb.index.SecondaryIndexSeek;
 import herddb.log.CommitLog;
 import herddb.log.CommitLogResult;
 import herddb.log.LogEntry;
@@ -57,7 +62,9 @@ import herddb.model.StatementExecutionResult;
 import herddb.model.Table;
 import herddb.model.TableContext;
 import herddb.model.Transaction;
+import herddb.model.Tuple;
 import herddb.model.TupleComparator;
+import herddb.model.TuplePredicate;
 import herddb.model.UniqueIndexContraintViolationException;
 import herddb.model.commands.DeleteStatement;
 import herddb.model.commands.GetStatement;
@@ -71,6 +78,8 @@ import herddb.storage.DataPageDoesNotExistException;
 import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.FullTableScanConsumer;
+import herddb.storage.InPlaceRecordsMap;
+import herddb.storage.PageCompressionCodec;
 import herddb.storage.TableStatus;
 import herddb.utils.BatchOrderedExecutor;
 import herddb.utils.BooleanHolder;
@@ -84,11 +93,15 @@ import herddb.utils.LocalLockManager;
 import herddb.utils.LockHandle;
 import herddb.utils.NullLockManager;
 import herddb.utils.SystemProperties;
+import java.nio.ByteBuffer;
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -96,14 +109,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -114,6 +133,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.StatsLogger;
 
@@ -123,7 +143,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
  * @author enrico.olivelli
  * @author diego.salvi
  */
-public final class TableManager implements AbstractTableManager, Page.Owner {
+public final class TableManager implements AbstractTableManager, Page.Owner, OffHeapPageCache.Owner {
 
     private static final Logger LOGGER = Logger.getLogger(TableManager.class.getName());
 
@@ -139,12 +159,21 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     private static final boolean ENABLE_LOCAL_SCAN_PAGE_CACHE = SystemProperties.
             getBooleanSystemProperty("herddb.tablemanager.enableLocalScanPageCache", true);
 
+    private static final int PARALLEL_SCAN_PARTITION_SIZE = SystemProperties.
+            getIntSystemProperty("herddb.tablemanager.parallelScanPartitionSize", 4096);
+
     private static final int HUGE_TABLE_SIZE_FORCE_MATERIALIZED_RESULTSET = SystemProperties.
             getIntSystemProperty("herddb.tablemanager.hugeTableSizeForceMaterializedResultSet", 100_000);
 
     private static final boolean ENABLE_STREAMING_DATA_SCANNER = SystemProperties.
             getBooleanSystemProperty("herddb.tablemanager.enableStreamingDataScanner", true);
 
+    private static final boolean ENABLE_INDEX_ORDER_SCAN = SystemProperties.
+            getBooleanSystemProperty("herddb.tablemanager.enableIndexOrderScan", true);
+
+    private static final boolean ENABLE_INDEX_ONLY_SCAN = SystemProperties.
+            getBooleanSystemProperty("herddb.tablemanager.enableIndexOnlyScan", true);
+
     /**
      * Ignores insert/update/delete failures due to missing transactions during recovery. The operation in
      * recovery will be ignored.
@@ -180,6 +209,23 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
      * Counts how many pages had been loaded
      */
     private final LongAdder unloadedPagesCount = new LongAdder();
+
+    /**
+     * Off-heap cache of unloaded pages, null if not enabled
+     */
+    private final OffHeapPageCache pageCache;
+
+    private final LongAdder pageCacheHits = new LongAdder();
+    private final LongAdder pageCacheMisses = new LongAdder();
+    private final LongAdder pageCacheEvictions = new LongAdder();
+
+    private final LongAdder joinPrimaryKeyLookups = new LongAdder();
+    private final LongAdder joinSecondaryIndexLookups = new LongAdder();
+
+    private final LongAdder batchRowsRead = new LongAdder();
+    private final LongAdder batchAggregations = new LongAdder();
+
+    private final LongAdder parallelScanPartitions = new LongAdder();
     /**
      * Local locks
      */
@@ -346,6 +392,51 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             return keyToPage.getUsedMemory();
         }
 
+        @Override
+        public double getPageCompressionRatio() {
+            return dataStorageManager.getPageCompressionRatio(tableSpaceUUID, table.uuid);
+        }
+
+        @Override
+        public long getPageCacheHits() {
+            return pageCacheHits.sum();
+        }
+
+        @Override
+        public long getPageCacheMisses() {
+            return pageCacheMisses.sum();
+        }
+
+        @Override
+        public long getPageCacheEvictions() {
+            return pageCacheEvictions.sum();
+        }
+
+        @Override
+        public long getJoinPrimaryKeyLookups() {
+            return joinPrimaryKeyLookups.sum();
+        }
+
+        @Override
+        public long getJoinSecondaryIndexLookups() {
+            return joinSecondaryIndexLookups.sum();
+        }
+
+        @Override
+        public long getBatchRowsRead() {
+            return batchRowsRead.sum();
+        }
+
+        @Override
+        public long getBatchAggregations() {
+            return batchAggregations.sum();
+        }
+
+        @Override
+        public long getParallelScanPartitions() {
+            return parallelScanPartitions.sum();
+        }
+
     }
 
     TableManager(
@@ -366,8 +457,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         this.tableContext = buildTableContext();
         this.maxLogicalPageSize = memoryManager.getMaxLogicalPageSize();
         this.keyToPage = dataStorageManager.createKeyToPageMap(tableSpaceUUID, table.uuid, memoryManager);
+        this.dataStorageManager.configureTablePageCompression(tableSpaceUUID, table.uuid,
+                resolvePageCompressionCodec(tableSpaceManager.getDbmanager().getServerConfiguration(), table));
 
         this.pageReplacementPolicy = memoryManager.getDataPageReplacementPolicy();
+        this.pageCache = memoryManager.getDataPageCache();
         this.pages = new ConcurrentHashMap<>();
         this.newPages = new ConcurrentHashMap<>();
 
@@ -429,6 +523,19 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     }
     }
 
+    /**
+     * Looks for the most specific page compression configuration, table, then tablespace and then server wide
+     */
+    private static PageCompressionCodec resolvePageCompressionCodec(ServerConfiguration configuration, Table table) {
+        String defaultCodec = configuration.getString(ServerConfiguration.PROPERTY_PAGE_COMPRESSION,
+                ServerConfiguration.PROPERTY_PAGE_COMPRESSION_DEFAULT);
+        String tableSpaceCodec = configuration.getString(ServerConfiguration.PROPERTY_PAGE_COMPRESSION + "." + table.tablespace,
+                defaultCodec);
+        String tableCodec = configuration.getString(ServerConfiguration.PROPERTY_PAGE_COMPRESSION + "." + table.tablespace + "." + table.name,
+                tableSpaceCodec);
+        return PageCompressionCodec.fromName(tableCodec);
+    }
+
     private TableContext buildTableContext() {
         TableContext tableContext;
         if (!table.auto_increment) {
@@ -738,8 +845,28 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return pages.values();
     }
 
+    @Override
+    public void pageCacheEvicted(long pageId) {
+        pageCacheEvictions.increment();
+    }
+
     @Override
     public void unload(long pageId) {
+        /* Pages are copied to the off-heap cache out of the critical section of the pages map,
+         * immutable pages are serialized in advance and published together with their removal */
+        DataPage immutablePage = null;
+        ByteBuffer serialized = null;
+        if (pageCache != null) {
+            DataPage page = pages.get(pageId);
+            if (page != null && page.immutable && !page.isReadInPlace()) {
+                immutablePage = page;
+                serialized = pageCache.serialize(page.getRecordsForFlush());
+            }
+        }
+        final DataPage expectedPage = immutablePage;
+        final ByteBuffer expectedPageData = serialized;
+        final AtomicBoolean published = new AtomicBoolean();
+        final AtomicReference<DataPage> flushedForUnload = new AtomicReference<>();
         pages.computeIfPresent(pageId, (k, remove) -> {
 
                     unloadedPagesCount.increment();
@@ -752,6 +879,17 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         dataFlushed = flushNewPageForUnload(remove);
                     }
 
+                    if (remove == expectedPage && expectedPageData != null) {
+                        // the page is on disk and it will never change, keep a copy in direct memory
+                        pageCache.put(this, pageId, expectedPageData);
+                        published.set(true);
+                    } else if (pageCache != null && dataFlushed) {
+                        // the page is not writable anymore, it will be copied once removed
+                        flushedForUnload.set(remove);
+                    }
+
+                    remove.release();
+
                     if (LOGGER.isLoggable(Level.FINER)) {
                         if (dataFlushed) {
                             LOGGER.log(Level.FINER, "table {0} remove and save 'new' page {1}, {2}",
@@ -765,6 +903,14 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                     return null;
                 }
         );
+        if (serialized != null && !published.get()) {
+            // the page has been changed or unloaded concurrently
+            pageCache.release(serialized);
+        }
+        DataPage flushed = flushedForUnload.get();
+        if (flushed != null) {
+            pageCache.put(this, pageId, flushed.getRecordsForFlush());
+        }
     }
 
     private enum FlushNewPageResult {
@@ -1604,6 +1750,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         pageSet.truncate();
 
+        pages.values().forEach(DataPage::release);
         pages.clear();
         newPages.clear();
 
@@ -1627,6 +1774,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 .collect(Collectors.toList());
 
         pageReplacementPolicy.remove(unload);
+
+        if (pageCache != null) {
+            pageCache.removeAll(this);
+        }
     }
 
     @Override
@@ -1860,7 +2011,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         } else {
             /* We really need the page for update index old values */
             page = loadPageToMemory(pageId, false);
-            previous = page.get(key);
+            previous = getFromLoadedPage(page, pageId, key);
 
             if (previous == null) {
                 throw new IllegalStateException("corrupted PK: old page " + pageId + " for deleted record at " + key
@@ -1948,7 +2099,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         } else {
             /* We really need the page for update index old values */
             prevPage = loadPageToMemory(prevPageId, false);
-            previous = prevPage.get(key);
+            previous = getFromLoadedPage(prevPage, prevPageId, key);
 
             if (previous == null) {
                 throw new IllegalStateException("corrupted PK: old page " + prevPageId + " for updated record at " + key
@@ -2215,6 +2366,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         final List<DataPage> unload = pages.values().stream()
                 .collect(Collectors.toList());
         pageReplacementPolicy.remove(unload);
+        unload.forEach(DataPage::release);
+
+        if (pageCache != null) {
+            pageCache.removeAll(this);
+        }
 
         // unload keyToPage
         dataStorageManager.releaseKeyToPageMap(tableSpaceUUID, table.uuid, keyToPage);
@@ -2300,9 +2456,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         long ioStart = System.currentTimeMillis();
 
-        final List<Record> page;
+        final DataPage result;
         try {
-            page = dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
+            // the page is never unloaded explicitly, do not map it
+            result = readImmutableDataPage(pageId, false);
         } catch (DataPageDoesNotExistException e) {
             return null;
         } finally {
@@ -2311,8 +2468,6 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         long ioStop = System.currentTimeMillis();
 
-        final DataPage result = buildImmutableDataPage(pageId, page);
-
         if (LOGGER.isLoggable(Level.FINE)) {
             long stop = System.currentTimeMillis();
             LOGGER.log(Level.FINE, "table {0}.{1}, temporary loaded {2} records from page {4} in {5} ms, ({6} ms read)",
@@ -2338,17 +2493,17 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             result = pages.computeIfAbsent(pageId, (id) -> {
                 try {
                     computed.value = true;
-                    List<Record> page;
+                    DataPage page;
                     maxCurrentPagesLoads.acquireUninterruptibly();
                     try {
-                        page = dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
+                        page = readImmutableDataPage(pageId, true);
                     } finally {
                         maxCurrentPagesLoads.release();
                     }
 
                     loadedPagesCount.increment();
 
-                    return buildImmutableDataPage(pageId, page);
+                    return page;
                 } catch (DataStorageManagerException err) {
                     throw new RuntimeException(err);
                 }
@@ -2384,6 +2539,30 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return result;
     }
 
+    /**
+     * Reads a page from disk, in place if supported by the {@link DataStorageManager} (records are not
+     * copied to the heap until accessed), otherwise as a plain map of records.
+     * <p>
+     * Pages read in place must be released with {@link DataPage#release()} when they are unloaded.
+     * </p>
+     */
+    private DataPage readImmutableDataPage(long pageId, boolean allowInPlace) throws DataStorageManagerException {
+        if (pageCache != null) {
+            List<Record> cached = pageCache.get(this, pageId);
+            if (cached != null) {
+                pageCacheHits.increment();
+                return buildImmutableDataPage(pageId, cached);
+            }
+            pageCacheMisses.increment();
+        }
+        InPlaceRecordsMap inPlace = allowInPlace ? dataStorageManager.readPageInPlace(tableSpaceUUID, table.uuid, pageId) : null;
+        if (inPlace != null) {
+            return new DataPage(this, pageId, maxLogicalPageSize, inPlace.getEstimatedSize(), inPlace, true);
+        }
+        List<Record> page = dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
+        return buildImmutableDataPage(pageId, page);
+    }
+
     private DataPage buildImmutableDataPage(long pageId, List<Record> page) {
         Map<Bytes, Record> newPageMap = new HashMap<>(page.size());
         long estimatedPageSize = 0;
@@ -2404,6 +2583,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return checkpoint(dirtyThreshold, fillThreshold, checkpointTargetTime, cleanupTargetTime, compactionTargetTime, pin);
     }
 
+    @Override
+    public TableCheckpoint checkpoint(long deadline, boolean pin) throws DataStorageManagerException {
+        final long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        return checkpoint(dirtyThreshold, fillThreshold, Math.min(checkpointTargetTime, remaining),
+                Math.min(cleanupTargetTime, remaining), Math.min(compactionTargetTime, remaining), pin);
+    }
+
     @Override
     public void unpinCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
         /* Unpin secondary indexes too */
@@ -2545,13 +2731,15 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 final Collection<Record> records;
 
                 final DataPage dataPage = pages.get(page.pageId);
-                if (dataPage == null) {
+                /* Pages read in place are copied to the heap, the mapping could be released by a concurrent unload */
+                final Collection<Record> inMemoryRecords = dataPage == null ? null : dataPage.getRecordsForCheckpoint();
+                if (inMemoryRecords == null) {
                     records = dataStorageManager.readPage(tableSpaceUUID, table.uuid, page.pageId);
                     currentPageWasInMemory = false;
                     LOGGER.log(Level.FINEST, "loaded dirty page {0} for table {1}.{2} on tmp buffer: {3} records",
                             new Object[] { page.pageId, table.tablespace, table.name, records.size() });
                 } else {
-                    records = dataPage.getRecordsForFlush();
+                    records = inMemoryRecords;
 
                     /* The page was found in memory. Currently built page should go into memory */
                     currentPageWasInMemory = true;
@@ -2698,6 +2886,9 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                             throw ex;
                         }
                     }
+                    if (removedDataPage != null) {
+                        removedDataPage.release();
+                    }
 
                 }
 
@@ -2723,6 +2914,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     }
 
     /**
+     * Writes on the table are blocked for the whole checkpoint: flushed pages, page set and key-to-page
+     * mapping must all reflect the log position read under the checkpoint lock, and records moved by
+     * dirty pages cleanup are referenced by the building page, which is not yet known to writers.
+     * The lock is not released between page batches; instead the optional work (dirty pages cleanup
+     * and small pages compaction) stops at the given target times and what is left is handled by the
+     * next checkpoint.
+     *
      * @param sequenceNumber
      * @param dirtyThreshold
      * @param fillThreshold
@@ -2988,6 +3186,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             indexcheckpoint = System.currentTimeMillis();
 
             pageSet.checkpointDone(flushedPages);
+            if (pageCache != null) {
+                for (Long flushedPage : flushedPages) {
+                    pageCache.remove(this, flushedPage);
+                }
+            }
 
             TableStatus tableStatus = new TableStatus(table.name, sequenceNumber,
                     Bytes.longToByteArray(nextPrimaryKeyValue.get()), nextPageId,
@@ -3061,17 +3264,213 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         forWrite = forWrite || context.isForceAcquireWriteLock();
 
+        AbstractIndexManager coveringIndex = findCoveringIndex(statement, transaction, lockRequired, forWrite);
+        if (coveringIndex != null) {
+            return scanIndexOnly(statement, context, coveringIndex);
+        }
+
         TupleComparator comparator = statement.getComparator();
+        IndexOrder indexOrder = findIndexOrder(statement, transaction);
+        if (isParallelScanAllowed(statement, transaction, lockRequired, forWrite)
+                && !(statement.getLimits() != null && indexOrder != null)) {
+            return scanParallelNoStream(statement, context);
+        }
         if (!ENABLE_STREAMING_DATA_SCANNER || (comparator != null
                 && this.stats.getTablesize() > HUGE_TABLE_SIZE_FORCE_MATERIALIZED_RESULTSET)) {
-            boolean sortedByClusteredIndex = comparator != null
-                    && comparator.isOnlyPrimaryKeyAndAscending()
-                    && keyToPageSortedAscending;
-            if (!sortedByClusteredIndex) {
+            if (indexOrder == null) {
                 return scanNoStream(statement, context, transaction, lockRequired, forWrite);
             }
         }
-        return scanWithStream(statement, context, transaction, lockRequired, forWrite);
+        return scanWithStream(statement, context, transaction, lockRequired, forWrite, indexOrder);
+    }
+
+    /**
+     * An index which returns the records in the order requested by the
+     * comparator of a scan
+     */
+    private static final class IndexOrder {
+
+        /**
+         * null for the primary key
+         */
+        final AbstractIndexManager index;
+        final boolean descending;
+
+        IndexOrder(AbstractIndexManager index, boolean descending) {
+            this.index = index;
+            this.descending = descending;
+        }
+    }
+
+    /**
+     * Looks for an index which returns the records already sorted, so that
+     * the scan can stream them without sorting and stop as soon as the limits
+     * are reached. The sort must be on a single column, which is the primary
+     * key or the only column of a sorted secondary index. The access to the
+     * table chosen by the planner is never replaced with a full scan of
+     * another index.
+     *
+     * @param statement
+     * @param transaction
+     * @return the index or null
+     */
+    private IndexOrder findIndexOrder(ScanStatement statement, Transaction transaction) {
+        TupleComparator comparator = statement.getComparator();
+        if (comparator == null) {
+            return null;
+        }
+        Predicate predicate = statement.getPredicate();
+        IndexOperation indexOperation = predicate != null ? predicate.getIndexOperation() : null;
+        boolean primaryKeyAccess = indexOperation == null || indexOperation instanceof PrimaryIndexSeek
+                || indexOperation instanceof PrimaryIndexPrefixScan || indexOperation instanceof PrimaryIndexRangeScan;
+        if (comparator.isOnlyPrimaryKeyAndAscending() && keyToPageSortedAscending) {
+            return primaryKeyAccess ? new IndexOrder(null, false) : null;
+        }
+        String column = comparator.getSortColumn();
+        if (!ENABLE_INDEX_ORDER_SCAN || column == null) {
+            return null;
+        }
+        boolean descending = !comparator.isSortAscending();
+        if (table.primaryKey.length == 1 && table.primaryKey[0].equals(column)) {
+            return keyToPageSortedAscending && primaryKeyAccess ? new IndexOrder(null, descending) : null;
+        }
+        // secondary indexes are updated only on commit, so inside a transaction
+        // they do not see the new values of the records
+        // NULL values are not indexed, so the column must be NOT NULL
+        Column sortColumn = table.getColumn(column);
+        if (transaction != null || sortColumn == null || !ColumnTypes.isNotNullDataType(sortColumn.type)) {
+            return null;
+        }
+        if (indexOperation == null && statement.getLimits() == null) {
+            // reading the whole table in the order of the index means reading the
+            // same pages many times, it is worth only if we can stop early
+            return null;
+        }
+        Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
+        if (indexes == null) {
+            return null;
+        }
+        for (AbstractIndexManager index : indexes.values()) {
+            String[] columnNames = index.getColumnNames();
+            if (index.isAvailable() && columnNames.length == 1 && columnNames[0].equals(column)
+                    && (indexOperation == null || indexOperation.getIndexName().equals(index.getIndexName()))
+                    && (descending
+                            ? index.isSortedDescending(new int[]{sortColumn.type})
+                            : index.isSortedAscending(new int[]{sortColumn.type}))) {
+                return new IndexOrder(index, descending);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks for the secondary index used by the scan, if it holds all of the
+     * columns read by the predicate and by the projection. In this case rows
+     * can be built from the entries of the index, together with the PK,
+     * without reading the records from the data pages.
+     */
+    private AbstractIndexManager findCoveringIndex(
+            ScanStatement statement, Transaction transaction,
+            boolean lockRequired, boolean forWrite
+    ) {
+        if (!ENABLE_INDEX_ONLY_SCAN || transaction != null || lockRequired || forWrite
+                || statement.getComparator() != null) {
+            // records have to be locked or read from the transaction
+            return null;
+        }
+        Predicate predicate = statement.getPredicate();
+        Projection projection = statement.getProjection();
+        if (!(predicate instanceof TuplePredicate) || projection == null) {
+            return null;
+        }
+        IndexOperation indexOperation = predicate.getIndexOperation();
+        if (!(indexOperation instanceof SecondaryIndexSeek
+                || indexOperation instanceof SecondaryIndexPrefixScan
+                || indexOperation instanceof SecondaryIndexRangeScan)) {
+            return null;
+        }
+        AbstractIndexManager index = getIndexForTbleAccess(indexOperation);
+        if (index == null || !index.supportsIndexOnlyScan()) {
+            return null;
+        }
+        int[] availableColumns = new int[table.columns.length];
+        for (int i = 0; i < availableColumns.length; i++) {
+            String column = table.columnNames[i];
+            boolean available = table.isPrimaryKeyColumn(i)
+                    || Arrays.asList(index.getColumnNames()).contains(column);
+            availableColumns[i] = available ? i : -1;
+        }
+        if (!predicate.isCoveredByColumns(availableColumns)
+                || !projection.isCoveredByColumns(availableColumns)) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Scan which builds the rows from the entries of a covering index, see
+     * {@link #findCoveringIndex}. Columns which are not in the index or in the
+     * PK are left null, they are never read by the predicate and by the
+     * projection.
+     */
+    private DataScanner scanIndexOnly(
+            ScanStatement statement, StatementEvaluationContext context,
+            AbstractIndexManager index
+    ) throws StatementExecutionException {
+        statement.validateContext(context);
+        Predicate predicate = statement.getPredicate();
+        TuplePredicate filter = (TuplePredicate) predicate;
+        Projection projection = statement.getProjection();
+        Column[] indexColumns = index.getIndex().columns;
+        int[] indexColumnPositions = new int[indexColumns.length];
+        for (int i = 0; i < indexColumns.length; i++) {
+            indexColumnPositions[i] = Arrays.asList(table.columnNames).indexOf(indexColumns[i].name);
+        }
+        int[] primaryKeyPositions = new int[table.primaryKey.length];
+        for (int i = 0; i < primaryKeyPositions.length; i++) {
+            primaryKeyPositions[i] = Arrays.asList(table.columnNames).indexOf(table.primaryKey[i]);
+        }
+        MaterializedRecordSet recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                .createRecordSet(projection.getFieldNames(), projection.getColumns());
+        try {
+            ScanLimits limits = statement.getLimits();
+            int maxRows = limits == null ? 0 : limits.computeMaxRows(context);
+            int offset = limits == null ? 0 : limits.computeOffset(context);
+            int remaining = maxRows > 0 ? maxRows + offset : -1;
+            Object[] indexValues = new Object[indexColumns.length];
+            Iterator<Map.Entry<Bytes, Bytes>> entries = index
+                    .entriesScanner(predicate.getIndexOperation(), context, tableContext)
+                    .iterator();
+            while (remaining != 0 && entries.hasNext()) {
+                Map.Entry<Bytes, Bytes> entry = entries.next();
+                Bytes key = entry.getValue();
+                if (keyToPage.get(key) == null) {
+                    // the record has been deleted
+                    continue;
+                }
+                Object[] values = new Object[table.columns.length];
+                Arrays.fill(indexValues, null);
+                RecordSerializer.deserializeIndexKey(entry.getKey(), indexColumns, indexValues);
+                for (int i = 0; i < indexValues.length; i++) {
+                    values[indexColumnPositions[i]] = indexValues[i];
+                }
+                Map<String, Object> primaryKey = RecordSerializer.deserializePrimaryKeyAsMap(key, table);
+                for (int i = 0; i < primaryKeyPositions.length; i++) {
+                    values[primaryKeyPositions[i]] = primaryKey.get(table.primaryKey[i]);
+                }
+                Tuple row = new Tuple(table.columnNames, values);
+                if (filter.matches(row, context)) {
+                    recordSet.add(projection.map(row, context));
+                    remaining--;
+                }
+            }
+            recordSet.writeFinished();
+            recordSet.applyLimits(limits, context);
+            return new SimpleDataScanner(null, recordSet);
+        } catch (StatementExecutionException | DataStorageManagerException err) {
+            recordSet.close();
+            throw err;
+        }
     }
 
     private DataScanner scanNoStream(
@@ -3083,11 +3482,12 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
         try {
             boolean sorted = statement.getComparator() != null;
-            boolean sortedByClusteredIndex = statement.getComparator() != null
-                    && statement.getComparator().isOnlyPrimaryKeyAndAscending()
-                    && keyToPageSortedAscending;
+            IndexOrder indexOrder = findIndexOrder(statement, transaction);
+            boolean sortedByClusteredIndex = indexOrder != null
+                    && indexOrder.index == null && !indexOrder.descending;
             final Projection projection = statement.getProjection();
-            boolean applyProjectionDuringScan = !sorted && projection != null;
+            // the fields of the comparator are positions in the rows returned by the scan
+            boolean applyProjectionDuringScan = projection != null;
             MaterializedRecordSet recordSet;
             if (applyProjectionDuringScan) {
                 recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
@@ -3224,7 +3624,8 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     private DataScanner scanWithStream(
             ScanStatement statement, StatementEvaluationContext context,
-            Transaction transaction, boolean lockRequired, boolean forWrite
+            Transaction transaction, boolean lockRequired, boolean forWrite,
+            IndexOrder indexOrder
     ) throws StatementExecutionException {
         if (transaction != null) {
             transaction.increaseRefcount();
@@ -3232,11 +3633,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         try {
             final TupleComparator comparator = statement.getComparator();
             boolean sorted = comparator != null;
-            boolean sortedByClusteredIndex = comparator != null
-                    && comparator.isOnlyPrimaryKeyAndAscending()
-                    && keyToPageSortedAscending;
+            boolean sortedByIndex = indexOrder != null;
             final Projection projection = statement.getProjection();
-            final boolean applyProjectionDuringScan = projection != null && !sorted;
+            // the fields of the comparator are positions in the rows returned by the scan
+            final boolean applyProjectionDuringScan = projection != null;
             ScanLimits limits = statement.getLimits();
             int maxRows = limits == null ? 0 : limits.computeMaxRows(context);
             int offset = limits == null ? 0 : limits.computeOffset(context);
@@ -3259,10 +3659,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 fromTransactionSorted = fromTransactionSorted.sorted(comparator);
             }
 
-            Stream<DataAccessor> tableData = streamTableData(statement, context, transaction, lockRequired, forWrite)
+            Stream<DataAccessor> tableData = streamTableData(statement, context, transaction, lockRequired, forWrite, indexOrder)
                     .map(mapper);
             if (maxRows > 0) {
-                if (sortedByClusteredIndex) {
+                if (sortedByIndex) {
                     // already sorted if needed
                     if (fromTransactionSorted != null) {
                         // already sorted from index
@@ -3273,6 +3673,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         // we need to re-sort after merging the data
                         result = Stream.concat(fromTransactionSorted, tableData)
                                 .sorted(comparator);
+                    } else if (indexOrder.index != null) {
+                        // already sorted from index
+                        tableData = tableData.limit(maxRows + offset);
+
+                        // a secondary index could be behind concurrent updates
+                        // of the column, sorting the top K records is cheap
+                        result = tableData.sorted(comparator);
                     } else {
                         // already sorted from index
                         tableData = tableData.limit(maxRows + offset);
@@ -3281,20 +3688,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         result = tableData;
                     }
                 } else if (sorted) {
-                    // need to sort
-                    tableData = tableData.sorted(comparator);
-                    // already sorted if needed
+                    // keep only the top K records, the whole table is never sorted
                     if (fromTransactionSorted != null) {
-                        tableData = tableData.limit(maxRows + offset);
-
                         fromTransactionSorted = fromTransactionSorted.limit(maxRows + offset);
-                        // we need to re-sort after merging the data
-                        result = Stream.concat(fromTransactionSorted, tableData)
-                                .sorted(comparator);
+                        result = sortTopRecords(Stream.concat(fromTransactionSorted, tableData),
+                                maxRows + offset, comparator);
                     } else {
-                        tableData = tableData.limit(maxRows + offset);
-                        // no need to sort again
-                        result = tableData;
+                        result = sortTopRecords(tableData, maxRows + offset, comparator);
                     }
                 } else if (fromTransactionSorted == null) {
                     result = tableData;
@@ -3302,7 +3702,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                     result = Stream.concat(fromTransactionSorted, tableData);
                 }
             } else {
-                if (sortedByClusteredIndex) {
+                if (sortedByIndex) {
                     // already sorted from index
                     if (fromTransactionSorted != null) {
                         tableData = tableData.sorted(comparator);
@@ -3357,6 +3757,212 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
     }
 
+    /**
+     * Lazily collects the lower records of the stream, as stated by the
+     * comparator, using an {@link InStreamTupleSorter}. Data is consumed only
+     * when the returned stream is consumed.
+     *
+     * @param data
+     * @param size maximum number of records to keep
+     * @param comparator
+     * @return a sorted stream with at most size records
+     */
+    private static Stream<DataAccessor> sortTopRecords(
+            Stream<DataAccessor> data, int size, Comparator<DataAccessor> comparator
+    ) {
+        return StreamSupport.stream(() -> {
+            InStreamTupleSorter sorter = new InStreamTupleSorter(size, comparator);
+            data.forEach(sorter::collect);
+            return sorter.stream().spliterator();
+        }, Spliterator.ORDERED, false).onClose(data::close);
+    }
+
+    /**
+     * A scan can be executed in parallel if it has to read the whole table, it
+     * is not part of a transaction and it does not need locks.
+     *
+     * @param statement
+     * @param transaction
+     * @param lockRequired
+     * @param forWrite
+     * @return true if {@link #scanParallel(herddb.model.commands.ScanStatement, herddb.model.StatementEvaluationContext, boolean, herddb.core.ParallelScanConsumer)
+     * } can be used
+     */
+    public boolean isParallelScanAllowed(
+            ScanStatement statement, Transaction transaction,
+            boolean lockRequired, boolean forWrite
+    ) {
+        if (transaction != null || lockRequired || forWrite) {
+            return false;
+        }
+        DBManager dbmanager = tableSpaceManager.getDbmanager();
+        if (dbmanager.getParallelScanPool() == null) {
+            return false;
+        }
+        Predicate predicate = statement.getPredicate();
+        if (predicate != null && predicate.getIndexOperation() != null) {
+            // index accesses read only a few pages
+            return false;
+        }
+        return stats.getTablesize() >= dbmanager.getParallelScanMinRecords();
+    }
+
+    /**
+     * Scans the whole table using the parallel scan pool. The entries of the
+     * primary key index are split into partitions, every partition is sorted
+     * by page and then records are read, filtered, projected and accumulated
+     * by a worker thread. Partial results are merged on the calling thread in
+     * the order of the partitions, the number of partitions in flight is
+     * bounded, so the scan does not run ahead of the consumer.
+     *
+     * @param statement
+     * @param context
+     * @param applyProjection apply the projection of the statement before
+     * accumulating the records
+     * @param consumer
+     * @throws StatementExecutionException
+     * @see #isParallelScanAllowed(herddb.model.commands.ScanStatement, herddb.model.Transaction, boolean, boolean)
+     */
+    public <P> void scanParallel(
+            ScanStatement statement, StatementEvaluationContext context,
+            boolean applyProjection, ParallelScanConsumer<P> consumer
+    ) throws StatementExecutionException {
+        statement.validateContext(context);
+        // the context is shared by the workers, the current timestamp is computed lazily
+        // and it must be the same for every row, so it is computed before forking
+        context.getCurrentTimestamp();
+        ForkJoinPool pool = tableSpaceManager.getDbmanager().getParallelScanPool();
+        Predicate predicate = statement.getPredicate();
+        Projection projection = applyProjection ? statement.getProjection() : null;
+        int maxPendingPartitions = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<P>> pending = new ArrayDeque<>(maxPendingPartitions);
+        try (Stream<Map.Entry<Bytes, Long>> scanner = keyToPage.scanner(null, context, tableContext, null)) {
+            Iterator<Map.Entry<Bytes, Long>> entries = scanner.iterator();
+            while (entries.hasNext()) {
+                if (pending.size() >= maxPendingPartitions
+                        && !consumer.merge(joinPartition(pending.poll()))) {
+                    return;
+                }
+                List<Map.Entry<Bytes, Long>> partition = new ArrayList<>(PARALLEL_SCAN_PARTITION_SIZE);
+                while (partition.size() < PARALLEL_SCAN_PARTITION_SIZE && entries.hasNext()) {
+                    partition.add(entries.next());
+                }
+                pending.add(pool.submit(() -> scanPartition(partition, predicate, projection, context, consumer)));
+                parallelScanPartitions.increment();
+            }
+            while (!pending.isEmpty()) {
+                if (!consumer.merge(joinPartition(pending.poll()))) {
+                    return;
+                }
+            }
+        } finally {
+            for (ForkJoinTask<P> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private <P> P scanPartition(
+            List<Map.Entry<Bytes, Long>> partition, Predicate predicate, Projection projection,
+            StatementEvaluationContext context, ParallelScanConsumer<P> consumer
+    ) throws StatementExecutionException {
+        partition.sort(SORTED_PAGE_ACCESS_COMPARATOR);
+        LocalScanPageCache lastPageRead = new LocalScanPageCache();
+        P partial = consumer.newPartialResult();
+        for (Map.Entry<Bytes, Long> entry : partition) {
+            Record record = accessRecord(entry, predicate, context, null, lastPageRead, false, false, false);
+            if (record != null) {
+                DataAccessor tuple = record.getDataAccessor(table);
+                consumer.accept(partial, projection != null ? projection.map(tuple, context) : tuple);
+            }
+        }
+        return partial;
+    }
+
+    private static <P> P joinPartition(ForkJoinTask<P> task) throws StatementExecutionException {
+        try {
+            return task.get();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new StatementExecutionException(err);
+        } catch (ExecutionException err) {
+            Throwable cause = err.getCause();
+            if (cause instanceof HerdDBInternalException) {
+                throw (HerdDBInternalException) cause;
+            }
+            throw new StatementExecutionException(cause);
+        }
+    }
+
+    private DataScanner scanParallelNoStream(
+            ScanStatement statement, StatementEvaluationContext context
+    ) throws StatementExecutionException {
+        TupleComparator comparator = statement.getComparator();
+        final Projection projection = statement.getProjection();
+        // the fields of the comparator are positions in the rows returned by the scan
+        boolean applyProjectionDuringScan = projection != null;
+        MaterializedRecordSet recordSet;
+        if (applyProjectionDuringScan) {
+            recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                    .createRecordSet(projection.getFieldNames(), projection.getColumns());
+        } else {
+            recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                    .createRecordSet(table.columnNames, table.columns);
+        }
+        try {
+            ScanLimits limits = statement.getLimits();
+            int maxRows = limits == null ? 0 : limits.computeMaxRows(context);
+            int offset = limits == null ? 0 : limits.computeOffset(context);
+            InStreamTupleSorter sorter = maxRows > 0 && comparator != null
+                    ? new InStreamTupleSorter(offset + maxRows, comparator) : null;
+            scanParallel(statement, context, applyProjectionDuringScan, new ParallelScanConsumer<List<DataAccessor>>() {
+
+                // without sort the limits can be applied during the scan and perform an early exit
+                private int remaining = maxRows > 0 && comparator == null ? maxRows + offset : -1;
+
+                @Override
+                public List<DataAccessor> newPartialResult() {
+                    return new ArrayList<>();
+                }
+
+                @Override
+                public void accept(List<DataAccessor> partial, DataAccessor tuple) {
+                    partial.add(tuple);
+                }
+
+                @Override
+                public boolean merge(List<DataAccessor> partial) {
+                    for (DataAccessor tuple : partial) {
+                        if (sorter != null) {
+                            sorter.collect(tuple);
+                        } else {
+                            recordSet.add(tuple);
+                            if (--remaining == 0) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }
+            });
+            if (sorter != null) {
+                sorter.flushToRecordSet(recordSet);
+            }
+            recordSet.writeFinished();
+            if (sorter == null) {
+                recordSet.sort(comparator);
+            }
+            recordSet.applyLimits(limits, context);
+            if (!applyProjectionDuringScan) {
+                recordSet.applyProjection(projection, context);
+            }
+            return new SimpleDataScanner(null, recordSet);
+        } catch (StatementExecutionException | DataStorageManagerException err) {
+            recordSet.close();
+            throw err;
+        }
+    }
+
     private void accessTableData(
             ScanStatement statement, StatementEvaluationContext context, ScanResultOperation consumer, Transaction transaction,
             boolean lockRequired, boolean forWrite
@@ -3514,7 +4120,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     private Stream<Record> streamTableData(
             ScanStatement statement, StatementEvaluationContext context,
             Transaction transaction,
-            boolean lockRequired, boolean forWrite
+            boolean lockRequired, boolean forWrite, IndexOrder indexOrder
     ) throws StatementExecutionException {
         statement.validateContext(context);
         Predicate predicate = statement.getPredicate();
@@ -3522,8 +4128,15 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         LocalScanPageCache lastPageRead = acquireLock ? null : new LocalScanPageCache();
         IndexOperation indexOperation = predicate != null ? predicate.getIndexOperation() : null;
         boolean primaryIndexSeek = indexOperation instanceof PrimaryIndexSeek;
-        AbstractIndexManager useIndex = getIndexForTbleAccess(indexOperation);
-        Stream<Map.Entry<Bytes, Long>> scanner = keyToPage.scanner(indexOperation, context, tableContext, useIndex);
+        Stream<Map.Entry<Bytes, Long>> scanner;
+        if (indexOrder != null && indexOrder.index != null) {
+            scanner = indexOrder.index.sortedRecordSetScanner(indexOperation, context, tableContext, keyToPage, indexOrder.descending);
+        } else if (indexOrder != null && indexOrder.descending) {
+            scanner = keyToPage.descendingScanner(indexOperation, context, tableContext);
+        } else {
+            AbstractIndexManager useIndex = getIndexForTbleAccess(indexOperation);
+            scanner = keyToPage.scanner(indexOperation, context, tableContext, useIndex);
+        }
 
         Stream<Record> resultFromTable = scanner.map(entry -> {
             return accessRecord(entry, predicate, context,
@@ -3623,6 +4236,42 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
     }
 
+    /**
+     * Looks up the keys of the records which match an exact seek on the
+     * primary key or on a secondary index, records are then read with
+     * {@link #accessRecord}. It is used by index lookup joins, which access
+     * the table once for every row of the other side of the join.
+     *
+     * @param seek a {@link PrimaryIndexSeek} or a {@link SecondaryIndexSeek}
+     * @param context
+     * @return the primary keys with the id of the page which contains them
+     * @throws StatementExecutionException
+     * @throws DataStorageManagerException
+     */
+    public List<Map.Entry<Bytes, Long>> seekRecordKeys(IndexOperation seek, StatementEvaluationContext context)
+            throws StatementExecutionException, DataStorageManagerException {
+        if (seek instanceof PrimaryIndexSeek) {
+            joinPrimaryKeyLookups.increment();
+            Bytes key = Bytes.from_array(((PrimaryIndexSeek) seek).value.computeNewValue(null, context, tableContext));
+            Long page = keyToPage.get(key);
+            if (page == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(key, page));
+        }
+        if (!(seek instanceof SecondaryIndexSeek)) {
+            throw new IllegalArgumentException("unsupported index operation " + seek);
+        }
+        AbstractIndexManager index = getIndexForTbleAccess(seek);
+        if (index == null) {
+            throw new StatementExecutionException("index " + seek.getIndexName() + " is not available");
+        }
+        joinSecondaryIndexLookups.increment();
+        try (Stream<Map.Entry<Bytes, Long>> entries = index.recordSetScanner(seek, context, tableContext, keyToPage)) {
+            return entries.collect(Collectors.toList());
+        }
+    }
+
     private AbstractIndexManager getIndexForTbleAccess(IndexOperation indexOperation) {
         AbstractIndexManager useIndex = null;
         if (indexOperation != null) {
@@ -3657,7 +4306,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         while (true) {
             DataPage dataPage = fetchDataPage(pageId, localScanPageCache);
             if (dataPage != null) {
-                Record record = dataPage.get(key);
+                Record record = getFromLoadedPage(dataPage, pageId, key);
                 if (record != null) {
                     /* Record found */
                     return record;
@@ -3707,6 +4356,19 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
     }
 
+    /**
+     * Reads a record from a page, if the page has been read in place and it has been released by a concurrent
+     * unload the page is loaded again.
+     */
+    private Record getFromLoadedPage(DataPage page, Long pageId, Bytes key) throws DataStorageManagerException {
+        Record record = page.get(key);
+        while (record == null && page.isReleased()) {
+            page = loadPageToMemory(pageId, false);
+            record = page.get(key);
+        }
+        return record;
+    }
+
     private DataPage fetchDataPage(Long pageId, LocalScanPageCache localScanPageCache) throws DataStorageManagerException {
         DataPage dataPage;
         if (localScanPageCache == null
@@ -3843,6 +4505,16 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return keyToPageSortedAscending;
     }
 
+    @Override
+    public void batchRowsRead(int rows) {
+        batchRowsRead.add(rows);
+    }
+
+    @Override
+    public void batchAggregationExecuted() {
+        batchAggregations.increment();
+    }
+
     private static class UniqueIndexLockReference {
         final AbstractIndexManager indexManager;
         final Bytes key;
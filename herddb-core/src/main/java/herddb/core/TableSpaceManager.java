@@ -127,11 +127,16 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -151,6 +156,9 @@ public class TableSpaceManager {
 
     final StatsLogger tablespaceStasLogger;
     final OpStatsLogger checkpointTimeStats;
+    final OpStatsLogger checkpointBeginTimeStats;
+    final OpStatsLogger checkpointTablesTimeStats;
+    final OpStatsLogger checkpointEndTimeStats;
 
     private final MetadataStorageManager metadataStorageManager;
     private final DataStorageManager dataStorageManager;
@@ -168,15 +176,26 @@ public class TableSpaceManager {
     private volatile FollowerThread followerThread;
     private final ExecutorService callbacksExecutor;
     private final boolean virtual;
+    private final boolean incrementalCheckpoint;
+    private final long checkpointDuration;
 
     private volatile boolean recoveryInProgress;
     private volatile boolean leader;
     private volatile boolean closed;
     private volatile boolean failed;
     private LogSequenceNumber actualLogSequenceNumber;
+    /**
+     * Position of the last checkpoint written by this instance, guarded by the tablespace write lock
+     */
+    private LogSequenceNumber lastCheckpointSequenceNumber;
+    /**
+     * Only one incremental checkpoint at a time, full checkpoints are serialized by the write lock
+     */
+    private final ReentrantLock incrementalCheckpointLock = new ReentrantLock();
 
     // only for tests
     private Runnable afterTableCheckPointAction;
+    private Runnable beforeCheckpointEndAction;
 
     public Runnable getAfterTableCheckPointAction() {
         return afterTableCheckPointAction;
@@ -186,6 +205,18 @@ public class TableSpaceManager {
         this.afterTableCheckPointAction = afterTableCheckPointAction;
     }
 
+    public Runnable getBeforeCheckpointEndAction() {
+        return beforeCheckpointEndAction;
+    }
+
+    /**
+     * Action executed by an incremental checkpoint after the tables have been checkpointed, without holding
+     * any lock
+     */
+    public void setBeforeCheckpointEndAction(Runnable beforeCheckpointEndAction) {
+        this.beforeCheckpointEndAction = beforeCheckpointEndAction;
+    }
+
     public String getTableSpaceName() {
         return tableSpaceName;
     }
@@ -211,6 +242,16 @@ public class TableSpaceManager {
         this.virtual = virtual;
         this.tablespaceStasLogger = this.dbmanager.getStatsLogger().scope(this.tableSpaceName);
         this.checkpointTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointTime");
+        this.checkpointBeginTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointBeginTime");
+        this.checkpointTablesTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointTablesTime");
+        this.checkpointEndTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointEndTime");
+        this.incrementalCheckpoint = dbmanager.getServerConfiguration().getBoolean(
+                ServerConfiguration.PROPERTY_CHECKPOINT_INCREMENTAL,
+                ServerConfiguration.PROPERTY_CHECKPOINT_INCREMENTAL_DEFAULT);
+        long checkpointDuration = dbmanager.getServerConfiguration().getLong(
+                ServerConfiguration.PROPERTY_CHECKPOINT_DURATION,
+                ServerConfiguration.PROPERTY_CHECKPOINT_DURATION_DEFAULT);
+        this.checkpointDuration = checkpointDuration < 0 ? Long.MAX_VALUE : checkpointDuration;
         this.dataStorageManager.tableSpaceMetadataUpdated(tableSpaceUUID, expectedReplicaCount);
     }
 
@@ -282,14 +323,14 @@ public class TableSpaceManager {
             LOGGER.log(Level.INFO, "{0} {1} tablesAtBoot: {2}, indexesAtBoot: {3}", new Object[]{nodeId, tableSpaceName, tableNames, indexNames});
         }
 
-        for (Table table : tablesAtBoot) {
-            TableManager tableManager = bootTable(table, 0, null, false);
-            for (Index index : indexesAtBoot) {
-                if (index.table.equals(table.name)) {
-                    bootIndex(index, tableManager, false, 0, false, false);
-                }
-            }
-        }
+        final int recoveryThreads = dbmanager.getServerConfiguration().getInt(
+                ServerConfiguration.PROPERTY_RECOVERY_THREADS,
+                ServerConfiguration.PROPERTY_RECOVERY_THREADS_DEFAULT);
+        long _bootStart = System.currentTimeMillis();
+        bootTablesAtRecovery(tablesAtBoot, indexesAtBoot, recoveryThreads);
+        LOGGER.log(Level.INFO, "{0} recover {1}, booted {2} tables and {3} indexes in {4} ms",
+                new Object[]{nodeId, tableSpaceName, tablesAtBoot.size(), indexesAtBoot.size(),
+                        Long.toString(System.currentTimeMillis() - _bootStart)});
         dataStorageManager.loadTransactions(logSequenceNumber, tableSpaceUUID, t -> {
             transactions.put(t.transactionId, t);
             LOGGER.log(Level.FINER, "{0} {1} tx {2} at boot lsn {3}", new Object[]{nodeId, tableSpaceName, t.transactionId, t.lastSequenceNumber});
@@ -319,14 +360,14 @@ public class TableSpaceManager {
                 && dbmanager.getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT, ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT_DEFAULT)) {
             LOGGER.log(Level.SEVERE, nodeId + " full recovery of data is forced (" + ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT + "=true) for tableSpace " + tableSpaceName);
             downloadTableSpaceData();
-            log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), false);
+            replayLogAtRecovery(actualLogSequenceNumber, recoveryThreads);
         } else {
             try {
-                log.recovery(logSequenceNumber, new ApplyEntryOnRecovery(), false);
+                replayLogAtRecovery(logSequenceNumber, recoveryThreads);
             } catch (FullRecoveryNeededException fullRecoveryNeeded) {
                 LOGGER.log(Level.SEVERE, nodeId + " full recovery of data is needed for tableSpace " + tableSpaceName, fullRecoveryNeeded);
                 downloadTableSpaceData();
-                log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), false);
+                replayLogAtRecovery(actualLogSequenceNumber, recoveryThreads);
             }
         }
         recoveryInProgress = false;
@@ -337,6 +378,83 @@ public class TableSpaceManager {
 
     }
 
+    /**
+     * Boots tables found at the last checkpoint, together with their indexes. Every table is loaded on
+     * a pool of threads if more than one recovery thread is configured.
+     */
+    private void bootTablesAtRecovery(List<Table> tablesAtBoot, List<Index> indexesAtBoot, int recoveryThreads) throws DataStorageManagerException {
+        if (recoveryThreads <= 1 || tablesAtBoot.size() <= 1) {
+            for (Table table : tablesAtBoot) {
+                bootTableAndIndexes(table, indexesAtBoot);
+            }
+            return;
+        }
+        ExecutorService bootExecutor = Executors.newFixedThreadPool(Math.min(recoveryThreads, tablesAtBoot.size()),
+                (Runnable r) -> new Thread(r, "boot-" + tableSpaceName));
+        try {
+            List<Future<?>> futures = new ArrayList<>(tablesAtBoot.size());
+            for (Table table : tablesAtBoot) {
+                futures.add(bootExecutor.submit(() -> {
+                    bootTableAndIndexes(table, indexesAtBoot);
+                    return null;
+                }));
+            }
+            DataStorageManagerException error = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    throw new DataStorageManagerException(err);
+                } catch (ExecutionException err) {
+                    if (error == null) {
+                        error = err.getCause() instanceof DataStorageManagerException
+                                ? (DataStorageManagerException) err.getCause()
+                                : new DataStorageManagerException(err.getCause());
+                    } else {
+                        error.addSuppressed(err.getCause());
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            bootExecutor.shutdown();
+        }
+    }
+
+    private void bootTableAndIndexes(Table table, List<Index> indexesAtBoot) throws DataStorageManagerException {
+        TableManager tableManager = bootTable(table, 0, null, false);
+        for (Index index : indexesAtBoot) {
+            if (index.table.equals(table.name)) {
+                bootIndex(index, tableManager, false, 0, false, false);
+            }
+        }
+    }
+
+    private void replayLogAtRecovery(LogSequenceNumber from, int recoveryThreads) throws DataStorageManagerException, LogNotAvailableException {
+        long _start = System.currentTimeMillis();
+        ApplyEntryOnRecovery apply;
+        if (recoveryThreads > 1) {
+            ParallelApplyEntryOnRecovery parallelApply = new ParallelApplyEntryOnRecovery(recoveryThreads);
+            try {
+                log.recovery(from, parallelApply, false);
+                parallelApply.finish();
+            } finally {
+                parallelApply.close();
+            }
+            apply = parallelApply;
+        } else {
+            apply = new ApplyEntryOnRecovery();
+            log.recovery(from, apply, false);
+        }
+        long delta = Math.max(1, System.currentTimeMillis() - _start);
+        LOGGER.log(Level.INFO, "{0} recover {1}, replayed {2} log entries from {3} in {4} ms ({5} entries/s, {6} threads)",
+                new Object[]{nodeId, tableSpaceName, Long.toString(apply.entries), from, Long.toString(delta),
+                        Long.toString(apply.entries * 1000 / delta), recoveryThreads});
+    }
+
     void recoverForLeadership() throws DataStorageManagerException, LogNotAvailableException {
         if (recoveryInProgress) {
             throw new HerdDBInternalException("Cannot run recovery twice");
@@ -1933,6 +2051,10 @@ public class TableSpaceManager {
             return null;
         }
 
+        if (incrementalCheckpoint && !full && !alreadLocked) {
+            return incrementalCheckpoint(pin);
+        }
+
         long _start = System.currentTimeMillis();
         LogSequenceNumber logSequenceNumber = null;
         LogSequenceNumber _logSequenceNumber = null;
@@ -1968,26 +2090,14 @@ public class TableSpaceManager {
                 actions.addAll(writeTablesOnDataStorageManager(new CommitLogResult(logSequenceNumber, false, true), true));
 
                 // we checkpoint all data to disk and save the actual log sequence number
-                for (AbstractTableManager tableManager : tables.values()) {
-                    // each TableManager will save its own checkpoint sequence number (on TableStatus) and upon recovery will replay only actions with log position after the actual table-local checkpoint
-                    // remember that the checkpoint for a table can last "minutes" and we do not want to stop the world
-
-                    if (!tableManager.isSystemTable()) {
-                        TableCheckpoint checkpoint = full ? tableManager.fullCheckpoint(pin) : tableManager.checkpoint(pin);
-
-                        if (checkpoint != null) {
-                            LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2})", new Object[]{tableSpaceName, tableManager.getTable().name, pin});
-                            actions.addAll(checkpoint.actions);
-                            checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
-                            if (afterTableCheckPointAction != null) {
-                                afterTableCheckPointAction.run();
-                            }
-                        }
-                    }
-                }
+                // each TableManager will save its own checkpoint sequence number (on TableStatus) and upon recovery will replay only actions with log position after the actual table-local checkpoint
+                // remember that the checkpoint for a table can last "minutes" and we do not want to stop the world
+                checkpointTables(tableManager -> full ? tableManager.fullCheckpoint(pin) : tableManager.checkpoint(pin),
+                        pin, actions, checkpointsTableNameSequenceNumber);
 
                 // we are sure that all data as been flushed. upon recovery we will replay the log starting from this position
                 actions.addAll(dataStorageManager.writeCheckpointSequenceNumber(tableSpaceUUID, logSequenceNumber));
+                lastCheckpointSequenceNumber = logSequenceNumber;
 
                 /* Indexes checkpoint is handled by TableManagers */
                 if (leader) {
@@ -2013,7 +2123,201 @@ public class TableSpaceManager {
             long _stop = System.currentTimeMillis();
             LOGGER.log(Level.INFO, "{0} checkpoint finish {1} started ad {2}, finished at {3}, total time {4} ms",
                     new Object[]{nodeId, tableSpaceName, logSequenceNumber, _logSequenceNumber, Long.toString(_stop - _start)});
-            checkpointTimeStats.registerSuccessfulEvent(_stop, TimeUnit.MILLISECONDS);
+            checkpointTimeStats.registerSuccessfulEvent(_stop - _start, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Fuzzy checkpoint. The checkpoint position, the snapshot of transactions and the tables metadata are
+     * taken under the exclusive lock, then every table is checkpointed (at a position which is after the
+     * tablespace one) holding only the shared lock, so that writes can proceed on the other tables. Finally
+     * the checkpoint position is written in a short exclusive section.
+     * <p>
+     * A full checkpoint may complete while the tables are checkpointed: in this case the position of the
+     * incremental checkpoint is older and it is not recorded, otherwise recovery would start from a position
+     * whose transactions file has been deleted by the full checkpoint.
+     * </p>
+     * <p>
+     * Upon recovery the log is replayed starting from the tablespace position and each table skips the
+     * entries which are already contained in its own checkpoint.
+     * </p>
+     */
+    private TableSpaceCheckpoint incrementalCheckpoint(boolean pin) throws DataStorageManagerException, LogNotAvailableException {
+        final long _start = System.currentTimeMillis();
+        final long deadline = _start + checkpointDuration < _start ? Long.MAX_VALUE : _start + checkpointDuration;
+        long _begin = _start;
+        long _tables = _start;
+        LogSequenceNumber logSequenceNumber = null;
+        LogSequenceNumber _logSequenceNumber = null;
+        Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber = new HashMap<>();
+        List<PostCheckpointAction> actions = new ArrayList<>();
+        incrementalCheckpointLock.lock();
+        try {
+            /* Phase 1: checkpoint position, transactions and tables metadata, exclusive */
+            long lockStamp = acquireWriteLock("checkpoint begin");
+            try {
+                logSequenceNumber = log.getLastSequenceNumber();
+                if (logSequenceNumber.isStartOfTime()) {
+                    LOGGER.log(Level.INFO, "{0} checkpoint {1} at {2}. skipped (no write ever issued to log)", new Object[]{nodeId, tableSpaceName, logSequenceNumber});
+                    return new TableSpaceCheckpoint(logSequenceNumber, checkpointsTableNameSequenceNumber);
+                }
+                LOGGER.log(Level.INFO, "{0} incremental checkpoint start {1} at {2}", new Object[]{nodeId, tableSpaceName, logSequenceNumber});
+                if (actualLogSequenceNumber == null) {
+                    throw new DataStorageManagerException("actualLogSequenceNumber cannot be null");
+                }
+                Collection<Transaction> currentTransactions = new ArrayList<>(transactions.values());
+                actions.addAll(dataStorageManager.writeTransactionsAtCheckpoint(tableSpaceUUID, logSequenceNumber, currentTransactions));
+                actions.addAll(writeTablesOnDataStorageManager(new CommitLogResult(logSequenceNumber, false, true), true));
+
+                /* Phase 2: tables, downgrade to a shared lock, DMLs can proceed but DDLs are not allowed */
+                long readLockStamp = generalLock.tryConvertToReadLock(lockStamp);
+                if (readLockStamp == 0) {
+                    throw new DataStorageManagerException("unable to downgrade lock");
+                }
+                lockStamp = readLockStamp;
+                _begin = System.currentTimeMillis();
+
+                checkpointTables(tableManager -> tableManager.checkpoint(deadline, pin),
+                        pin, actions, checkpointsTableNameSequenceNumber);
+            } finally {
+                generalLock.unlock(lockStamp);
+            }
+            _tables = System.currentTimeMillis();
+
+            if (beforeCheckpointEndAction != null) {
+                beforeCheckpointEndAction.run();
+            }
+
+            /* Phase 3: metadata switch, exclusive */
+            lockStamp = acquireWriteLock("checkpoint end");
+            try {
+                if (lastCheckpointSequenceNumber != null && !logSequenceNumber.after(lastCheckpointSequenceNumber)) {
+                    LOGGER.log(Level.INFO, "{0} incremental checkpoint {1} at {2} superseded by checkpoint at {3}",
+                            new Object[]{nodeId, tableSpaceName, logSequenceNumber, lastCheckpointSequenceNumber});
+                } else {
+                    actions.addAll(dataStorageManager.writeCheckpointSequenceNumber(tableSpaceUUID, logSequenceNumber));
+                    lastCheckpointSequenceNumber = logSequenceNumber;
+                    if (leader) {
+                        log.dropOldLedgers(logSequenceNumber);
+                    }
+                }
+                _logSequenceNumber = log.getLastSequenceNumber();
+            } finally {
+                releaseWriteLock(lockStamp, "checkpoint end");
+            }
+
+            // post checkpoint actions only delete files older than our position, they are safe even if the
+            // checkpoint has been superseded
+            for (PostCheckpointAction action : actions) {
+                try {
+                    action.run();
+                } catch (Exception error) {
+                    LOGGER.log(Level.SEVERE, "postcheckpoint error:" + error, error);
+                }
+            }
+            return new TableSpaceCheckpoint(logSequenceNumber, checkpointsTableNameSequenceNumber);
+        } finally {
+            incrementalCheckpointLock.unlock();
+            long _stop = System.currentTimeMillis();
+            if (_logSequenceNumber != null) {
+                checkpointBeginTimeStats.registerSuccessfulEvent(_begin - _start, TimeUnit.MILLISECONDS);
+                checkpointTablesTimeStats.registerSuccessfulEvent(_tables - _begin, TimeUnit.MILLISECONDS);
+                checkpointEndTimeStats.registerSuccessfulEvent(_stop - _tables, TimeUnit.MILLISECONDS);
+            }
+            LOGGER.log(Level.INFO, "{0} incremental checkpoint finish {1} started ad {2}, finished at {3}, total time {4} ms "
+                    + "(begin {5} ms, tables {6} ms, end {7} ms)",
+                    new Object[]{nodeId, tableSpaceName, logSequenceNumber, _logSequenceNumber, Long.toString(_stop - _start),
+                            Long.toString(_begin - _start), Long.toString(_tables - _begin), Long.toString(_stop - _tables)});
+            checkpointTimeStats.registerSuccessfulEvent(_stop - _start, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Checkpoints every non system table, concurrently if a checkpoint executor is configured on the
+     * DBManager. The caller must hold the tablespace lock, which is kept until all of the tables are done.
+     */
+    private void checkpointTables(
+            Function<AbstractTableManager, TableCheckpoint> tableCheckpoint, boolean pin,
+            List<PostCheckpointAction> actions, Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber
+    ) throws DataStorageManagerException {
+        List<AbstractTableManager> tablesToCheckpoint = new ArrayList<>();
+        for (AbstractTableManager tableManager : tables.values()) {
+            if (!tableManager.isSystemTable()) {
+                tablesToCheckpoint.add(tableManager);
+            }
+        }
+        ExecutorService checkpointExecutor = dbmanager.getCheckpointExecutor();
+        if (checkpointExecutor == null || tablesToCheckpoint.size() <= 1) {
+            for (AbstractTableManager tableManager : tablesToCheckpoint) {
+                long _start = System.currentTimeMillis();
+                TableCheckpoint checkpoint = tableCheckpoint.apply(tableManager);
+                tableCheckpointDone(tableManager, checkpoint, System.currentTimeMillis() - _start, pin,
+                        actions, checkpointsTableNameSequenceNumber);
+            }
+            return;
+        }
+
+        List<Future<TableCheckpoint>> futures = new ArrayList<>(tablesToCheckpoint.size());
+        long[] elapsed = new long[tablesToCheckpoint.size()];
+        for (int i = 0; i < tablesToCheckpoint.size(); i++) {
+            final int index = i;
+            final AbstractTableManager tableManager = tablesToCheckpoint.get(i);
+            futures.add(checkpointExecutor.submit(() -> {
+                long _start = System.currentTimeMillis();
+                try {
+                    return tableCheckpoint.apply(tableManager);
+                } finally {
+                    elapsed[index] = System.currentTimeMillis() - _start;
+                }
+            }));
+        }
+        // wait for all of the tables, even in case of failure, as they are running under our lock
+        DataStorageManagerException error = null;
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            AbstractTableManager tableManager = tablesToCheckpoint.get(i);
+            TableCheckpoint checkpoint = null;
+            while (true) {
+                try {
+                    checkpoint = futures.get(i).get();
+                    break;
+                } catch (InterruptedException err) {
+                    interrupted = true;
+                } catch (ExecutionException err) {
+                    LOGGER.log(Level.SEVERE, "checkpoint failed for table " + tableSpaceName + "." + tableManager.getTable().name, err.getCause());
+                    if (error == null) {
+                        error = err.getCause() instanceof DataStorageManagerException
+                                ? (DataStorageManagerException) err.getCause()
+                                : new DataStorageManagerException(err.getCause());
+                    }
+                    break;
+                }
+            }
+            if (error == null) {
+                // Future.get establishes a happens-before with the task, elapsed time is visible
+                tableCheckpointDone(tableManager, checkpoint, elapsed[i], pin, actions, checkpointsTableNameSequenceNumber);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void tableCheckpointDone(
+            AbstractTableManager tableManager, TableCheckpoint checkpoint, long elapsed, boolean pin,
+            List<PostCheckpointAction> actions, Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber
+    ) {
+        if (checkpoint != null) {
+            LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2}) in {3} ms",
+                    new Object[]{tableSpaceName, tableManager.getTable().name, pin, Long.toString(elapsed)});
+            actions.addAll(checkpoint.actions);
+            checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
+            if (afterTableCheckPointAction != null) {
+                afterTableCheckPointAction.run();
+            }
         }
     }
 
@@ -2179,6 +2483,11 @@ public class TableSpaceManager {
 
     private class ApplyEntryOnRecovery implements BiConsumer<LogSequenceNumber, LogEntry> {
 
+        private static final long PROGRESS_LOG_INTERVAL = 10_000;
+
+        long entries;
+        private long lastProgressLog = System.currentTimeMillis();
+
         public ApplyEntryOnRecovery() {
         }
 
@@ -2187,12 +2496,170 @@ public class TableSpaceManager {
             if (dbmanager.isStopped()) {
                 throw new RuntimeException("System was requested to stop, aborting recovery at " + t);
             }
+            logProgress(t);
             try {
                 apply(new CommitLogResult(t, false, true), u, true);
             } catch (DDLException | DataStorageManagerException err) {
                 throw new RuntimeException(err);
             }
         }
+
+        final void logProgress(LogSequenceNumber t) {
+            entries++;
+            if ((entries & 0xFFF) == 0) {
+                long now = System.currentTimeMillis();
+                if (now - lastProgressLog >= PROGRESS_LOG_INTERVAL) {
+                    lastProgressLog = now;
+                    LOGGER.log(Level.INFO, "{0} recover {1}, replayed {2} log entries, at {3}",
+                            new Object[]{nodeId, tableSpaceName, Long.toString(entries), t});
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies data changes (INSERT, UPDATE, DELETE, TRUNCATE) of different tables concurrently. Every table is
+     * assigned to a worker thread so that its entries are applied in log order, changes done inside a
+     * transaction are assigned by transaction, as they are only registered on the transaction until commit.
+     * All the other entries (DDLs and transaction commits/rollbacks) wait for pending data changes and are
+     * applied on the recovery thread. BEGIN TRANSACTION only registers the transaction and it does not need
+     * to wait.
+     */
+    private class ParallelApplyEntryOnRecovery extends ApplyEntryOnRecovery implements AutoCloseable {
+
+        private static final int BATCH_SIZE = 256;
+
+        private final ExecutorService[] workers;
+        private final List<List<Runnable>> batches;
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        ParallelApplyEntryOnRecovery(int numWorkers) {
+            workers = new ExecutorService[numWorkers];
+            batches = new ArrayList<>(numWorkers);
+            for (int i = 0; i < numWorkers; i++) {
+                String name = "recovery-" + tableSpaceName + "-" + i;
+                workers[i] = Executors.newSingleThreadExecutor((Runnable r) -> new Thread(r, name));
+                batches.add(new ArrayList<>(BATCH_SIZE));
+            }
+        }
+
+        @Override
+        public void accept(LogSequenceNumber t, LogEntry u) {
+            checkError();
+            if (u.tableName != null && isDataChange(u.type)) {
+                AbstractTableManager tableManager = tables.get(u.tableName);
+                if (tableManager != null) {
+                    if (dbmanager.isStopped()) {
+                        throw new RuntimeException("System was requested to stop, aborting recovery at " + t);
+                    }
+                    logProgress(t);
+                    actualLogSequenceNumber = t;
+                    CommitLogResult position = new CommitLogResult(t, false, true);
+                    // changes inside a transaction only update the transaction and they must be registered
+                    // in log order, even if they are on different tables
+                    int worker = u.transactionId > 0
+                            ? Math.floorMod(Long.hashCode(u.transactionId), workers.length)
+                            : Math.floorMod(u.tableName.hashCode(), workers.length);
+                    List<Runnable> batch = batches.get(worker);
+                    batch.add(() -> {
+                        try {
+                            tableManager.apply(position, u, true);
+                        } catch (DataStorageManagerException | DDLException err) {
+                            throw new RuntimeException(err);
+                        }
+                    });
+                    if (batch.size() >= BATCH_SIZE) {
+                        flush(worker);
+                    }
+                    return;
+                }
+            }
+            if (u.type != LogEntryType.NOOP
+                    && u.type != LogEntryType.BEGINTRANSACTION
+                    && u.type != LogEntryType.TABLE_CONSISTENCY_CHECK) {
+                barrier();
+            }
+            super.accept(t, u);
+        }
+
+        private boolean isDataChange(short type) {
+            return type == LogEntryType.INSERT
+                    || type == LogEntryType.UPDATE
+                    || type == LogEntryType.DELETE
+                    || type == LogEntryType.TRUNCATE_TABLE;
+        }
+
+        private void flush(int worker) {
+            List<Runnable> batch = batches.get(worker);
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Runnable> toApply = new ArrayList<>(batch);
+            batch.clear();
+            workers[worker].execute(() -> {
+                for (Runnable r : toApply) {
+                    if (error.get() != null) {
+                        return;
+                    }
+                    try {
+                        r.run();
+                    } catch (Throwable err) {
+                        LOGGER.log(Level.SEVERE, "error while applying log entry at recovery on tablespace " + tableSpaceName, err);
+                        error.compareAndSet(null, err);
+                        return;
+                    }
+                }
+            });
+        }
+
+        /**
+         * Waits for every pending entry to be applied
+         */
+        private void barrier() {
+            List<Future<?>> markers = new ArrayList<>(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                flush(i);
+                // workers are single threaded, so the marker will run after pending entries
+                markers.add(workers[i].submit(() -> {
+                }));
+            }
+            for (Future<?> marker : markers) {
+                try {
+                    marker.get();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(err);
+                } catch (ExecutionException err) {
+                    throw new RuntimeException(err.getCause());
+                }
+            }
+            checkError();
+        }
+
+        private void checkError() {
+            Throwable err = error.get();
+            if (err != null) {
+                throw err instanceof RuntimeException ? (RuntimeException) err : new RuntimeException(err);
+            }
+        }
+
+        void finish() {
+            barrier();
+        }
+
+        @Override
+        public void close() {
+            for (ExecutorService worker : workers) {
+                worker.shutdown();
+            }
+            try {
+                for (ExecutorService worker : workers) {
+                    worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     public DBManager getDbmanager() {
@@ -133,6 +133,51 @@ public abstract class AbstractSystemTableManager implements AbstractTableManager
                 return 0;
             }
 
+            @Override
+            public double getPageCompressionRatio() {
+                return 1;
+            }
+
+            @Override
+            public long getPageCacheHits() {
+                return 0;
+            }
+
+            @Override
+            public long getPageCacheMisses() {
+                return 0;
+            }
+
+            @Override
+            public long getPageCacheEvictions() {
+                return 0;
+            }
+
+            @Override
+            public long getJoinPrimaryKeyLookups() {
+                return 0;
+            }
+
+            @Override
+            public long getJoinSecondaryIndexLookups() {
+                return 0;
+            }
+
+            @Override
+            public long getBatchRowsRead() {
+                return 0;
+            }
+
+            @Override
+            public long getBatchAggregations() {
+                return 0;
+            }
+
+            @Override
+            public long getParallelScanPartitions() {
+                return 0;
+            }
+
         };
     }
 
@@ -35,12 +35,14 @@ import herddb.utils.SystemProperties;
 import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -48,9 +50,12 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -88,8 +93,11 @@ public class FileCommitLog extends CommitLog {
     private final OpStatsLogger statsEntrySyncLatency;
     private final OpStatsLogger syncSize;
     private final OpStatsLogger syncBytes;
+    private final OpStatsLogger statsQueueWait;
     private final Counter deferredSyncs;
     private final Counter newfiles;
+    private final Counter preallocatedFiles;
+    private final Counter skippedFsyncs;
     private final ExecutorService fsyncThreadPool;
     private final Consumer<FileCommitLog> onClose;
 
@@ -106,7 +114,17 @@ public class FileCommitLog extends CommitLog {
     private final boolean enableO_DIRECT;
     // CHECKSTYLE.ON: MemberName
 
+    /**
+     * Group commit mode: batches are fsync'd in order by a dedicated thread while the spool thread keeps
+     * writing the next batch, and log files are preallocated.
+     */
+    private final boolean groupCommit;
+    private final ExecutorService groupCommitThread;
+    private final AtomicReference<Path> preallocatedFile = new AtomicReference<>();
+    private final AtomicBoolean preallocating = new AtomicBoolean();
+
     public static final String LOGFILEEXTENSION = ".txlog";
+    static final String PREALLOCATED_FILENAME = "next.txlog.prealloc";
 
     private volatile boolean closed = false;
     private volatile boolean failed = false;
@@ -137,6 +155,11 @@ public class FileCommitLog extends CommitLog {
         final FileChannel channel;
         final ExtendedDataOutputStream out;
         volatile boolean writerClosed;
+        /**
+         * Bytes handed to the OS, and bytes which are known to be durable
+         */
+        volatile long flushedBytes;
+        volatile long syncedBytes;
 
         private CommitFileWriter(long ledgerId, long sequenceNumber) throws IOException {
             this.ledgerId = ledgerId;
@@ -157,6 +180,12 @@ public class FileCommitLog extends CommitLog {
                 ODirectFileOutputStream oo = new ODirectFileOutputStream(filename);
                 this.channel = oo.getFc();
                 this.out = new ExtendedDataOutputStream(oo);
+            } else if (usePreallocatedFile(filename)) {
+                LOGGER.log(Level.FINE, "opening (preallocated) new file {0} for tablespace {1}", new Object[]{filename, tableSpaceName});
+                // overwrite the zeroes, file length (and so metadata) will not change
+                this.channel = FileChannel.open(filename, StandardOpenOption.WRITE);
+
+                this.out = new ExtendedDataOutputStream(new SimpleBufferedOutputStream(Channels.newOutputStream(this.channel)));
             } else {
                 LOGGER.log(Level.FINE, "opening (no O_DIRECT) new file {0} for tablespace {1}", new Object[]{filename, tableSpaceName});
                 this.channel = FileChannel.open(filename,
@@ -184,6 +213,21 @@ public class FileCommitLog extends CommitLog {
 
         public void flush() throws IOException {
             this.out.flush();
+            flushedBytes = writtenBytes;
+        }
+
+        /**
+         * Ensures that data up to the given position is durable, an fsync which started after that
+         * position has been flushed already covers it
+         */
+        public void syncUpTo(long position) throws IOException {
+            if (syncedBytes >= position) {
+                skippedFsyncs.inc();
+                return;
+            }
+            long flushed = flushedBytes;
+            sync();
+            syncedBytes = flushed;
         }
 
         public void sync() throws IOException {
@@ -327,17 +371,84 @@ public class FileCommitLog extends CommitLog {
         try {
             if (writer != null) {
                 LOGGER.log(Level.FINEST, "closing actual file {0}", writer.filename);
-                writer.close();
+                if (groupCommit) {
+                    // the fsync thread will sync and close the file after pending batches,
+                    // no other write will happen on this file
+                    CommitFileWriter oldWriter = writer;
+                    oldWriter.flush();
+                    groupCommitThread.submit(() -> {
+                        try {
+                            oldWriter.close();
+                        } catch (LogNotAvailableException err) {
+                            failed = true;
+                            LOGGER.log(Level.SEVERE, "error while closing " + oldWriter.filename, err);
+                        }
+                    });
+                } else {
+                    writer.close();
+                }
             }
 
             writer = new CommitFileWriter(++currentLedgerId, -1);
             newfiles.inc();
 
+            if (groupCommit && !enableO_DIRECT) {
+                preallocateNextFile();
+            }
+
         } catch (IOException err) {
             throw new LogNotAvailableException(err);
         }
     }
 
+    /**
+     * Renames the preallocated file, if ready, to the given name
+     */
+    private boolean usePreallocatedFile(Path filename) throws IOException {
+        Path ready = preallocatedFile.getAndSet(null);
+        if (ready == null) {
+            return false;
+        }
+        Files.move(ready, filename, StandardCopyOption.ATOMIC_MOVE);
+        preallocatedFiles.inc();
+        return true;
+    }
+
+    /**
+     * Prepares in background a zero filled file for the next ledger, so that rolling a new file does not
+     * extend files on the hot path. A file left over by a previous run is reused.
+     */
+    private void preallocateNextFile() {
+        if (preallocatedFile.get() != null || !preallocating.compareAndSet(false, true)) {
+            return;
+        }
+        fsyncThreadPool.submit(() -> {
+            Path file = logDirectory.resolve(PREALLOCATED_FILENAME);
+            try {
+                long size = Files.exists(file) ? Files.size(file) : 0;
+                if (size < maxLogFileSize) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                        ByteBuffer zeroes = ByteBuffer.allocate(64 * 1024);
+                        long position = size;
+                        while (position < maxLogFileSize) {
+                            zeroes.clear();
+                            zeroes.limit((int) Math.min(zeroes.capacity(), maxLogFileSize - position));
+                            position += channel.write(zeroes, position);
+                        }
+                        channel.force(true);
+                    }
+                }
+                if (!closed) {
+                    preallocatedFile.set(file);
+                }
+            } catch (IOException | RuntimeException err) {
+                LOGGER.log(Level.SEVERE, "cannot preallocate txlog file " + file, err);
+            } finally {
+                preallocating.set(false);
+            }
+        });
+    }
+
     public FileCommitLog(
             Path logDirectory, String tableSpaceName,
             long maxLogFileSize, ExecutorService fsyncThreadPool, StatsLogger statslogger,
@@ -347,6 +458,21 @@ public class FileCommitLog extends CommitLog {
             int maxSyncTime,
             boolean requireSync,
             boolean enableO_DIRECT
+    ) {
+        this(logDirectory, tableSpaceName, maxLogFileSize, fsyncThreadPool, statslogger, onClose,
+                maxUnsynchedBatchSize, maxUnsynchedBatchBytes, maxSyncTime, requireSync, enableO_DIRECT, false);
+    }
+
+    public FileCommitLog(
+            Path logDirectory, String tableSpaceName,
+            long maxLogFileSize, ExecutorService fsyncThreadPool, StatsLogger statslogger,
+            Consumer<FileCommitLog> onClose,
+            int maxUnsynchedBatchSize,
+            int maxUnsynchedBatchBytes,
+            int maxSyncTime,
+            boolean requireSync,
+            boolean enableO_DIRECT,
+            boolean groupCommit
     ) {
         this.maxUnsyncedBatchSize = maxUnsynchedBatchSize;
         this.maxUnsyncedBatchBytes = maxUnsynchedBatchBytes;
@@ -359,13 +485,27 @@ public class FileCommitLog extends CommitLog {
         this.logDirectory = logDirectory.toAbsolutePath();
         this.spool = new Thread(new SpoolTask(), "commitlog-" + tableSpaceName);
         this.spool.setDaemon(true);
+        this.groupCommit = groupCommit;
+        if (groupCommit) {
+            // a single thread completes batches in order
+            this.groupCommitThread = Executors.newSingleThreadExecutor((Runnable r) -> {
+                Thread t = new Thread(r, "commitlog-fsync-" + tableSpaceName);
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.groupCommitThread = null;
+        }
         this.statsFsyncTime = statslogger.getOpStatsLogger("fsync");
         this.statsEntryLatency = statslogger.getOpStatsLogger("entryLatency");
         this.statsEntrySyncLatency = statslogger.getOpStatsLogger("entrySyncLatency");
         this.syncSize = statslogger.getOpStatsLogger("syncBatchSize");
         this.syncBytes = statslogger.getOpStatsLogger("syncBatchBytes");
+        this.statsQueueWait = statslogger.getOpStatsLogger("queueWait");
         this.deferredSyncs = statslogger.getCounter("deferredSyncs");
         this.newfiles = statslogger.getCounter("newfiles");
+        this.preallocatedFiles = statslogger.getCounter("preallocatedfiles");
+        this.skippedFsyncs = statslogger.getCounter("skippedfsyncs");
         statslogger.registerGauge("queuesize", new Gauge<Integer>() {
             @Override
             public Integer getDefaultValue() {
@@ -392,7 +532,8 @@ public class FileCommitLog extends CommitLog {
         });
 
         this.fsyncThreadPool = fsyncThreadPool;
-        LOGGER.log(Level.FINE, "tablespace {2}, logdirectory: {0}, maxLogFileSize {1} bytes", new Object[]{logDirectory, maxLogFileSize, tableSpaceName});
+        LOGGER.log(Level.FINE, "tablespace {2}, logdirectory: {0}, maxLogFileSize {1} bytes, groupCommit {3}",
+                new Object[]{logDirectory, maxLogFileSize, tableSpaceName, groupCommit});
     }
 
     private class SyncTask implements Runnable {
@@ -401,19 +542,31 @@ public class FileCommitLog extends CommitLog {
 
         private final int unsyncedCount;
         private final long unsyncedBytes;
+        private final CommitFileWriter batchWriter;
+        private final long position;
 
         public SyncTask(List<LogEntryHolderFuture> syncNeeded, int unsyncedCount, long unsyncedBytes) {
             super();
             this.syncNeeded = syncNeeded;
             this.unsyncedBytes = unsyncedBytes;
             this.unsyncedCount = unsyncedCount;
+            this.batchWriter = writer;
+            this.position = batchWriter != null ? batchWriter.flushedBytes : 0;
         }
 
         @Override
         public void run() {
             long now = System.currentTimeMillis();
             try {
-                synch();
+                if (groupCommit) {
+                    // entries written on previous files have been synched when closing them
+                    if (batchWriter != null) {
+                        batchWriter.syncUpTo(position);
+                    }
+                    now = System.currentTimeMillis();
+                } else {
+                    synch();
+                }
 
                 syncSize.registerSuccessfulValue(unsyncedCount);
                 syncBytes.registerSuccessfulValue(unsyncedBytes);
@@ -454,6 +607,7 @@ public class FileCommitLog extends CommitLog {
                         }
 
                         queueSize.decrementAndGet();
+                        statsQueueWait.registerSuccessfulEvent(System.nanoTime() - entry.enqueueTime, TimeUnit.NANOSECONDS);
                         int size = writeEntry(entry);
 
                         ++unsyncedCount;
@@ -476,7 +630,11 @@ public class FileCommitLog extends CommitLog {
                             if (!syncNeeded.isEmpty()) {
                                 SyncTask syncTask = new SyncTask(syncNeeded, unsyncedCount, unsyncedBytes);
                                 syncNeeded = new ArrayList<>();
-                                fsyncThreadPool.submit(syncTask);
+                                if (groupCommit) {
+                                    groupCommitThread.submit(syncTask);
+                                } else {
+                                    fsyncThreadPool.submit(syncTask);
+                                }
                             }
 
                             unsyncedCount = 0;
@@ -496,7 +654,12 @@ public class FileCommitLog extends CommitLog {
                     if (!syncNeeded.isEmpty()) {
                         LOGGER.log(Level.INFO, "synching last {0} entries", unsyncedCount);
                         SyncTask syncTask = new SyncTask(syncNeeded, unsyncedCount, unsyncedBytes);
-                        syncTask.run();
+                        if (groupCommit) {
+                            // keep completion order with the batches still in flight
+                            groupCommitThread.submit(syncTask);
+                        } else {
+                            syncTask.run();
+                        }
                     }
 
                 }
@@ -513,6 +676,7 @@ public class FileCommitLog extends CommitLog {
         final CompletableFuture<LogSequenceNumber> ack = new CompletableFuture<>();
         final LogEntry entry;
         final long timestamp;
+        final long enqueueTime = System.nanoTime();
         LogSequenceNumber sequenceNumber;
         Throwable error;
         final boolean sync;
@@ -766,6 +930,11 @@ public class FileCommitLog extends CommitLog {
                 writeQueue.add(new LogEntryHolderFuture(null, false));
             }
             spool.join();
+            if (groupCommitThread != null) {
+                // wait for pending batches
+                groupCommitThread.shutdown();
+                groupCommitThread.awaitTermination(1, TimeUnit.MINUTES);
+            }
         } catch (InterruptedException err) {
             Thread.currentThread().interrupt();
             throw new LogNotAvailableException(err);
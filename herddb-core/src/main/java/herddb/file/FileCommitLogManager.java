@@ -65,6 +65,7 @@ public class FileCommitLogManager extends CommitLogManager {
     // CHECKSTYLE.OFF: MemberName
     private final boolean enableO_DIRECT;
     // CHECKSTYLE.ON: MemberName
+    private final boolean groupCommit;
     private final StatsLogger statsLogger;
     private ScheduledExecutorService fsyncThreadPool;
     private final List<FileCommitLog> activeLogs = new CopyOnWriteArrayList<>();
@@ -88,6 +89,21 @@ public class FileCommitLogManager extends CommitLogManager {
             boolean enableO_DIRECT,
             int deferredSyncPeriod,
             StatsLogger statsLogger
+    ) {
+        this(baseDirectory, maxLogFileSize, maxUnsynchedBatchSize, maxUnsynchedBatchBytes, maxSyncTime,
+                requireSync, enableO_DIRECT, deferredSyncPeriod,
+                ServerConfiguration.PROPERTY_TXLOG_GROUP_COMMIT_DEFAULT, statsLogger);
+    }
+
+    public FileCommitLogManager(
+            Path baseDirectory, long maxLogFileSize, int maxUnsynchedBatchSize,
+            int maxUnsynchedBatchBytes,
+            int maxSyncTime,
+            boolean requireSync,
+            boolean enableO_DIRECT,
+            int deferredSyncPeriod,
+            boolean groupCommit,
+            StatsLogger statsLogger
     ) {
         this.baseDirectory = baseDirectory;
         this.maxLogFileSize = maxLogFileSize;
@@ -98,7 +114,9 @@ public class FileCommitLogManager extends CommitLogManager {
         this.maxSyncTime = maxSyncTime;
         this.requireSync = requireSync;
         this.enableO_DIRECT = enableO_DIRECT && OpenFileUtils.isO_DIRECT_Supported();
-        LOG.log(Level.INFO, "Txlog settings: fsync: " + requireSync + ", O_DIRECT: " + enableO_DIRECT + ", deferredSyncPeriod:" + deferredSyncPeriod);
+        this.groupCommit = groupCommit;
+        LOG.log(Level.INFO, "Txlog settings: fsync: " + requireSync + ", O_DIRECT: " + enableO_DIRECT + ", deferredSyncPeriod:" + deferredSyncPeriod
+                + ", groupCommit: " + groupCommit);
     }
 
     @Override
@@ -116,7 +134,8 @@ public class FileCommitLogManager extends CommitLogManager {
                     maxUnsynchedBatchBytes,
                     maxSyncTime,
                     requireSync,
-                    enableO_DIRECT
+                    enableO_DIRECT,
+                    groupCommit
             );
             activeLogs.add(res);
             return res;
@@ -25,6 +25,7 @@ import herddb.core.MemoryManager;
 import herddb.core.PostCheckpointAction;
 import herddb.core.RecordSetFactory;
 import herddb.index.KeyToPageIndex;
+import herddb.index.OffHeapKeyToPageIndex;
 import herddb.index.blink.BLinkKeyToPageIndex;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
@@ -36,7 +37,9 @@ import herddb.storage.DataPageDoesNotExistException;
 import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.FullTableScanConsumer;
+import herddb.storage.InPlaceRecordsMap;
 import herddb.storage.IndexStatus;
+import herddb.storage.PageCompressionCodec;
 import herddb.storage.TableStatus;
 import herddb.utils.ByteArrayCursor;
 import herddb.utils.Bytes;
@@ -56,11 +59,15 @@ import herddb.utils.SystemProperties;
 import herddb.utils.VisibleByteArrayOutputStream;
 import herddb.utils.XXHash64Utils;
 import io.netty.util.Recycler;
+import io.netty.util.internal.PlatformDependent;
 import java.io.BufferedInputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -76,7 +83,10 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -97,6 +107,7 @@ public class FileDataStorageManager extends DataStorageManager {
     private final int swapThreshold;
     private final boolean requirefsync;
     private final boolean pageodirect;
+    private final boolean pagemmap;
     private final boolean indexodirect;
     private final boolean hashChecksEnabled;
     private final boolean hashWritesEnabled;
@@ -106,6 +117,9 @@ public class FileDataStorageManager extends DataStorageManager {
     private final OpStatsLogger indexPageReads;
     private final OpStatsLogger indexPageWrites;
 
+    /* Map[tablespace_uuid,compression status] */
+    private final ConcurrentMap<String, PageCompressionStatus> pageCompression = new ConcurrentHashMap<>();
+
     public static final String FILEEXTENSION_PAGE = ".page";
 
     /**
@@ -138,6 +152,16 @@ public class FileDataStorageManager extends DataStorageManager {
             Path baseDirectory, Path tmpDirectory, int swapThreshold,
             boolean requirefsync, boolean pageodirect, boolean indexodirect,
             boolean hashChecksEnabled, boolean hashWritesEnabled, StatsLogger logger
+    ) {
+        this(baseDirectory, tmpDirectory, swapThreshold, requirefsync, pageodirect,
+                ServerConfiguration.PROPERTY_PAGE_USE_MMAP_DEFAULT, indexodirect,
+                hashChecksEnabled, hashWritesEnabled, logger);
+    }
+
+    public FileDataStorageManager(
+            Path baseDirectory, Path tmpDirectory, int swapThreshold,
+            boolean requirefsync, boolean pageodirect, boolean pagemmap, boolean indexodirect,
+            boolean hashChecksEnabled, boolean hashWritesEnabled, StatsLogger logger
     ) {
         this.baseDirectory = baseDirectory;
         this.tmpDirectory = tmpDirectory;
@@ -145,6 +169,7 @@ public class FileDataStorageManager extends DataStorageManager {
         this.logger = logger;
         this.requirefsync = requirefsync;
         this.pageodirect = pageodirect && OpenFileUtils.isO_DIRECT_Supported();
+        this.pagemmap = pagemmap;
         this.indexodirect = indexodirect && OpenFileUtils.isO_DIRECT_Supported();
         this.hashChecksEnabled = hashChecksEnabled;
         this.hashWritesEnabled = hashWritesEnabled;
@@ -286,6 +311,45 @@ public class FileDataStorageManager extends DataStorageManager {
         }
     }
 
+    @Override
+    public void configureTablePageCompression(String tableSpace, String uuid, PageCompressionCodec codec) {
+        LOGGER.log(Level.FINE, "configureTablePageCompression {0} {1} codec {2}", new Object[]{tableSpace, uuid, codec});
+        getPageCompressionStatus(tableSpace, uuid).codec = codec;
+    }
+
+    @Override
+    public double getPageCompressionRatio(String tableSpace, String uuid) {
+        PageCompressionStatus status = pageCompression.get(tableSpace + "_" + uuid);
+        return status == null ? 1 : status.getRatio();
+    }
+
+    private PageCompressionStatus getPageCompressionStatus(String tableSpace, String uuid) {
+        return pageCompression.computeIfAbsent(tableSpace + "_" + uuid, k -> new PageCompressionStatus());
+    }
+
+    /**
+     * Compression configuration and statistics of the data pages of a table
+     */
+    private static final class PageCompressionStatus {
+
+        private volatile PageCompressionCodec codec = PageCompressionCodec.NONE;
+        private final LongAdder logicalBytes = new LongAdder();
+        private final LongAdder storedBytes = new LongAdder();
+
+        void accountPage(long logical, long stored) {
+            logicalBytes.add(logical);
+            storedBytes.add(stored);
+        }
+
+        double getRatio() {
+            long stored = storedBytes.sum();
+            if (stored <= 0) {
+                return 1;
+            }
+            return (double) logicalBytes.sum() / stored;
+        }
+    }
+
     @Override
     public void initTablespace(String tableSpace) throws DataStorageManagerException {
         Path tablespaceDir = getTablespaceDirectory(tableSpace);
@@ -303,16 +367,17 @@ public class FileDataStorageManager extends DataStorageManager {
         long _start = System.currentTimeMillis();
         Path tableDir = getTableDirectory(tableSpace, tableName);
         Path pageFile = getPageFile(tableDir, pageId);
+        PageCompressionStatus compressionStatus = getPageCompressionStatus(tableSpace, tableName);
         List<Record> result;
         try {
             if (pageodirect) {
                 try (ODirectFileInputStream odirect = new ODirectFileInputStream(pageFile, O_DIRECT_BLOCK_BATCH)) {
-                    result = rawReadDataPage(pageFile, odirect);
+                    result = rawReadDataPage(pageFile, odirect, compressionStatus);
                 }
             } else {
                 try (InputStream input = Files.newInputStream(pageFile);
                      BufferedInputStream buffer = new BufferedInputStream(input, COPY_BUFFERS_SIZE)) {
-                    result = rawReadDataPage(pageFile, buffer);
+                    result = rawReadDataPage(pageFile, buffer, compressionStatus);
                 }
             }
         } catch (NoSuchFileException nsfe) {
@@ -327,69 +392,175 @@ public class FileDataStorageManager extends DataStorageManager {
         return result;
     }
 
-    private List<Record> rawReadDataPage(Path pageFile, InputStream stream) throws IOException, DataStorageManagerException {
+    @Override
+    public InPlaceRecordsMap readPageInPlace(String tableSpace, String tableName, Long pageId) throws DataStorageManagerException {
+        if (!pagemmap) {
+            return null;
+        }
+        long _start = System.currentTimeMillis();
+        Path tableDir = getTableDirectory(tableSpace, tableName);
+        Path pageFile = getPageFile(tableDir, pageId);
+        InPlaceRecordsMap result;
+        try (FileChannel channel = FileChannel.open(pageFile, StandardOpenOption.READ)) {
+            // compressed pages cannot be read in place, look at the version before mapping the file
+            ByteBuffer header = ByteBuffer.allocate(2);
+            if (channel.read(header, 0) == 2 && header.get(0) == 2 && header.get(1) == 0) {
+                return null;
+            }
+            // the mapping remains valid after closing the channel
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            boolean mapped = false;
+            try {
+                result = mapDataPage(pageFile, buffer, getPageCompressionStatus(tableSpace, tableName));
+                mapped = true;
+            } finally {
+                if (!mapped) {
+                    PlatformDependent.freeDirectBuffer(buffer);
+                }
+            }
+        } catch (NoSuchFileException nsfe) {
+            throw new DataPageDoesNotExistException("No such page: " + tableSpace + "_" + tableName + "." + pageId, nsfe);
+        } catch (IOException err) {
+            throw new DataStorageManagerException("error reading data page: " + tableSpace + "_" + tableName + "." + pageId, err);
+        }
+        long _stop = System.currentTimeMillis();
+        long delta = _stop - _start;
+        LOGGER.log(Level.FINE, "readPageInPlace {0}.{1} {2} ms", new Object[]{tableSpace, tableName, delta + ""});
+        dataPageReads.registerSuccessfulEvent(delta, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private InPlaceRecordsMap mapDataPage(
+            Path pageFile, ByteBuffer buffer,
+            PageCompressionStatus compressionStatus
+    ) throws IOException, DataStorageManagerException {
+        if (buffer.limit() < 2) {
+            throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
+        }
+        // version and flags are single byte vlongs
+        int version = buffer.get(0);
+        int flags = buffer.get(1);
+        if (version != 1 || flags != 0) {
+            throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
+        }
+        final int start = 2 + 4;
+        int numRecords = buffer.getInt(2);
+        if (hashChecksEnabled) {
+            int pos = InPlaceRecordsMap.skipRecords(buffer, start, numRecords);
+            long hashFromFile = buffer.getLong(pos);
+            if (hashFromFile != NO_HASH_PRESENT) {
+                long hashFromDigest = XXHash64Utils.hash(buffer, 0, pos);
+                if (hashFromDigest != hashFromFile) {
+                    throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+                }
+            }
+        }
+        // unmap as soon as the page is unloaded, do not wait for the GC
+        InPlaceRecordsMap result = InPlaceRecordsMap.build(buffer, start, numRecords,
+                () -> PlatformDependent.freeDirectBuffer(buffer));
+        if (compressionStatus != null) {
+            compressionStatus.accountPage(buffer.limit(), buffer.limit());
+        }
+        return result;
+    }
+
+    private List<Record> rawReadDataPage(Path pageFile, InputStream stream, PageCompressionStatus compressionStatus) throws IOException, DataStorageManagerException {
         int size = (int) Files.size(pageFile);
         byte[] dataPage = new byte[size];
         int read = stream.read(dataPage);
         if (read != size) {
             throw new IOException("short read, read " + read + " instead of " + size + " bytes from " + pageFile);
         }
+        return parseDataPage(pageFile, dataPage, hashChecksEnabled, compressionStatus);
+    }
+
+    /**
+     * Decodes a data page.
+     * <p>
+     * Version 1 pages contain the plain list of records, version 2 pages contain the same list compressed
+     * with a {@link PageCompressionCodec}. Records are not copied, they are slices of the given array (or of
+     * the decompressed block).
+     * </p>
+     */
+    private static List<Record> parseDataPage(
+            Path pageFile, byte[] dataPage, boolean hashChecksEnabled,
+            PageCompressionStatus compressionStatus
+    ) throws IOException, DataStorageManagerException {
         try (ByteArrayCursor dataIn = ByteArrayCursor.wrap(dataPage)) {
             long version = dataIn.readVLong(); // version
             long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
+            if ((version != 1 && version != 2) || flags != 0) {
                 throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
             }
-            int numRecords = dataIn.readInt();
-            List<Record> result = new ArrayList<>(numRecords);
-            for (int i = 0; i < numRecords; i++) {
-                Bytes key = dataIn.readBytesNoCopy();
-                Bytes value = dataIn.readBytesNoCopy();
-                result.add(new Record(key, value));
+            if (version == 1) {
+                int start = dataIn.getPosition();
+                List<Record> result = readRecords(dataIn);
+                int pos = dataIn.getPosition();
+                verifyDataPageHash(pageFile, dataPage, pos, dataIn.readLong(), hashChecksEnabled);
+                if (compressionStatus != null) {
+                    compressionStatus.accountPage(pos - start, pos - start);
+                }
+                return result;
+            }
+            PageCompressionCodec codec;
+            try {
+                codec = PageCompressionCodec.fromId(dataIn.readVInt());
+            } catch (IllegalArgumentException err) {
+                throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath() + ": " + err.getMessage());
             }
+            int uncompressedLength = dataIn.readInt();
+            int compressedLength = dataIn.readInt();
+            int start = dataIn.getPosition();
+            dataIn.skip(compressedLength);
             int pos = dataIn.getPosition();
-            long hashFromFile = dataIn.readLong();
-            if (hashChecksEnabled && hashFromFile != NO_HASH_PRESENT) {
-                // after the hash we will have zeroes or garbage
-                // the hash is not at the end of file, but after data
-                long hashFromDigest = XXHash64Utils.hash(dataPage, 0, pos);
-                if (hashFromDigest != hashFromFile) {
-                    throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
-                }
+            // check the hash before decompressing, a corrupted block could break the decompressor
+            verifyDataPageHash(pageFile, dataPage, pos, dataIn.readLong(), hashChecksEnabled);
+            byte[] uncompressed = new byte[uncompressedLength];
+            try {
+                codec.decompress(dataPage, start, uncompressed, 0, uncompressedLength);
+            } catch (RuntimeException err) {
+                throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath(), err);
             }
-            return result;
-        }
-    }
-
-    public static List<Record> rawReadDataPage(Path pageFile) throws DataStorageManagerException,
-            IOException {
-        List<Record> result;
-        long hashFromFile;
-        long hashFromDigest;
-        try (ODirectFileInputStream odirect = new ODirectFileInputStream(pageFile, O_DIRECT_BLOCK_BATCH);
-             XXHash64Utils.HashingStream hash = new XXHash64Utils.HashingStream(odirect);
-             ExtendedDataInputStream dataIn = new ExtendedDataInputStream(hash)) {
-            long version = dataIn.readVLong(); // version
-            long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
-                throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
+            if (compressionStatus != null) {
+                compressionStatus.accountPage(uncompressedLength, compressedLength);
             }
-            int numRecords = dataIn.readInt();
-            result = new ArrayList<>(numRecords);
-            for (int i = 0; i < numRecords; i++) {
-                Bytes key = dataIn.readBytes();
-                Bytes value = dataIn.readBytes();
-                result.add(new Record(key, value));
+            try (ByteArrayCursor records = ByteArrayCursor.wrap(uncompressed)) {
+                return readRecords(records);
             }
-            hashFromDigest = hash.hash();
-            hashFromFile = dataIn.readLong();
         }
-        if (hashFromFile != NO_HASH_PRESENT && hashFromDigest != hashFromFile) {
-            throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+    }
+
+    private static List<Record> readRecords(ByteArrayCursor dataIn) throws IOException {
+        int numRecords = dataIn.readInt();
+        List<Record> result = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            Bytes key = dataIn.readBytesNoCopy();
+            Bytes value = dataIn.readBytesNoCopy();
+            result.add(new Record(key, value));
         }
         return result;
     }
 
+    private static void verifyDataPageHash(
+            Path pageFile, byte[] dataPage, int pos, long hashFromFile,
+            boolean hashChecksEnabled
+    ) throws DataStorageManagerException {
+        if (hashChecksEnabled && hashFromFile != NO_HASH_PRESENT) {
+            // after the hash we will have zeroes or garbage
+            // the hash is not at the end of file, but after data
+            long hashFromDigest = XXHash64Utils.hash(dataPage, 0, pos);
+            if (hashFromDigest != hashFromFile) {
+                throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+            }
+        }
+    }
+
+    public static List<Record> rawReadDataPage(Path pageFile) throws DataStorageManagerException,
+            IOException {
+        byte[] dataPage = FileUtils.fastReadFile(pageFile);
+        return parseDataPage(pageFile, dataPage, true, null);
+    }
+
     private <X> X readIndexPage(DataReader<X> reader, Path pageFile, InputStream stream) throws IOException, DataStorageManagerException {
         int size = (int) Files.size(pageFile);
         byte[] dataPage = new byte[size];
@@ -864,24 +1035,53 @@ public class FileDataStorageManager extends DataStorageManager {
     /**
      * Write a record page
      *
-     * @param newPage data to write
-     * @param file    managed file used for sync operations
-     * @param stream  output stream related to given managed file for write
-     *                operations
+     * @param newPage           data to write
+     * @param compressionStatus compression configuration and statistics of the table
+     * @param file              managed file used for sync operations
+     * @param stream            output stream related to given managed file for write
+     *                          operations
      * @return
      * @throws IOException
      */
-    private long writePage(Collection<Record> newPage, ManagedFile file, OutputStream stream) throws IOException {
-
-        try (RecyclableByteArrayOutputStream oo = getWriteBuffer();
+    private long writePage(
+            Collection<Record> newPage, PageCompressionStatus compressionStatus,
+            ManagedFile file, OutputStream stream
+    ) throws IOException {
+
+        try (RecyclableByteArrayOutputStream records = getWriteBuffer();
+             ExtendedDataOutputStream recordsOutput = new ExtendedDataOutputStream(records);
+             RecyclableByteArrayOutputStream oo = getWriteBuffer();
              ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(oo)) {
 
-            dataOutput.writeVLong(1); // version
-            dataOutput.writeVLong(0); // flags for future implementations
-            dataOutput.writeInt(newPage.size());
+            recordsOutput.writeInt(newPage.size());
             for (Record record : newPage) {
-                dataOutput.writeArray(record.key);
-                dataOutput.writeArray(record.value);
+                recordsOutput.writeArray(record.key);
+                recordsOutput.writeArray(record.value);
+            }
+            recordsOutput.flush();
+            final int uncompressedLength = records.size();
+
+            final PageCompressionCodec codec = compressionStatus.codec;
+            byte[] compressed = null;
+            int compressedLength = uncompressedLength;
+            if (codec != PageCompressionCodec.NONE) {
+                compressed = new byte[codec.maxCompressedLength(uncompressedLength)];
+                compressedLength = codec.compress(records.getBuffer(), 0, uncompressedLength, compressed, 0, compressed.length);
+            }
+
+            if (compressed == null || compressedLength >= uncompressedLength) {
+                // uncompressible data (or compression disabled), use legacy format
+                dataOutput.writeVLong(1); // version
+                dataOutput.writeVLong(0); // flags for future implementations
+                dataOutput.write(records.getBuffer(), 0, uncompressedLength);
+                compressedLength = uncompressedLength;
+            } else {
+                dataOutput.writeVLong(2); // version
+                dataOutput.writeVLong(0); // flags for future implementations
+                dataOutput.writeVInt(codec.getId());
+                dataOutput.writeInt(uncompressedLength);
+                dataOutput.writeInt(compressedLength);
+                dataOutput.write(compressed, 0, compressedLength);
             }
             dataOutput.flush();
             long hash = hashWritesEnabled ? XXHash64Utils.hash(oo.getBuffer(), 0, oo.size()) : NO_HASH_PRESENT;
@@ -891,6 +1091,7 @@ public class FileDataStorageManager extends DataStorageManager {
             if (file != null) { // O_DIRECT does not need fsync
                 file.sync();
             }
+            compressionStatus.accountPage(uncompressedLength, compressedLength);
             return oo.size();
         }
 
@@ -902,13 +1103,14 @@ public class FileDataStorageManager extends DataStorageManager {
         long _start = System.currentTimeMillis();
         Path tableDir = getTableDirectory(tableSpace, tableName);
         Path pageFile = getPageFile(tableDir, pageId);
+        PageCompressionStatus compressionStatus = getPageCompressionStatus(tableSpace, tableName);
         long size;
 
         try {
             if (pageodirect) {
                 try (ODirectFileOutputStream odirect = new ODirectFileOutputStream(pageFile, O_DIRECT_BLOCK_BATCH,
                         StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                    size = writePage(newPage, null, odirect);
+                    size = writePage(newPage, compressionStatus, null, odirect);
                 }
 
             } else {
@@ -916,7 +1118,7 @@ public class FileDataStorageManager extends DataStorageManager {
                         StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
                      SimpleBufferedOutputStream buffer = new SimpleBufferedOutputStream(file.getOutputStream(), COPY_BUFFERS_SIZE)) {
 
-                    size = writePage(newPage, file, buffer);
+                    size = writePage(newPage, compressionStatus, file, buffer);
                 }
 
             }
@@ -1307,6 +1509,7 @@ public class FileDataStorageManager extends DataStorageManager {
     public void dropTable(String tablespace, String tableName) throws DataStorageManagerException {
         Path tableDir = getTableDirectory(tablespace, tableName);
         LOGGER.log(Level.INFO, "dropTable {0}.{1} in {2}", new Object[]{tablespace, tableName, tableDir});
+        pageCompression.remove(tablespace + "_" + tableName);
         try {
             deleteDirectory(tableDir);
         } catch (IOException ex) {
@@ -1404,7 +1607,10 @@ public class FileDataStorageManager extends DataStorageManager {
 
     @Override
     public KeyToPageIndex createKeyToPageMap(String tablespace, String name, MemoryManager memoryManager) throws DataStorageManagerException {
-        return new BLinkKeyToPageIndex(tablespace, name, memoryManager, this);
+        if (isOffHeapKeyToPageIndex()) {
+            return new OffHeapKeyToPageIndex();
+        }
+        return new BLinkKeyToPageIndex(tablespace, name, memoryManager, this, isOffHeapKeyToPageLeaves());
     }
 
     @Override
@@ -35,9 +35,7 @@ import herddb.utils.ExtendedDataOutputStream;
 import herddb.utils.VisibleByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 /**
  * RecordSet which eventually swaps to disk
@@ -48,10 +46,12 @@ class FileRecordSet extends MaterializedRecordSet {
 
     private DiskArrayList<DataAccessor> buffer;
     private final Path tmpDirectory;
+    private final int swapThreshold;
 
     public FileRecordSet(int expectedSize, int swapThreshold, Column[] columns, String[] fieldNames, FileRecordSetFactory factory) {
         super(expectedSize, fieldNames, columns, factory);
         this.tmpDirectory = factory.tmpDirectory;
+        this.swapThreshold = swapThreshold;
         this.buffer = new DiskArrayList<>(swapThreshold, factory.tmpDirectory, new TupleSerializer(columns, fieldNames));
         this.buffer.enableCompression();
     }
@@ -96,6 +96,7 @@ class FileRecordSet extends MaterializedRecordSet {
             throw new IllegalStateException("RecordSet is in read mode");
         }
         buffer.add(record);
+        size++;
     }
 
     @Override
@@ -114,19 +115,10 @@ class FileRecordSet extends MaterializedRecordSet {
             if (!buffer.isSwapped()) {
                 buffer.sortBuffer(comparator);
             } else {
-                List<DataAccessor> copyInMemory = new ArrayList<>();
-                for (DataAccessor tuple : buffer) {
-                    copyInMemory.add(tuple);
-                }
-                copyInMemory.sort(comparator);
+                /* External merge sort, runs of at most swapThreshold records are sorted in memory */
+                DiskArrayList<DataAccessor> sorted = buffer.sort(comparator, swapThreshold);
                 buffer.close();
-                DiskArrayList<DataAccessor> newBuffer = new DiskArrayList<>(buffer.isSwapped() ? -1 : Integer.MAX_VALUE, tmpDirectory, new TupleSerializer(columns, fieldNames));
-                newBuffer.enableCompression();
-                for (DataAccessor t : copyInMemory) {
-                    newBuffer.add(t);
-                }
-                newBuffer.finish();
-                buffer = newBuffer;
+                buffer = sorted;
             }
         }
 
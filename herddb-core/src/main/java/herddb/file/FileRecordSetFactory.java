@@ -40,6 +40,11 @@ public class FileRecordSetFactory extends RecordSetFactory {
         this.swapThreshold = swapThreshold;
     }
 
+    @Override
+    public int getSwapThreshold() {
+        return swapThreshold;
+    }
+
     @Override
     public MaterializedRecordSet createRecordSet(String[] fieldNames, Column[] columns) {
         return new FileRecordSet(-1, swapThreshold, columns, fieldNames, this);
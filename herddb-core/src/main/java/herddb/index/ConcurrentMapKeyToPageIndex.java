@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -144,6 +145,20 @@ public class ConcurrentMapKeyToPageIndex implements KeyToPageIndex {
 
     @Override
     public Stream<Map.Entry<Bytes, Long>> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext, herddb.core.AbstractIndexManager index) throws DataStorageManagerException {
+        return unsortedScanner(operation, context, tableContext, index, this, () -> map.entrySet().stream());
+    }
+
+    /**
+     * Scanner for indexes which are not sorted, every scan which is not a seek is a full scan
+     *
+     * @param keyToPage the index
+     * @param fullScan  supplies a stream on all the entries of the index
+     */
+    static Stream<Map.Entry<Bytes, Long>> unsortedScanner(
+            IndexOperation operation, StatementEvaluationContext context, TableContext tableContext,
+            herddb.core.AbstractIndexManager index, KeyToPageIndex keyToPage,
+            Supplier<Stream<Map.Entry<Bytes, Long>>> fullScan
+    ) throws DataStorageManagerException {
 
         if (operation instanceof PrimaryIndexSeek) {
             PrimaryIndexSeek seek = (PrimaryIndexSeek) operation;
@@ -157,7 +172,7 @@ public class ConcurrentMapKeyToPageIndex implements KeyToPageIndex {
                     return Stream.empty();
                 }
             Bytes key = Bytes.from_array(seekValue);
-            Long pageId = map.get(key);
+            Long pageId = keyToPage.get(key);
             if (pageId == null) {
                 return Stream.empty();
             }
@@ -167,10 +182,10 @@ public class ConcurrentMapKeyToPageIndex implements KeyToPageIndex {
         // Remember that the IndexOperation can return more records
         // every predicate (WHEREs...) will always be evaluated anyway on every record, in order to guarantee correctness
         if (index != null) {
-            return index.recordSetScanner(operation, context, tableContext, this);
+            return index.recordSetScanner(operation, context, tableContext, keyToPage);
         }
         if (operation == null) {
-            Stream<Map.Entry<Bytes, Long>> baseStream = map.entrySet().stream();
+            Stream<Map.Entry<Bytes, Long>> baseStream = fullScan.get();
             return baseStream;
         } else if (operation instanceof PrimaryIndexPrefixScan) {
             PrimaryIndexPrefixScan scan = (PrimaryIndexPrefixScan) operation;
@@ -186,7 +201,7 @@ public class ConcurrentMapKeyToPageIndex implements KeyToPageIndex {
                 Bytes fullrecordKey = t.getKey();
                 return fullrecordKey.startsWith(prefix.length, prefix);
             };
-            Stream<Map.Entry<Bytes, Long>> baseStream = map.entrySet().stream();
+            Stream<Map.Entry<Bytes, Long>> baseStream = fullScan.get();
             return baseStream.filter(predicate);
         } else if (operation instanceof PrimaryIndexRangeScan) {
 
@@ -228,10 +243,10 @@ public class ConcurrentMapKeyToPageIndex implements KeyToPageIndex {
                     return true;
                 };
             }
-            Stream<Map.Entry<Bytes, Long>> baseStream = map.entrySet().stream();
+            Stream<Map.Entry<Bytes, Long>> baseStream = fullScan.get();
             return baseStream.filter(predicate);
         } else {
-            throw new DataStorageManagerException("operation " + operation + " not implemented on " + this.getClass());
+            throw new DataStorageManagerException("operation " + operation + " not implemented on " + keyToPage.getClass());
         }
     }
 
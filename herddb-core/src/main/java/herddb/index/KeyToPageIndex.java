@@ -80,6 +80,26 @@ public interface KeyToPageIndex extends AutoCloseable {
             TableContext tableContext, AbstractIndexManager index
     ) throws DataStorageManagerException, StatementExecutionException;
 
+    /**
+     * Like {@link #scanner(herddb.index.IndexOperation, herddb.model.StatementEvaluationContext, herddb.model.TableContext, herddb.core.AbstractIndexManager)
+     * } but keys are returned in descending order. It is supported only by
+     * sorted indexes (see {@link #isSortedAscending(int[])}), for full scans
+     * and for accesses on the primary key.
+     *
+     * @param operation
+     * @param context
+     * @param tableContext
+     * @return
+     * @throws DataStorageManagerException
+     * @throws StatementExecutionException
+     */
+    default Stream<Map.Entry<Bytes, Long>> descendingScanner(
+            IndexOperation operation, StatementEvaluationContext context,
+            TableContext tableContext
+    ) throws DataStorageManagerException, StatementExecutionException {
+        throw new DataStorageManagerException("descending scan not implemented on " + this.getClass());
+    }
+
     void put(Bytes key, Long currentPage);
 
     /**
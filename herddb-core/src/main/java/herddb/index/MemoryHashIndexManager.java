@@ -39,6 +39,7 @@ import herddb.storage.IndexStatus;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
 import herddb.utils.Holder;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -160,7 +161,39 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
             } else {
                 return Stream.empty();
             }
-        } else if (operation instanceof SecondaryIndexPrefixScan) {
+        }
+        return matchingEntries(operation, context, tableContext)
+                .map(entry -> entry.getValue())
+                .flatMap(l -> l.stream());
+    }
+
+    @Override
+    public boolean supportsIndexOnlyScan() {
+        return true;
+    }
+
+    @Override
+    public Stream<Map.Entry<Bytes, Bytes>> entriesScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        Stream<Map.Entry<Bytes, List<Bytes>>> entries;
+        if (operation instanceof SecondaryIndexSeek) {
+            SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
+            SQLRecordKeyFunction value = sis.value;
+            Bytes key = Bytes.from_array(value.computeNewValue(null, context, tableContext));
+            List<Bytes> result = data.get(key);
+            if (result == null) {
+                return Stream.empty();
+            }
+            entries = Stream.of((Map.Entry<Bytes, List<Bytes>>) new AbstractMap.SimpleImmutableEntry<>(key, result));
+        } else {
+            entries = matchingEntries(operation, context, tableContext);
+        }
+        return entries.flatMap(entry -> entry.getValue()
+                .stream()
+                .map(pk -> (Map.Entry<Bytes, Bytes>) new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), pk)));
+    }
+
+    private Stream<Map.Entry<Bytes, List<Bytes>>> matchingEntries(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        if (operation instanceof SecondaryIndexPrefixScan) {
             SecondaryIndexPrefixScan sis = (SecondaryIndexPrefixScan) operation;
             SQLRecordKeyFunction value = sis.value;
             byte[] refvalue = value.computeNewValue(null, context, tableContext);
@@ -171,9 +204,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
             return data
                     .entrySet()
                     .stream()
-                    .filter(predicate)
-                    .map(entry -> entry.getValue())
-                    .flatMap(l -> l.stream());
+                    .filter(predicate);
 
         } else if (operation instanceof SecondaryIndexRangeScan) {
             Bytes refminvalue;
@@ -218,9 +249,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
             return data
                     .entrySet()
                     .stream()
-                    .filter(predicate)
-                    .map(entry -> entry.getValue())
-                    .flatMap(l -> l.stream());
+                    .filter(predicate);
         } else {
             throw new UnsupportedOperationException("unsuppported index access type " + operation);
         }
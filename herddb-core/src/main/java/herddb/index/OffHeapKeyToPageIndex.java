@@ -0,0 +1,482 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index;
+
+import herddb.core.AbstractIndexManager;
+import herddb.core.PostCheckpointAction;
+import herddb.log.LogSequenceNumber;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.TableContext;
+import herddb.storage.DataStorageManagerException;
+import herddb.utils.Bytes;
+import herddb.utils.SystemProperties;
+import io.netty.util.internal.PlatformDependent;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of KeyToPageIndex which keeps keys and page ids out of the Java heap.
+ * <p>
+ * The index is split into segments, each one guarded by its own lock. Every segment is an open addressing
+ * hash table (linear probing, backward shift deletion) on a direct buffer: a slot holds the page id as a
+ * primitive long, the hash of the key and a reference to the key, which is copied into an append only
+ * direct buffer. Space of removed keys is reclaimed when the segment is rebuilt.
+ * </p>
+ * <p>
+ * Like {@link ConcurrentMapKeyToPageIndex} the index is not persisted and it is rebuilt with a full table
+ * scan at startup. {@link #getUsedMemory()} reports the off-heap memory allocated by the index.
+ * </p>
+ */
+public class OffHeapKeyToPageIndex implements KeyToPageIndex {
+
+    private static final int SEGMENTS = Integer.highestOneBit(Math.max(1,
+            SystemProperties.getIntSystemProperty("herddb.index.offheap.segments", 32)));
+    private static final int SEGMENT_BITS = Integer.numberOfTrailingZeros(SEGMENTS);
+
+    /**
+     * Slot layout: page id (long), key reference (int, offset in the keys buffer + 1, 0 means empty slot),
+     * key hash (int)
+     */
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOT_PAGE = 0;
+    private static final int SLOT_KEY = 8;
+    private static final int SLOT_HASH = 12;
+
+    private static final int INITIAL_SLOTS = 64;
+    private static final int INITIAL_KEYS_SIZE = 4 * 1024;
+    private static final double LOAD_FACTOR = 0.7;
+    private static final int MAX_KEYS_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    private final Segment[] segments;
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    public OffHeapKeyToPageIndex() {
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private static int hash(Bytes key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segment(int hash) {
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Hash used inside the segment, bits used to select the segment are moved away from the low bits
+     */
+    private static int slotHash(int hash) {
+        return Integer.rotateRight(hash, SEGMENT_BITS);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void put(Bytes key, Long currentPage) {
+        int hash = hash(key);
+        segment(hash).put(key, slotHash(hash), currentPage, null, false);
+    }
+
+    @Override
+    public boolean put(Bytes key, Long newPage, Long expectedPage) {
+        int hash = hash(key);
+        return segment(hash).put(key, slotHash(hash), newPage, expectedPage, true);
+    }
+
+    @Override
+    public boolean containsKey(Bytes key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Long get(Bytes key) {
+        int hash = hash(key);
+        return segment(hash).get(key, slotHash(hash));
+    }
+
+    @Override
+    public Long remove(Bytes key) {
+        int hash = hash(key);
+        return segment(hash).remove(key, slotHash(hash));
+    }
+
+    @Override
+    public boolean isSortedAscending(int[] pkTypes) {
+        return false;
+    }
+
+    @Override
+    public Stream<Map.Entry<Bytes, Long>> scanner(
+            IndexOperation operation, StatementEvaluationContext context,
+            TableContext tableContext, AbstractIndexManager index
+    ) throws DataStorageManagerException, StatementExecutionException {
+        return ConcurrentMapKeyToPageIndex.unsortedScanner(operation, context, tableContext, index, this,
+                // each segment is copied on the heap only when the stream reaches it
+                () -> Arrays.stream(segments).flatMap(segment -> segment.entries().stream()));
+    }
+
+    @Override
+    public void close() {
+        truncate();
+    }
+
+    @Override
+    public void truncate() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public void dropData() {
+        truncate();
+    }
+
+    @Override
+    public long getUsedMemory() {
+        return usedMemory.get();
+    }
+
+    @Override
+    public boolean requireLoadAtStartup() {
+        /* Require a full table scan at startup */
+        return true;
+    }
+
+    @Override
+    public List<PostCheckpointAction> checkpoint(LogSequenceNumber sequenceNumber, boolean pin) throws DataStorageManagerException {
+        /* No checkpoint, isn't persisted */
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void unpinCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        /* No checkpoint, isn't persisted */
+    }
+
+    @Override
+    public void start(LogSequenceNumber sequenceNumber, boolean created) throws DataStorageManagerException {
+        /* No work needed, this implementation require a full table scan at startup instead */
+    }
+
+    private final class Segment {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /* Buffers are allocated on the first insert and released when the segment gets empty */
+        private ByteBuffer slots;
+        private ByteBuffer keys;
+        private int mask;
+        private int keysUsed;
+        private int keysGarbage;
+        private volatile int size;
+
+        Long get(Bytes key, int hash) {
+            lock.readLock().lock();
+            try {
+                if (size == 0) {
+                    return null;
+                }
+                int slot = find(key, hash);
+                return slot < 0 ? null : slots.getLong(slot * SLOT_SIZE + SLOT_PAGE);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean put(Bytes key, int hash, Long newPage, Long expectedPage, boolean conditional) {
+            lock.writeLock().lock();
+            try {
+                int slot = size == 0 ? -1 : find(key, hash);
+                if (slot >= 0) {
+                    if (conditional
+                            && (expectedPage == null || slots.getLong(slot * SLOT_SIZE + SLOT_PAGE) != expectedPage)) {
+                        return false;
+                    }
+                    slots.putLong(slot * SLOT_SIZE + SLOT_PAGE, newPage);
+                    return true;
+                }
+                if (conditional && expectedPage != null) {
+                    return false;
+                }
+                ensureCapacity(key.getLength());
+                insert(key, hash, newPage);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Long remove(Bytes key, int hash) {
+            lock.writeLock().lock();
+            try {
+                if (size == 0) {
+                    return null;
+                }
+                int slot = find(key, hash);
+                if (slot < 0) {
+                    return null;
+                }
+                long page = slots.getLong(slot * SLOT_SIZE + SLOT_PAGE);
+                int keyOffset = slots.getInt(slot * SLOT_SIZE + SLOT_KEY) - 1;
+                keysGarbage += 4 + keys.getInt(keyOffset);
+                deleteSlot(slot);
+                if (--size == 0) {
+                    release();
+                }
+                return page;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<Map.Entry<Bytes, Long>> entries() {
+            lock.readLock().lock();
+            try {
+                if (size == 0) {
+                    return Collections.emptyList();
+                }
+                List<Map.Entry<Bytes, Long>> result = new ArrayList<>(size);
+                for (int slot = 0; slot <= mask; slot++) {
+                    int keyRef = slots.getInt(slot * SLOT_SIZE + SLOT_KEY);
+                    if (keyRef != 0) {
+                        result.add(new AbstractMap.SimpleImmutableEntry<>(readKey(keyRef - 1),
+                                slots.getLong(slot * SLOT_SIZE + SLOT_PAGE)));
+                    }
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                release();
+                size = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return the slot which contains the key, -1 if not found
+         */
+        private int find(Bytes key, int hash) {
+            int slot = hash & mask;
+            while (true) {
+                int base = slot * SLOT_SIZE;
+                int keyRef = slots.getInt(base + SLOT_KEY);
+                if (keyRef == 0) {
+                    return -1;
+                }
+                if (slots.getInt(base + SLOT_HASH) == hash && keyEquals(keyRef - 1, key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private boolean keyEquals(int keyOffset, Bytes key) {
+            int len = keys.getInt(keyOffset);
+            if (len != key.getLength()) {
+                return false;
+            }
+            byte[] array = key.getBuffer();
+            int arrayOffset = key.getOffset();
+            int pos = keyOffset + 4;
+            for (int i = 0; i < len; i++) {
+                if (keys.get(pos + i) != array[arrayOffset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Bytes readKey(int keyOffset) {
+            int len = keys.getInt(keyOffset);
+            byte[] data = new byte[len];
+            ByteBuffer view = keys.duplicate();
+            view.position(keyOffset + 4);
+            view.get(data);
+            return Bytes.from_array(data);
+        }
+
+        /**
+         * Append the key and occupy the first free slot, capacity must have been checked
+         */
+        private void insert(Bytes key, int hash, long page) {
+            int keyOffset = keysUsed;
+            int len = key.getLength();
+            keys.putInt(keyOffset, len);
+            ByteBuffer view = keys.duplicate();
+            view.position(keyOffset + 4);
+            view.put(key.getBuffer(), key.getOffset(), len);
+            keysUsed += 4 + len;
+            insertSlot(slots, mask, keyOffset, hash, page);
+            size++;
+        }
+
+        private void deleteSlot(int slot) {
+            // backward shift deletion: move back the entries of the same probe sequence
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                int base = next * SLOT_SIZE;
+                if (slots.getInt(base + SLOT_KEY) == 0) {
+                    break;
+                }
+                int ideal = slots.getInt(base + SLOT_HASH) & mask;
+                boolean canMove = hole <= next
+                        ? ideal <= hole || ideal > next
+                        : ideal <= hole && ideal > next;
+                if (canMove) {
+                    int holeBase = hole * SLOT_SIZE;
+                    slots.putLong(holeBase + SLOT_PAGE, slots.getLong(base + SLOT_PAGE));
+                    slots.putInt(holeBase + SLOT_KEY, slots.getInt(base + SLOT_KEY));
+                    slots.putInt(holeBase + SLOT_HASH, slots.getInt(base + SLOT_HASH));
+                    hole = next;
+                }
+            }
+            int holeBase = hole * SLOT_SIZE;
+            slots.putLong(holeBase + SLOT_PAGE, 0);
+            slots.putInt(holeBase + SLOT_KEY, 0);
+            slots.putInt(holeBase + SLOT_HASH, 0);
+        }
+
+        private void ensureCapacity(int keyLength) {
+            long keyBytes = 4L + keyLength;
+            if (slots == null) {
+                long keysSize = Math.max(INITIAL_KEYS_SIZE, Long.highestOneBit(keyBytes) << 1);
+                rebuild(INITIAL_SLOTS, Math.min(keysSize, MAX_KEYS_SIZE));
+                return;
+            }
+            int capacity = mask + 1;
+            boolean growSlots = size + 1 > capacity * LOAD_FACTOR;
+            boolean growKeys = keysUsed + keyBytes > keys.capacity();
+            if (!growSlots && !growKeys) {
+                return;
+            }
+            if (growSlots && capacity >= MAX_SLOTS) {
+                throw new DataStorageManagerException("off-heap primary key index segment is full, "
+                        + size + " keys");
+            }
+            int newCapacity = growSlots ? capacity << 1 : capacity;
+            long liveKeys = keysUsed - keysGarbage + keyBytes;
+            long newKeysSize = keys.capacity();
+            while (newKeysSize < liveKeys * 2 && newKeysSize < MAX_KEYS_SIZE) {
+                newKeysSize <<= 1;
+            }
+            rebuild(newCapacity, Math.min(newKeysSize, MAX_KEYS_SIZE));
+            if (keysUsed + keyBytes > keys.capacity()) {
+                throw new DataStorageManagerException("off-heap primary key index segment is full, "
+                        + keysUsed + " bytes used, cannot add a key of " + keyLength + " bytes");
+            }
+        }
+
+        /**
+         * Allocates new buffers, copying live keys only
+         */
+        private void rebuild(int newCapacity, long newKeysSize) {
+            ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+            ByteBuffer newKeys = ByteBuffer.allocateDirect((int) newKeysSize);
+            int newMask = newCapacity - 1;
+            int newKeysUsed = 0;
+            if (slots != null) {
+                for (int slot = 0; slot <= mask; slot++) {
+                    int base = slot * SLOT_SIZE;
+                    int keyRef = slots.getInt(base + SLOT_KEY);
+                    if (keyRef == 0) {
+                        continue;
+                    }
+                    int keyOffset = keyRef - 1;
+                    int entryLen = 4 + keys.getInt(keyOffset);
+                    ByteBuffer src = keys.duplicate();
+                    src.position(keyOffset).limit(keyOffset + entryLen);
+                    ByteBuffer dest = newKeys.duplicate();
+                    dest.position(newKeysUsed);
+                    dest.put(src);
+                    insertSlot(newSlots, newMask, newKeysUsed, slots.getInt(base + SLOT_HASH),
+                            slots.getLong(base + SLOT_PAGE));
+                    newKeysUsed += entryLen;
+                }
+            }
+            release();
+            slots = newSlots;
+            keys = newKeys;
+            mask = newMask;
+            keysUsed = newKeysUsed;
+            keysGarbage = 0;
+            usedMemory.addAndGet(slots.capacity() + keys.capacity());
+        }
+
+        /**
+         * Frees the buffers, it does not reset the number of entries
+         */
+        private void release() {
+            if (slots != null) {
+                usedMemory.addAndGet(-slots.capacity() - keys.capacity());
+                PlatformDependent.freeDirectBuffer(slots);
+                PlatformDependent.freeDirectBuffer(keys);
+                slots = null;
+                keys = null;
+            }
+            mask = 0;
+            keysUsed = 0;
+            keysGarbage = 0;
+        }
+    }
+
+    private static void insertSlot(ByteBuffer slots, int mask, int keyOffset, int hash, long page) {
+        int slot = hash & mask;
+        while (slots.getInt(slot * SLOT_SIZE + SLOT_KEY) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int base = slot * SLOT_SIZE;
+        slots.putLong(base + SLOT_PAGE, page);
+        slots.putInt(base + SLOT_KEY, keyOffset + 1);
+        slots.putInt(base + SLOT_HASH, hash);
+    }
+
+}
@@ -30,6 +30,7 @@ import herddb.index.KeyToPageIndex;
 import herddb.index.PrimaryIndexPrefixScan;
 import herddb.index.PrimaryIndexRangeScan;
 import herddb.index.PrimaryIndexSeek;
+import herddb.index.blink.BLink.LeafMapFactory;
 import herddb.index.blink.BLink.SizeEvaluator;
 import herddb.index.blink.BLinkMetadata.BLinkNodeMetadata;
 import herddb.log.LogSequenceNumber;
@@ -94,6 +95,8 @@ public class BLinkKeyToPageIndex implements KeyToPageIndex {
 
     private final BLinkIndexDataStorage<Bytes, Long> indexDataStorage;
 
+    private final LeafMapFactory<Bytes, Long> leafMapFactory;
+
     private volatile BLink<Bytes, Long> tree;
 
     private final AtomicBoolean closed;
@@ -103,6 +106,16 @@ public class BLinkKeyToPageIndex implements KeyToPageIndex {
     }
 
     public BLinkKeyToPageIndex(String tableSpace, String tableName, MemoryManager memoryManager, DataStorageManager dataStorageManager) {
+        this(tableSpace, tableName, memoryManager, dataStorageManager, false);
+    }
+
+    /**
+     * @param offHeapLeaves keep entries of loaded leaves off-heap, see {@link OffHeapLeafMap}
+     */
+    public BLinkKeyToPageIndex(
+            String tableSpace, String tableName, MemoryManager memoryManager,
+            DataStorageManager dataStorageManager, boolean offHeapLeaves
+    ) {
         super();
         this.tableSpace = tableSpace;
         this.indexName = deriveIndexName(tableName);
@@ -113,6 +126,8 @@ public class BLinkKeyToPageIndex implements KeyToPageIndex {
         this.newPageId = new AtomicLong(1);
         this.indexDataStorage = new BLinkIndexDataStorageImpl();
 
+        this.leafMapFactory = offHeapLeaves ? OffHeapLeafMap.FACTORY : LeafMapFactory.heap();
+
         this.closed = new AtomicBoolean(false);
     }
 
@@ -248,6 +263,37 @@ public class BLinkKeyToPageIndex implements KeyToPageIndex {
 
     }
 
+    @Override
+    public Stream<Entry<Bytes, Long>> descendingScanner(
+            IndexOperation operation, StatementEvaluationContext context,
+            TableContext tableContext
+    ) throws DataStorageManagerException, StatementExecutionException {
+        if (operation == null) {
+            return getTree().scanDescending(null, null, false);
+        }
+        if (operation instanceof PrimaryIndexSeek) {
+            return scanner(operation, context, tableContext, null);
+        }
+        if (operation instanceof PrimaryIndexPrefixScan) {
+            PrimaryIndexPrefixScan scan = (PrimaryIndexPrefixScan) operation;
+            byte[] refvalue = computeKeyValue(scan.value, context, tableContext);
+            if (refvalue == null) {
+                return Stream.empty();
+            }
+            Bytes firstKey = Bytes.from_array(refvalue);
+            return getTree().scanDescending(firstKey, firstKey.next(), false);
+        }
+        if (operation instanceof PrimaryIndexRangeScan) {
+            PrimaryIndexRangeScan sis = (PrimaryIndexRangeScan) operation;
+            Bytes refminvalue = sis.minValue != null
+                    ? Bytes.from_array(sis.minValue.computeNewValue(null, context, tableContext)) : null;
+            Bytes refmaxvalue = sis.maxValue != null
+                    ? Bytes.from_array(sis.maxValue.computeNewValue(null, context, tableContext)) : null;
+            return getTree().scanDescending(refminvalue, refmaxvalue, refmaxvalue != null);
+        }
+        throw new DataStorageManagerException("descending scan of " + operation + " not implemented on " + this.getClass());
+    }
+
     private static byte[] computeKeyValue(RecordFunction keyFun, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
         try {
             return keyFun.computeNewValue(null, context, tableContext);
@@ -310,7 +356,7 @@ public class BLinkKeyToPageIndex implements KeyToPageIndex {
         if (LogSequenceNumber.START_OF_TIME.equals(sequenceNumber)) {
             /* Empty index (booting from the start) */
             tree = new BLink<>(pageSize, SizeEvaluatorImpl.INSTANCE,
-                    memoryManager.getPKPageReplacementPolicy(), indexDataStorage);
+                    memoryManager.getPKPageReplacementPolicy(), indexDataStorage, leafMapFactory);
             if (!created) {
                 LOGGER.log(Level.INFO, "loaded empty index {0}", new Object[]{indexName});
             }
@@ -321,7 +367,7 @@ public class BLinkKeyToPageIndex implements KeyToPageIndex {
 
                 tree = new BLink<>(pageSize, SizeEvaluatorImpl.INSTANCE,
                         memoryManager.getPKPageReplacementPolicy(), indexDataStorage,
-                        metadata);
+                        metadata, leafMapFactory);
             } catch (IOException e) {
                 throw new DataStorageManagerException(e);
             }
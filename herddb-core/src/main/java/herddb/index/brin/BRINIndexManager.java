@@ -35,6 +35,7 @@ import herddb.index.SecondaryIndexSeek;
 import herddb.index.brin.BlockRangeIndexMetadata.BlockMetadata;
 import herddb.log.CommitLog;
 import herddb.log.LogSequenceNumber;
+import herddb.model.ColumnTypes;
 import herddb.model.Index;
 import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
@@ -384,11 +385,64 @@ public class BRINIndexManager extends AbstractIndexManager {
 
     @Override
     protected Stream<Bytes> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        Bytes[] range = keyRange(operation, context, tableContext);
+        if (operation instanceof SecondaryIndexSeek) {
+            return data.query(range[0]);
+        }
+        return data.query(range[0], range[1]);
+    }
+
+    @Override
+    public boolean isSortedAscending(int[] columnTypes) {
+        // same ordering of the keys of the primary key, see BLinkKeyToPageIndex
+        if (columnTypes.length != 1) {
+            return false;
+        }
+        switch (columnTypes[0]) {
+            case ColumnTypes.NOTNULL_STRING:
+            case ColumnTypes.STRING:
+            case ColumnTypes.BYTEARRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected Stream<Bytes> sortedScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext, boolean descending) throws StatementExecutionException {
+        if (descending) {
+            // the max key of a block is not known without reading it
+            throw new UnsupportedOperationException("index " + index.name + " is sorted only in ascending order");
+        }
+        if (operation == null) {
+            return data.querySorted(null, null);
+        }
+        Bytes[] range = keyRange(operation, context, tableContext);
+        return data.querySorted(range[0], range[1]);
+    }
+
+    @Override
+    public boolean supportsIndexOnlyScan() {
+        return true;
+    }
+
+    @Override
+    public Stream<Map.Entry<Bytes, Bytes>> entriesScanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        Bytes[] range = keyRange(operation, context, tableContext);
+        return data.queryEntries(range[0], range[1]);
+    }
+
+    /**
+     * Computes the first and the last key, both inclusive, which match the
+     * operation, a null key means no bound
+     */
+    private Bytes[] keyRange(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
         if (operation instanceof SecondaryIndexSeek) {
             SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
             SQLRecordKeyFunction value = sis.value;
             byte[] refvalue = value.computeNewValue(null, context, tableContext);
-            return data.query(Bytes.from_array(refvalue));
+            Bytes key = Bytes.from_array(refvalue);
+            return new Bytes[]{key, key};
 
         } else if (operation instanceof SecondaryIndexPrefixScan) {
             SecondaryIndexPrefixScan sis = (SecondaryIndexPrefixScan) operation;
@@ -396,7 +450,7 @@ public class BRINIndexManager extends AbstractIndexManager {
             byte[] refvalue = value.computeNewValue(null, context, tableContext);
             Bytes firstKey = Bytes.from_array(refvalue);
             Bytes lastKey = firstKey.next();
-            return data.query(firstKey, lastKey);
+            return new Bytes[]{firstKey, lastKey};
 
         } else if (operation instanceof SecondaryIndexRangeScan) {
 
@@ -416,7 +470,7 @@ public class BRINIndexManager extends AbstractIndexManager {
                 lastKey = Bytes.from_array(refmaxvalue);
             }
             LOGGER.log(Level.FINE, "range scan on {0}.{1}, from {2} to {1}", new Object[]{index.table, index.name, firstKey, lastKey});
-            return data.query(firstKey, lastKey);
+            return new Bytes[]{firstKey, lastKey};
 
         } else {
             throw new UnsupportedOperationException("unsuppported index access type " + operation);
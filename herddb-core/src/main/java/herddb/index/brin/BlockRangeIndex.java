@@ -29,12 +29,17 @@ import herddb.utils.SizeAwareObject;
 import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -43,6 +48,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Very Simple BRIN (Block Range Index) implementation with pagination managed by a {@link PageReplacementPolicy}
@@ -209,12 +215,24 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
     private static class LookupState<Key extends Comparable<Key> & SizeAwareObject, Val extends SizeAwareObject> {
         Block<Key, Val> next;
         List<Val> found;
+        /* not null if the keys are requested too */
+        List<Map.Entry<Key, Val>> foundEntries;
 
         public LookupState() {
             super();
 
             found = new ArrayList<>();
         }
+
+        void add(Key key, List<Val> values) {
+            if (foundEntries != null) {
+                for (Val value : values) {
+                    foundEntries.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+                }
+            } else {
+                found.addAll(values);
+            }
+        }
     }
 
     static final class Block<Key extends Comparable<Key> & SizeAwareObject, Val extends SizeAwareObject> implements Page.Owner {
@@ -444,13 +462,13 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
                         if (firstKey.equals(lastKey)) {
                             List<Val> seek = values.get(firstKey);
                             if (seek != null && !seek.isEmpty()) {
-                                state.found.addAll(seek);
+                                state.add(firstKey, seek);
                             }
                         } else if (lastKey.compareTo(firstKey) < 0) {
                             // no value is possible
                         } else {
                             values.subMap(firstKey, true, lastKey, true).forEach((k, seg) -> {
-                                state.found.addAll(seg);
+                                state.add(k, seg);
                             });
                         }
                     }
@@ -467,13 +485,18 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
                         // index seek case
                         ensureBlockLoaded();
                         values.tailMap(firstKey, true).forEach((k, seg) -> {
-                            state.found.addAll(seg);
+                            state.add(k, seg);
                         });
                     }
-                } else {
+                } else if (lastKey != null) {
                     ensureBlockLoaded();
                     values.headMap(lastKey, true).forEach((k, seg) -> {
-                        state.found.addAll(seg);
+                        state.add(k, seg);
+                    });
+                } else {
+                    ensureBlockLoaded();
+                    values.forEach((k, seg) -> {
+                        state.add(k, seg);
                     });
                 }
                 /*
@@ -1057,9 +1080,12 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
     }
 
     public List<V> search(K firstKey, K lastKey) {
-
         final LookupState<K, V> state = new LookupState<>();
+        lookUp(firstKey, lastKey, state);
+        return state.found;
+    }
 
+    private void lookUp(K firstKey, K lastKey, LookupState<K, V> state) {
         if (firstKey != null) {
             /* Lookup from the first possible block that could contain the first lookup key*/
             final BlockStartKey<K> lookUp = BlockStartKey.valueOf(firstKey, Long.MIN_VALUE);
@@ -1074,8 +1100,6 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
         do {
             state.next.lookUpRange(firstKey, lastKey, state);
         } while (state.next != null);
-
-        return state.found;
     }
 
     public List<V> search(K key) {
@@ -1086,6 +1110,155 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
         return search(firstKey, lastKey).stream();
     }
 
+    /**
+     * Like {@link #query(java.lang.Comparable, java.lang.Comparable)} but
+     * values are returned in ascending order of the keys. Blocks are read
+     * lazily, one at a time, so a consumer which stops early does not read the
+     * whole range.
+     * <p>
+     * The min key of a block is a lower bound of its keys, but the ranges of
+     * consecutive blocks are not assumed to be disjoint: the entries of every
+     * block which may contain the next key are merged.
+     * </p>
+     *
+     * @param firstKey first key, inclusive, null means no lower bound
+     * @param lastKey last key, inclusive, null means no upper bound
+     * @return
+     */
+    public Stream<V> querySorted(K firstKey, K lastKey) {
+        SortedLookUp<K, V> lookUp = new SortedLookUp<>(this, firstKey, lastKey);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(lookUp,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Entries of a block which match a lookup, sorted by key
+     */
+    private static final class BlockCursor<Key, Val> {
+
+        private final List<Key> keys;
+        private final List<Val> values;
+        private int pos;
+
+        BlockCursor(List<Key> keys, List<Val> values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        Key currentKey() {
+            return keys.get(pos);
+        }
+
+        Val next() {
+            return values.get(pos++);
+        }
+
+        boolean hasNext() {
+            return pos < keys.size();
+        }
+    }
+
+    /**
+     * Merges the sorted entries of the blocks in order of key, see
+     * {@link #querySorted(java.lang.Comparable, java.lang.Comparable)}
+     */
+    private static final class SortedLookUp<Key extends Comparable<Key> & SizeAwareObject, Val extends SizeAwareObject>
+            implements Iterator<Val> {
+
+        private final Key firstKey;
+        private final Key lastKey;
+        private final PriorityQueue<BlockCursor<Key, Val>> cursors =
+                new PriorityQueue<>((a, b) -> a.currentKey().compareTo(b.currentKey()));
+        /* next block to be read, blocks are visited following the next reference as in lookUpRange */
+        private Block<Key, Val> nextBlock;
+
+        SortedLookUp(BlockRangeIndex<Key, Val> index, Key firstKey, Key lastKey) {
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            if (firstKey != null) {
+                this.nextBlock = index.blocks.floorEntry(BlockStartKey.valueOf(firstKey, Long.MIN_VALUE)).getValue();
+            } else {
+                this.nextBlock = index.blocks.firstEntry().getValue();
+            }
+        }
+
+        private void readNextBlock() {
+            Block<Key, Val> block = nextBlock;
+            List<Key> keys = new ArrayList<>();
+            List<Val> values = new ArrayList<>();
+            block.lock.lock();
+            try {
+                block.ensureBlockLoaded();
+                NavigableMap<Key, List<Val>> range = block.values;
+                if (firstKey != null && lastKey != null) {
+                    range = lastKey.compareTo(firstKey) < 0
+                            ? Collections.emptyNavigableMap()
+                            : range.subMap(firstKey, true, lastKey, true);
+                } else if (firstKey != null) {
+                    range = range.tailMap(firstKey, true);
+                } else if (lastKey != null) {
+                    range = range.headMap(lastKey, true);
+                }
+                range.forEach((k, seg) -> {
+                    for (Val v : seg) {
+                        keys.add(k);
+                        values.add(v);
+                    }
+                });
+                Block<Key, Val> currentNext = block.next;
+                if (currentNext != null && (lastKey == null || currentNext.key.compareMinKey(lastKey) <= 0)) {
+                    nextBlock = currentNext;
+                } else {
+                    nextBlock = null;
+                }
+            } finally {
+                block.lock.unlock();
+            }
+            if (!keys.isEmpty()) {
+                cursors.add(new BlockCursor<>(keys, values));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            // a block which has not been read yet may contain keys lower than the
+            // lowest key read so far only if its min key is not greater
+            while (nextBlock != null
+                    && (cursors.isEmpty() || nextBlock.key.compareMinKey(cursors.peek().currentKey()) <= 0)) {
+                readNextBlock();
+            }
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public Val next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BlockCursor<Key, Val> cursor = cursors.poll();
+            Val value = cursor.next();
+            if (cursor.hasNext()) {
+                cursors.add(cursor);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Like {@link #query(java.lang.Comparable, java.lang.Comparable)} but
+     * each value is returned together with its key
+     *
+     * @param firstKey first key, inclusive, null means no lower bound
+     * @param lastKey last key, inclusive, null means no upper bound
+     * @return
+     */
+    public Stream<Map.Entry<K, V>> queryEntries(K firstKey, K lastKey) {
+        final LookupState<K, V> state = new LookupState<>();
+        state.foundEntries = new ArrayList<>();
+        lookUp(firstKey, lastKey, state);
+        return state.foundEntries.stream();
+    }
+
     public Stream<V> query(K key) {
         return query(key, key);
     }
@@ -49,4 +49,49 @@ public interface TableManagerStatsMXBean {
     long getBuffersUsedMemory();
 
     long getKeysUsedMemory();
+
+    /**
+     * Ratio between logical and on-disk size of the data pages written or read since the boot
+     */
+    double getPageCompressionRatio();
+
+    /**
+     * Pages loaded from the off-heap page cache
+     */
+    long getPageCacheHits();
+
+    /**
+     * Pages not found in the off-heap page cache, and so loaded from the storage
+     */
+    long getPageCacheMisses();
+
+    /**
+     * Pages evicted from the off-heap page cache
+     */
+    long getPageCacheEvictions();
+
+    /**
+     * Records looked up by primary key on behalf of index lookup joins
+     */
+    long getJoinPrimaryKeyLookups();
+
+    /**
+     * Records looked up using a secondary index on behalf of index lookup joins
+     */
+    long getJoinSecondaryIndexLookups();
+
+    /**
+     * Rows read from scans executed in batch mode
+     */
+    long getBatchRowsRead();
+
+    /**
+     * Aggregations computed in batch mode on the rows of the table
+     */
+    long getBatchAggregations();
+
+    /**
+     * Partitions of the table read by the workers of parallel scans
+     */
+    long getParallelScanPartitions();
 }
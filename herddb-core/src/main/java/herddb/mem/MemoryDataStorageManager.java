@@ -25,6 +25,7 @@ import herddb.core.PostCheckpointAction;
 import herddb.core.RecordSetFactory;
 import herddb.index.ConcurrentMapKeyToPageIndex;
 import herddb.index.KeyToPageIndex;
+import herddb.index.OffHeapKeyToPageIndex;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
 import herddb.model.Record;
@@ -563,14 +564,19 @@ public class MemoryDataStorageManager extends DataStorageManager {
 
     @Override
     public KeyToPageIndex createKeyToPageMap(String tablespace, String name, MemoryManager memoryManager) {
+        if (isOffHeapKeyToPageIndex()) {
+            return new OffHeapKeyToPageIndex();
+        }
         return new ConcurrentMapKeyToPageIndex(new ConcurrentHashMap<>());
     }
 
     @Override
     public void releaseKeyToPageMap(String tablespace, String name, KeyToPageIndex keyToPage) {
-        if (keyToPage != null) {
+        if (keyToPage instanceof ConcurrentMapKeyToPageIndex) {
             ConcurrentMapKeyToPageIndex impl = (ConcurrentMapKeyToPageIndex) keyToPage;
             impl.getMap().clear();
+        } else if (keyToPage != null) {
+            keyToPage.close();
         }
     }
 
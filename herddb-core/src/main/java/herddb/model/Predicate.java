@@ -57,6 +57,19 @@ public abstract class Predicate implements Wrapper {
         return PrimaryKeyMatchOutcome.NEED_FULL_RECORD_EVALUATION;
     }
 
+    /**
+     * Tells whether the predicate reads only some of the columns of the table,
+     * in this case it can be evaluated on rows which do not carry the other
+     * columns, like the rows built from the entries of an index
+     *
+     * @param availableColumns for each column of the table, a negative value
+     * if the column is not available, otherwise the position of the column
+     * @return
+     */
+    public boolean isCoveredByColumns(int[] availableColumns) {
+        return false;
+    }
+
     protected final int indexOperationObjectSizeForCache() {
         return indexOperation != null ? indexOperation.estimateObjectSizeForCache() : 0;
     }
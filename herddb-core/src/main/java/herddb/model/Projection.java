@@ -74,4 +74,16 @@ public interface Projection {
 
     DataAccessor map(DataAccessor tuple, StatementEvaluationContext context) throws StatementExecutionException;
 
+    /**
+     * Tells whether the projection reads only some of the columns of the
+     * table, see {@link Predicate#isCoveredByColumns(int[])}
+     *
+     * @param availableColumns for each column of the table, a negative value
+     * if the column is not available
+     * @return
+     */
+    default boolean isCoveredByColumns(int[] availableColumns) {
+        return false;
+    }
+
 }
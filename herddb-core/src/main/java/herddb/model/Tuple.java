@@ -165,37 +165,44 @@ public final class Tuple extends AbstractDataAccessor {
                     throw new IOException("invalid schema for tuple " + Arrays.toString(fieldNames) + " <> " + Arrays.toString(columns));
                 }
                 Object value = tuple.get(fieldName);
-                if (value == null) {
-                    eoo.writeVInt(ColumnTypes.NULL);
-                } else {
-                    byte columnType;
-                    if (value instanceof String) {
-                        columnType = ColumnTypes.STRING;
-                    } else if (value instanceof RawString) {
-                        columnType = ColumnTypes.STRING;
-                    } else if (value instanceof Integer) {
-                        columnType = ColumnTypes.INTEGER;
-                    } else if (value instanceof Long) {
-                        columnType = ColumnTypes.LONG;
-                    } else if (value instanceof java.sql.Timestamp) {
-                        columnType = ColumnTypes.TIMESTAMP;
-                    } else if (value instanceof Double) {
-                        columnType = ColumnTypes.DOUBLE;
-                    } else if (value instanceof Boolean) {
-                        columnType = ColumnTypes.BOOLEAN;
-                    } else if (value instanceof byte[]) {
-                        columnType = ColumnTypes.BYTEARRAY;
-                    } else {
-                        throw new IOException("unsupported class " + value.getClass());
-                    }
-                    RecordSerializer.serializeTypeAndValue(value, columnType, eoo);
-                }
+                serializeValue(value, eoo);
                 i++;
             }
         }
         return oo;
     }
 
+    /**
+     * Writes a value with its type, the type is detected from the class of the value
+     */
+    public static void serializeValue(Object value, ExtendedDataOutputStream eoo) throws IOException {
+        if (value == null) {
+            eoo.writeVInt(ColumnTypes.NULL);
+        } else {
+            byte columnType;
+            if (value instanceof String) {
+                columnType = ColumnTypes.STRING;
+            } else if (value instanceof RawString) {
+                columnType = ColumnTypes.STRING;
+            } else if (value instanceof Integer) {
+                columnType = ColumnTypes.INTEGER;
+            } else if (value instanceof Long) {
+                columnType = ColumnTypes.LONG;
+            } else if (value instanceof java.sql.Timestamp) {
+                columnType = ColumnTypes.TIMESTAMP;
+            } else if (value instanceof Double) {
+                columnType = ColumnTypes.DOUBLE;
+            } else if (value instanceof Boolean) {
+                columnType = ColumnTypes.BOOLEAN;
+            } else if (value instanceof byte[]) {
+                columnType = ColumnTypes.BYTEARRAY;
+            } else {
+                throw new IOException("unsupported class " + value.getClass());
+            }
+            RecordSerializer.serializeTypeAndValue(value, columnType, eoo);
+        }
+    }
+
     public static Tuple deserialize(final byte[] data, final String[] fieldNames, final int nColumns) throws IOException {
         try (ByteArrayCursor eoo = ByteArrayCursor.wrap(data)) {
 
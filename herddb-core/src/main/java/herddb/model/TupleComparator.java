@@ -35,4 +35,24 @@ public interface TupleComparator extends Comparator<DataAccessor>, Serializable
         return false;
     }
 
+    /**
+     * Column of the table on which rows are sorted, if the sort is on a single
+     * column which is read as it is from the table. This lets the table
+     * return rows in the order of an index on the column.
+     *
+     * @return the name of the column or null
+     */
+    default String getSortColumn() {
+        return null;
+    }
+
+    /**
+     * Direction of the sort on {@link #getSortColumn()}
+     *
+     * @return true for an ascending sort
+     */
+    default boolean isSortAscending() {
+        return true;
+    }
+
 }
@@ -21,9 +21,12 @@
 package herddb.model.planner;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.core.AbstractTableManager;
 import herddb.core.MaterializedRecordSet;
+import herddb.core.ParallelScanConsumer;
 import herddb.core.RecordSetFactory;
 import herddb.core.SimpleDataScanner;
+import herddb.core.TableManager;
 import herddb.core.TableSpaceManager;
 import herddb.model.Column;
 import herddb.model.DataScanner;
@@ -34,16 +37,25 @@ import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.TransactionContext;
 import herddb.model.Tuple;
+import herddb.model.commands.ScanStatement;
 import herddb.sql.AggregatedColumnCalculator;
 import herddb.sql.expressions.AccessCurrentRowExpression;
 import herddb.sql.expressions.CompiledSQLExpression;
 import herddb.sql.functions.BuiltinFunctions;
+import herddb.storage.DataStorageManagerException;
+import herddb.utils.CompareBytesUtils;
 import herddb.utils.DataAccessor;
+import herddb.utils.ExtendedDataOutputStream;
+import herddb.utils.VisibleByteArrayOutputStream;
 import herddb.utils.Wrapper;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Generic aggregation
@@ -89,6 +101,13 @@ public class AggregateOp implements PlannerOp {
             boolean lockRequired, boolean forWrite
     ) throws StatementExecutionException {
 
+        TableManager parallelScanTable = getParallelScanTable(tableSpaceManager, transactionContext, lockRequired, forWrite);
+        if (parallelScanTable != null) {
+            return executeParallel(parallelScanTable, tableSpaceManager, context);
+        }
+        if (isBatchAggregation(lockRequired, forWrite)) {
+            return executeBatch(tableSpaceManager, transactionContext, context);
+        }
         StatementExecutionResult input = this.input.execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite);
         ScanResult downstreamScanResult = (ScanResult) input;
         final DataScanner inputScanner = downstreamScanResult.dataScanner;
@@ -98,22 +117,484 @@ public class AggregateOp implements PlannerOp {
 
     }
 
+    /**
+     * The aggregation can be computed during a parallel scan of the table if the input is a full table scan which
+     * does not need to be sorted and every aggregated value can be computed by combining partial values
+     *
+     * @return the table to scan or null if the input has to be aggregated by the calling thread
+     */
+    private TableManager getParallelScanTable(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            boolean lockRequired, boolean forWrite
+    ) {
+        if (transactionContext.transactionId != TransactionContext.NOTRANSACTION_ID
+                || !(input instanceof SimpleScanOp)) {
+            return null;
+        }
+        for (String aggtype : aggtypes) {
+            if (combinerType(aggtype) == null) {
+                return null;
+            }
+        }
+        ScanStatement statement = ((SimpleScanOp) input).getStatement();
+        if (statement.getComparator() != null || statement.getLimits() != null) {
+            return null;
+        }
+        AbstractTableManager tableManager = tableSpaceManager.getTableManager(statement.getTable());
+        if (!(tableManager instanceof TableManager) || tableManager.getCreatedInTransaction() > 0) {
+            return null;
+        }
+        TableManager table = (TableManager) tableManager;
+        return table.isParallelScanAllowed(statement, null, lockRequired, forWrite) ? table : null;
+    }
+
+    /**
+     * Aggregation function which combines the partial values computed by the given aggregation function
+     *
+     * @return the function or null if partial values cannot be combined
+     */
+    private static String combinerType(String aggtype) {
+        switch (aggtype.toLowerCase()) {
+            case BuiltinFunctions.COUNT:
+            case BuiltinFunctions.SUM:
+            case BuiltinFunctions.SUM0:
+                return BuiltinFunctions.SUM;
+            case BuiltinFunctions.MIN:
+                return BuiltinFunctions.MIN;
+            case BuiltinFunctions.MAX:
+                return BuiltinFunctions.MAX;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Every worker of the parallel scan aggregates the rows of its partition, partial results (one row per group
+     * and partition, with the same schema of the final result) are collected in a {@link MaterializedRecordSet}
+     * and then they are aggregated again combining the partial values.
+     */
+    private StatementExecutionResult executeParallel(
+            TableManager table,
+            TableSpaceManager tableSpaceManager,
+            StatementEvaluationContext context
+    ) throws StatementExecutionException {
+        ScanStatement statement = ((SimpleScanOp) input).getStatement();
+        RecordSetFactory recordSetFactory = tableSpaceManager.getDbmanager().getRecordSetFactory();
+        MaterializedRecordSet partials = recordSetFactory.createRecordSet(fieldnames, columns);
+        try {
+            table.scanParallel(statement, context, true, new ParallelScanConsumer<PartialAggregation>() {
+                @Override
+                public PartialAggregation newPartialResult() {
+                    return new PartialAggregation();
+                }
+
+                @Override
+                public void accept(PartialAggregation partial, DataAccessor tuple) throws StatementExecutionException {
+                    partial.consume(tuple, context);
+                }
+
+                @Override
+                public boolean merge(PartialAggregation partial) {
+                    for (Group group : partial.groups.values()) {
+                        partials.add(toTuple(group));
+                    }
+                    return true;
+                }
+            });
+            partials.writeFinished();
+        } catch (StatementExecutionException | DataStorageManagerException err) {
+            partials.close();
+            throw err;
+        }
+
+        int numGroupedFields = groupedFiledsIndexes.size();
+        String[] combinerTypes = new String[aggtypes.length];
+        List<List<Integer>> combinerArgLists = new ArrayList<>(aggtypes.length);
+        for (int i = 0; i < aggtypes.length; i++) {
+            combinerTypes[i] = combinerType(aggtypes[i]);
+            combinerArgLists.add(Collections.singletonList(numGroupedFields + i));
+        }
+        List<Integer> combinerGroupedFieldsIndexes = new ArrayList<>(numGroupedFields);
+        for (int i = 0; i < numGroupedFields; i++) {
+            combinerGroupedFieldsIndexes.add(i);
+        }
+        AggregateOp combiner = new AggregateOp(input, fieldnames, columns, combinerTypes,
+                combinerArgLists, combinerGroupedFieldsIndexes);
+        DataScanner combined = combiner.new AggregatedDataScanner(new SimpleDataScanner(null, partials),
+                context, recordSetFactory);
+        return new ScanResult(TransactionContext.NOTRANSACTION_ID, combined);
+    }
+
+    /**
+     * Aggregations without GROUP BY on an input which is executed in batch
+     * mode are computed directly on the column vectors of the batches
+     */
+    private boolean isBatchAggregation(boolean lockRequired, boolean forWrite) {
+        if (!groupedFiledsIndexes.isEmpty() || lockRequired || forWrite || !input.supportsBatchExecution()) {
+            return false;
+        }
+        for (int i = 0; i < aggtypes.length; i++) {
+            switch (aggtypes[i].toLowerCase()) {
+                case BuiltinFunctions.COUNT:
+                    break;
+                case BuiltinFunctions.SUM:
+                case BuiltinFunctions.SUM0:
+                case BuiltinFunctions.MIN:
+                case BuiltinFunctions.MAX:
+                    if (argLists.get(i).isEmpty()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private StatementExecutionResult executeBatch(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context
+    ) throws StatementExecutionException {
+        BatchAggregator[] aggregators = new BatchAggregator[aggtypes.length];
+        for (int i = 0; i < aggtypes.length; i++) {
+            List<Integer> argList = argLists.get(i);
+            aggregators[i] = new BatchAggregator(aggtypes[i].toLowerCase(), argList.isEmpty() ? -1 : argList.get(0));
+        }
+        try (BatchScanner batches = input.executeBatch(tableSpaceManager, transactionContext, context, false, false)) {
+            if (batches.getTable() != null) {
+                batches.getTable().batchAggregationExecuted();
+            }
+            RowBatch batch;
+            while ((batch = batches.nextBatch()) != null) {
+                for (BatchAggregator aggregator : aggregators) {
+                    aggregator.consume(batch);
+                }
+            }
+            Object[] values = new Object[aggregators.length];
+            for (int i = 0; i < aggregators.length; i++) {
+                values[i] = aggregators[i].getValue();
+            }
+            MaterializedRecordSet results = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                    .createFixedSizeRecordSet(1, fieldnames, columns);
+            results.add(new Tuple(fieldnames, values));
+            results.writeFinished();
+            return new ScanResult(batches.getTransactionId(), new SimpleDataScanner(batches.getTransaction(), results));
+        } catch (DataScannerException err) {
+            throw new StatementExecutionException(err);
+        }
+    }
+
+    /**
+     * Computes an aggregated value on {@link RowBatch}es, with the same
+     * outcome of the {@link AggregatedColumnCalculator} of the same function
+     */
+    private static final class BatchAggregator {
+
+        private final String type;
+        private final int column;
+        private long count;
+        private long sum;
+        private Comparable result;
+
+        BatchAggregator(String type, int column) {
+            this.type = type;
+            this.column = column;
+        }
+
+        void consume(RowBatch batch) {
+            switch (type) {
+                case BuiltinFunctions.COUNT:
+                    count += batch.size;
+                    break;
+                case BuiltinFunctions.SUM:
+                case BuiltinFunctions.SUM0:
+                    sum += sum(batch.vector(column), batch.positions, batch.size);
+                    break;
+                case BuiltinFunctions.MIN:
+                    merge(extreme(batch.vector(column), batch.positions, batch.size, true), true);
+                    break;
+                default:
+                    merge(extreme(batch.vector(column), batch.positions, batch.size, false), false);
+                    break;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void merge(Comparable value, boolean min) {
+            if (value != null && (result == null || (min ? result.compareTo(value) > 0 : result.compareTo(value) < 0))) {
+                result = value;
+            }
+        }
+
+        Object getValue() {
+            switch (type) {
+                case BuiltinFunctions.COUNT:
+                    return count;
+                case BuiltinFunctions.SUM:
+                case BuiltinFunctions.SUM0:
+                    return sum;
+                default:
+                    return result;
+            }
+        }
+
+        private static long sum(ColumnVector vector, int[] positions, int size) {
+            long sum = 0;
+            if (!vector.isPrimitive()) {
+                for (int i = 0; i < size; i++) {
+                    Object value = vector.get(positions[i]);
+                    if (value != null) {
+                        sum += ((Number) value).longValue();
+                    }
+                }
+                return sum;
+            }
+            boolean[] nulls = vector.nulls;
+            if (vector.kind == ColumnVector.KIND_DOUBLE) {
+                double[] doubles = vector.doubles;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position]) {
+                        sum += (long) doubles[position];
+                    }
+                }
+            } else {
+                long[] longs = vector.longs;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position]) {
+                        sum += longs[position];
+                    }
+                }
+            }
+            return sum;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Comparable extreme(ColumnVector vector, int[] positions, int size, boolean min) {
+            if (!vector.isPrimitive()) {
+                Comparable best = null;
+                for (int i = 0; i < size; i++) {
+                    Comparable value = (Comparable) vector.get(positions[i]);
+                    if (value != null && (best == null || (min ? best.compareTo(value) > 0 : best.compareTo(value) < 0))) {
+                        best = value;
+                    }
+                }
+                return best;
+            }
+            boolean[] nulls = vector.nulls;
+            boolean found = false;
+            if (vector.kind == ColumnVector.KIND_DOUBLE) {
+                double[] doubles = vector.doubles;
+                double best = 0;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position]) {
+                        double value = doubles[position];
+                        if (!found || (min ? Double.compare(best, value) > 0 : Double.compare(best, value) < 0)) {
+                            best = value;
+                            found = true;
+                        }
+                    }
+                }
+                return found ? Double.valueOf(best) : null;
+            }
+            long[] longs = vector.longs;
+            long best = 0;
+            for (int i = 0; i < size; i++) {
+                int position = positions[i];
+                if (!nulls[position]) {
+                    long value = longs[position];
+                    if (!found || (min ? best > value : best < value)) {
+                        best = value;
+                        found = true;
+                    }
+                }
+            }
+            if (!found) {
+                return null;
+            }
+            // not a conditional expression: it would promote the Integer to a Long
+            if (vector.kind == ColumnVector.KIND_INTEGER) {
+                return Integer.valueOf((int) best);
+            }
+            return Long.valueOf(best);
+        }
+    }
+
+    /**
+     * Groups of a partition of a parallel scan, it is used by only one worker
+     */
+    private final class PartialAggregation {
+
+        private final GroupKeyEncoder keyEncoder = new GroupKeyEncoder();
+        private final Map<GroupKey, Group> groups = new HashMap<>();
+
+        void consume(DataAccessor tuple, StatementEvaluationContext context) throws StatementExecutionException {
+            GroupKey key;
+            try {
+                key = keyEncoder.key(tuple);
+            } catch (DataScannerException err) {
+                throw new StatementExecutionException(err);
+            }
+            Group group = groups.get(key);
+            if (group == null) {
+                group = createGroup(keyValues(tuple), context);
+                groups.put(key.copy(), group);
+            }
+            for (AggregatedColumnCalculator cc : group.columns) {
+                cc.consume(tuple);
+            }
+        }
+    }
+
+    /**
+     * Number of partitions used to spill input rows whose group does not fit in memory
+     */
+    private static final int SPILL_PARTITIONS = 16;
+
+    /**
+     * Rows are spilled again when a partition still has too many groups, up to this depth, then the
+     * partition is aggregated in memory regardless of its size
+     */
+    private static final int MAX_SPILL_DEPTH = 4;
+
     private static class Group {
 
+        final Object[] keyValues;
         AggregatedColumnCalculator[] columns;
 
-        public Group(AggregatedColumnCalculator[] columns) {
+        public Group(Object[] keyValues, AggregatedColumnCalculator[] columns) {
+            this.keyValues = keyValues;
             this.columns = columns;
         }
 
     }
 
+    /**
+     * Serialized grouped values of a row, compared by their bytes
+     */
+    private static final class GroupKey {
+
+        byte[] data;
+        int length;
+        int hash;
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof GroupKey)) {
+                return false;
+            }
+            final GroupKey other = (GroupKey) obj;
+            return hash == other.hash
+                    && CompareBytesUtils.arraysEquals(data, 0, length, other.data, 0, other.length);
+        }
+
+        GroupKey copy() {
+            GroupKey copy = new GroupKey();
+            copy.data = Arrays.copyOf(data, length);
+            copy.length = length;
+            copy.hash = hash;
+            return copy;
+        }
+    }
+
+    /**
+     * Builds the keys of the groups, it is not thread safe
+     */
+    private final class GroupKeyEncoder {
+
+        /* Reused for every row, grouped values are serialized to be hashed and compared */
+        private final VisibleByteArrayOutputStream keyBuffer = new VisibleByteArrayOutputStream(64);
+        private final ExtendedDataOutputStream keyOut = new ExtendedDataOutputStream(keyBuffer);
+
+        /* Reused for every row, only keys of new groups are copied */
+        private final GroupKey probe = new GroupKey();
+
+        /**
+         * Serializes grouped values of the row, the returned key is only valid until the next invocation
+         */
+        private GroupKey key(DataAccessor tuple) throws DataScannerException {
+            keyBuffer.reset();
+            /* Same hash of Arrays.deepHashCode on the values, groups are returned in the same order as before */
+            int hash = 1;
+            try {
+                for (int posInUpstreamRow : groupedFiledsIndexes) {
+                    Object value = tuple.get(posInUpstreamRow);
+                    hash = 31 * hash + (value instanceof byte[] ? Arrays.hashCode((byte[]) value) : Objects.hashCode(value));
+                    Tuple.serializeValue(value, keyOut);
+                }
+            } catch (IOException err) {
+                throw new DataScannerException(err);
+            }
+            probe.data = keyBuffer.getBuffer();
+            probe.length = keyBuffer.size();
+            probe.hash = 71 * 7 + hash;
+            return probe;
+        }
+    }
+
+    private Object[] keyValues(DataAccessor tuple) {
+        Object[] values = new Object[groupedFiledsIndexes.size()];
+        int i = 0;
+        for (int posInUpstreamRow : groupedFiledsIndexes) {
+            values[i++] = tuple.get(posInUpstreamRow);
+        }
+        return values;
+    }
+
+    private Group createGroup(Object[] keyValues, StatementEvaluationContext context) throws StatementExecutionException {
+        AggregatedColumnCalculator[] columns = new AggregatedColumnCalculator[aggtypes.length];
+        for (int i = 0; i < aggtypes.length; i++) {
+            String aggtype = aggtypes[i];
+
+            String fieldName = fieldnames[i];
+            List<Integer> argList = argLists.get(i);
+            CompiledSQLExpression param = argList.isEmpty() ? null : new AccessCurrentRowExpression(argList.get(0)); // TODO, multi params ?
+            AggregatedColumnCalculator calculator = BuiltinFunctions.getColumnCalculator(aggtype.toLowerCase(), fieldName, param, context);
+            if (calculator == null) {
+                throw new StatementExecutionException("not implemented aggregation type " + aggtype);
+            }
+            columns[i] = calculator;
+        }
+        return new Group(keyValues, columns);
+    }
+
+    /**
+     * Builds the result row of a group, grouped values followed by aggregated values
+     */
+    private Tuple toTuple(Group group) {
+        Object[] values = new Object[fieldnames.length];
+        int k = 0;
+        if (group.keyValues != null) {
+            for (Object field : group.keyValues) {
+                values[k++] = field;
+            }
+        }
+        for (AggregatedColumnCalculator cc : group.columns) {
+            values[k++] = cc.getValue();
+        }
+        return new Tuple(fieldnames, values);
+    }
+
     private class AggregatedDataScanner extends DataScanner {
 
         private final DataScanner wrapped;
         private DataScanner aggregatedScanner;
         private final StatementEvaluationContext context;
         private final RecordSetFactory recordSetFactory;
+        private final GroupKeyEncoder keyEncoder = new GroupKeyEncoder();
 
         public AggregatedDataScanner(
                 DataScanner wrapped,
@@ -126,86 +607,86 @@ public class AggregateOp implements PlannerOp {
             this.recordSetFactory = recordSetFactory;
         }
 
-        private class Key {
-
-            final Object[] values;
-
-            public Key(Object[] values) {
-                this.values = values;
-            }
-
-            @Override
-            public int hashCode() {
-                int hash = 7;
-                hash = 71 * hash + Arrays.deepHashCode(this.values);
-                return hash;
-            }
+        /**
+         * Aggregates rows keeping at most {@code maxGroups} groups in memory, rows of other groups are spilled to
+         * partitions through the {@link RecordSetFactory} (so to disk if they exceed the swap threshold), and
+         * every partition is aggregated in turn.
+         */
+        private void aggregate(DataScanner input, int depth, int maxGroups, MaterializedRecordSet results)
+                throws DataScannerException, StatementExecutionException {
+            Map<GroupKey, Group> groups = new HashMap<>();
+            MaterializedRecordSet[] partitions = null;
+            try {
+                while (input.hasNext()) {
+                    DataAccessor tuple = input.next();
+                    GroupKey key = keyEncoder.key(tuple);
+                    Group group = groups.get(key);
+                    if (group == null) {
+                        if (groups.size() >= maxGroups && depth < MAX_SPILL_DEPTH) {
+                            if (partitions == null) {
+                                partitions = new MaterializedRecordSet[SPILL_PARTITIONS];
+                            }
+                            int partition = partition(key, depth);
+                            if (partitions[partition] == null) {
+                                partitions[partition] = recordSetFactory
+                                        .createRecordSet(input.getFieldNames(), input.getSchema());
+                            }
+                            partitions[partition].add(tuple);
+                            continue;
+                        }
+                        group = createGroup(keyValues(tuple), context);
+                        groups.put(key.copy(), group);
+                    }
+                    for (AggregatedColumnCalculator cc : group.columns) {
+                        cc.consume(tuple);
+                    }
+                }
 
-            @Override
-            public boolean equals(Object obj) {
-                if (this == obj) {
-                    return true;
+                for (Group group : groups.values()) {
+                    results.add(toTuple(group));
                 }
-                if (obj == null) {
-                    return false;
+                groups.clear();
+
+                if (partitions != null) {
+                    for (int i = 0; i < partitions.length; i++) {
+                        MaterializedRecordSet partition = partitions[i];
+                        if (partition == null) {
+                            continue;
+                        }
+                        partitions[i] = null;
+                        partition.writeFinished();
+                        try (DataScanner partitionScanner = new SimpleDataScanner(null, partition)) {
+                            aggregate(partitionScanner, depth + 1, maxGroups, results);
+                        }
+                    }
                 }
-                if (getClass() != obj.getClass()) {
-                    return false;
+            } finally {
+                if (partitions != null) {
+                    for (MaterializedRecordSet partition : partitions) {
+                        if (partition != null) {
+                            partition.close();
+                        }
+                    }
                 }
-                final Key other = (Key) obj;
-                return Arrays.deepEquals(this.values, other.values);
             }
-
         }
 
-        private Key key(DataAccessor tuple) throws DataScannerException {
-            Object[] values = new Object[groupedFiledsIndexes.size()];
-            int i = 0;
-            for (int posInUpstreamRow : groupedFiledsIndexes) {
-                Object value = tuple.get(posInUpstreamRow);
-                values[i++] = value;
-            }
-            return new Key(values);
+        private int partition(GroupKey key, int depth) {
+            /* Hash of the serialized values, every level uses different bits, rows of a partition are spread again */
+            int hash = CompareBytesUtils.hashCode(key.data, 0, key.length) * 0x9E3779B9;
+            return (hash >>> (depth * 4)) & (SPILL_PARTITIONS - 1);
         }
 
         private void compute() throws DataScannerException {
             try {
                 if (!groupedFiledsIndexes.isEmpty()) {
-                    Map<Key, Group> groups = new HashMap<>();
-                    while (wrapped.hasNext()) {
-                        DataAccessor tuple = wrapped.next();
-                        Key key = key(tuple);
-                        Group group = groups.get(key);
-                        if (group == null) {
-                            group = createGroup();
-                            groups.put(key, group);
-                        }
-                        for (AggregatedColumnCalculator cc : group.columns) {
-                            cc.consume(tuple);
-                        }
-                    }
                     MaterializedRecordSet results = recordSetFactory
-                            .createFixedSizeRecordSet(groups.values().size(),
-                                    getFieldNames(), getSchema());
-                    for (Map.Entry<Key, Group> cell : groups.entrySet()) {
-                        Key key = cell.getKey();
-                        Group group = cell.getValue();
-                        AggregatedColumnCalculator[] columns = group.columns;
-                        Object[] values = new Object[fieldnames.length];
-                        int k = 0;
-                        for (Object field : key.values) {
-                            values[k++] = field;
-                        }
-                        for (AggregatedColumnCalculator cc : columns) {
-                            values[k++] = cc.getValue();
-                        }
-                        Tuple tuple = new Tuple(fieldnames, values);
-                        results.add(tuple);
-                    }
+                            .createRecordSet(getFieldNames(), getSchema());
+                    aggregate(wrapped, 0, recordSetFactory.getSwapThreshold(), results);
                     results.writeFinished();
                     aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
                 } else {
-                    Group group = createGroup();
+                    Group group = createGroup(null, context);
                     AggregatedColumnCalculator[] columns = group.columns;
                     while (wrapped.hasNext()) {
                         DataAccessor tuple = wrapped.next();
@@ -213,12 +694,7 @@ public class AggregateOp implements PlannerOp {
                             cc.consume(tuple);
                         }
                     }
-                    Object[] values = new Object[fieldnames.length];
-                    int k = 0;
-                    for (AggregatedColumnCalculator cc : columns) {
-                        values[k++] = cc.getValue();
-                    }
-                    Tuple tuple = new Tuple(fieldnames, values);
+                    Tuple tuple = toTuple(group);
                     MaterializedRecordSet results = recordSetFactory
                             .createFixedSizeRecordSet(1, getFieldNames(), getSchema());
                     results.add(tuple);
@@ -230,23 +706,6 @@ public class AggregateOp implements PlannerOp {
             }
         }
 
-        private Group createGroup() throws DataScannerException, StatementExecutionException {
-            AggregatedColumnCalculator[] columns = new AggregatedColumnCalculator[aggtypes.length];
-            for (int i = 0; i < aggtypes.length; i++) {
-                String aggtype = aggtypes[i];
-
-                String fieldName = fieldnames[i];
-                List<Integer> argList = argLists.get(i);
-                CompiledSQLExpression param = argList.isEmpty() ? null : new AccessCurrentRowExpression(argList.get(0)); // TODO, multi params ?
-                AggregatedColumnCalculator calculator = BuiltinFunctions.getColumnCalculator(aggtype.toLowerCase(), fieldName, param, context);
-                if (calculator == null) {
-                    throw new StatementExecutionException("not implemented aggregation type " + aggtype);
-                }
-                columns[i] = calculator;
-            }
-            return new Group(columns);
-        }
-
         @Override
         public boolean hasNext() throws DataScannerException {
             if (aggregatedScanner == null) {
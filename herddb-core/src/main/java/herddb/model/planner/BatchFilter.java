@@ -0,0 +1,304 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.model.planner;
+
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.sql.expressions.AccessCurrentRowExpression;
+import herddb.sql.expressions.CompiledBinarySQLExpression;
+import herddb.sql.expressions.CompiledEqualsExpression;
+import herddb.sql.expressions.CompiledGreaterThenEqualsExpression;
+import herddb.sql.expressions.CompiledGreaterThenExpression;
+import herddb.sql.expressions.CompiledMinorThenEqualsExpression;
+import herddb.sql.expressions.CompiledMinorThenExpression;
+import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.sql.expressions.ConstantExpression;
+import herddb.sql.expressions.JdbcParameterExpression;
+import herddb.sql.expressions.SQLExpressionCodeGenerator;
+import herddb.sql.expressions.SQLExpressionCompiler;
+import herddb.sql.expressions.TypedJdbcParameterExpression;
+import herddb.utils.DataAccessor;
+import herddb.utils.SQLRecordPredicateFunctions;
+import herddb.utils.SQLRecordPredicateFunctions.CompareResult;
+import java.util.List;
+
+/**
+ * Evaluates a condition on a {@link RowBatch}, dropping the rows which do not
+ * match.
+ * <p>
+ * The condition is split into the conditions in AND, which are applied in
+ * turn to the rows still in the batch. Comparisons between a column and a
+ * constant value or a parameter are evaluated in a tight loop on the column
+ * vector, with the same outcome of
+ * {@link SQLRecordPredicateFunctions#compareConsiderNull(java.lang.Object, java.lang.Object)}
+ * and {@link SQLRecordPredicateFunctions#objectEquals(java.lang.Object, java.lang.Object)},
+ * other conditions are evaluated row by row.
+ * </p>
+ */
+final class BatchFilter {
+
+    private enum Operator {
+        EQUALS,
+        GREATER,
+        GREATER_OR_EQUALS,
+        MINOR,
+        MINOR_OR_EQUALS
+    }
+
+    /**
+     * One of the conditions in AND
+     */
+    private static final class Condition {
+
+        /* null if the condition is evaluated row by row */
+        final Operator operator;
+        final int column;
+        final CompiledSQLExpression expression;
+
+        Condition(Operator operator, int column, CompiledSQLExpression expression) {
+            this.operator = operator;
+            this.column = column;
+            this.expression = expression;
+        }
+    }
+
+    private final Condition[] conditions;
+
+    private BatchFilter(Condition[] conditions) {
+        this.conditions = conditions;
+    }
+
+    static BatchFilter build(CompiledSQLExpression condition) {
+        List<CompiledSQLExpression> split = SQLExpressionCompiler.splitConjunctions(condition);
+        Condition[] conditions = new Condition[split.size()];
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = buildCondition(split.get(i));
+        }
+        return new BatchFilter(conditions);
+    }
+
+    private static Condition buildCondition(CompiledSQLExpression exp) {
+        Operator operator;
+        if (exp instanceof CompiledEqualsExpression) {
+            operator = Operator.EQUALS;
+        } else if (exp instanceof CompiledGreaterThenExpression) {
+            operator = Operator.GREATER;
+        } else if (exp instanceof CompiledGreaterThenEqualsExpression) {
+            operator = Operator.GREATER_OR_EQUALS;
+        } else if (exp instanceof CompiledMinorThenExpression) {
+            operator = Operator.MINOR;
+        } else if (exp instanceof CompiledMinorThenEqualsExpression) {
+            operator = Operator.MINOR_OR_EQUALS;
+        } else {
+            operator = null;
+        }
+        if (operator != null) {
+            CompiledBinarySQLExpression binary = (CompiledBinarySQLExpression) exp;
+            if (binary.getLeft() instanceof AccessCurrentRowExpression && isValue(binary.getRight())) {
+                int column = ((AccessCurrentRowExpression) binary.getLeft()).getIndex();
+                return new Condition(operator, column, binary.getRight());
+            }
+        }
+        return new Condition(null, -1, SQLExpressionCodeGenerator.generateIfEnabled(exp));
+    }
+
+    private static boolean isValue(CompiledSQLExpression exp) {
+        return exp instanceof ConstantExpression
+                || exp instanceof JdbcParameterExpression
+                || exp instanceof TypedJdbcParameterExpression;
+    }
+
+    /**
+     * Drops from the batch the rows which do not match the condition
+     *
+     * @param batch
+     * @param view a view on the rows of the batch
+     * @param context
+     * @throws StatementExecutionException
+     */
+    void filter(RowBatch batch, RowBatch.RowView view, StatementEvaluationContext context) throws StatementExecutionException {
+        for (Condition condition : conditions) {
+            if (batch.size == 0) {
+                return;
+            }
+            if (condition.operator == null) {
+                filterRows(batch, view, condition.expression, context);
+            } else {
+                Object value = condition.expression.evaluate(DataAccessor.NULL, context);
+                if (value == null) {
+                    // comparisons with NULL are never true
+                    batch.size = 0;
+                    return;
+                }
+                ColumnVector vector = batch.vector(condition.column);
+                if (vector.isPrimitive() && value instanceof Number) {
+                    filterNumbers(batch, vector, condition.operator, (Number) value);
+                } else {
+                    filterObjects(batch, vector, condition.operator, value);
+                }
+            }
+        }
+    }
+
+    private static void filterRows(RowBatch batch, RowBatch.RowView view,
+            CompiledSQLExpression expression, StatementEvaluationContext context) throws StatementExecutionException {
+        int[] positions = batch.positions;
+        int size = batch.size;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int position = positions[i];
+            view.position = position;
+            if (SQLRecordPredicateFunctions.toBoolean(expression.evaluate(view, context))) {
+                positions[kept++] = position;
+            }
+        }
+        batch.size = kept;
+    }
+
+    private static void filterObjects(RowBatch batch, ColumnVector vector, Operator operator, Object value) {
+        int[] positions = batch.positions;
+        int size = batch.size;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int position = positions[i];
+            Object v = vector.get(position);
+            if (v == null) {
+                continue;
+            }
+            boolean ok = operator == Operator.EQUALS
+                    ? SQLRecordPredicateFunctions.objectEquals(v, value)
+                    : accept(operator, SQLRecordPredicateFunctions.compareConsiderNull(v, value));
+            if (ok) {
+                positions[kept++] = position;
+            }
+        }
+        batch.size = kept;
+    }
+
+    private static void filterNumbers(RowBatch batch, ColumnVector vector, Operator operator, Number value) {
+        int[] positions = batch.positions;
+        int size = batch.size;
+        boolean[] nulls = vector.nulls;
+        int kept = 0;
+        if (operator == Operator.EQUALS) {
+            double d = value.doubleValue();
+            if (vector.kind == ColumnVector.KIND_DOUBLE) {
+                double[] doubles = vector.doubles;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position] && doubles[position] == d) {
+                        positions[kept++] = position;
+                    }
+                }
+            } else {
+                long[] longs = vector.longs;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position] && longs[position] == d) {
+                        positions[kept++] = position;
+                    }
+                }
+            }
+            batch.size = kept;
+            return;
+        }
+        switch (vector.kind) {
+            case ColumnVector.KIND_INTEGER: {
+                long[] longs = vector.longs;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position] && accept(operator, compareInteger((int) longs[position], value))) {
+                        positions[kept++] = position;
+                    }
+                }
+                break;
+            }
+            case ColumnVector.KIND_LONG: {
+                long[] longs = vector.longs;
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position] && accept(operator, compareLong(longs[position], value))) {
+                        positions[kept++] = position;
+                    }
+                }
+                break;
+            }
+            default: {
+                double[] doubles = vector.doubles;
+                double d = value.doubleValue();
+                for (int i = 0; i < size; i++) {
+                    int position = positions[i];
+                    if (!nulls[position] && accept(operator, Double.compare(doubles[position], d))) {
+                        positions[kept++] = position;
+                    }
+                }
+                break;
+            }
+        }
+        batch.size = kept;
+    }
+
+    private static int compareInteger(int v, Number value) {
+        if (value instanceof Integer) {
+            return v - (Integer) value;
+        }
+        if (value instanceof Long) {
+            long delta = v - (Long) value;
+            return delta == 0 ? 0 : delta > 0 ? 1 : -1;
+        }
+        return Double.compare(v, value.doubleValue());
+    }
+
+    private static int compareLong(long v, Number value) {
+        if (value instanceof Long) {
+            long delta = v - (Long) value;
+            return delta == 0 ? 0 : delta > 0 ? 1 : -1;
+        }
+        return Double.compare(v, value.doubleValue());
+    }
+
+    private static boolean accept(Operator operator, int compare) {
+        switch (operator) {
+            case GREATER:
+                return compare > 0;
+            case GREATER_OR_EQUALS:
+                return compare >= 0;
+            case MINOR:
+                return compare < 0;
+            case MINOR_OR_EQUALS:
+                return compare <= 0;
+            default:
+                return compare == 0;
+        }
+    }
+
+    private static boolean accept(Operator operator, CompareResult result) {
+        switch (result) {
+            case GREATER:
+                return accept(operator, 1);
+            case MINOR:
+                return accept(operator, -1);
+            case EQUALS:
+                return accept(operator, 0);
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.model.planner;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.core.AbstractTableManager;
+import herddb.model.Column;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.ScanResult;
+import herddb.model.Transaction;
+import herddb.utils.DataAccessor;
+import herddb.utils.SystemProperties;
+
+/**
+ * Result of an operation executed in batch mode, rows are produced in
+ * {@link RowBatch}es instead of one at a time.
+ *
+ * @see PlannerOp#executeBatch
+ */
+@SuppressFBWarnings({"EI_EXPOSE_REP2", "EI_EXPOSE_REP"})
+public abstract class BatchScanner implements AutoCloseable {
+
+    public static final boolean ENABLED = SystemProperties.
+            getBooleanSystemProperty("herddb.planner.batchexecution", true);
+
+    static final int BATCH_SIZE = SystemProperties.
+            getIntSystemProperty("herddb.planner.batchsize", 1024);
+
+    /**
+     * Batches start small and grow up to {@link #BATCH_SIZE}, so that
+     * consumers which read only a few rows (like a LIMIT) do not force the
+     * scan of many rows
+     */
+    private static final int FIRST_BATCH_SIZE = 16;
+
+    private final long transactionId;
+    private final Transaction transaction;
+    private final String[] fieldNames;
+    private final Column[] schema;
+    private final AbstractTableManager table;
+
+    protected BatchScanner(long transactionId, Transaction transaction, String[] fieldNames, Column[] schema,
+            AbstractTableManager table) {
+        this.transactionId = transactionId;
+        this.transaction = transaction;
+        this.fieldNames = fieldNames;
+        this.schema = schema;
+        this.table = table;
+    }
+
+    /**
+     * A scanner which transforms the batches of another scanner
+     */
+    protected BatchScanner(BatchScanner input, String[] fieldNames, Column[] schema) {
+        this(input.transactionId, input.transaction, fieldNames, schema, input.table);
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    public Column[] getSchema() {
+        return schema;
+    }
+
+    /**
+     * The table whose rows are read into batches, its statistics account for
+     * the work done in batch mode
+     *
+     * @return the table, or null if rows do not come from a table scan
+     */
+    public AbstractTableManager getTable() {
+        return table;
+    }
+
+    /**
+     * Produces the next batch, the batch is valid until the next invocation
+     *
+     * @return the batch, it is never empty, or null if there are no more rows
+     * @throws DataScannerException
+     */
+    public abstract RowBatch nextBatch() throws DataScannerException;
+
+    @Override
+    public void close() throws DataScannerException {
+    }
+
+    /**
+     * Reads the rows of a scan into batches
+     *
+     * @param result
+     * @return
+     */
+    public static BatchScanner of(ScanResult result) {
+        return of(result, null);
+    }
+
+    /**
+     * Reads the rows of a table scan into batches
+     *
+     * @param result
+     * @param table the scanned table, it accounts for the rows read
+     * @return
+     */
+    public static BatchScanner of(ScanResult result, AbstractTableManager table) {
+        return new RowsBatchScanner(result.transactionId, result.dataScanner, table);
+    }
+
+    /**
+     * Returns the rows of this scanner one at a time, for operators which are
+     * not executed in batch mode
+     *
+     * @return
+     */
+    public ScanResult toScanResult() {
+        return new ScanResult(transactionId, new BatchRowsDataScanner(this));
+    }
+
+    private static final class RowsBatchScanner extends BatchScanner {
+
+        private final DataScanner rows;
+        private final RowBatch batch;
+        private int nextBatchSize = Math.min(FIRST_BATCH_SIZE, BATCH_SIZE);
+
+        RowsBatchScanner(long transactionId, DataScanner rows, AbstractTableManager table) {
+            super(transactionId, rows.getTransaction(), rows.getFieldNames(), rows.getSchema(), table);
+            this.rows = rows;
+            this.batch = new RowBatch(rows.getFieldNames(), rows.getSchema(), BATCH_SIZE);
+        }
+
+        @Override
+        public RowBatch nextBatch() throws DataScannerException {
+            batch.clear();
+            while (batch.size < nextBatchSize && rows.hasNext()) {
+                batch.add(rows.next());
+            }
+            nextBatchSize = Math.min(nextBatchSize * 2, BATCH_SIZE);
+            AbstractTableManager table = getTable();
+            if (table != null) {
+                table.batchRowsRead(batch.size);
+            }
+            return batch.size == 0 ? null : batch;
+        }
+
+        @Override
+        public void close() throws DataScannerException {
+            rows.close();
+        }
+    }
+
+    private static final class BatchRowsDataScanner extends DataScanner {
+
+        private final BatchScanner batches;
+        private RowBatch current;
+        private int row;
+        private boolean finished;
+
+        BatchRowsDataScanner(BatchScanner batches) {
+            super(batches.getTransaction(), batches.getFieldNames(), batches.getSchema());
+            this.batches = batches;
+        }
+
+        private boolean ensureNext() throws DataScannerException {
+            while (current == null || row >= current.size) {
+                if (finished) {
+                    return false;
+                }
+                current = batches.nextBatch();
+                row = 0;
+                if (current == null) {
+                    finished = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() throws DataScannerException {
+            return ensureNext();
+        }
+
+        @Override
+        public DataAccessor next() throws DataScannerException {
+            if (!ensureNext()) {
+                throw new DataScannerException("Scanner is exhausted");
+            }
+            return current.getRow(row++);
+        }
+
+        @Override
+        public void close() throws DataScannerException {
+            current = null;
+            try {
+                batches.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.model.planner;
+
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.utils.DataAccessor;
+
+/**
+ * Values of a column for the rows of a {@link RowBatch}.
+ * <p>
+ * INTEGER and LONG values are stored in a long[], DOUBLE values in a double[]
+ * and NULL values are tracked in a boolean[], values of other types are kept
+ * as objects. If a value does not have the class expected for the type of the
+ * column (for instance an expression declared as INTEGER which returns a Long)
+ * the vector switches to objects until it is reset, so values are always
+ * returned exactly as they were stored.
+ * </p>
+ * <p>
+ * Vectors of the batches read from a scan keep a reference to the rows and
+ * decode the values of their column only when they are read the first time,
+ * so columns which are not used by the query are never decoded.
+ * </p>
+ */
+final class ColumnVector {
+
+    static final int KIND_INTEGER = 0;
+    static final int KIND_LONG = 1;
+    static final int KIND_DOUBLE = 2;
+    static final int KIND_OBJECT = 3;
+
+    final int kind;
+    final long[] longs;
+    final double[] doubles;
+    final boolean[] nulls;
+    private final int capacity;
+    Object[] objects;
+    /* values are stored in objects, even if the kind is a primitive one */
+    boolean boxed;
+    /* rows the values are decoded from, null if values are set directly */
+    private final DataAccessor[] rows;
+    private final int index;
+    private boolean decoded;
+
+    ColumnVector(Column column, int capacity) {
+        this(column, capacity, null, -1);
+    }
+
+    /**
+     * A vector whose values are decoded from the given column of the rows
+     */
+    ColumnVector(Column column, int capacity, DataAccessor[] rows, int index) {
+        this.rows = rows;
+        this.index = index;
+        this.decoded = rows == null;
+        this.kind = kindOf(column);
+        this.capacity = capacity;
+        this.longs = kind == KIND_INTEGER || kind == KIND_LONG ? new long[capacity] : null;
+        this.doubles = kind == KIND_DOUBLE ? new double[capacity] : null;
+        this.nulls = kind != KIND_OBJECT ? new boolean[capacity] : null;
+        this.objects = kind == KIND_OBJECT ? new Object[capacity] : null;
+    }
+
+    private static int kindOf(Column column) {
+        if (column == null) {
+            return KIND_OBJECT;
+        }
+        switch (column.type) {
+            case ColumnTypes.INTEGER:
+            case ColumnTypes.NOTNULL_INTEGER:
+                return KIND_INTEGER;
+            case ColumnTypes.LONG:
+            case ColumnTypes.NOTNULL_LONG:
+                return KIND_LONG;
+            case ColumnTypes.DOUBLE:
+            case ColumnTypes.NOTNULL_DOUBLE:
+                return KIND_DOUBLE;
+            default:
+                return KIND_OBJECT;
+        }
+    }
+
+    /**
+     * Tells whether values are stored in the primitive arrays
+     */
+    boolean isPrimitive() {
+        return kind != KIND_OBJECT && !boxed;
+    }
+
+    void reset() {
+        if (kind != KIND_OBJECT) {
+            boxed = false;
+        }
+        decoded = rows == null;
+    }
+
+    /**
+     * Decodes the values of the rows at the given positions, if they have not
+     * been decoded yet. Rows are only dropped from a batch, so the positions
+     * read later are always a subset of the ones decoded the first time.
+     */
+    void decode(int[] positions, int size) {
+        if (decoded) {
+            return;
+        }
+        decoded = true;
+        for (int i = 0; i < size; i++) {
+            int position = positions[i];
+            set(position, rows[position].get(index));
+        }
+    }
+
+    void set(int position, Object value) {
+        if (!boxed) {
+            switch (kind) {
+                case KIND_INTEGER:
+                    if (value == null) {
+                        nulls[position] = true;
+                        return;
+                    }
+                    if (value instanceof Integer) {
+                        nulls[position] = false;
+                        longs[position] = (Integer) value;
+                        return;
+                    }
+                    break;
+                case KIND_LONG:
+                    if (value == null) {
+                        nulls[position] = true;
+                        return;
+                    }
+                    if (value instanceof Long) {
+                        nulls[position] = false;
+                        longs[position] = (Long) value;
+                        return;
+                    }
+                    break;
+                case KIND_DOUBLE:
+                    if (value == null) {
+                        nulls[position] = true;
+                        return;
+                    }
+                    if (value instanceof Double) {
+                        nulls[position] = false;
+                        doubles[position] = (Double) value;
+                        return;
+                    }
+                    break;
+                default:
+                    objects[position] = value;
+                    return;
+            }
+            box();
+        }
+        objects[position] = value;
+    }
+
+    private void box() {
+        if (objects == null) {
+            objects = new Object[capacity];
+        }
+        for (int i = 0; i < capacity; i++) {
+            objects[i] = get(i);
+        }
+        boxed = true;
+    }
+
+    Object get(int position) {
+        if (boxed) {
+            return objects[position];
+        }
+        switch (kind) {
+            case KIND_INTEGER:
+                return nulls[position] ? null : Integer.valueOf((int) longs[position]);
+            case KIND_LONG:
+                return nulls[position] ? null : Long.valueOf(longs[position]);
+            case KIND_DOUBLE:
+                return nulls[position] ? null : Double.valueOf(doubles[position]);
+            default:
+                return objects[position];
+        }
+    }
+}
@@ -29,6 +29,7 @@ import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.TransactionContext;
 import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.sql.expressions.SQLExpressionCodeGenerator;
 import herddb.utils.DataAccessor;
 import herddb.utils.SQLRecordPredicateFunctions;
 import herddb.utils.Wrapper;
@@ -42,10 +43,16 @@ public class FilterOp implements PlannerOp {
 
     private final PlannerOp input;
     private final CompiledSQLExpression condition;
+    /* evaluated on every row, it may be a generated expression */
+    private final CompiledSQLExpression evaluatedCondition;
+    /* evaluates the condition in batch mode */
+    private final BatchFilter batchFilter;
 
     public FilterOp(PlannerOp input, CompiledSQLExpression condition) {
         this.input = input.optimize();
         this.condition = condition;
+        this.evaluatedCondition = SQLExpressionCodeGenerator.generateIfEnabled(condition);
+        this.batchFilter = BatchFilter.build(condition);
     }
 
     @Override
@@ -76,19 +83,77 @@ public class FilterOp implements PlannerOp {
             TransactionContext transactionContext,
             StatementEvaluationContext context, boolean lockRequired, boolean forWrite
     ) throws StatementExecutionException {
+        if (!lockRequired && !forWrite && supportsBatchExecution()) {
+            return executeBatch(tableSpaceManager, transactionContext, context, lockRequired, forWrite)
+                    .toScanResult();
+        }
         try {
             // TODO merge projection + scan + sort + limit
             StatementExecutionResult input = this.input.execute(tableSpaceManager,
                     transactionContext, context, lockRequired, forWrite);
             ScanResult downstreamScanResult = (ScanResult) input;
             final DataScanner inputScanner = downstreamScanResult.dataScanner;
-            FilteredDataScanner filtered = new FilteredDataScanner(inputScanner, condition, context);
+            FilteredDataScanner filtered = new FilteredDataScanner(inputScanner, evaluatedCondition, context);
             return new ScanResult(downstreamScanResult.transactionId, filtered);
         } catch (DataScannerException ex) {
             throw new StatementExecutionException(ex);
         }
     }
 
+    @Override
+    public boolean supportsBatchExecution() {
+        return input.supportsBatchExecution();
+    }
+
+    @Override
+    public BatchScanner executeBatch(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context, boolean lockRequired, boolean forWrite
+    ) throws StatementExecutionException {
+        BatchScanner inputBatches = input.executeBatch(tableSpaceManager,
+                transactionContext, context, lockRequired, forWrite);
+        return new FilteredBatchScanner(inputBatches, batchFilter, context);
+    }
+
+    static final class FilteredBatchScanner extends BatchScanner {
+
+        final BatchScanner input;
+        final BatchFilter filter;
+        final StatementEvaluationContext context;
+        RowBatch current;
+        RowBatch.RowView view;
+
+        FilteredBatchScanner(BatchScanner input, BatchFilter filter, StatementEvaluationContext context) {
+            super(input, input.getFieldNames(), input.getSchema());
+            this.input = input;
+            this.filter = filter;
+            this.context = context;
+        }
+
+        @Override
+        public RowBatch nextBatch() throws DataScannerException {
+            RowBatch batch;
+            while ((batch = input.nextBatch()) != null) {
+                if (batch != current) {
+                    current = batch;
+                    view = batch.newRowView();
+                }
+                filter.filter(batch, view, context);
+                if (batch.size > 0) {
+                    return batch;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws DataScannerException {
+            current = null;
+            input.close();
+        }
+    }
+
     static final class FilteredDataScanner extends DataScanner {
 
         final DataScanner inputScanner;
@@ -82,4 +82,9 @@ public class FilteredTableScanOp implements PlannerOp {
     public boolean isSimpleStatementWrapper() {
         return true;
     }
+
+    @Override
+    public boolean supportsBatchExecution() {
+        return BatchScanner.ENABLED;
+    }
 }
@@ -0,0 +1,470 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.model.planner;
+
+import herddb.core.MaterializedRecordSet;
+import herddb.core.RecordSetFactory;
+import herddb.core.SimpleDataScanner;
+import herddb.model.Column;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.Transaction;
+import herddb.utils.DataAccessor;
+import herddb.utils.RawString;
+import herddb.utils.SQLRecordPredicateFunctions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+/**
+ * Hash join (grace hash join).
+ * <p>
+ * The hash table is built on the smaller input and the other input is probed
+ * against it. If the build input has more rows than
+ * {@link RecordSetFactory#getSwapThreshold()} both inputs are split into
+ * partitions by the hash of the join keys, partitions are
+ * {@link MaterializedRecordSet}s so they swap to disk, and every pair of
+ * partitions is joined in turn, splitting it again if needed.
+ * </p>
+ * The hash table is made of plain arrays, no key object is created per row.
+ * Rows with a NULL join key never match.
+ */
+class HashJoinDataScanner extends DataScanner {
+
+    /**
+     * Number of partitions used when the build input does not fit in memory
+     */
+    private static final int SPILL_PARTITIONS = 16;
+
+    /**
+     * Partitions are split again when they are still too big, up to this
+     * depth, then they are joined in memory regardless of their size
+     */
+    private static final int MAX_SPILL_DEPTH = 4;
+
+    private final int[] leftKeys;
+    private final int[] rightKeys;
+    private final Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection;
+    private final Predicate2<DataAccessor, DataAccessor> predicate;
+    private final boolean generateNullsOnLeft;
+    private final boolean generateNullsOnRight;
+    private final RecordSetFactory recordSetFactory;
+    private final int maxBuildRows;
+
+    private final Deque<Partition> partitions = new ArrayDeque<>();
+    private Partition current;
+    private HashTable table;
+    private boolean buildOnLeft;
+    private DataScanner probe;
+    /* position of the next unmatched build row to emit, after the probe input is exhausted */
+    private int unmatchedBuildPos = -1;
+
+    /* joined rows of the current probe row */
+    private final List<DataAccessor> pending = new ArrayList<>();
+    private int pendingPos;
+
+    HashJoinDataScanner(
+            Transaction transaction, String[] fieldNames, Column[] schema,
+            DataScanner left, int leftSize, int[] leftKeys,
+            DataScanner right, int rightSize, int[] rightKeys,
+            Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection,
+            Predicate2<DataAccessor, DataAccessor> predicate,
+            boolean generateNullsOnLeft,
+            boolean generateNullsOnRight,
+            RecordSetFactory recordSetFactory
+    ) {
+        super(transaction, fieldNames, schema);
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.resultProjection = resultProjection;
+        this.predicate = predicate;
+        this.generateNullsOnLeft = generateNullsOnLeft;
+        this.generateNullsOnRight = generateNullsOnRight;
+        this.recordSetFactory = recordSetFactory;
+        this.maxBuildRows = recordSetFactory.getSwapThreshold();
+        this.partitions.add(new Partition(left, leftSize, right, rightSize, 0));
+    }
+
+    /**
+     * A pair of inputs to be joined
+     */
+    private static final class Partition implements AutoCloseable {
+
+        final DataScanner left;
+        final int leftSize;
+        final DataScanner right;
+        final int rightSize;
+        final int depth;
+
+        Partition(DataScanner left, int leftSize, DataScanner right, int rightSize, int depth) {
+            this.left = left;
+            this.leftSize = leftSize;
+            this.right = right;
+            this.rightSize = rightSize;
+            this.depth = depth;
+        }
+
+        @Override
+        public void close() throws DataScannerException {
+            try {
+                left.close();
+            } finally {
+                right.close();
+            }
+        }
+    }
+
+    /**
+     * Chained hash table on the rows of the build input
+     */
+    private static final class HashTable {
+
+        final DataAccessor[] rows;
+        final int[] hashes;
+        final int[] next;
+        final int[] buckets;
+        final int mask;
+        /* only if unmatched build rows have to be returned */
+        final boolean[] matched;
+        int size;
+
+        HashTable(int expectedSize, boolean trackMatches) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) - 1) << 1;
+            this.rows = new DataAccessor[expectedSize];
+            this.hashes = new int[expectedSize];
+            this.next = new int[expectedSize];
+            this.buckets = new int[capacity];
+            Arrays.fill(buckets, -1);
+            this.mask = capacity - 1;
+            this.matched = trackMatches ? new boolean[expectedSize] : null;
+        }
+
+        void add(DataAccessor row, int[] keys) {
+            int pos = size++;
+            rows[pos] = row;
+            if (hasNullKey(row, keys)) {
+                // never matches
+                next[pos] = -1;
+                return;
+            }
+            int hash = keyHash(row, keys);
+            int bucket = hash & mask;
+            hashes[pos] = hash;
+            next[pos] = buckets[bucket];
+            buckets[bucket] = pos;
+        }
+    }
+
+    static boolean hasNullKey(DataAccessor row, int[] keys) {
+        for (int key : keys) {
+            if (row.get(key) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int keyHash(DataAccessor row, int[] keys) {
+        int hash = 1;
+        for (int key : keys) {
+            hash = 31 * hash + valueHash(row.get(key));
+        }
+        return hash;
+    }
+
+    /**
+     * Hash code of a value, consistent with
+     * {@link SQLRecordPredicateFunctions#compare(java.lang.Object, java.lang.Object)},
+     * which is used to compare join keys: equal numbers of different classes
+     * and Dates equal to a Long have the same hash
+     */
+    private static int valueHash(Object value) {
+        if (value instanceof Number) {
+            return numberHash(((Number) value).doubleValue());
+        }
+        if (value instanceof java.util.Date) {
+            return numberHash(((java.util.Date) value).getTime());
+        }
+        if (value instanceof String) {
+            return RawString.of((String) value).hashCode();
+        }
+        if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        }
+        return Objects.hashCode(value);
+    }
+
+    private static int numberHash(double value) {
+        long asLong = (long) value;
+        return asLong == value ? Long.hashCode(asLong) : Double.hashCode(value);
+    }
+
+    static boolean keysEquals(DataAccessor a, int[] aKeys, DataAccessor b, int[] bKeys) {
+        for (int i = 0; i < aKeys.length; i++) {
+            if (SQLRecordPredicateFunctions.compare(a.get(aKeys[i]), b.get(bKeys[i])) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int partition(int hash, int depth) {
+        /* every level uses different bits, rows of a partition are spread again */
+        return ((hash * 0x9E3779B9) >>> (depth * 4)) & (SPILL_PARTITIONS - 1);
+    }
+
+    private boolean isBuildPreserved() {
+        return buildOnLeft ? generateNullsOnRight : generateNullsOnLeft;
+    }
+
+    private boolean isProbePreserved() {
+        return buildOnLeft ? generateNullsOnLeft : generateNullsOnRight;
+    }
+
+    private DataAccessor join(DataAccessor buildRow, DataAccessor probeRow) {
+        return buildOnLeft
+                ? resultProjection.apply(buildRow, probeRow)
+                : resultProjection.apply(probeRow, buildRow);
+    }
+
+    private boolean accept(DataAccessor buildRow, DataAccessor probeRow) {
+        if (predicate == null) {
+            return true;
+        }
+        return buildOnLeft
+                ? predicate.apply(buildRow, probeRow)
+                : predicate.apply(probeRow, buildRow);
+    }
+
+    /**
+     * Prepares the hash table of the next partition, or splits it if it is
+     * too big
+     *
+     * @return false if there are no more partitions
+     */
+    private boolean startNextPartition() throws DataScannerException {
+        while (!partitions.isEmpty()) {
+            Partition partition = partitions.removeFirst();
+            current = partition;
+            // ties: build on the right input, as Calcite did
+            buildOnLeft = partition.leftSize < partition.rightSize;
+            int buildSize = buildOnLeft ? partition.leftSize : partition.rightSize;
+            if (buildSize > maxBuildRows && partition.depth < MAX_SPILL_DEPTH) {
+                split(partition);
+                current = null;
+                partition.close();
+                continue;
+            }
+            DataScanner build = buildOnLeft ? partition.left : partition.right;
+            int[] buildKeys = buildOnLeft ? leftKeys : rightKeys;
+            table = new HashTable(buildSize, isBuildPreserved());
+            while (build.hasNext() && table.size < buildSize) {
+                table.add(build.next(), buildKeys);
+            }
+            probe = buildOnLeft ? partition.right : partition.left;
+            unmatchedBuildPos = -1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splits both inputs of the partition by the hash of the join keys
+     */
+    private void split(Partition partition) throws DataScannerException {
+        MaterializedRecordSet[] lefts = new MaterializedRecordSet[SPILL_PARTITIONS];
+        MaterializedRecordSet[] rights = new MaterializedRecordSet[SPILL_PARTITIONS];
+        int[] leftSizes = new int[SPILL_PARTITIONS];
+        int[] rightSizes = new int[SPILL_PARTITIONS];
+        List<Partition> children = new ArrayList<>();
+        boolean done = false;
+        try {
+            spill(partition.left, leftKeys, partition.depth, lefts, leftSizes);
+            spill(partition.right, rightKeys, partition.depth, rights, rightSizes);
+            for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                boolean keepLeft = leftSizes[i] > 0 && (rightSizes[i] > 0 || generateNullsOnRight);
+                boolean keepRight = rightSizes[i] > 0 && (leftSizes[i] > 0 || generateNullsOnLeft);
+                if (!keepLeft && !keepRight) {
+                    continue;
+                }
+                MaterializedRecordSet leftRecordSet = finish(lefts, i, partition.left);
+                lefts[i] = null;
+                MaterializedRecordSet rightRecordSet = finish(rights, i, partition.right);
+                rights[i] = null;
+                children.add(new Partition(
+                        new SimpleDataScanner(null, leftRecordSet), leftSizes[i],
+                        new SimpleDataScanner(null, rightRecordSet), rightSizes[i],
+                        partition.depth + 1));
+            }
+            for (int i = children.size() - 1; i >= 0; i--) {
+                partitions.addFirst(children.get(i));
+            }
+            done = true;
+        } finally {
+            for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                if (lefts[i] != null) {
+                    lefts[i].close();
+                }
+                if (rights[i] != null) {
+                    rights[i].close();
+                }
+            }
+            if (!done) {
+                for (Partition child : children) {
+                    child.close();
+                }
+            }
+        }
+    }
+
+    private void spill(DataScanner input, int[] keys, int depth, MaterializedRecordSet[] recordSets, int[] sizes)
+            throws DataScannerException {
+        while (input.hasNext()) {
+            DataAccessor row = input.next();
+            // rows with NULL keys never match, they only have to be returned by outer joins
+            int i = hasNullKey(row, keys) ? 0 : partition(keyHash(row, keys), depth);
+            if (recordSets[i] == null) {
+                recordSets[i] = recordSetFactory.createRecordSet(input.getFieldNames(), input.getSchema());
+            }
+            recordSets[i].add(row);
+            sizes[i]++;
+        }
+    }
+
+    private MaterializedRecordSet finish(MaterializedRecordSet[] recordSets, int i, DataScanner input) {
+        MaterializedRecordSet recordSet = recordSets[i];
+        if (recordSet == null) {
+            recordSet = recordSetFactory.createRecordSet(input.getFieldNames(), input.getSchema());
+        }
+        recordSet.writeFinished();
+        return recordSet;
+    }
+
+    /**
+     * Computes the joined rows of the next probe row, or the next unmatched
+     * build row for outer joins
+     *
+     * @return false if the current partition is finished
+     */
+    private boolean fillPending() throws DataScannerException {
+        pending.clear();
+        pendingPos = 0;
+        if (unmatchedBuildPos < 0) {
+            int[] probeKeys = buildOnLeft ? rightKeys : leftKeys;
+            int[] buildKeys = buildOnLeft ? leftKeys : rightKeys;
+            while (pending.isEmpty() && probe.hasNext()) {
+                DataAccessor probeRow = probe.next();
+                if (!hasNullKey(probeRow, probeKeys)) {
+                    int hash = keyHash(probeRow, probeKeys);
+                    for (int i = table.buckets[hash & table.mask]; i >= 0; i = table.next[i]) {
+                        DataAccessor buildRow = table.rows[i];
+                        if (table.hashes[i] == hash
+                                && keysEquals(buildRow, buildKeys, probeRow, probeKeys)
+                                && accept(buildRow, probeRow)) {
+                            pending.add(join(buildRow, probeRow));
+                            if (table.matched != null) {
+                                table.matched[i] = true;
+                            }
+                        }
+                    }
+                }
+                if (pending.isEmpty() && isProbePreserved()) {
+                    pending.add(join(null, probeRow));
+                }
+            }
+            if (!pending.isEmpty()) {
+                return true;
+            }
+            unmatchedBuildPos = 0;
+        }
+        if (table.matched != null) {
+            while (unmatchedBuildPos < table.size) {
+                int pos = unmatchedBuildPos++;
+                if (!table.matched[pos]) {
+                    pending.add(join(table.rows[pos], null));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean ensureNext() throws DataScannerException {
+        while (pendingPos >= pending.size()) {
+            if (current != null && fillPending()) {
+                return true;
+            }
+            if (current != null) {
+                table = null;
+                probe = null;
+                Partition finished = current;
+                current = null;
+                finished.close();
+            }
+            if (!startNextPartition()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() throws DataScannerException {
+        return ensureNext();
+    }
+
+    @Override
+    public DataAccessor next() throws DataScannerException {
+        if (!ensureNext()) {
+            throw new DataScannerException("Scanner is exhausted");
+        }
+        return pending.get(pendingPos++);
+    }
+
+    private void closePartitions() throws DataScannerException {
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        } finally {
+            while (!partitions.isEmpty()) {
+                partitions.removeFirst().close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws DataScannerException {
+        table = null;
+        pending.clear();
+        try {
+            closePartitions();
+        } finally {
+            super.close();
+        }
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.model.planner;
+
+import herddb.core.AbstractIndexManager;
+import herddb.core.AbstractTableManager;
+import herddb.core.LocalScanPageCache;
+import herddb.core.TableManager;
+import herddb.core.TableSpaceManager;
+import herddb.index.IndexOperation;
+import herddb.index.PrimaryIndexSeek;
+import herddb.index.SecondaryIndexSeek;
+import herddb.model.Column;
+import herddb.model.ColumnsList;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.Predicate;
+import herddb.model.Projection;
+import herddb.model.Record;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.Table;
+import herddb.model.Transaction;
+import herddb.model.commands.ScanStatement;
+import herddb.sql.SQLRecordKeyFunction;
+import herddb.sql.SQLStatementEvaluationContext;
+import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.sql.expressions.JdbcParameterExpression;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import herddb.utils.SystemProperties;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+/**
+ * Index nested loop join.
+ * <p>
+ * One input of the join (the outer input) is read and for every row the
+ * matching records of the other input, which is a simple scan of a table, are
+ * looked up using the primary key or a secondary index of the table, instead
+ * of scanning the whole table. Outer rows are processed in batches, the keys
+ * of the records of a batch are sorted by page before reading them, so that
+ * every data page is read only once per batch.
+ * </p>
+ * The other conditions of the scan of the table (the WHERE clause and the
+ * projection) are applied to every record which is looked up.
+ */
+class IndexLookupJoinDataScanner extends DataScanner {
+
+    static final boolean ENABLED = SystemProperties.
+            getBooleanSystemProperty("herddb.planner.indexlookupjoin", true);
+
+    /**
+     * The lookup join is used only if the table has at least this number of
+     * records for every row of the outer input, otherwise a full scan of the
+     * table and an hash join are cheaper
+     */
+    static final int MIN_TABLE_ROWS_PER_LOOKUP = SystemProperties.
+            getIntSystemProperty("herddb.planner.indexlookupjoin.mintablerowsperlookup", 4);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Comparator<Lookup> BY_PAGE = (a, b) -> Long.compare(a.pageId, b.pageId);
+
+    /**
+     * Direct access by key to the table read by one input of the join
+     */
+    static final class IndexAccess {
+
+        private final TableManager tableManager;
+        private final Table table;
+        private final ScanStatement statement;
+        private final Predicate predicate;
+        private final Projection projection;
+        private final IndexOperation seek;
+        /* for every parameter of the seek, the position of its value in the join keys */
+        private final int[] seekKeyPositions;
+        private final String[] fieldNames;
+
+        private IndexAccess(
+                TableManager tableManager, ScanStatement statement,
+                IndexOperation seek, int[] seekKeyPositions
+        ) {
+            this.tableManager = tableManager;
+            this.table = tableManager.getTable();
+            this.statement = statement;
+            this.predicate = statement.getPredicate();
+            this.projection = statement.getProjection();
+            this.seek = seek;
+            this.seekKeyPositions = seekKeyPositions;
+            this.fieldNames = projection != null ? projection.getFieldNames() : table.columnNames;
+        }
+
+        /**
+         * Checks that the given input of a join can be accessed by the join
+         * keys.
+         *
+         * @param op the input of the join
+         * @param keys the positions of the join keys in the rows of the input
+         * @param tableSpaceManager
+         * @return null if the input is not a simple scan of a table or if no
+         * index covers the join keys
+         */
+        static IndexAccess build(PlannerOp op, int[] keys, TableSpaceManager tableSpaceManager) {
+            if (!ENABLED || !op.isSimpleStatementWrapper()) {
+                return null;
+            }
+            ScanStatement statement = op.unwrap(ScanStatement.class);
+            if (statement == null
+                    || statement.getComparator() != null
+                    || statement.getLimits() != null
+                    || !tableSpaceManager.getTableSpaceName().equals(statement.getTableSpace())) {
+                return null;
+            }
+            AbstractTableManager abstractTableManager = tableSpaceManager.getTableManager(statement.getTable());
+            if (!(abstractTableManager instanceof TableManager)
+                    || abstractTableManager.getCreatedInTransaction() > 0) {
+                return null;
+            }
+            TableManager tableManager = (TableManager) abstractTableManager;
+            Table table = tableManager.getTable();
+            Projection projection = statement.getProjection();
+            String[] keyColumns = new String[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                int columnIndex;
+                if (projection == null || projection instanceof ProjectOp.IdentityProjection) {
+                    columnIndex = keys[i];
+                } else if (projection instanceof ProjectOp.ZeroCopyProjection) {
+                    columnIndex = ((ProjectOp.ZeroCopyProjection) projection).mapPosition(keys[i]);
+                } else {
+                    return null;
+                }
+                if (columnIndex < 0 || columnIndex >= table.columns.length) {
+                    return null;
+                }
+                keyColumns[i] = table.columns[columnIndex].name;
+            }
+            int[] positions = seekKeyPositions(table.primaryKey, keyColumns);
+            if (positions != null) {
+                PrimaryIndexSeek seek = new PrimaryIndexSeek(keyFunction(table.primaryKey, table));
+                return new IndexAccess(tableManager, statement, seek, positions);
+            }
+            Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
+            if (indexes == null) {
+                return null;
+            }
+            for (AbstractIndexManager index : indexes.values()) {
+                if (!index.isAvailable()) {
+                    continue;
+                }
+                String[] columnsToMatch = index.getColumnNames();
+                positions = seekKeyPositions(columnsToMatch, keyColumns);
+                if (positions != null) {
+                    SecondaryIndexSeek seek = new SecondaryIndexSeek(index.getIndexName(), columnsToMatch,
+                            keyFunction(columnsToMatch, index.getIndex()));
+                    return new IndexAccess(tableManager, statement, seek, positions);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Every column of the index must be a join key, other join keys are
+         * checked on the records which are looked up
+         */
+        private static int[] seekKeyPositions(String[] indexColumns, String[] keyColumns) {
+            int[] positions = new int[indexColumns.length];
+            for (int i = 0; i < indexColumns.length; i++) {
+                positions[i] = -1;
+                for (int j = 0; j < keyColumns.length; j++) {
+                    if (indexColumns[i].equals(keyColumns[j])) {
+                        positions[i] = j;
+                        break;
+                    }
+                }
+                if (positions[i] < 0) {
+                    return null;
+                }
+            }
+            return positions;
+        }
+
+        private static SQLRecordKeyFunction keyFunction(String[] columns, ColumnsList columnsList) {
+            List<CompiledSQLExpression> expressions = new ArrayList<>(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                expressions.add(new JdbcParameterExpression(i));
+            }
+            return new SQLRecordKeyFunction(Arrays.asList(columns), expressions, columnsList);
+        }
+
+        String[] getFieldNames() {
+            return fieldNames;
+        }
+
+        /**
+         * Checks the parameters of the scan, as a scan of the table would do:
+         * if no row is looked up they would not be evaluated at all
+         *
+         * @param context
+         * @throws StatementExecutionException
+         */
+        void validateContext(StatementEvaluationContext context) throws StatementExecutionException {
+            statement.validateContext(context);
+        }
+
+        /**
+         * Tells whether looking up the given number of rows is cheaper than
+         * reading the whole table
+         *
+         * @param lookups
+         * @return
+         */
+        boolean isWorthFor(int lookups) {
+            return (long) lookups * MIN_TABLE_ROWS_PER_LOOKUP <= tableManager.getStats().getTablesize();
+        }
+    }
+
+    /**
+     * A record to be read for a row of the current batch
+     */
+    private static final class Lookup {
+
+        final int row;
+        final Map.Entry<Bytes, Long> entry;
+        final long pageId;
+
+        Lookup(int row, Map.Entry<Bytes, Long> entry) {
+            this.row = row;
+            this.entry = entry;
+            Long page = entry.getValue();
+            this.pageId = page != null ? page : Long.MAX_VALUE;
+        }
+    }
+
+    private final DataScanner outer;
+    private final int[] outerKeys;
+    private final IndexAccess inner;
+    private final int[] innerKeys;
+    private final boolean outerIsLeft;
+    private final boolean generateNullsOnInner;
+    private final Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection;
+    private final Predicate2<DataAccessor, DataAccessor> predicate;
+    private final StatementEvaluationContext context;
+
+    /* values of the parameters of the seek */
+    private final List<Object> seekValues;
+    private final SQLStatementEvaluationContext seekContext;
+    private final LocalScanPageCache pageCache = new LocalScanPageCache();
+
+    private final DataAccessor[] batch = new DataAccessor[BATCH_SIZE];
+    private final boolean[] matched = new boolean[BATCH_SIZE];
+    private final List<Lookup> lookups = new ArrayList<>();
+
+    /* joined rows of the current batch */
+    private final List<DataAccessor> pending = new ArrayList<>();
+    private int pendingPos;
+
+    IndexLookupJoinDataScanner(
+            Transaction transaction, String[] fieldNames, Column[] schema,
+            DataScanner outer, int[] outerKeys,
+            IndexAccess inner, int[] innerKeys,
+            boolean outerIsLeft,
+            boolean generateNullsOnInner,
+            Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection,
+            Predicate2<DataAccessor, DataAccessor> predicate,
+            StatementEvaluationContext context
+    ) {
+        super(transaction, fieldNames, schema);
+        this.outer = outer;
+        this.outerKeys = outerKeys;
+        this.inner = inner;
+        this.innerKeys = innerKeys;
+        this.outerIsLeft = outerIsLeft;
+        this.generateNullsOnInner = generateNullsOnInner;
+        this.resultProjection = resultProjection;
+        this.predicate = predicate;
+        this.context = context;
+        this.seekValues = Arrays.asList(new Object[inner.seekKeyPositions.length]);
+        this.seekContext = new SQLStatementEvaluationContext("index lookup join", seekValues, false);
+    }
+
+    private DataAccessor join(DataAccessor outerRow, DataAccessor innerRow) {
+        return outerIsLeft ? resultProjection.apply(outerRow, innerRow) : resultProjection.apply(innerRow, outerRow);
+    }
+
+    private boolean accept(DataAccessor outerRow, DataAccessor innerRow) {
+        if (predicate == null) {
+            return true;
+        }
+        return outerIsLeft ? predicate.apply(outerRow, innerRow) : predicate.apply(innerRow, outerRow);
+    }
+
+    private void lookup(int row) {
+        DataAccessor outerRow = batch[row];
+        if (HashJoinDataScanner.hasNullKey(outerRow, outerKeys)) {
+            return;
+        }
+        for (int i = 0; i < inner.seekKeyPositions.length; i++) {
+            seekValues.set(i, outerRow.get(outerKeys[inner.seekKeyPositions[i]]));
+        }
+        for (Map.Entry<Bytes, Long> entry : inner.tableManager.seekRecordKeys(inner.seek, seekContext)) {
+            lookups.add(new Lookup(row, entry));
+        }
+    }
+
+    private boolean ensureNext() throws DataScannerException {
+        while (pendingPos >= pending.size()) {
+            pending.clear();
+            pendingPos = 0;
+            int size = 0;
+            while (size < BATCH_SIZE && outer.hasNext()) {
+                batch[size++] = outer.next();
+            }
+            if (size == 0) {
+                return false;
+            }
+            Arrays.fill(matched, 0, size, false);
+            try {
+                for (int i = 0; i < size; i++) {
+                    lookup(i);
+                }
+                lookups.sort(BY_PAGE);
+                for (Lookup lookup : lookups) {
+                    Record record = inner.tableManager.accessRecord(lookup.entry, inner.predicate, context,
+                            null, pageCache, false, false, false);
+                    if (record == null) {
+                        continue;
+                    }
+                    DataAccessor innerRow = record.getDataAccessor(inner.table);
+                    if (inner.projection != null) {
+                        innerRow = inner.projection.map(innerRow, context);
+                    }
+                    DataAccessor outerRow = batch[lookup.row];
+                    if (HashJoinDataScanner.keysEquals(outerRow, outerKeys, innerRow, innerKeys)
+                            && accept(outerRow, innerRow)) {
+                        pending.add(join(outerRow, innerRow));
+                        matched[lookup.row] = true;
+                    }
+                }
+            } catch (RuntimeException err) {
+                throw new DataScannerException(err);
+            } finally {
+                lookups.clear();
+            }
+            if (generateNullsOnInner) {
+                for (int i = 0; i < size; i++) {
+                    if (!matched[i]) {
+                        pending.add(join(batch[i], null));
+                    }
+                }
+            }
+            Arrays.fill(batch, 0, size, null);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() throws DataScannerException {
+        return ensureNext();
+    }
+
+    @Override
+    public DataAccessor next() throws DataScannerException {
+        if (!ensureNext()) {
+            throw new DataScannerException("Scanner is exhausted");
+        }
+        return pending.get(pendingPos++);
+    }
+
+    @Override
+    public void close() throws DataScannerException {
+        pending.clear();
+        try {
+            outer.close();
+        } finally {
+            super.close();
+        }
+    }
+
+}
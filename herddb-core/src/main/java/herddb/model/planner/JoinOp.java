@@ -21,6 +21,7 @@ package herddb.model.planner;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import herddb.core.MaterializedRecordSet;
+import herddb.core.RecordSetFactory;
 import herddb.core.SimpleDataScanner;
 import herddb.core.TableSpaceManager;
 import herddb.model.Column;
@@ -88,94 +89,214 @@ public class JoinOp implements PlannerOp {
     public StatementExecutionResult execute(TableSpaceManager tableSpaceManager,
             TransactionContext transactionContext,
             StatementEvaluationContext context, boolean lockRequired, boolean forWrite) throws StatementExecutionException {
-        ScanResult resLeft = (ScanResult) left.execute(tableSpaceManager, transactionContext,
-                context, lockRequired, forWrite);
-        transactionContext = new TransactionContext(resLeft.transactionId);
-        ScanResult resRight = (ScanResult) right.execute(tableSpaceManager, transactionContext,
-                context, lockRequired, forWrite);
-        final long resTransactionId = resRight.transactionId;
-        DataScanner leftScanner = resLeft.dataScanner;
-        final String[] fieldNamesFromLeft = leftScanner.getFieldNames();
-        final String[] fieldNamesFromRight = resRight.dataScanner.getFieldNames();
-        Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection = resultProjection(fieldNamesFromLeft, fieldNamesFromRight);
-        final Predicate2 predicate;
-        DataScanner rightScanner = resRight.dataScanner;
-        if (nonEquiConditions != null && !nonEquiConditions.isEmpty()) {
-            if (mergeJoin) {
-                throw new IllegalStateException("Unspected nonEquiConditions " + nonEquiConditions + ""
-                        + "for merge join");
+        RecordSetFactory recordSetFactory = tableSpaceManager.getDbmanager().getRecordSetFactory();
+        IndexLookupJoinDataScanner.IndexAccess innerAccess = null;
+        boolean innerIsRight = false;
+        if (!mergeJoin && IndexLookupJoinDataScanner.ENABLED
+                && transactionContext.transactionId == TransactionContext.NOTRANSACTION_ID
+                && !lockRequired && !forWrite) {
+            // the table accessed by index must not be the one which preserves its rows in an outer join
+            if (!generateNullsOnLeft) {
+                innerAccess = IndexLookupJoinDataScanner.IndexAccess.build(right, rightKeys, tableSpaceManager);
+                innerIsRight = innerAccess != null;
+            }
+            if (innerAccess == null && !generateNullsOnRight) {
+                innerAccess = IndexLookupJoinDataScanner.IndexAccess.build(left, leftKeys, tableSpaceManager);
             }
-            predicate = (Predicate2) (Object t0, Object t1) -> {
-                DataAccessor da0 = (DataAccessor) t0;
-                DataAccessor da1 = (DataAccessor) t1;
-                DataAccessor currentRow = resultProjection.apply(da0, da1);
-                for (CompiledSQLExpression exp : nonEquiConditions) {
-                    Object result = exp.evaluate(currentRow, context);
-                    boolean asBoolean = SQLRecordPredicateFunctions.toBoolean(result);
-                    if (!asBoolean) {
-                        return false;
-                    }
-                }
-                return true;
-            };
-        } else {
-            predicate = null;
         }
-        if (!mergeJoin && !leftScanner.isRewindSupported()) {
+        DataScanner leftScanner = null;
+        DataScanner rightScanner = null;
+        int leftSize = -1;
+        int rightSize = -1;
+        long resTransactionId = transactionContext.transactionId;
+        if (innerAccess != null) {
+            innerAccess.validateContext(context);
+            /* the outer input is read first, an index lookup for each row is cheaper
+             * than a scan of the table only if the outer input is small enough */
+            PlannerOp outerOp = innerIsRight ? left : right;
+            ScanResult resOuter = (ScanResult) outerOp.execute(tableSpaceManager, transactionContext,
+                    context, lockRequired, forWrite);
+            DataScanner outerScanner = resOuter.dataScanner;
+            int outerSize;
             try {
-                MaterializedRecordSet recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
-                        .createRecordSet(leftScanner.getFieldNames(),
-                                leftScanner.getSchema());
-                leftScanner.forEach(d -> {
-                    recordSet.add(d);
-                });
-                recordSet.writeFinished();
-                SimpleDataScanner materialized = new SimpleDataScanner(leftScanner.getTransaction(), recordSet);
-                leftScanner.close();
-                leftScanner = materialized;
+                if (outerScanner.isRewindSupported()) {
+                    outerSize = countAndRewind(outerScanner);
+                } else {
+                    MaterializedRecordSet recordSet = materialize(outerScanner, recordSetFactory);
+                    outerSize = recordSet.size();
+                    SimpleDataScanner materialized = new SimpleDataScanner(outerScanner.getTransaction(), recordSet);
+                    outerScanner.close();
+                    outerScanner = materialized;
+                }
             } catch (DataScannerException err) {
                 throw new StatementExecutionException(err);
             }
+            if (innerAccess.isWorthFor(outerSize)) {
+                String[] fieldNamesFromOuter = outerScanner.getFieldNames();
+                String[] fieldNamesFromInner = innerAccess.getFieldNames();
+                Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection = innerIsRight
+                        ? resultProjection(fieldNamesFromOuter, fieldNamesFromInner)
+                        : resultProjection(fieldNamesFromInner, fieldNamesFromOuter);
+                IndexLookupJoinDataScanner joinedScanner = new IndexLookupJoinDataScanner(outerScanner.getTransaction(),
+                        fieldNames, columns,
+                        outerScanner, innerIsRight ? leftKeys : rightKeys,
+                        innerAccess, innerIsRight ? rightKeys : leftKeys,
+                        innerIsRight,
+                        innerIsRight ? generateNullsOnRight : generateNullsOnLeft,
+                        resultProjection,
+                        nonEquiPredicate(resultProjection, context),
+                        context);
+                return new ScanResult(resOuter.transactionId, joinedScanner);
+            }
+            if (innerIsRight) {
+                leftScanner = outerScanner;
+                leftSize = outerSize;
+            } else {
+                rightScanner = outerScanner;
+                rightSize = outerSize;
+            }
         }
-        if (!mergeJoin && !rightScanner.isRewindSupported()) {
-            try {
-                MaterializedRecordSet recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
-                        .createRecordSet(rightScanner.getFieldNames(),
-                                rightScanner.getSchema());
-                rightScanner.forEach(d -> {
-                    recordSet.add(d);
-                });
-                recordSet.writeFinished();
-                SimpleDataScanner materialized = new SimpleDataScanner(rightScanner.getTransaction(), recordSet);
-                rightScanner.close();
-                rightScanner = materialized;
-            } catch (DataScannerException err) {
-                throw new StatementExecutionException(err);
+        if (leftScanner == null) {
+            ScanResult resLeft = (ScanResult) left.execute(tableSpaceManager, transactionContext,
+                    context, lockRequired, forWrite);
+            transactionContext = new TransactionContext(resLeft.transactionId);
+            resTransactionId = resLeft.transactionId;
+            leftScanner = resLeft.dataScanner;
+        }
+        if (rightScanner == null) {
+            ScanResult resRight = (ScanResult) right.execute(tableSpaceManager, transactionContext,
+                    context, lockRequired, forWrite);
+            resTransactionId = resRight.transactionId;
+            rightScanner = resRight.dataScanner;
+        }
+        final String[] fieldNamesFromLeft = leftScanner.getFieldNames();
+        final String[] fieldNamesFromRight = rightScanner.getFieldNames();
+        Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection = resultProjection(fieldNamesFromLeft, fieldNamesFromRight);
+        final Predicate2<DataAccessor, DataAccessor> predicate = nonEquiPredicate(resultProjection, context);
+        if (predicate != null && mergeJoin && (generateNullsOnLeft || generateNullsOnRight)) {
+            throw new IllegalStateException("Unspected nonEquiConditions " + nonEquiConditions + ""
+                    + "for outer merge join");
+        }
+        if (mergeJoin) {
+            /* a NULL key never matches, but the key extractors compare NULL as equal to NULL:
+             * rows with a NULL key are removed from the inputs which do not need to be preserved */
+            Enumerable<DataAccessor> leftInput = leftScanner.createNonRewindableEnumerable();
+            if (!generateNullsOnRight) {
+                leftInput = leftInput.where(row -> !HashJoinDataScanner.hasNullKey(row, leftKeys));
             }
+            Enumerable<DataAccessor> rightInput = rightScanner.createNonRewindableEnumerable();
+            if (!generateNullsOnLeft) {
+                rightInput = rightInput.where(row -> !HashJoinDataScanner.hasNullKey(row, rightKeys));
+            }
+            Enumerable<DataAccessor> result = EnumerableDefaults.mergeJoin(leftInput,
+                    rightInput,
+                    JoinKey.keyExtractor(leftKeys),
+                    JoinKey.keyExtractor(rightKeys),
+                    resultProjection,
+                    generateNullsOnLeft,
+                    generateNullsOnRight
+            );
+            if (predicate != null) {
+                // inner join, the remaining conditions are applied to the joined rows
+                result = result.where(row -> matchesNonEquiConditions(row, context));
+            }
+            EnumerableDataScanner joinedScanner = new EnumerableDataScanner(rightScanner.getTransaction(), fieldNames, columns, result, leftScanner, rightScanner);
+            return new ScanResult(resTransactionId, joinedScanner);
         }
 
-        Enumerable<DataAccessor> result = mergeJoin
-                ? EnumerableDefaults.mergeJoin(leftScanner.createNonRewindableEnumerable(),
-                        rightScanner.createNonRewindableEnumerable(),
-                        JoinKey.keyExtractor(leftKeys),
-                        JoinKey.keyExtractor(rightKeys),
-                        resultProjection,
-                        generateNullsOnLeft,
-                        generateNullsOnRight
-                )
-                : EnumerableDefaults.hashJoin(leftScanner.createRewindOnCloseEnumerable(),
-                        rightScanner.createRewindOnCloseEnumerable(),
-                        JoinKey.keyExtractor(leftKeys),
-                        JoinKey.keyExtractor(rightKeys),
-                        resultProjection,
-                        null,
-                        generateNullsOnLeft,
-                        generateNullsOnRight,
-                        predicate
-                );
-        EnumerableDataScanner joinedScanner = new EnumerableDataScanner(rightScanner.getTransaction(), fieldNames, columns, result, leftScanner, rightScanner);
-        return new ScanResult(resTransactionId, joinedScanner);
+        try {
+            /* both inputs are materialized, in order to know which one is smaller */
+            if (leftSize < 0) {
+                if (leftScanner.isRewindSupported()) {
+                    leftSize = countAndRewind(leftScanner);
+                } else {
+                    MaterializedRecordSet recordSet = materialize(leftScanner, recordSetFactory);
+                    leftSize = recordSet.size();
+                    SimpleDataScanner materialized = new SimpleDataScanner(leftScanner.getTransaction(), recordSet);
+                    leftScanner.close();
+                    leftScanner = materialized;
+                }
+            }
+            if (rightSize < 0) {
+                if (rightScanner.isRewindSupported()) {
+                    rightSize = countAndRewind(rightScanner);
+                } else {
+                    MaterializedRecordSet recordSet = materialize(rightScanner, recordSetFactory);
+                    rightSize = recordSet.size();
+                    SimpleDataScanner materialized = new SimpleDataScanner(rightScanner.getTransaction(), recordSet);
+                    rightScanner.close();
+                    rightScanner = materialized;
+                }
+            }
+            HashJoinDataScanner joinedScanner = new HashJoinDataScanner(rightScanner.getTransaction(),
+                    fieldNames, columns,
+                    leftScanner, leftSize, leftKeys,
+                    rightScanner, rightSize, rightKeys,
+                    resultProjection,
+                    predicate,
+                    generateNullsOnLeft,
+                    generateNullsOnRight,
+                    recordSetFactory);
+            return new ScanResult(resTransactionId, joinedScanner);
+        } catch (DataScannerException | RuntimeException err) {
+            closeQuietly(leftScanner, err);
+            closeQuietly(rightScanner, err);
+            if (err instanceof RuntimeException) {
+                throw (RuntimeException) err;
+            }
+            throw new StatementExecutionException(err);
+        }
+
+    }
+
+    private boolean matchesNonEquiConditions(DataAccessor currentRow, StatementEvaluationContext context) {
+        for (CompiledSQLExpression exp : nonEquiConditions) {
+            Object result = exp.evaluate(currentRow, context);
+            if (!SQLRecordPredicateFunctions.toBoolean(result)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    private Predicate2<DataAccessor, DataAccessor> nonEquiPredicate(
+            Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection,
+            StatementEvaluationContext context) {
+        if (nonEquiConditions == null || nonEquiConditions.isEmpty()) {
+            return null;
+        }
+        return (DataAccessor da0, DataAccessor da1) ->
+                matchesNonEquiConditions(resultProjection.apply(da0, da1), context);
+    }
+
+    private static MaterializedRecordSet materialize(DataScanner scanner, RecordSetFactory recordSetFactory) throws DataScannerException {
+        MaterializedRecordSet recordSet = recordSetFactory.createRecordSet(scanner.getFieldNames(), scanner.getSchema());
+        try {
+            scanner.forEach(recordSet::add);
+        } catch (DataScannerException | RuntimeException err) {
+            recordSet.close();
+            throw err;
+        }
+        recordSet.writeFinished();
+        return recordSet;
+    }
+
+    private static void closeQuietly(DataScanner scanner, Exception cause) {
+        try {
+            scanner.close();
+        } catch (DataScannerException | RuntimeException err) {
+            cause.addSuppressed(err);
+        }
+    }
+
+    private static int countAndRewind(DataScanner scanner) throws DataScannerException {
+        int count = 0;
+        while (scanner.hasNext()) {
+            scanner.next();
+            count++;
+        }
+        scanner.rewind();
+        return count;
     }
 
     private Function2<DataAccessor, DataAccessor, DataAccessor> resultProjection(
@@ -22,6 +22,7 @@ package herddb.model.planner;
 
 import herddb.core.HerdDBInternalException;
 import herddb.core.TableSpaceManager;
+import herddb.model.ScanResult;
 import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
@@ -98,4 +99,37 @@ public interface PlannerOp extends Wrapper {
     default boolean isSimpleStatementWrapper() {
         return false;
     }
+
+    /**
+     * This operation produces its rows in batches without creating a row at
+     * a time, so operators which read it should be executed in batch mode
+     *
+     * @return true if {@link #executeBatch} is the native way to execute
+     * this operation
+     * @see BatchScanner
+     */
+    default boolean supportsBatchExecution() {
+        return false;
+    }
+
+    /**
+     * Executes a query, producing rows in batches. The default implementation
+     * reads the rows returned by {@link #execute} into batches.
+     *
+     * @param tableSpaceManager
+     * @param transactionContext
+     * @param context
+     * @param lockRequired
+     * @param forWrite
+     * @return
+     * @throws StatementExecutionException
+     */
+    default BatchScanner executeBatch(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context, boolean lockRequired, boolean forWrite
+    ) throws StatementExecutionException {
+        ScanResult result = (ScanResult) execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite);
+        return BatchScanner.of(result);
+    }
 }
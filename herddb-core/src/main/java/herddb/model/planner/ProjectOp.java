@@ -31,6 +31,7 @@ import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.TransactionContext;
+import herddb.sql.expressions.AccessCurrentRowExpression;
 import herddb.sql.expressions.CompiledSQLExpression;
 import herddb.utils.AbstractDataAccessor;
 import herddb.utils.DataAccessor;
@@ -91,6 +92,23 @@ public class ProjectOp implements PlannerOp {
             return new RuntimeProjectedDataAccessor(tuple, context);
         }
 
+        List<CompiledSQLExpression> getFields() {
+            return fields;
+        }
+
+        @Override
+        public boolean isCoveredByColumns(int[] availableColumns) {
+            try {
+                for (CompiledSQLExpression field : fields) {
+                    // the expression cannot be remapped if it accesses a column which is not available
+                    field.remapPositionalAccessToToPrimaryKeyAccessor(availableColumns);
+                }
+                return true;
+            } catch (IllegalStateException notCovered) {
+                return false;
+            }
+        }
+
         @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
         private class RuntimeProjectedDataAccessor extends AbstractDataAccessor {
 
@@ -190,6 +208,10 @@ public class ProjectOp implements PlannerOp {
             TransactionContext transactionContext, StatementEvaluationContext context, boolean lockRequired, boolean forWrite
     ) throws StatementExecutionException {
 
+        if (!lockRequired && !forWrite && supportsBatchExecution()) {
+            return executeBatch(tableSpaceManager, transactionContext, context, lockRequired, forWrite)
+                    .toScanResult();
+        }
         // TODO merge projection + scan + sort + limit
         StatementExecutionResult input = this.input.execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite);
         ScanResult downstream = (ScanResult) input;
@@ -200,6 +222,118 @@ public class ProjectOp implements PlannerOp {
         return new ScanResult(downstream.transactionId, projected);
     }
 
+    @Override
+    public boolean supportsBatchExecution() {
+        return input.supportsBatchExecution();
+    }
+
+    @Override
+    public BatchScanner executeBatch(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext, StatementEvaluationContext context, boolean lockRequired, boolean forWrite
+    ) throws StatementExecutionException {
+        BatchScanner inputBatches = input.executeBatch(tableSpaceManager, transactionContext, context, lockRequired, forWrite);
+        return new ProjectedBatchScanner(inputBatches, context);
+    }
+
+    /**
+     * Projection in batch mode: columns which are copies of input columns
+     * share the vectors of the input batch, only the other ones are computed
+     */
+    private class ProjectedBatchScanner extends BatchScanner {
+
+        final BatchScanner downstream;
+        final StatementEvaluationContext context;
+        /* for every column, the input column it is a copy of, or -1 if it is computed */
+        final int[] sourceColumns;
+        /* expressions of the computed columns, null if values are computed by the projection */
+        final CompiledSQLExpression[] expressions;
+        RowBatch current;
+        RowBatch projected;
+        RowBatch.RowView view;
+
+        ProjectedBatchScanner(BatchScanner downstream, StatementEvaluationContext context) {
+            super(downstream, projection.getFieldNames(), projection.getColumns());
+            this.downstream = downstream;
+            this.context = context;
+            int numColumns = projection.getFieldNames().length;
+            this.sourceColumns = new int[numColumns];
+            this.expressions = new CompiledSQLExpression[numColumns];
+            for (int i = 0; i < numColumns; i++) {
+                if (projection instanceof IdentityProjection) {
+                    sourceColumns[i] = i;
+                } else if (projection instanceof ZeroCopyProjection) {
+                    sourceColumns[i] = ((ZeroCopyProjection) projection).mapPosition(i);
+                } else if (projection instanceof BasicProjection) {
+                    CompiledSQLExpression field = ((BasicProjection) projection).getFields().get(i);
+                    if (field instanceof AccessCurrentRowExpression) {
+                        sourceColumns[i] = ((AccessCurrentRowExpression) field).getIndex();
+                    } else {
+                        sourceColumns[i] = -1;
+                        expressions[i] = field;
+                    }
+                } else {
+                    sourceColumns[i] = -1;
+                }
+            }
+        }
+
+        @Override
+        public RowBatch nextBatch() throws DataScannerException {
+            RowBatch batch = downstream.nextBatch();
+            if (batch == null) {
+                return null;
+            }
+            if (batch != current) {
+                current = batch;
+                view = batch.newRowView();
+                ColumnVector[] vectors = new ColumnVector[sourceColumns.length];
+                Column[] columns = projection.getColumns();
+                for (int i = 0; i < vectors.length; i++) {
+                    vectors[i] = sourceColumns[i] >= 0
+                            ? batch.vectors[sourceColumns[i]]
+                            : new ColumnVector(columns != null ? columns[i] : null, batch.capacity);
+                }
+                projected = new RowBatch(projection.getFieldNames(), columns, vectors, batch.capacity);
+            }
+            projected.select(batch);
+            int[] positions = batch.positions;
+            for (int i = 0; i < sourceColumns.length; i++) {
+                if (sourceColumns[i] < 0) {
+                    projected.vectors[i].reset();
+                }
+            }
+            for (int r = 0; r < batch.size; r++) {
+                int position = positions[r];
+                view.position = position;
+                DataAccessor mapped = null;
+                for (int i = 0; i < sourceColumns.length; i++) {
+                    if (sourceColumns[i] >= 0) {
+                        continue;
+                    }
+                    Object value;
+                    if (expressions[i] != null) {
+                        value = expressions[i].evaluate(view, context);
+                    } else {
+                        if (mapped == null) {
+                            mapped = projection.map(view, context);
+                        }
+                        value = mapped.get(i);
+                    }
+                    projected.vectors[i].set(position, value);
+                }
+            }
+            return projected;
+        }
+
+        @Override
+        public void close() throws DataScannerException {
+            current = null;
+            projected = null;
+            downstream.close();
+        }
+    }
+
     @SuppressFBWarnings({"EI_EXPOSE_REP2", "EI_EXPOSE_REP"})
     public static class IdentityProjection implements Projection {
 
@@ -225,6 +359,16 @@ public class ProjectOp implements PlannerOp {
         public DataAccessor map(DataAccessor tuple, StatementEvaluationContext context) throws StatementExecutionException {
             return tuple;
         }
+
+        @Override
+        public boolean isCoveredByColumns(int[] availableColumns) {
+            for (int column : availableColumns) {
+                if (column < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     @SuppressFBWarnings({"EI_EXPOSE_REP2", "EI_EXPOSE_REP"})
@@ -259,6 +403,16 @@ public class ProjectOp implements PlannerOp {
             return zeroCopyProjections[field];
         }
 
+        @Override
+        public boolean isCoveredByColumns(int[] availableColumns) {
+            for (int column : zeroCopyProjections) {
+                if (availableColumns[column] < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
         public class RuntimeProjectedDataAccessor extends AbstractDataAccessor {
 
@@ -76,6 +76,11 @@ public class ProjectedTableScanOp implements PlannerOp {
         return true;
     }
 
+    @Override
+    public boolean supportsBatchExecution() {
+        return BatchScanner.ENABLED;
+    }
+
     @Override
     public String toString() {
         return "ProjectedTableScanOp{" + "statement=" + statement + '}';
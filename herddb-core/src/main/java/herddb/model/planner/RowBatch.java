@@ -0,0 +1,225 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.model.planner;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.model.Column;
+import herddb.utils.AbstractDataAccessor;
+import herddb.utils.DataAccessor;
+
+/**
+ * A batch of rows, stored by column.
+ * <p>
+ * Rows of the batch are the entries of the column vectors at the given
+ * positions: filters drop rows by removing their positions, without copying
+ * values, and projections share the vectors of the columns they do not
+ * compute. A batch, and its vectors, are reused by the operator which
+ * produced it, so they are valid only until the next batch is requested.
+ * </p>
+ */
+@SuppressFBWarnings({"EI_EXPOSE_REP2", "EI_EXPOSE_REP"})
+public final class RowBatch {
+
+    final String[] fieldNames;
+    final Column[] columns;
+    final ColumnVector[] vectors;
+    /* rows the values of the vectors are decoded from, null if the vectors are computed */
+    final DataAccessor[] rows;
+    final int capacity;
+    /* positions of the rows in the vectors, in ascending order */
+    int[] positions;
+    int size;
+
+    RowBatch(String[] fieldNames, Column[] columns, int capacity) {
+        this.fieldNames = fieldNames;
+        this.columns = columns;
+        this.capacity = capacity;
+        this.rows = new DataAccessor[capacity];
+        this.vectors = new ColumnVector[fieldNames.length];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new ColumnVector(columns != null ? columns[i] : null, capacity, rows, i);
+        }
+        this.positions = new int[capacity];
+    }
+
+    /**
+     * A batch made of the given vectors, rows are set with
+     * {@link #select(herddb.model.planner.RowBatch)}
+     */
+    RowBatch(String[] fieldNames, Column[] columns, ColumnVector[] vectors, int capacity) {
+        this.fieldNames = fieldNames;
+        this.columns = columns;
+        this.vectors = vectors;
+        this.rows = null;
+        this.capacity = capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+        for (ColumnVector vector : vectors) {
+            vector.reset();
+        }
+    }
+
+    /**
+     * Appends a row, the batch must not be full. Values are decoded only
+     * when a column is read, see {@link #vector(int)}
+     */
+    void add(DataAccessor row) {
+        int position = size;
+        rows[position] = row;
+        positions[size++] = position;
+    }
+
+    /**
+     * Uses the rows of another batch, whose vectors have the same capacity
+     */
+    void select(RowBatch other) {
+        this.positions = other.positions;
+        this.size = other.size;
+    }
+
+    /**
+     * Values of a column, decoded for the rows of the batch
+     */
+    ColumnVector vector(int column) {
+        ColumnVector vector = vectors[column];
+        vector.decode(positions, size);
+        return vector;
+    }
+
+    Object get(int row, int column) {
+        return vector(column).get(positions[row]);
+    }
+
+    /**
+     * Returns a row, the result is still valid after the batch is reused.
+     * Rows read from a scan are returned as they are, rows with computed
+     * values are copied.
+     */
+    DataAccessor getRow(int row) {
+        int position = positions[row];
+        if (rows != null) {
+            return rows[position];
+        }
+        Object[] values = new Object[vectors.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = vector(i).get(position);
+        }
+        return new CopiedRow(fieldNames, values);
+    }
+
+    /**
+     * A row copied out of a batch, fields are looked up by name ignoring the
+     * case, as on the rows of a projection executed row by row
+     */
+    private static final class CopiedRow extends AbstractDataAccessor {
+
+        private final String[] fieldNames;
+        private final Object[] values;
+
+        CopiedRow(String[] fieldNames, Object[] values) {
+            this.fieldNames = fieldNames;
+            this.values = values;
+        }
+
+        @Override
+        public String[] getFieldNames() {
+            return fieldNames;
+        }
+
+        @Override
+        public Object get(String property) {
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (fieldNames[i].equalsIgnoreCase(property)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int getNumFields() {
+            return fieldNames.length;
+        }
+
+        @Override
+        public Object[] getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * A view on one row of the batch, used to evaluate expressions which are
+     * not vectorized. The view is moved from row to row, so it must not be
+     * retained.
+     */
+    final class RowView extends AbstractDataAccessor {
+
+        int position;
+
+        @Override
+        public String[] getFieldNames() {
+            return fieldNames;
+        }
+
+        @Override
+        public Object get(String property) {
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (fieldNames[i].equalsIgnoreCase(property)) {
+                    return vector(i).get(position);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object get(int index) {
+            return vector(index).get(position);
+        }
+
+        @Override
+        public int getNumFields() {
+            return fieldNames.length;
+        }
+
+        @Override
+        public Object[] getValues() {
+            Object[] values = new Object[vectors.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = vector(i).get(position);
+            }
+            return values;
+        }
+    }
+
+    RowView newRowView() {
+        return new RowView();
+    }
+}
@@ -66,6 +66,24 @@ public abstract class SimpleScanOp implements PlannerOp {
         return true;
     }
 
+    @Override
+    public boolean supportsBatchExecution() {
+        return BatchScanner.ENABLED;
+    }
+
+    @Override
+    public BatchScanner executeBatch(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context, boolean lockRequired, boolean forWrite
+    ) throws StatementExecutionException {
+        // records are grouped into batches as they are read, each column is decoded
+        // only when it is accessed the first time, see ColumnVector
+        DataScanner scan = tableSpaceManager.scan(statement, context, transactionContext, lockRequired, forWrite);
+        return BatchScanner.of(new ScanResult(scan.getTransactionId(), scan),
+                tableSpaceManager.getTableManager(statement.getTable()));
+    }
+
     @Override
     public StatementExecutionResult execute(
             TableSpaceManager tableSpaceManager,
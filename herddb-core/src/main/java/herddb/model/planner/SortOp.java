@@ -55,6 +55,7 @@ public class SortOp implements PlannerOp, TupleComparator {
     private final boolean[] nullLastDirections;
     private final int[] fields;
     private boolean onlyPrimaryKeyAndAscending;
+    private String sortColumn;
 
     public SortOp(PlannerOp input, boolean[] directions, int[] fields, boolean[] nullLastDirections) {
         this.input = input.optimize();
@@ -102,60 +103,60 @@ public class SortOp implements PlannerOp, TupleComparator {
             // we can change the statement, this node will be lost and the tablescan too
             ScanStatement statement = op.getStatement();
             statement.setComparator(this);
-
-            if (fields.length == 1 && directions[0]) {
-                Table tableDef = statement.getTableDef();
-                if (tableDef.getPrimaryKey().length == 1) {
-                    if (statement.getProjection() != null && statement.getProjection() instanceof ZeroCopyProjection) {
-                        ZeroCopyProjection zeroCopyProjection = (ZeroCopyProjection) statement.getProjection();
-                        int index = zeroCopyProjection.mapPosition(fields[0]);
-                        Column col = tableDef.resolveColumName(index);
-                        if (col.name.equals(tableDef.getPrimaryKey()[0])) {
-                            this.onlyPrimaryKeyAndAscending = true;
-                        }
-                    } else if (statement.getProjection() != null && statement.getProjection() instanceof IdentityProjection) {
-                        Column col = tableDef.resolveColumName(fields[0]);
-                        if (col.name.equals(tableDef.getPrimaryKey()[0])) {
-                            this.onlyPrimaryKeyAndAscending = true;
-                        }
-                    }
-                }
-            }
+            resolveSortColumn(statement);
             return new SortedBindableTableScanOp(statement);
         } else if (input instanceof TableScanOp) {
             TableScanOp op = (TableScanOp) input;
             // we can change the statement, this node will be lost and the tablescan too
             ScanStatement statement = op.getStatement();
             statement.setComparator(this);
-
-            if (fields.length == 1 && directions[0]) {
-                Table tableDef = statement.getTableDef();
-                if (tableDef.getPrimaryKey().length == 1) {
-                    if (statement.getProjection() != null && statement.getProjection() instanceof ZeroCopyProjection) {
-                        ZeroCopyProjection zeroCopyProjection = (ZeroCopyProjection) statement.getProjection();
-                        int index = zeroCopyProjection.mapPosition(fields[0]);
-                        Column col = tableDef.resolveColumName(index);
-                        if (col.name.equals(tableDef.getPrimaryKey()[0])) {
-                            this.onlyPrimaryKeyAndAscending = true;
-                        }
-                    } else if (statement.getProjection() != null && statement.getProjection() instanceof IdentityProjection) {
-                        Column col = tableDef.resolveColumName(fields[0]);
-                        if (col.name.equals(tableDef.getPrimaryKey()[0])) {
-                            this.onlyPrimaryKeyAndAscending = true;
-                        }
-                    }
-                }
-            }
+            resolveSortColumn(statement);
             return new SortedTableScanOp(statement);
         }
         return this;
     }
 
+    /**
+     * Looks for the column of the table on which rows are sorted, so that the
+     * table can return them in the order of the primary key or of a secondary
+     * index
+     */
+    private void resolveSortColumn(ScanStatement statement) {
+        if (fields.length != 1) {
+            return;
+        }
+        Table tableDef = statement.getTableDef();
+        Column col;
+        if (statement.getProjection() != null && statement.getProjection() instanceof ZeroCopyProjection) {
+            ZeroCopyProjection zeroCopyProjection = (ZeroCopyProjection) statement.getProjection();
+            col = tableDef.resolveColumName(zeroCopyProjection.mapPosition(fields[0]));
+        } else if (statement.getProjection() != null && statement.getProjection() instanceof IdentityProjection) {
+            col = tableDef.resolveColumName(fields[0]);
+        } else {
+            return;
+        }
+        this.sortColumn = col.name;
+        if (directions[0] && tableDef.getPrimaryKey().length == 1
+                && col.name.equals(tableDef.getPrimaryKey()[0])) {
+            this.onlyPrimaryKeyAndAscending = true;
+        }
+    }
+
     @Override
     public boolean isOnlyPrimaryKeyAndAscending() {
         return onlyPrimaryKeyAndAscending;
     }
 
+    @Override
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    @Override
+    public boolean isSortAscending() {
+        return directions.length == 0 || directions[0];
+    }
+
     @Override
     @SuppressFBWarnings("RV_NEGATING_RESULT_OF_COMPARETO")
     public int compare(DataAccessor o1, DataAccessor o2) {
@@ -228,7 +229,7 @@ public class SortOp implements PlannerOp, TupleComparator {
 
     @Override
     public String toString() {
-        return "SortOp{fields=" + Arrays.toString(fields) + ", dirs=" + Arrays.toString(directions) + ",nullDirs=" + Arrays.toString(nullLastDirections) + ", onlyPrimaryKeyAndAscending=" + onlyPrimaryKeyAndAscending + '}';
+        return "SortOp{fields=" + Arrays.toString(fields) + ", dirs=" + Arrays.toString(directions) + ",nullDirs=" + Arrays.toString(nullLastDirections) + ", onlyPrimaryKeyAndAscending=" + onlyPrimaryKeyAndAscending + ", sortColumn=" + sortColumn + '}';
     }
 
 }
@@ -215,9 +215,12 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
         }
 
         this.commitLogManager = buildCommitLogManager();
+        DataStorageManager dataStorageManager = buildDataStorageManager(nodeId);
+        dataStorageManager.setOffHeapKeyToPageIndex(configuration.getBoolean(ServerConfiguration.PROPERTY_KEYTOPAGE_USE_OFFHEAP, ServerConfiguration.PROPERTY_KEYTOPAGE_USE_OFFHEAP_DEFAULT));
+        dataStorageManager.setOffHeapKeyToPageLeaves(configuration.getBoolean(ServerConfiguration.PROPERTY_KEYTOPAGE_USE_OFFHEAP_LEAVES, ServerConfiguration.PROPERTY_KEYTOPAGE_USE_OFFHEAP_LEAVES_DEFAULT));
         this.manager = new DBManager(nodeId,
                 metadataStorageManager,
-                buildDataStorageManager(nodeId),
+                dataStorageManager,
                 commitLogManager,
                 tmpDirectory, serverHostData, configuration, statsLogger
         );
@@ -293,6 +296,13 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                 ServerConfiguration.PROPERTY_NETWORK_WORKER_THREADS_DEFAULT);
         acceptor.setCallbackThreads(callbackThreads);
         acceptor.setWorkerThreads(workerThreads);
+        acceptor.setCallbackAffinity(configuration.getBoolean(
+                ServerConfiguration.PROPERTY_NETWORK_CALLBACK_AFFINITY,
+                ServerConfiguration.PROPERTY_NETWORK_CALLBACK_AFFINITY_DEFAULT));
+        if (configuration.getBoolean(ServerConfiguration.PROPERTY_NETWORK_INLINE_SHORT_REQUESTS,
+                ServerConfiguration.PROPERTY_NETWORK_INLINE_SHORT_REQUESTS_DEFAULT)) {
+            acceptor.setInlineRequests(ServerSideConnectionPeer::isShortRequest);
+        }
 
         return acceptor;
     }
@@ -323,10 +333,11 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                 int diskswapThreshold = configuration.getInt(ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS, ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT);
                 boolean requirefsync = configuration.getBoolean(ServerConfiguration.PROPERTY_REQUIRE_FSYNC, ServerConfiguration.PROPERTY_REQUIRE_FSYNC_DEFAULT);
                 boolean pageodirect = configuration.getBoolean(ServerConfiguration.PROPERTY_PAGE_USE_ODIRECT, ServerConfiguration.PROPERTY_PAGE_USE_ODIRECT_DEFAULT);
+                boolean pagemmap = configuration.getBoolean(ServerConfiguration.PROPERTY_PAGE_USE_MMAP, ServerConfiguration.PROPERTY_PAGE_USE_MMAP_DEFAULT);
                 boolean indexodirect = configuration.getBoolean(ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT, ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT_DEFAULT);
                 boolean hashChecksEnabled = configuration.getBoolean(ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED, ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED_DEFAULT);
                 boolean hashWritesEnabled = configuration.getBoolean(ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED, ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED_DEFAULT);
-                return new FileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, pageodirect, indexodirect, hashChecksEnabled, hashWritesEnabled, statsLogger);
+                return new FileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, pageodirect, pagemmap, indexodirect, hashChecksEnabled, hashWritesEnabled, statsLogger);
             }
             case ServerConfiguration.PROPERTY_MODE_DISKLESSCLUSTER: {
                 int diskswapThreshold = configuration.getInt(ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS, ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT);
@@ -353,6 +364,7 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                         configuration.getBoolean(ServerConfiguration.PROPERTY_REQUIRE_FSYNC, ServerConfiguration.PROPERTY_REQUIRE_FSYNC_DEFAULT),
                         configuration.getBoolean(ServerConfiguration.PROPERTY_TXLOG_USE_ODIRECT, ServerConfiguration.PROPERTY_TXLOG_USE_ODIRECT_DEFAULT),
                         configuration.getInt(ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD, ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT),
+                        configuration.getBoolean(ServerConfiguration.PROPERTY_TXLOG_GROUP_COMMIT, ServerConfiguration.PROPERTY_TXLOG_GROUP_COMMIT_DEFAULT),
                         statsLogger.scope("txlog")
                 );
             case ServerConfiguration.PROPERTY_MODE_CLUSTER:
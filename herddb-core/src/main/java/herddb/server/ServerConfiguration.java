@@ -81,6 +81,13 @@ public final class ServerConfiguration {
     public static final String PROPERTY_TXLOG_USE_ODIRECT = "txlog.use_o_direct";
     public static final boolean PROPERTY_TXLOG_USE_ODIRECT_DEFAULT = USE_O_DIRECT_DEFAULT;
 
+    /**
+     * Pipelined group commit: a batch is written while the previous one is being fsync'd and log files are
+     * preallocated
+     */
+    public static final String PROPERTY_TXLOG_GROUP_COMMIT = "txlog.groupcommit";
+    public static final boolean PROPERTY_TXLOG_GROUP_COMMIT_DEFAULT = false;
+
     public static final String PROPERTY_MAX_LOG_FILE_SIZE = "txlog.maxfilesize";
     public static final long PROPERTY_MAX_LOG_FILE_SIZE_DEFAULT = 64L * 1024L * 1024L;
 
@@ -91,6 +98,26 @@ public final class ServerConfiguration {
     public static final String PROPERTY_PAGE_USE_ODIRECT = "page.use_o_direct";
     public static final boolean PROPERTY_PAGE_USE_ODIRECT_DEFAULT = USE_O_DIRECT_DEFAULT;
 
+    /**
+     * Memory map immutable data pages and read records in place instead of copying them on the heap
+     */
+    public static final String PROPERTY_PAGE_USE_MMAP = "page.use_mmap";
+    public static final boolean PROPERTY_PAGE_USE_MMAP_DEFAULT = false;
+
+    /**
+     * Keep the primary key index of tables out of the Java heap, the index is rebuilt at boot with a full
+     * scan of the table
+     */
+    public static final String PROPERTY_KEYTOPAGE_USE_OFFHEAP = "keytopage.use_offheap";
+    public static final boolean PROPERTY_KEYTOPAGE_USE_OFFHEAP_DEFAULT = false;
+
+    /**
+     * Keep the entries of the leaves of the paged primary key index out of the Java heap, as raw key bytes
+     * and primitive page ids, while loaded in memory
+     */
+    public static final String PROPERTY_KEYTOPAGE_USE_OFFHEAP_LEAVES = "keytopage.use_offheap_leaves";
+    public static final boolean PROPERTY_KEYTOPAGE_USE_OFFHEAP_LEAVES_DEFAULT = false;
+
     public static final String PROPERTY_INDEX_USE_ODIRECT = "index.use_o_direct";
     public static final boolean PROPERTY_INDEX_USE_ODIRECT_DEFAULT = USE_O_DIRECT_DEFAULT;
 
@@ -102,6 +129,14 @@ public final class ServerConfiguration {
     public static final String PROPERTY_HASH_WRITES_ENABLED = "server.filedatastorage.writehash";
     public static final boolean PROPERTY_HASH_WRITES_ENABLED_DEFAULT = true;
 
+    /**
+     * Block compression codec for data pages: "none", "lz4" or "lz4hc". The value can be overridden for a
+     * tablespace using "server.page.compression.TABLESPACENAME" and for a single table using
+     * "server.page.compression.TABLESPACENAME.TABLENAME". Pages written with any codec are always readable.
+     */
+    public static final String PROPERTY_PAGE_COMPRESSION = "server.page.compression";
+    public static final String PROPERTY_PAGE_COMPRESSION_DEFAULT = "none";
+
     public static final String PROPERTY_TMPDIR = "server.tmp.dir";
     public static final String PROPERTY_TMPDIR_DEFAULT = "tmp";
     public static final String PROPERTY_METADATADIR = "server.metadata.dir";
@@ -123,6 +158,25 @@ public final class ServerConfiguration {
     public static final String PROPERTY_NETWORK_WORKER_THREADS = "server.network.thread.workers";
     public static final int PROPERTY_NETWORK_WORKER_THREADS_DEFAULT = 16;
 
+    /**
+     * Execute the requests coming from the same connection one at a time and
+     * in the order they were received, using a serial queue on the shared
+     * pool of callback threads. A statement which waits for a row lock delays
+     * the following requests of its connection but holds only one thread of
+     * the pool, so the other connections, for instance the one which is going
+     * to COMMIT the transaction holding the lock, are not blocked.
+     */
+    public static final String PROPERTY_NETWORK_CALLBACK_AFFINITY = "server.network.thread.callback.affinity";
+    public static final boolean PROPERTY_NETWORK_CALLBACK_AFFINITY_DEFAULT = false;
+
+    /**
+     * Execute short requests (see {@link ServerSideConnectionPeer#isShortRequest(herddb.proto.Pdu)}),
+     * which never wait, like the release of scanners, directly on the network
+     * event loop
+     */
+    public static final String PROPERTY_NETWORK_INLINE_SHORT_REQUESTS = "server.network.thread.inline.short.requests";
+    public static final boolean PROPERTY_NETWORK_INLINE_SHORT_REQUESTS_DEFAULT = false;
+
     public static final String PROPERTY_ASYNC_WORKER_THREADS = "server.async.thread.workers";
     public static final int PROPERTY_ASYNC_WORKER_THREADS_DEFAULT = 64;
 
@@ -157,6 +211,15 @@ public final class ServerConfiguration {
     public static final String PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT = "server.boot.force.download.snapshot";
     public static final boolean PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT_DEFAULT = false;
 
+    /**
+     * Number of threads used at boot to load tables and indexes and to
+     * replay the transaction log. Entries of different tables are applied
+     * concurrently, entries of the same table are applied in log order. With
+     * 1 recovery runs on the booting thread. By default, the value is 1.
+     */
+    public static final String PROPERTY_RECOVERY_THREADS = "server.recovery.threads";
+    public static final int PROPERTY_RECOVERY_THREADS_DEFAULT = 1;
+
     public static final String PROPERTY_CHECKPOINT_PERIOD = "server.checkpoint.period";
     public static final long PROPERTY_CHECKPOINT_PERIOD_DEFAULT = 1000L * 60 * 15;
 
@@ -194,6 +257,45 @@ public final class ServerConfiguration {
     public static final String PROPERTY_CHECKPOINT_DURATION = "server.checkpoint.duration";
     public static final long PROPERTY_CHECKPOINT_DURATION_DEFAULT = -1;
 
+    /**
+     * Incremental checkpoint: the tablespace is locked exclusively only to take
+     * the snapshot of transactions and to write the final checkpoint metadata.
+     * Tables are checkpointed one at a time while other tables accept writes,
+     * each table checkpoint is bounded by {@link #PROPERTY_CHECKPOINT_DURATION}
+     * which is the deadline of the whole tablespace checkpoint. Dirty pages
+     * which are not cleaned within the deadline are left to the next
+     * checkpoint. By default, the value is false.
+     */
+    public static final String PROPERTY_CHECKPOINT_INCREMENTAL = "server.checkpoint.incremental";
+    public static final boolean PROPERTY_CHECKPOINT_INCREMENTAL_DEFAULT = false;
+
+    /**
+     * Number of threads used to checkpoint tables (and their indexes)
+     * concurrently. The pool is shared by all the tablespaces so it is also
+     * the limit of concurrent checkpoint I/O. With 1 tables are checkpointed
+     * one after another on the checkpoint thread. By default, the value is 1.
+     */
+    public static final String PROPERTY_CHECKPOINT_THREADS = "server.checkpoint.threads";
+    public static final int PROPERTY_CHECKPOINT_THREADS_DEFAULT = 1;
+
+    /**
+     * Number of threads used to scan a single table when a query has to read
+     * the whole table. Records are split into partitions which are filtered,
+     * projected and (for aggregations) pre-aggregated concurrently, the pool is
+     * shared by all the queries. With 1 every scan runs on the thread which
+     * executes the query. By default, the value is 1.
+     */
+    public static final String PROPERTY_SCAN_PARALLELISM = "server.scan.parallelism";
+    public static final int PROPERTY_SCAN_PARALLELISM_DEFAULT = 1;
+
+    /**
+     * Minimum number of records of a table in order to scan it in parallel,
+     * smaller tables are scanned on the thread which executes the query. By
+     * default, the value is 100000.
+     */
+    public static final String PROPERTY_SCAN_PARALLEL_MIN_RECORDS = "server.scan.parallel.min.records";
+    public static final long PROPERTY_SCAN_PARALLEL_MIN_RECORDS_DEFAULT = 100_000;
+
     /**
      * Maximum target time in milliseconds to spend during standard checkpoint
      * operations on clening dirty pages. Is should be less than the
@@ -280,6 +382,13 @@ public final class ServerConfiguration {
     public static final String PROPERTY_MAX_PK_MEMORY = "server.memory.pk.limit";
     public static final long PROPERTY_MAX_PK_MEMORY_DEFAULT = 0L;
 
+    /**
+     * Maximum amount of direct memory used to keep unloaded data pages, in
+     * order to load them again without accessing the disk. 0 disables the cache
+     */
+    public static final String PROPERTY_MAX_PAGE_CACHE_OFFHEAP_MEMORY = "server.memory.pagecache.offheap.limit";
+    public static final long PROPERTY_MAX_PAGE_CACHE_OFFHEAP_MEMORY_DEFAULT = 0L;
+
     public static final String PROPERTY_JMX_ENABLE = "server.jmx.enable";
     public static final boolean PROPERTY_JMX_ENABLE_DEFAULT = true;
 
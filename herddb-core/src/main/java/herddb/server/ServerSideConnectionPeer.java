@@ -27,12 +27,16 @@ import herddb.backup.DumpedLogEntry;
 import herddb.client.ClientConfiguration;
 import herddb.codec.RecordSerializer;
 import herddb.core.HerdDBInternalException;
+import herddb.core.AbstractTableManager;
 import herddb.core.RunningStatementInfo;
 import herddb.core.RunningStatementsStats;
 import herddb.core.TableManager;
 import herddb.core.TableSpaceManager;
 import herddb.core.stats.ConnectionsInfo;
 import herddb.log.LogSequenceNumber;
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.model.ConstValueRecordFunction;
 import herddb.model.DDLStatementExecutionResult;
 import herddb.model.DMLStatementExecutionResult;
 import herddb.model.DataConsistencyStatementResult;
@@ -50,11 +54,15 @@ import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.Table;
 import herddb.model.TableAwareStatement;
+import herddb.model.TableDoesNotExistException;
 import herddb.model.Transaction;
 import herddb.model.TransactionContext;
 import herddb.model.TransactionResult;
 import herddb.model.commands.BeginTransactionStatement;
 import herddb.model.commands.CommitTransactionStatement;
+import herddb.model.commands.DeleteStatement;
+import herddb.model.commands.GetStatement;
+import herddb.model.commands.InsertStatement;
 import herddb.model.commands.RollbackTransactionStatement;
 import herddb.model.commands.SQLPlannedOperationStatement;
 import herddb.model.commands.ScanStatement;
@@ -71,6 +79,7 @@ import herddb.utils.TuplesList;
 import io.netty.buffer.ByteBuf;
 import java.io.EOFException;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -130,6 +139,26 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         return id;
     }
 
+    /**
+     * Short requests, which can be executed directly on the network event loop
+     * when {@link ServerConfiguration#PROPERTY_NETWORK_INLINE_SHORT_REQUESTS}
+     * is enabled. Only requests which never wait are accepted, that is the
+     * release of a scanner. Every other request, even a read by primary key,
+     * may wait for the locks of the tablespace and of the table or for a page
+     * to be loaded from disk, so it is always executed by the callback executor.
+     *
+     * @param message
+     * @return true if the request can be executed on the current thread
+     */
+    public static boolean isShortRequest(Pdu message) {
+        switch (message.type) {
+            case Pdu.TYPE_CLOSESCANNER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @Override
     public void requestReceived(Pdu message, Channel channel) {
         // message is handled by current thread
@@ -147,6 +176,15 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                     handleExecuteStatement(message, channel);
                 }
                 break;
+                case Pdu.TYPE_KEY_VALUE_OPERATION: {
+                    if (!authenticated) {
+                        sendAuthRequiredError(channel, message);
+                        break;
+                    }
+                    releaseMessageSync = false;
+                    handleKeyValueOperation(message, channel);
+                }
+                break;
                 case Pdu.TYPE_PREPARE_STATEMENT: {
                     if (!authenticated) {
                         sendAuthRequiredError(channel, message);
@@ -199,6 +237,14 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                     handleFetchScannerData(message, channel);
                 }
                 break;
+                case Pdu.TYPE_STREAMSCANNERDATA: {
+                    if (!authenticated) {
+                        sendAuthRequiredError(channel, message);
+                        break;
+                    }
+                    handleStreamScannerData(message, channel);
+                }
+                break;
                 case Pdu.TYPE_CLOSESCANNER: {
                     if (!authenticated) {
                         sendAuthRequiredError(channel, message);
@@ -442,6 +488,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         for (int i = 0; i < parametersReader.getNumParams(); i++) {
             parameters.add(parametersReader.nextObject());
         }
+        boolean columnar = PduCodec.OpenScanner.readColumnarFormat(message);
         if (LOGGER.isLoggable(Level.FINER)) {
             LOGGER.log(Level.FINER, "openScanner txId+" + txId + ", fetchSize " + fetchSize + ", maxRows " + maxRows + "," + query + " with " + parameters);
         }
@@ -465,7 +512,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                 ScanResult scanResult = (ScanResult) server.getManager().executePlan(translatedQuery.plan, translatedQuery.context, transactionContext);
                 DataScanner dataScanner = scanResult.dataScanner;
 
-                ServerSideScannerPeer scanner = new ServerSideScannerPeer(dataScanner);
+                ServerSideScannerPeer scanner = new ServerSideScannerPeer(dataScanner, columnar);
 
                 String[] columns = dataScanner.getFieldNames();
                 List<DataAccessor> records = dataScanner.consume(fetchSize);
@@ -478,7 +525,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                     scanners.put(scannerId, scanner);
                 }
                 try {
-                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId());
+                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId(), columnar);
                     channel.sendReplyMessage(message.messageId, result);
                 } catch (HerdDBInternalException err) {
                     // do not leak an unserializable scanner
@@ -530,7 +577,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                 }
 //                        LOGGER.log(Level.SEVERE, "sending " + converted.size() + " records to scanner " + scannerId);
                 try {
-                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId());
+                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId(), scanner.isColumnar());
                     channel.sendReplyMessage(message.messageId, result);
                 } catch (HerdDBInternalException err) {
                     // do not leak an unserializable scanner
@@ -551,6 +598,95 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
     }
 
+    private void handleStreamScannerData(Pdu message, Channel channel) {
+        long scannerId = PduCodec.StreamScannerData.readScannerId(message);
+        int fetchSize = PduCodec.StreamScannerData.readFetchSize(message);
+        int credit = PduCodec.StreamScannerData.readCredit(message);
+        boolean start = PduCodec.StreamScannerData.readIsStart(message);
+        if (fetchSize <= 0) {
+            fetchSize = 10;
+        }
+        ServerSideScannerPeer scanner = scanners.get(scannerId);
+        if (start) {
+            if (scanner == null) {
+                ByteBuf error = PduCodec.ErrorResponse.write(message.messageId, "no such scanner " + scannerId);
+                channel.sendReplyMessage(message.messageId, error);
+                return;
+            }
+            scanner.startStreaming(fetchSize);
+            channel.sendReplyMessage(message.messageId, PduCodec.AckResponse.write(message.messageId));
+        } else if (scanner == null) {
+            // the scanner is already finished, or closed, no reply for credit grants
+            return;
+        }
+        scanner.addCredit(credit);
+        streamScannerData(scannerId, scanner, channel);
+    }
+
+    /**
+     * Push chunks of data to the client as long as it has got credit. Chunks
+     * are numbered because the client may process them in a different order
+     */
+    private void streamScannerData(long scannerId, ServerSideScannerPeer scanner, Channel channel) {
+        while (scanner.acquirePusher()) {
+            try {
+                while (scanner.takeCredit()) {
+                    if (!pushScannerData(scannerId, scanner, channel)) {
+                        return;
+                    }
+                }
+            } finally {
+                scanner.releasePusher();
+            }
+        }
+    }
+
+    private boolean pushScannerData(long scannerId, ServerSideScannerPeer scanner, Channel channel) {
+        synchronized (scanner) {
+            if (scanner.isClosed()) {
+                return false;
+            }
+            int sequence = scanner.nextSequence();
+            try {
+                DataScanner dataScanner = scanner.getScanner();
+                List<DataAccessor> records = dataScanner.consume(scanner.getStreamingFetchSize());
+                String[] columns = dataScanner.getFieldNames();
+                TuplesList tuplesList = new TuplesList(columns, records);
+
+                boolean last = false;
+                if (dataScanner.isFinished()) {
+                    LOGGER.log(Level.FINEST, "unregistering scanner {0}, resultset is finished", scannerId);
+                    scanners.remove(scannerId);
+                    last = true;
+                }
+                ByteBuf chunk = PduCodec.PushResultSetChunk.write(channel.generateRequestId(), scannerId, sequence,
+                        tuplesList, last, dataScanner.getTransactionId(), scanner.isColumnar());
+                channel.sendOneWayMessage(chunk, (Throwable error) -> {
+                    if (error != null) {
+                        LOGGER.log(Level.SEVERE, "Cannot push data of scanner " + scannerId + " to " + channel, error);
+                    }
+                });
+                if (last) {
+                    scanner.close();
+                }
+                return !last;
+            } catch (DataScannerException | RuntimeException err) {
+                // the client waits for the chunk, so every error, even the ones
+                // about data which cannot be serialized, is sent as an error chunk
+                LOGGER.log(Level.SEVERE, "error on scanner " + scannerId + ": " + err, err);
+                scanners.remove(scannerId);
+                scanner.close();
+                ByteBuf error = PduCodec.PushResultSetChunk.writeError(channel.generateRequestId(), scannerId, sequence, err.toString());
+                channel.sendOneWayMessage(error, (Throwable sendError) -> {
+                    if (sendError != null) {
+                        LOGGER.log(Level.SEVERE, "Cannot push error of scanner " + scannerId + " to " + channel, sendError);
+                    }
+                });
+                return false;
+            }
+        }
+    }
+
     private void handleCloseScanner(Pdu message, Channel channel) {
         long scannerId = PduCodec.CloseScanner.readScannerId(message);
         ServerSideScannerPeer removed = scanners.remove(scannerId);
@@ -751,23 +887,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
             try {
                 runningStatements.unregisterRunningStatement(statementInfo);
                 if (err != null) {
-                    while (err instanceof CompletionException) {
-                        err = err.getCause();
-                    }
-                    if (err instanceof DuplicatePrimaryKeyException) {
-                        ByteBuf error = PduCodec.ErrorResponse.writeSqlIntegrityConstraintsViolation(message.messageId, new SQLIntegrityConstraintViolationException(err));
-                        channel.sendReplyMessage(message.messageId, error);
-                    } else if (err instanceof NotLeaderException) {
-                        ByteBuf error = composeErrorResponse(message.messageId, err);
-                        channel.sendReplyMessage(message.messageId, error);
-                    } else if (err instanceof StatementExecutionException) {
-                        ByteBuf error = composeErrorResponse(message.messageId, err);
-                        channel.sendReplyMessage(message.messageId, error);
-                    } else {
-                        LOGGER.log(Level.SEVERE, "unexpected error on query " + query + ", parameters: " + parameters + ":" + err, err);
-                        ByteBuf error = composeErrorResponse(message.messageId, err);
-                        channel.sendReplyMessage(message.messageId, error);
-                    }
+                    sendStatementExecutionError(message, channel, err, "query " + query + ", parameters: " + parameters);
                     return;
                 }
                 if (result instanceof DMLStatementExecutionResult) {
@@ -825,6 +945,184 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         });
     }
 
+    private static void sendStatementExecutionError(Pdu message, Channel channel, Throwable err, String description) {
+        while (err instanceof CompletionException) {
+            err = err.getCause();
+        }
+        if (err instanceof DuplicatePrimaryKeyException) {
+            ByteBuf error = PduCodec.ErrorResponse.writeSqlIntegrityConstraintsViolation(message.messageId, new SQLIntegrityConstraintViolationException(err));
+            channel.sendReplyMessage(message.messageId, error);
+        } else if (err instanceof NotLeaderException) {
+            ByteBuf error = composeErrorResponse(message.messageId, err);
+            channel.sendReplyMessage(message.messageId, error);
+        } else if (err instanceof StatementExecutionException) {
+            ByteBuf error = composeErrorResponse(message.messageId, err);
+            channel.sendReplyMessage(message.messageId, error);
+        } else {
+            LOGGER.log(Level.SEVERE, "unexpected error on " + description + ":" + err, err);
+            ByteBuf error = composeErrorResponse(message.messageId, err);
+            channel.sendReplyMessage(message.messageId, error);
+        }
+    }
+
+    /**
+     * Get, put or delete of a record by primary key. The statement is built
+     * directly from the values of the columns, there is no SQL to parse and
+     * to plan.
+     */
+    private void handleKeyValueOperation(Pdu message, Channel channel) {
+        long txId = PduCodec.KeyValueOperation.readTx(message);
+        byte operation = PduCodec.KeyValueOperation.readOperation(message);
+        String tablespace = PduCodec.KeyValueOperation.readTablespace(message);
+        String tableName = PduCodec.KeyValueOperation.readTable(message);
+        TableSpaceManager tableSpaceManager = server.getManager().getTableSpaceManager(tablespace);
+        if (tableSpaceManager == null) {
+            ByteBuf error = PduCodec.ErrorResponse.writeNotLeaderError(message.messageId, "no such tablespace " + tablespace + " (at " + server.getManager().getNodeId() + ")");
+            channel.sendReplyMessage(message.messageId, error);
+            message.close();
+            return;
+        } else if (!tableSpaceManager.isLeader()) {
+            ByteBuf error = PduCodec.ErrorResponse.writeNotLeaderError(message.messageId, "not leader for " + tablespace);
+            channel.sendReplyMessage(message.messageId, error);
+            message.close();
+            return;
+        }
+        Statement statement;
+        try {
+            AbstractTableManager tableManager = tableSpaceManager.getTableManager(tableName);
+            if (tableManager == null) {
+                tableManager = tableSpaceManager.getTableManager(tableName.toLowerCase());
+            }
+            if (tableManager == null) {
+                throw new TableDoesNotExistException("no table " + tableName + " in tablespace " + tablespace);
+            }
+            statement = buildKeyValueStatement(tablespace, tableManager.getTable(), operation,
+                    PduCodec.KeyValueOperation.startReadValues(message));
+        } catch (RuntimeException err) {
+            // values of the wrong type for a column may also fail with a ClassCastException
+            // while being serialized, the client must receive an answer anyway
+            ByteBuf error = composeErrorResponse(message.messageId, err);
+            channel.sendReplyMessage(message.messageId, error);
+            message.close();
+            return;
+        }
+
+        CompletableFuture<StatementExecutionResult> res = server
+                .getManager()
+                .executeStatementAsync(statement, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), new TransactionContext(txId));
+        res.whenComplete((result, err) -> {
+            try {
+                if (err != null) {
+                    sendStatementExecutionError(message, channel, err, "key-value operation " + operation + " on table " + tableName);
+                    return;
+                }
+                if (result instanceof GetResult) {
+                    GetResult get = (GetResult) result;
+                    if (!get.found()) {
+                        channel.sendReplyMessage(message.messageId,
+                                PduCodec.ExecuteStatementResult.write(
+                                        message.messageId, 0, get.transactionId, null));
+                    } else {
+                        Map<String, Object> record = get.getRecord().toBean(get.getTable());
+                        channel.sendReplyMessage(message.messageId,
+                                PduCodec.ExecuteStatementResult.write(
+                                        message.messageId, 1, get.transactionId, record));
+                    }
+                } else if (result instanceof DMLStatementExecutionResult) {
+                    DMLStatementExecutionResult dml = (DMLStatementExecutionResult) result;
+                    channel.sendReplyMessage(message.messageId,
+                            PduCodec.ExecuteStatementResult.write(
+                                    message.messageId, dml.getUpdateCount(), dml.transactionId, null));
+                } else {
+                    ByteBuf error = PduCodec.ErrorResponse.write(message.messageId, "unknown result type:" + result);
+                    channel.sendReplyMessage(message.messageId, error);
+                }
+            } finally {
+                message.close();
+            }
+        });
+    }
+
+    private static Statement buildKeyValueStatement(
+            String tablespace, Table table, byte operation,
+            PduCodec.ObjectListReader valuesReader
+    ) throws StatementExecutionException {
+        List<Object> values = new ArrayList<>(valuesReader.getNumParams());
+        for (int i = 0; i < valuesReader.getNumParams(); i++) {
+            values.add(valuesReader.nextObject());
+        }
+        switch (operation) {
+            case PduCodec.KeyValueOperation.OPERATION_GET:
+                return new GetStatement(tablespace, table.name,
+                        RecordSerializer.serializePrimaryKeyValues(values, table), null, false);
+            case PduCodec.KeyValueOperation.OPERATION_DELETE:
+                return new DeleteStatement(tablespace, table.name,
+                        RecordSerializer.serializePrimaryKeyValues(values, table), null);
+            case PduCodec.KeyValueOperation.OPERATION_PUT: {
+                if (values.size() % 2 != 0) {
+                    throw new StatementExecutionException("bad list of (column, value) pairs, size " + values.size());
+                }
+                Map<String, Object> record = new HashMap<>();
+                for (int i = 0; i < values.size(); i += 2) {
+                    String columnName = String.valueOf(values.get(i));
+                    Column column = table.getColumn(columnName);
+                    if (column == null) {
+                        column = table.getColumn(columnName.toLowerCase());
+                    }
+                    if (column == null) {
+                        throw new StatementExecutionException("no column " + columnName + " in table " + table.name);
+                    }
+                    record.put(column.name, values.get(i + 1));
+                }
+                // columns which are not in the list get their default value, or null, like with a REPLACE
+                for (Column column : table.columns) {
+                    Object value = record.containsKey(column.name)
+                            ? RecordSerializer.convert(column.type, record.get(column.name))
+                            : defaultValue(column);
+                    if (value != null) {
+                        record.put(column.name, value);
+                    } else if (ColumnTypes.isNotNullDataType(column.type)) {
+                        throw new StatementExecutionException("Cannot have null value in non null column " + column.name);
+                    }
+                }
+                Record newRecord = RecordSerializer.toRecord(record, table);
+                return new InsertStatement(tablespace, table.name,
+                        new ConstValueRecordFunction(newRecord.key), new ConstValueRecordFunction(newRecord.value), true);
+            }
+            default:
+                throw new StatementExecutionException("unknown key-value operation " + operation);
+        }
+    }
+
+    private static Object defaultValue(Column column) {
+        if (column.defaultValue == null) {
+            return null;
+        }
+        switch (column.type) {
+            case ColumnTypes.NOTNULL_STRING:
+            case ColumnTypes.STRING:
+                return column.defaultValue.to_string();
+            case ColumnTypes.NOTNULL_INTEGER:
+            case ColumnTypes.INTEGER:
+                return column.defaultValue.to_int();
+            case ColumnTypes.NOTNULL_LONG:
+            case ColumnTypes.LONG:
+                return column.defaultValue.to_long();
+            case ColumnTypes.NOTNULL_DOUBLE:
+            case ColumnTypes.DOUBLE:
+                return column.defaultValue.to_double();
+            case ColumnTypes.NOTNULL_BOOLEAN:
+            case ColumnTypes.BOOLEAN:
+                return column.defaultValue.to_boolean();
+            case ColumnTypes.NOTNULL_TIMESTAMP:
+            case ColumnTypes.TIMESTAMP:
+                // the only default allowed for timestamps is CURRENT_TIMESTAMP
+                return new Timestamp(System.currentTimeMillis());
+            default:
+                throw new StatementExecutionException("default value not supported for type " + ColumnTypes.typeToString(column.type));
+        }
+    }
+
     private void handlePrepareStatement(Pdu message, Channel channel) {
         try {
             String query = PduCodec.PrepareStatement.readQuery(message);
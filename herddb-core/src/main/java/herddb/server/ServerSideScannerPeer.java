@@ -22,6 +22,8 @@ package herddb.server;
 
 import herddb.model.DataScanner;
 import herddb.model.DataScannerException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,16 +35,85 @@ import java.util.logging.Logger;
 public class ServerSideScannerPeer implements AutoCloseable {
 
     private final DataScanner scanner;
+    private final boolean columnar;
 
-    public ServerSideScannerPeer(DataScanner scanner) {
+    /**
+     * Number of chunks that the client is willing to receive in streaming
+     * mode
+     */
+    private final AtomicInteger credit = new AtomicInteger();
+    private final AtomicBoolean pushing = new AtomicBoolean();
+    private volatile int streamingFetchSize;
+    private int nextSequence;
+    private boolean closed;
+
+    public ServerSideScannerPeer(DataScanner scanner, boolean columnar) {
         this.scanner = scanner;
+        this.columnar = columnar;
     }
 
     public DataScanner getScanner() {
         return scanner;
     }
 
-    public void clientClose() {
+    /**
+     * Tells whether the client is able to decode data in columnar format
+     *
+     * @return
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    void startStreaming(int fetchSize) {
+        this.streamingFetchSize = fetchSize;
+    }
+
+    int getStreamingFetchSize() {
+        return streamingFetchSize;
+    }
+
+    void addCredit(int value) {
+        credit.addAndGet(value);
+    }
+
+    /**
+     * Acquires the right to push data to the client. Only one thread at a
+     * time pushes data, the pusher must call {@link #releasePusher()} and then
+     * try again in order not to miss credit granted in the meantime.
+     *
+     * @return true if the caller has to push data to the client
+     */
+    boolean acquirePusher() {
+        return credit.get() > 0 && pushing.compareAndSet(false, true);
+    }
+
+    void releasePusher() {
+        pushing.set(false);
+    }
+
+    boolean takeCredit() {
+        while (true) {
+            int current = credit.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (credit.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    int nextSequence() {
+        return nextSequence++;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized void clientClose() {
+        closed = true;
         try {
             scanner.close();
         } catch (DataScannerException ex) {
@@ -53,7 +124,8 @@ public class ServerSideScannerPeer implements AutoCloseable {
     private static final Logger LOG = Logger.getLogger(ServerSideScannerPeer.class.getName());
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        closed = true;
         try {
             scanner.close();
         } catch (DataScannerException ex) {
@@ -30,6 +30,8 @@ import herddb.model.Tuple;
 import herddb.model.TuplePredicate;
 import herddb.sql.expressions.CompiledSQLExpression;
 import herddb.sql.expressions.ConstantExpression;
+import herddb.sql.expressions.SQLExpressionCodeGenerator;
+import herddb.sql.expressions.SerializedRecordMatcher;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
 import herddb.utils.RawString;
@@ -67,12 +69,18 @@ public class SQLRecordPredicate extends Predicate implements TuplePredicate {
     private final Table table;
     private final String validatedTableAlias;
     private final CompiledSQLExpression where;
+    /* evaluated on every record, it may be a generated expression */
+    private final CompiledSQLExpression evaluatedWhere;
+    /* simple conditions evaluated on the serialized value of the record, it may be null */
+    private final SerializedRecordMatcher recordMatcher;
     private CompiledSQLExpression primaryKeyFilter;
 
     public SQLRecordPredicate(Table table, String tableAlias, CompiledSQLExpression where) {
         this.table = table;
         this.validatedTableAlias = tableAlias;
         this.where = where;
+        this.evaluatedWhere = SQLExpressionCodeGenerator.generateIfEnabled(where);
+        this.recordMatcher = SerializedRecordMatcher.build(table, where);
     }
 
     @Override
@@ -95,13 +103,21 @@ public class SQLRecordPredicate extends Predicate implements TuplePredicate {
 
     @Override
     public boolean matches(Tuple a, StatementEvaluationContext context) throws StatementExecutionException {
-        return SQLRecordPredicateFunctions.toBoolean(where.evaluate(a, context));
+        return SQLRecordPredicateFunctions.toBoolean(evaluatedWhere.evaluate(a, context));
     }
 
     @Override
     public boolean evaluate(Record record, StatementEvaluationContext context) throws StatementExecutionException {
+        if (recordMatcher != null) {
+            if (!recordMatcher.matches(record.value, context)) {
+                return false;
+            }
+            if (recordMatcher.isFullCondition()) {
+                return true;
+            }
+        }
         DataAccessor bean = record.getDataAccessor(table);
-        return SQLRecordPredicateFunctions.toBoolean(where.evaluate(bean, context));
+        return SQLRecordPredicateFunctions.toBoolean(evaluatedWhere.evaluate(bean, context));
     }
 
     @Override
@@ -109,6 +125,20 @@ public class SQLRecordPredicate extends Predicate implements TuplePredicate {
         where.validate(context);
     }
 
+    @Override
+    public boolean isCoveredByColumns(int[] availableColumns) {
+        if (where == null) {
+            return false;
+        }
+        try {
+            // the expression cannot be remapped if it accesses a column which is not available
+            where.remapPositionalAccessToToPrimaryKeyAccessor(availableColumns);
+            return true;
+        } catch (IllegalStateException notCovered) {
+            return false;
+        }
+    }
+
     @Override
     public String toString() {
         if (table != null) {
@@ -58,4 +58,8 @@ public class CompiledAndExpression extends CompiledBinarySQLExpression {
         return "CompiledAndExpression{" + "left=" + left + ", right=" + right + ", not=" + not + '}';
     }
 
+    boolean isNot() {
+        return not;
+    }
+
 }
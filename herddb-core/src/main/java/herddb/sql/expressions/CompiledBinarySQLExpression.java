@@ -50,6 +50,14 @@ public abstract class CompiledBinarySQLExpression implements CompiledSQLExpressi
         return "";
     }
 
+    public CompiledSQLExpression getLeft() {
+        return left;
+    }
+
+    public CompiledSQLExpression getRight() {
+        return right;
+    }
+
     @Override
     public List<CompiledSQLExpression> scanForConstraintedValueOnColumnWithOperator(String column, String operator, BindableTableScanColumnNameResolver columnNameResolver) {
         if (!operator.equals(getOperator())) {
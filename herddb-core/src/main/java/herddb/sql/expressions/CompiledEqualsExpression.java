@@ -51,12 +51,4 @@ public class CompiledEqualsExpression extends CompiledBinarySQLExpression {
                 right.remapPositionalAccessToToPrimaryKeyAccessor(projection));
     }
 
-    public CompiledSQLExpression getLeft() {
-        return left;
-    }
-
-    public CompiledSQLExpression getRight() {
-        return right;
-    }
-
 }
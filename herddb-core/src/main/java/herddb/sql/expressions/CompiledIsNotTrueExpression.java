@@ -57,4 +57,12 @@ public class CompiledIsNotTrueExpression implements CompiledSQLExpression {
                 left.remapPositionalAccessToToPrimaryKeyAccessor(projection));
     }
 
+    CompiledSQLExpression getLeft() {
+        return left;
+    }
+
+    boolean isNot() {
+        return not;
+    }
+
 }
@@ -61,4 +61,12 @@ public class CompiledIsNullExpression implements CompiledSQLExpression {
         return "CompiledIsNullExpression{" + "left=" + left + ", not=" + not + '}';
     }
 
+    CompiledSQLExpression getLeft() {
+        return left;
+    }
+
+    boolean isNot() {
+        return not;
+    }
+
 }
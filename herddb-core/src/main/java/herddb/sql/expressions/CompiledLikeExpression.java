@@ -33,17 +33,18 @@ import java.util.regex.Pattern;
 public class CompiledLikeExpression extends CompiledBinarySQLExpression {
 
     private final Pattern rightConstantPattern;
+    private final char escapeChar;
 
     public CompiledLikeExpression(CompiledSQLExpression left, CompiledSQLExpression right) throws HerdDBInternalException {
         super(left, right);
-        this.rightConstantPattern = compilePattern(right, '\\');
+        this.escapeChar = '\\';
+        this.rightConstantPattern = compilePattern(right, escapeChar);
     }
 
     public CompiledLikeExpression(CompiledSQLExpression left,    CompiledSQLExpression right, CompiledSQLExpression escape) throws HerdDBInternalException {
         super(left, right);
-        this.rightConstantPattern = compilePattern(right,
-                ((String) escape.cast(ColumnTypes.STRING).evaluate(DataAccessor.NULL, null)).charAt(0)
-        );
+        this.escapeChar = ((String) escape.cast(ColumnTypes.STRING).evaluate(DataAccessor.NULL, null)).charAt(0);
+        this.rightConstantPattern = compilePattern(right, escapeChar);
     }
 
     private static Pattern compilePattern(CompiledSQLExpression exp, char escapeChar) throws HerdDBInternalException {
@@ -81,4 +82,8 @@ public class CompiledLikeExpression extends CompiledBinarySQLExpression {
                 right.remapPositionalAccessToToPrimaryKeyAccessor(projection));
     }
 
+    char getEscapeChar() {
+        return escapeChar;
+    }
+
 }
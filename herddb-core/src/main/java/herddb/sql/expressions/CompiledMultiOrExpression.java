@@ -68,4 +68,8 @@ public class CompiledMultiOrExpression implements CompiledSQLExpression {
         return new CompiledMultiOrExpression(ops);
     }
 
+    CompiledSQLExpression[] getOperands() {
+        return operands;
+    }
+
 }
@@ -56,4 +56,12 @@ public class CompiledParenthesisExpression implements CompiledSQLExpression {
                 inner.remapPositionalAccessToToPrimaryKeyAccessor(projection));
     }
 
+    CompiledSQLExpression getInner() {
+        return inner;
+    }
+
+    boolean isNot() {
+        return not;
+    }
+
 }
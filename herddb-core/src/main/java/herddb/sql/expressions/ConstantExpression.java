@@ -60,4 +60,8 @@ public class ConstantExpression implements CompiledSQLExpression {
         return value == null;
     }
 
+    public Object getValue() {
+        return value;
+    }
+
 }
@@ -0,0 +1,143 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql.expressions;
+
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.utils.DataAccessor;
+import herddb.utils.ObjectSizeUtils;
+import herddb.utils.SQLRecordPredicateFunctions;
+import java.util.List;
+
+/**
+ * An expression evaluated by a class generated at runtime, every other
+ * operation is delegated to the original tree of expressions.
+ *
+ * @see SQLExpressionCodeGenerator
+ */
+public final class GeneratedSQLExpression implements CompiledSQLExpression {
+
+    /**
+     * Base class of the generated code
+     */
+    public abstract static class Evaluator {
+
+        /**
+         * Sub expressions which are not translated to code
+         */
+        protected final CompiledSQLExpression[] f;
+        /**
+         * Constant values referred by the code
+         */
+        protected final Object[] c;
+
+        protected Evaluator(CompiledSQLExpression[] f, Object[] c) {
+            this.f = f;
+            this.c = c;
+        }
+
+        public abstract Object evaluate(DataAccessor bean, StatementEvaluationContext context) throws StatementExecutionException;
+
+        /*
+         * Functions called by the generated code, static methods of interfaces
+         * are not supported by the compiler
+         */
+        protected static boolean toBoolean(Object value) {
+            return SQLRecordPredicateFunctions.toBoolean(value);
+        }
+
+        protected static boolean objectEquals(Object a, Object b) {
+            return SQLRecordPredicateFunctions.objectEquals(a, b);
+        }
+
+        protected static boolean objectNotEquals(Object a, Object b) {
+            return SQLRecordPredicateFunctions.objectNotEquals(a, b);
+        }
+
+        protected static SQLRecordPredicateFunctions.CompareResult compareConsiderNull(Object a, Object b) {
+            return SQLRecordPredicateFunctions.compareConsiderNull(a, b);
+        }
+
+        protected static Object add(Object a, Object b) {
+            return SQLRecordPredicateFunctions.add(a, b);
+        }
+
+        protected static Object subtract(Object a, Object b) {
+            return SQLRecordPredicateFunctions.subtract(a, b);
+        }
+
+        protected static Object multiply(Object a, Object b) {
+            return SQLRecordPredicateFunctions.multiply(a, b);
+        }
+    }
+
+    private final CompiledSQLExpression original;
+    private final Evaluator evaluator;
+
+    GeneratedSQLExpression(CompiledSQLExpression original, Evaluator evaluator) {
+        this.original = original;
+        this.evaluator = evaluator;
+    }
+
+    public CompiledSQLExpression getOriginal() {
+        return original;
+    }
+
+    @Override
+    public Object evaluate(DataAccessor bean, StatementEvaluationContext context) throws StatementExecutionException {
+        return evaluator.evaluate(bean, context);
+    }
+
+    @Override
+    public void validate(StatementEvaluationContext context) throws StatementExecutionException {
+        original.validate(context);
+    }
+
+    @Override
+    public List<CompiledSQLExpression> scanForConstraintedValueOnColumnWithOperator(
+            String column, String operator, BindableTableScanColumnNameResolver columnNameResolver
+    ) {
+        return original.scanForConstraintedValueOnColumnWithOperator(column, operator, columnNameResolver);
+    }
+
+    @Override
+    public List<CompiledSQLExpression> scanForConstraintsOnColumn(
+            String column, BindableTableScanColumnNameResolver columnNameResolver
+    ) {
+        return original.scanForConstraintsOnColumn(column, columnNameResolver);
+    }
+
+    @Override
+    public CompiledSQLExpression remapPositionalAccessToToPrimaryKeyAccessor(int[] projection) {
+        return original.remapPositionalAccessToToPrimaryKeyAccessor(projection);
+    }
+
+    @Override
+    public int estimateObjectSizeForCache() {
+        // the generated class is referred only by this expression
+        return ObjectSizeUtils.DEFAULT_OBJECT_SIZE_OVERHEAD * 2 + original.estimateObjectSizeForCache();
+    }
+
+    @Override
+    public String toString() {
+        return "Generated{" + original + '}';
+    }
+}
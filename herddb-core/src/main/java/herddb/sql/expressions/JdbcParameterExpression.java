@@ -56,4 +56,8 @@ public class JdbcParameterExpression implements CompiledSQLExpression {
         return this;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
 }
@@ -0,0 +1,412 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql.expressions;
+
+import herddb.utils.SystemProperties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.SimpleCompiler;
+
+/**
+ * Translates a whole tree of {@link CompiledSQLExpression} into the source
+ * code of a single class, which is compiled at runtime using Janino (already
+ * used by Calcite).
+ * <p>
+ * Logical operators are short-circuited without boxing intermediate
+ * results, comparisons and arithmetic with integral constants are executed
+ * on primitive values. Expressions which are not supported are evaluated by
+ * calling the original expression.
+ * </p>
+ * The generated expression is referred by the {@link herddb.model.ExecutionPlan}, so it is cached together with the
+ * plan in the {@link herddb.sql.PlansCache}.
+ */
+public final class SQLExpressionCodeGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(SQLExpressionCodeGenerator.class.getName());
+
+    /**
+     * Generate code for the expressions of the WHERE clauses. By default, the
+     * value is false.
+     */
+    public static final boolean ENABLED = SystemProperties.
+            getBooleanSystemProperty("herddb.planner.codegen", false);
+
+    private static final String PACKAGE_NAME = "herddb.sql.expressions.generated";
+    private static final AtomicLong CLASS_ID = new AtomicLong();
+
+    private static final String METHOD_ARGS = "(DataAccessor bean, StatementEvaluationContext context) throws StatementExecutionException";
+    private static final String CALL_ARGS = "(bean, context)";
+
+    private final StringBuilder methods = new StringBuilder();
+    private final List<CompiledSQLExpression> fallbacks = new ArrayList<>();
+    private final List<Object> constants = new ArrayList<>();
+    private int methodCount;
+    private int generatedNodes;
+
+    private SQLExpressionCodeGenerator() {
+    }
+
+    /**
+     * Generates code for the expression if the feature is enabled
+     *
+     * @param expression
+     * @return the generated expression or the given expression
+     * @see #ENABLED
+     */
+    public static CompiledSQLExpression generateIfEnabled(CompiledSQLExpression expression) {
+        if (!ENABLED || expression == null) {
+            return expression;
+        }
+        return generate(expression);
+    }
+
+    /**
+     * Generates code for the expression
+     *
+     * @param expression
+     * @return the generated expression or the given expression if there is
+     * nothing to generate or the generated code cannot be compiled
+     */
+    public static CompiledSQLExpression generate(CompiledSQLExpression expression) {
+        if (expression instanceof GeneratedSQLExpression) {
+            return expression;
+        }
+        SQLExpressionCodeGenerator generator = new SQLExpressionCodeGenerator();
+        String body = generator.object(expression);
+        if (generator.generatedNodes == 0) {
+            // only calls to the original expression
+            return expression;
+        }
+        String className = "GeneratedExpression" + CLASS_ID.incrementAndGet();
+        String source = generator.source(className, body);
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.setParentClassLoader(SQLExpressionCodeGenerator.class.getClassLoader());
+            compiler.cook(source);
+            Class<?> clazz = compiler.getClassLoader().loadClass(PACKAGE_NAME + "." + className);
+            GeneratedSQLExpression.Evaluator evaluator = (GeneratedSQLExpression.Evaluator) clazz
+                    .getConstructor(CompiledSQLExpression[].class, Object[].class)
+                    .newInstance(generator.fallbacks.toArray(new CompiledSQLExpression[0]), generator.constants.toArray());
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST, "generated code for {0}:\n{1}", new Object[]{expression, source});
+            }
+            return new GeneratedSQLExpression(expression, evaluator);
+        } catch (CompileException | ReflectiveOperationException err) {
+            LOGGER.log(Level.SEVERE, "cannot generate code for " + expression + ", source:\n" + source, err);
+            return expression;
+        }
+    }
+
+    private String source(String className, String body) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        source.append("import herddb.model.StatementEvaluationContext;\n");
+        source.append("import herddb.model.StatementExecutionException;\n");
+        source.append("import herddb.sql.expressions.CompiledSQLExpression;\n");
+        source.append("import herddb.sql.expressions.GeneratedSQLExpression;\n");
+        source.append("import herddb.utils.DataAccessor;\n");
+        source.append("import herddb.utils.SQLRecordPredicateFunctions;\n\n");
+        source.append("public final class ").append(className).append(" extends GeneratedSQLExpression.Evaluator {\n\n");
+        source.append("    public ").append(className).append("(CompiledSQLExpression[] f, Object[] c) {\n");
+        source.append("        super(f, c);\n");
+        source.append("    }\n\n");
+        source.append("    public Object evaluate").append(METHOD_ARGS).append(" {\n");
+        source.append("        return ").append(body).append(";\n");
+        source.append("    }\n");
+        source.append(methods);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static boolean isBooleanExpression(CompiledSQLExpression exp) {
+        return exp instanceof CompiledMultiAndExpression
+                || exp instanceof CompiledMultiOrExpression
+                || exp instanceof CompiledAndExpression
+                || exp instanceof CompiledEqualsExpression
+                || exp instanceof CompiledNotEqualsExpression
+                || exp instanceof CompiledGreaterThenExpression
+                || exp instanceof CompiledGreaterThenEqualsExpression
+                || exp instanceof CompiledMinorThenExpression
+                || exp instanceof CompiledMinorThenEqualsExpression
+                || exp instanceof CompiledIsNullExpression
+                || exp instanceof CompiledIsNotTrueExpression;
+    }
+
+    /**
+     * Java code which evaluates the expression to an Object
+     */
+    private String object(CompiledSQLExpression exp) {
+        if (isBooleanExpression(exp)) {
+            return "(" + bool(exp) + " ? Boolean.TRUE : Boolean.FALSE)";
+        }
+        if (exp instanceof AccessCurrentRowExpression) {
+            generatedNodes++;
+            return "bean.get(" + ((AccessCurrentRowExpression) exp).getIndex() + ")";
+        }
+        if (exp instanceof ConstantExpression) {
+            return constant(((ConstantExpression) exp).getValue());
+        }
+        if (exp instanceof JdbcParameterExpression) {
+            generatedNodes++;
+            return "context.getJdbcParameter(" + ((JdbcParameterExpression) exp).getIndex() + ")";
+        }
+        if (exp instanceof CompiledParenthesisExpression) {
+            CompiledParenthesisExpression parenthesis = (CompiledParenthesisExpression) exp;
+            if (parenthesis.isNot()) {
+                return "(" + bool(exp) + " ? Boolean.TRUE : Boolean.FALSE)";
+            }
+            return object(parenthesis.getInner());
+        }
+        if (exp instanceof CompiledAddExpression) {
+            return arithmetic((CompiledBinarySQLExpression) exp, "+", "add");
+        }
+        if (exp instanceof CompiledSubtractExpression) {
+            return arithmetic((CompiledBinarySQLExpression) exp, "-", "subtract");
+        }
+        if (exp instanceof CompiledMultiplyExpression) {
+            return arithmetic((CompiledBinarySQLExpression) exp, "*", "multiply");
+        }
+        fallbacks.add(exp);
+        return "f[" + (fallbacks.size() - 1) + "].evaluate" + CALL_ARGS;
+    }
+
+    /**
+     * Java code which evaluates the expression to a boolean, following
+     * {@link herddb.utils.SQLRecordPredicateFunctions#toBoolean(java.lang.Object)}
+     */
+    private String bool(CompiledSQLExpression exp) {
+        if (exp instanceof CompiledMultiAndExpression) {
+            return shortCircuit(((CompiledMultiAndExpression) exp).getOperands(), false);
+        }
+        if (exp instanceof CompiledMultiOrExpression) {
+            return shortCircuit(((CompiledMultiOrExpression) exp).getOperands(), true);
+        }
+        if (exp instanceof CompiledAndExpression) {
+            CompiledAndExpression and = (CompiledAndExpression) exp;
+            StringBuilder code = new StringBuilder();
+            code.append("        if (!").append(bool(and.left)).append(") {\n");
+            code.append("            return ").append(and.isNot()).append(";\n");
+            code.append("        }\n");
+            code.append("        return ").append(and.isNot() ? "!" : "").append(bool(and.right)).append(";\n");
+            return method("boolean", code);
+        }
+        if (exp instanceof CompiledEqualsExpression) {
+            return equals((CompiledBinarySQLExpression) exp, false);
+        }
+        if (exp instanceof CompiledNotEqualsExpression) {
+            return equals((CompiledBinarySQLExpression) exp, true);
+        }
+        if (exp instanceof CompiledGreaterThenExpression) {
+            return compare((CompiledBinarySQLExpression) exp, ">", "res == SQLRecordPredicateFunctions.CompareResult.GREATER");
+        }
+        if (exp instanceof CompiledGreaterThenEqualsExpression) {
+            return compare((CompiledBinarySQLExpression) exp, ">=", "res == SQLRecordPredicateFunctions.CompareResult.GREATER"
+                    + " || res == SQLRecordPredicateFunctions.CompareResult.EQUALS");
+        }
+        if (exp instanceof CompiledMinorThenExpression) {
+            return compare((CompiledBinarySQLExpression) exp, "<", "res == SQLRecordPredicateFunctions.CompareResult.MINOR");
+        }
+        if (exp instanceof CompiledMinorThenEqualsExpression) {
+            return compare((CompiledBinarySQLExpression) exp, "<=", "res == SQLRecordPredicateFunctions.CompareResult.MINOR"
+                    + " || res == SQLRecordPredicateFunctions.CompareResult.EQUALS");
+        }
+        if (exp instanceof CompiledIsNullExpression) {
+            CompiledIsNullExpression isNull = (CompiledIsNullExpression) exp;
+            generatedNodes++;
+            return "(" + object(isNull.getLeft()) + (isNull.isNot() ? " != null)" : " == null)");
+        }
+        if (exp instanceof CompiledIsNotTrueExpression) {
+            CompiledIsNotTrueExpression isNotTrue = (CompiledIsNotTrueExpression) exp;
+            generatedNodes++;
+            return (isNotTrue.isNot() ? "" : "!") + bool(isNotTrue.getLeft());
+        }
+        if (exp instanceof CompiledParenthesisExpression) {
+            CompiledParenthesisExpression parenthesis = (CompiledParenthesisExpression) exp;
+            return (parenthesis.isNot() ? "!" : "") + bool(parenthesis.getInner());
+        }
+        if (exp instanceof ConstantExpression) {
+            Object value = ((ConstantExpression) exp).getValue();
+            if (value == null || value instanceof Boolean) {
+                return value == null ? "false" : value.toString();
+            }
+        }
+        return "toBoolean(" + object(exp) + ")";
+    }
+
+    private String shortCircuit(CompiledSQLExpression[] operands, boolean exitValue) {
+        StringBuilder code = new StringBuilder();
+        for (CompiledSQLExpression operand : operands) {
+            code.append("        if (").append(exitValue ? "" : "!").append(bool(operand)).append(") {\n");
+            code.append("            return ").append(exitValue).append(";\n");
+            code.append("        }\n");
+        }
+        code.append("        return ").append(!exitValue).append(";\n");
+        return method("boolean", code);
+    }
+
+    /**
+     * Same as {@link CompiledSQLExpression#opEqualsTo(herddb.utils.DataAccessor, herddb.model.StatementEvaluationContext, herddb.sql.expressions.CompiledSQLExpression)
+     * } and {@link CompiledSQLExpression#opNotEqualsTo(herddb.utils.DataAccessor, herddb.model.StatementEvaluationContext, herddb.sql.expressions.CompiledSQLExpression)
+     * }
+     */
+    private String equals(CompiledBinarySQLExpression exp, boolean not) {
+        StringBuilder code = new StringBuilder();
+        String integralConstant = integralConstant(exp.right);
+        if (exp.left instanceof AccessCurrentRowExpression) {
+            int index = ((AccessCurrentRowExpression) exp.left).getIndex();
+            code.append("        Object r = ").append(object(exp.right)).append(";\n");
+            code.append("        if (r == null) {\n");
+            code.append("            return false;\n");
+            code.append("        }\n");
+            code.append("        return bean.").append(not ? "fieldNotEqualsTo(" : "fieldEqualsTo(").append(index).append(", r);\n");
+        } else if (integralConstant != null) {
+            code.append("        Object l = ").append(object(exp.left)).append(";\n");
+            appendIntegralFastPath(code, "l", (not ? " != " : " == ") + integralConstant);
+            code.append("        if (l == null) {\n");
+            code.append("            return false;\n");
+            code.append("        }\n");
+            code.append("        return ").append(not ? "objectNotEquals" : "objectEquals")
+                    .append("(l, ").append(object(exp.right)).append(");\n");
+        } else {
+            code.append("        Object l = ").append(object(exp.left)).append(";\n");
+            code.append("        if (l == null) {\n");
+            code.append("            return false;\n");
+            code.append("        }\n");
+            code.append("        Object r = ").append(object(exp.right)).append(";\n");
+            code.append("        if (r == null) {\n");
+            code.append("            return false;\n");
+            code.append("        }\n");
+            code.append("        return ").append(not ? "objectNotEquals" : "objectEquals")
+                    .append("(l, r);\n");
+        }
+        return method("boolean", code);
+    }
+
+    /**
+     * Same as {@link CompiledSQLExpression#opCompareTo(herddb.utils.DataAccessor, herddb.model.StatementEvaluationContext, herddb.sql.expressions.CompiledSQLExpression)
+     * }, with a primitive comparison when the right side is an integral constant
+     */
+    private String compare(CompiledBinarySQLExpression exp, String operator, String test) {
+        StringBuilder code = new StringBuilder();
+        String integralConstant = integralConstant(exp.right);
+        if (exp.left instanceof AccessCurrentRowExpression) {
+            int index = ((AccessCurrentRowExpression) exp.left).getIndex();
+            code.append("        Object r = ").append(object(exp.right)).append(";\n");
+            code.append("        if (r == null) {\n");
+            code.append("            return false;\n");
+            code.append("        }\n");
+            code.append("        SQLRecordPredicateFunctions.CompareResult res = bean.fieldCompareTo(").append(index).append(", r);\n");
+        } else if (integralConstant != null) {
+            code.append("        Object l = ").append(object(exp.left)).append(";\n");
+            appendIntegralFastPath(code, "l", " " + operator + " " + integralConstant);
+            code.append("        SQLRecordPredicateFunctions.CompareResult res = compareConsiderNull(l, ")
+                    .append(object(exp.right)).append(");\n");
+        } else {
+            code.append("        SQLRecordPredicateFunctions.CompareResult res = compareConsiderNull(")
+                    .append(object(exp.left)).append(", ").append(object(exp.right)).append(");\n");
+        }
+        code.append("        return ").append(test).append(";\n");
+        return method("boolean", code);
+    }
+
+    /**
+     * Same as {@link herddb.utils.SQLRecordPredicateFunctions#add(java.lang.Object, java.lang.Object)} and the other
+     * arithmetic functions, with primitive operations on Long and Integer values
+     */
+    private String arithmetic(CompiledBinarySQLExpression exp, String operator, String function) {
+        StringBuilder code = new StringBuilder();
+        code.append("        Object a = ").append(object(exp.left)).append(";\n");
+        Object constant = exp.right instanceof ConstantExpression ? ((ConstantExpression) exp.right).getValue() : null;
+        if (constant instanceof Long || constant instanceof Integer) {
+            String literal = integralConstant(exp.right);
+            code.append("        if (a instanceof Long) {\n");
+            code.append("            return Long.valueOf(((Long) a).longValue() ").append(operator).append(" ").append(literal).append(");\n");
+            code.append("        }\n");
+            code.append("        if (a instanceof Integer) {\n");
+            if (constant instanceof Integer) {
+                // Integer with Integer is computed as int, then widened
+                code.append("            return Long.valueOf((long) (((Integer) a).intValue() ").append(operator).append(" ").append(literal).append("));\n");
+            } else {
+                code.append("            return Long.valueOf(((Integer) a).intValue() ").append(operator).append(" ").append(literal).append(");\n");
+            }
+            code.append("        }\n");
+            code.append("        return ").append(function).append("(a, ").append(object(exp.right)).append(");\n");
+        } else {
+            code.append("        Object b = ").append(object(exp.right)).append(";\n");
+            code.append("        if (a instanceof Long && b instanceof Long) {\n");
+            code.append("            return Long.valueOf(((Long) a).longValue() ").append(operator).append(" ((Long) b).longValue());\n");
+            code.append("        }\n");
+            code.append("        return ").append(function).append("(a, b);\n");
+        }
+        return method("Object", code);
+    }
+
+    private static void appendIntegralFastPath(StringBuilder code, String variable, String comparison) {
+        code.append("        if (").append(variable).append(" instanceof Long) {\n");
+        code.append("            return ((Long) ").append(variable).append(").longValue()").append(comparison).append(";\n");
+        code.append("        }\n");
+        code.append("        if (").append(variable).append(" instanceof Integer) {\n");
+        code.append("            return ((Integer) ").append(variable).append(").intValue()").append(comparison).append(";\n");
+        code.append("        }\n");
+    }
+
+    /**
+     * Java literal of an integral constant
+     *
+     * @return the literal or null if the expression is not an integral constant
+     */
+    private static String integralConstant(CompiledSQLExpression exp) {
+        if (!(exp instanceof ConstantExpression)) {
+            return null;
+        }
+        Object value = ((ConstantExpression) exp).getValue();
+        if (value instanceof Long) {
+            long l = (Long) value;
+            return l == Long.MIN_VALUE ? "Long.MIN_VALUE" : "(" + l + "L)";
+        }
+        if (value instanceof Integer) {
+            int i = (Integer) value;
+            return i == Integer.MIN_VALUE ? "Integer.MIN_VALUE" : "(" + i + ")";
+        }
+        return null;
+    }
+
+    private String constant(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        constants.add(value);
+        return "c[" + (constants.size() - 1) + "]";
+    }
+
+    private String method(String returnType, StringBuilder code) {
+        generatedNodes++;
+        String name = "e" + (methodCount++);
+        methods.append("\n    private ").append(returnType).append(" ").append(name).append(METHOD_ARGS).append(" {\n");
+        methods.append(code);
+        methods.append("    }\n");
+        return name + CALL_ARGS;
+    }
+}
@@ -183,4 +183,31 @@ public class SQLExpressionCompiler {
         }
         return value3;
     }
+
+    /**
+     * Splits a condition into the conditions in AND
+     *
+     * @param condition
+     * @return the conditions, the condition itself if it is not an AND
+     */
+    public static List<CompiledSQLExpression> splitConjunctions(CompiledSQLExpression condition) {
+        List<CompiledSQLExpression> conditions = new ArrayList<>();
+        collectConjunctions(condition, conditions);
+        return conditions;
+    }
+
+    private static void collectConjunctions(CompiledSQLExpression exp, List<CompiledSQLExpression> conditions) {
+        if (exp instanceof CompiledMultiAndExpression) {
+            for (CompiledSQLExpression operand : ((CompiledMultiAndExpression) exp).getOperands()) {
+                collectConjunctions(operand, conditions);
+            }
+        } else if (exp instanceof CompiledAndExpression && !((CompiledAndExpression) exp).isNot()) {
+            collectConjunctions(((CompiledAndExpression) exp).left, conditions);
+            collectConjunctions(((CompiledAndExpression) exp).right, conditions);
+        } else if (exp instanceof CompiledParenthesisExpression && !((CompiledParenthesisExpression) exp).isNot()) {
+            collectConjunctions(((CompiledParenthesisExpression) exp).getInner(), conditions);
+        } else {
+            conditions.add(exp);
+        }
+    }
 }
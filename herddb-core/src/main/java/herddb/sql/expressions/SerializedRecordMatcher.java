@@ -0,0 +1,618 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql.expressions;
+
+import herddb.codec.RecordSerializer;
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.Table;
+import herddb.utils.ByteArrayCursor;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import herddb.utils.RawString;
+import herddb.utils.SQLRecordPredicateFunctions;
+import herddb.utils.SQLRecordPredicateFunctions.CompareResult;
+import herddb.utils.SystemProperties;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates the simple conditions of a conjunctive WHERE clause directly on
+ * the serialized value of a record: "column op constant/parameter", IN lists
+ * (OR of equalities on the same column), IS [NOT] NULL and LIKE with a
+ * constant prefix.
+ * <p>
+ * The value of the record is read only once, columns without conditions are
+ * skipped, so non matching records are rejected without building a
+ * {@link DataAccessor} and without boxing the values of the columns.
+ * Conditions on primary key columns are not handled here, they are evaluated
+ * on the key before reading the record.
+ * </p>
+ * Comparisons follow
+ * {@link RecordSerializer#compareDeserializeTypeAndValue(herddb.utils.ByteArrayCursor, java.lang.Object)},
+ * which is the function used by the DataAccessor on serialized records.
+ */
+public final class SerializedRecordMatcher {
+
+    /**
+     * Evaluate simple conditions on the serialized records. By default, the
+     * value is true.
+     */
+    public static final boolean ENABLED = SystemProperties.
+            getBooleanSystemProperty("herddb.planner.serializedrecordmatcher", true);
+
+    /**
+     * Conditions are tracked using a bit mask
+     */
+    private static final int MAX_TERMS = 64;
+
+    private enum Operator {
+        EQUALS,
+        GREATER,
+        GREATER_OR_EQUALS,
+        MINOR,
+        MINOR_OR_EQUALS,
+        IN,
+        IS_NULL,
+        IS_NOT_NULL,
+        LIKE_PREFIX
+    }
+
+    private static final class Term {
+
+        final Operator operator;
+        final int serialPosition;
+        /* position of the first value in the array of the resolved values */
+        int firstValue;
+        int numValues;
+        byte[] likePrefix;
+        Pattern likePattern;
+
+        Term(Operator operator, int serialPosition) {
+            this.operator = operator;
+            this.serialPosition = serialPosition;
+        }
+
+        boolean accept(CompareResult res) {
+            switch (operator) {
+                case EQUALS:
+                case IN:
+                    return res == CompareResult.EQUALS;
+                case GREATER:
+                    return res == CompareResult.GREATER;
+                case GREATER_OR_EQUALS:
+                    return res == CompareResult.GREATER || res == CompareResult.EQUALS;
+                case MINOR:
+                    return res == CompareResult.MINOR;
+                case MINOR_OR_EQUALS:
+                    return res == CompareResult.MINOR || res == CompareResult.EQUALS;
+                default:
+                    throw new IllegalStateException(operator + "");
+            }
+        }
+    }
+
+    private static final class ResolvedValues {
+
+        /* do not retain the context of a statement after its execution */
+        final WeakReference<StatementEvaluationContext> context;
+        final Object[] values;
+
+        ResolvedValues(StatementEvaluationContext context, Object[] values) {
+            this.context = new WeakReference<>(context);
+            this.values = values;
+        }
+    }
+
+    private final Term[] terms;
+    /* indexes of the terms for every serial position */
+    private final int[][] termsBySerialPosition;
+    private final CompiledSQLExpression[] valueExpressions;
+    private final long allTermsMask;
+    private final boolean fullCondition;
+    private volatile ResolvedValues lastResolvedValues;
+
+    private SerializedRecordMatcher(
+            Term[] terms, CompiledSQLExpression[] valueExpressions,
+            boolean fullCondition
+    ) {
+        this.terms = terms;
+        this.valueExpressions = valueExpressions;
+        this.fullCondition = fullCondition;
+        int maxSerialPosition = 0;
+        for (Term term : terms) {
+            maxSerialPosition = Math.max(maxSerialPosition, term.serialPosition);
+        }
+        this.termsBySerialPosition = new int[maxSerialPosition + 1][];
+        for (int i = 0; i < terms.length; i++) {
+            int[] current = termsBySerialPosition[terms[i].serialPosition];
+            int[] updated = current == null ? new int[1] : Arrays.copyOf(current, current.length + 1);
+            updated[updated.length - 1] = i;
+            termsBySerialPosition[terms[i].serialPosition] = updated;
+        }
+        this.allTermsMask = terms.length == MAX_TERMS ? -1L : (1L << terms.length) - 1;
+    }
+
+    /**
+     * Builds a matcher for the conditions of the WHERE clause which can be
+     * evaluated on the serialized record
+     *
+     * @param table
+     * @param where
+     * @return the matcher or null if no condition can be evaluated on the
+     * serialized record
+     */
+    public static SerializedRecordMatcher build(Table table, CompiledSQLExpression where) {
+        if (!ENABLED || table == null || where == null) {
+            return null;
+        }
+        List<CompiledSQLExpression> conditions = SQLExpressionCompiler.splitConjunctions(where);
+        List<Term> terms = new ArrayList<>();
+        List<CompiledSQLExpression> values = new ArrayList<>();
+        boolean fullCondition = true;
+        for (CompiledSQLExpression condition : conditions) {
+            Term term = terms.size() < MAX_TERMS ? buildTerm(table, condition, values) : null;
+            if (term == null) {
+                fullCondition = false;
+            } else {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return new SerializedRecordMatcher(terms.toArray(new Term[0]),
+                values.toArray(new CompiledSQLExpression[0]), fullCondition);
+    }
+
+    /**
+     * @return the column of the table, null if the expression does not access
+     * a non primary key column
+     */
+    private static Column valueColumn(Table table, CompiledSQLExpression exp) {
+        if (!(exp instanceof AccessCurrentRowExpression)) {
+            return null;
+        }
+        int index = ((AccessCurrentRowExpression) exp).getIndex();
+        if (index < 0 || index >= table.columns.length || table.isPrimaryKeyColumn(index)) {
+            return null;
+        }
+        return table.getColumn(index);
+    }
+
+    private static boolean isValue(CompiledSQLExpression exp) {
+        return exp instanceof ConstantExpression
+                || exp instanceof JdbcParameterExpression
+                || exp instanceof TypedJdbcParameterExpression;
+    }
+
+    private static Term buildTerm(Table table, CompiledSQLExpression exp, List<CompiledSQLExpression> values) {
+        if (exp instanceof CompiledIsNullExpression) {
+            CompiledIsNullExpression isNull = (CompiledIsNullExpression) exp;
+            Column column = valueColumn(table, isNull.getLeft());
+            if (column == null) {
+                return null;
+            }
+            return new Term(isNull.isNot() ? Operator.IS_NOT_NULL : Operator.IS_NULL, column.serialPosition);
+        }
+        if (exp instanceof CompiledLikeExpression) {
+            return buildLikeTerm(table, (CompiledLikeExpression) exp);
+        }
+        if (exp instanceof CompiledMultiOrExpression) {
+            return buildInTerm(table, ((CompiledMultiOrExpression) exp).getOperands(), values);
+        }
+        Operator operator;
+        if (exp instanceof CompiledEqualsExpression) {
+            operator = Operator.EQUALS;
+        } else if (exp instanceof CompiledGreaterThenExpression) {
+            operator = Operator.GREATER;
+        } else if (exp instanceof CompiledGreaterThenEqualsExpression) {
+            operator = Operator.GREATER_OR_EQUALS;
+        } else if (exp instanceof CompiledMinorThenExpression) {
+            operator = Operator.MINOR;
+        } else if (exp instanceof CompiledMinorThenEqualsExpression) {
+            operator = Operator.MINOR_OR_EQUALS;
+        } else {
+            return null;
+        }
+        CompiledBinarySQLExpression binary = (CompiledBinarySQLExpression) exp;
+        Column column = valueColumn(table, binary.left);
+        if (column == null || !isValue(binary.right)) {
+            return null;
+        }
+        Term term = new Term(operator, column.serialPosition);
+        term.firstValue = values.size();
+        term.numValues = 1;
+        values.add(binary.right);
+        return term;
+    }
+
+    private static Term buildInTerm(Table table, CompiledSQLExpression[] operands, List<CompiledSQLExpression> values) {
+        Column column = null;
+        for (CompiledSQLExpression operand : operands) {
+            if (!(operand instanceof CompiledEqualsExpression)) {
+                return null;
+            }
+            CompiledEqualsExpression equals = (CompiledEqualsExpression) operand;
+            Column operandColumn = valueColumn(table, equals.getLeft());
+            if (operandColumn == null || !isValue(equals.getRight())
+                    || (column != null && column.serialPosition != operandColumn.serialPosition)) {
+                return null;
+            }
+            column = operandColumn;
+        }
+        if (column == null) {
+            return null;
+        }
+        Term term = new Term(Operator.IN, column.serialPosition);
+        term.firstValue = values.size();
+        term.numValues = operands.length;
+        for (CompiledSQLExpression operand : operands) {
+            values.add(((CompiledEqualsExpression) operand).getRight());
+        }
+        return term;
+    }
+
+    private static Term buildLikeTerm(Table table, CompiledLikeExpression like) {
+        Column column = valueColumn(table, like.left);
+        if (column == null || !(like.right instanceof ConstantExpression)
+                || (column.type != ColumnTypes.STRING && column.type != ColumnTypes.NOTNULL_STRING)) {
+            return null;
+        }
+        Object pattern = ((ConstantExpression) like.right).getValue();
+        if (pattern == null) {
+            return null;
+        }
+        String patternString = pattern.toString();
+        // only 'prefix%', without other wildcards and escapes
+        int wildcard = patternString.indexOf('%');
+        if (wildcard != patternString.length() - 1
+                || patternString.indexOf('_') >= 0
+                || patternString.indexOf(like.getEscapeChar()) >= 0) {
+            return null;
+        }
+        Term term = new Term(Operator.LIKE_PREFIX, column.serialPosition);
+        term.likePrefix = patternString.substring(0, wildcard).getBytes(StandardCharsets.UTF_8);
+        term.likePattern = SQLRecordPredicateFunctions.compileLikePattern(patternString, like.getEscapeChar());
+        return term;
+    }
+
+    /**
+     * Tells whether the matcher evaluates the whole WHERE clause, if false
+     * accepted records must be checked using the full condition
+     *
+     * @return
+     */
+    public boolean isFullCondition() {
+        return fullCondition;
+    }
+
+    /**
+     * Values of constants and parameters are computed once per execution of
+     * the statement
+     */
+    private Object[] resolveValues(StatementEvaluationContext context) throws StatementExecutionException {
+        ResolvedValues resolved = lastResolvedValues;
+        if (resolved != null && context != null && resolved.context.get() == context) {
+            return resolved.values;
+        }
+        Object[] values = new Object[valueExpressions.length];
+        for (int i = 0; i < values.length; i++) {
+            Object value = valueExpressions[i].evaluate(DataAccessor.NULL, context);
+            if (value instanceof String) {
+                // same outcome of the comparison, without encoding the string for every record
+                value = RawString.of((String) value);
+            }
+            values[i] = value;
+        }
+        if (context != null) {
+            lastResolvedValues = new ResolvedValues(context, values);
+        }
+        return values;
+    }
+
+    /**
+     * Evaluates the conditions on the serialized value of a record
+     *
+     * @param value the value of the record
+     * @param context
+     * @return false if the record does not match the WHERE clause
+     * @throws StatementExecutionException
+     */
+    public boolean matches(Bytes value, StatementEvaluationContext context) throws StatementExecutionException {
+        Object[] values = resolveValues(context);
+        long evaluated = 0;
+        try (ByteArrayCursor din = value.newCursor()) {
+            while (!din.isEof()) {
+                int serialPosition = din.readVIntNoEOFException();
+                if (din.isEof()) {
+                    break;
+                }
+                int[] columnTerms = serialPosition < termsBySerialPosition.length
+                        ? termsBySerialPosition[serialPosition] : null;
+                if (columnTerms == null) {
+                    RecordSerializer.skipTypeAndValue(din);
+                    continue;
+                }
+                if (!matchesColumn(din, columnTerms, values)) {
+                    return false;
+                }
+                for (int t : columnTerms) {
+                    evaluated |= 1L << t;
+                }
+            }
+        } catch (IOException err) {
+            throw new IllegalStateException("bad data:" + err, err);
+        }
+        if (evaluated != allTermsMask) {
+            // columns not present in the record are NULL
+            for (int i = 0; i < terms.length; i++) {
+                if ((evaluated & (1L << i)) == 0 && terms[i].operator != Operator.IS_NULL) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesColumn(ByteArrayCursor din, int[] columnTerms, Object[] values) throws IOException {
+        int type = din.readVInt();
+        switch (type) {
+            case ColumnTypes.INTEGER:
+            case ColumnTypes.NOTNULL_INTEGER: {
+                int v = din.readInt();
+                for (int t : columnTerms) {
+                    Term term = terms[t];
+                    if (term.operator == Operator.IS_NULL) {
+                        return false;
+                    }
+                    if (term.operator == Operator.IS_NOT_NULL) {
+                        continue;
+                    }
+                    boolean ok = false;
+                    for (int i = term.firstValue; i < term.firstValue + term.numValues && !ok; i++) {
+                        ok = term.accept(compareInt(v, values[i]));
+                    }
+                    if (!ok) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case ColumnTypes.LONG:
+            case ColumnTypes.NOTNULL_LONG: {
+                long v = din.readLong();
+                for (int t : columnTerms) {
+                    Term term = terms[t];
+                    if (term.operator == Operator.IS_NULL) {
+                        return false;
+                    }
+                    if (term.operator == Operator.IS_NOT_NULL) {
+                        continue;
+                    }
+                    boolean ok = false;
+                    for (int i = term.firstValue; i < term.firstValue + term.numValues && !ok; i++) {
+                        ok = term.accept(compareLong(v, values[i]));
+                    }
+                    if (!ok) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case ColumnTypes.TIMESTAMP:
+            case ColumnTypes.NOTNULL_TIMESTAMP: {
+                long v = din.readLong();
+                for (int t : columnTerms) {
+                    Term term = terms[t];
+                    if (term.operator == Operator.IS_NULL) {
+                        return false;
+                    }
+                    if (term.operator == Operator.IS_NOT_NULL) {
+                        continue;
+                    }
+                    boolean ok = false;
+                    for (int i = term.firstValue; i < term.firstValue + term.numValues && !ok; i++) {
+                        ok = term.accept(compareTimestamp(v, values[i]));
+                    }
+                    if (!ok) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case ColumnTypes.DOUBLE:
+            case ColumnTypes.NOTNULL_DOUBLE: {
+                double v = din.readDouble();
+                for (int t : columnTerms) {
+                    Term term = terms[t];
+                    if (term.operator == Operator.IS_NULL) {
+                        return false;
+                    }
+                    if (term.operator == Operator.IS_NOT_NULL) {
+                        continue;
+                    }
+                    boolean ok = false;
+                    for (int i = term.firstValue; i < term.firstValue + term.numValues && !ok; i++) {
+                        ok = term.accept(compareDouble(v, values[i]));
+                    }
+                    if (!ok) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case ColumnTypes.STRING:
+            case ColumnTypes.NOTNULL_STRING: {
+                int len = din.readArrayLen();
+                if (len < 0) {
+                    // NULL array
+                    return matchesNull(columnTerms);
+                }
+                byte[] array = din.getArray();
+                int offset = din.getPosition();
+                din.skip(len);
+                for (int t : columnTerms) {
+                    Term term = terms[t];
+                    if (term.operator == Operator.IS_NULL) {
+                        return false;
+                    }
+                    if (term.operator == Operator.IS_NOT_NULL) {
+                        continue;
+                    }
+                    boolean ok = false;
+                    if (term.operator == Operator.LIKE_PREFIX) {
+                        byte[] prefix = term.likePrefix;
+                        ok = len >= prefix.length
+                                && RawString.compareRaw(array, offset, prefix.length, prefix, 0, prefix.length) == 0;
+                    } else {
+                        for (int i = term.firstValue; i < term.firstValue + term.numValues && !ok; i++) {
+                            ok = term.accept(compareString(array, offset, len, values[i]));
+                        }
+                    }
+                    if (!ok) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case ColumnTypes.NULL:
+                return matchesNull(columnTerms);
+            case ColumnTypes.BOOLEAN:
+            case ColumnTypes.NOTNULL_BOOLEAN:
+                return matchesObject(din.readBoolean(), columnTerms, values);
+            case ColumnTypes.BYTEARRAY:
+            case ColumnTypes.NOTNULL_BYTEARRAY:
+                return matchesObject(din.readArray(), columnTerms, values);
+            default:
+                throw new IllegalArgumentException("bad column type " + type);
+        }
+    }
+
+    private boolean matchesNull(int[] columnTerms) {
+        for (int t : columnTerms) {
+            if (terms[t].operator != Operator.IS_NULL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Slow path for less common types
+     */
+    private boolean matchesObject(Object v, int[] columnTerms, Object[] values) {
+        if (v == null) {
+            return matchesNull(columnTerms);
+        }
+        for (int t : columnTerms) {
+            Term term = terms[t];
+            if (term.operator == Operator.IS_NULL) {
+                return false;
+            }
+            if (term.operator == Operator.IS_NOT_NULL) {
+                continue;
+            }
+            boolean ok = false;
+            if (term.operator == Operator.LIKE_PREFIX) {
+                ok = SQLRecordPredicateFunctions.matches(v, term.likePattern);
+            } else {
+                for (int i = term.firstValue; i < term.firstValue + term.numValues && !ok; i++) {
+                    ok = term.accept(SQLRecordPredicateFunctions.compareConsiderNull(v, values[i]));
+                }
+            }
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The compare functions give the same outcome of
+     * SQLRecordPredicateFunctions.compareConsiderNull on the boxed value of
+     * the column, without boxing the common cases
+     */
+    private static CompareResult compareInt(int v, Object cvalue) {
+        if (cvalue instanceof Integer) {
+            return CompareResult.fromInt(v - (Integer) cvalue);
+        }
+        if (cvalue instanceof Long) {
+            return CompareResult.fromLong(v - (Long) cvalue);
+        }
+        if (cvalue instanceof Number) {
+            return CompareResult.fromInt(Double.compare(v, ((Number) cvalue).doubleValue()));
+        }
+        return SQLRecordPredicateFunctions.compareConsiderNull(v, cvalue);
+    }
+
+    private static CompareResult compareLong(long v, Object cvalue) {
+        if (cvalue instanceof Long) {
+            return CompareResult.fromLong(v - (Long) cvalue);
+        }
+        if (cvalue instanceof java.util.Date) {
+            return CompareResult.fromLong(v - ((java.util.Date) cvalue).getTime());
+        }
+        if (cvalue instanceof Number) {
+            return CompareResult.fromInt(Double.compare(v, ((Number) cvalue).doubleValue()));
+        }
+        return SQLRecordPredicateFunctions.compareConsiderNull(v, cvalue);
+    }
+
+    private static CompareResult compareTimestamp(long v, Object cvalue) {
+        if (cvalue instanceof java.util.Date) {
+            return CompareResult.fromLong(v - ((java.util.Date) cvalue).getTime());
+        }
+        if (cvalue instanceof Long) {
+            return CompareResult.fromLong(v - (Long) cvalue);
+        }
+        return SQLRecordPredicateFunctions.compareConsiderNull(new java.sql.Timestamp(v), cvalue);
+    }
+
+    private static CompareResult compareDouble(double v, Object cvalue) {
+        if (cvalue instanceof Number) {
+            return CompareResult.fromInt(Double.compare(v, ((Number) cvalue).doubleValue()));
+        }
+        return SQLRecordPredicateFunctions.compareConsiderNull(v, cvalue);
+    }
+
+    private static CompareResult compareString(byte[] array, int offset, int len, Object cvalue) {
+        if (cvalue instanceof RawString) {
+            return CompareResult.fromInt(RawString.compareRaw(array, offset, len, (RawString) cvalue));
+        }
+        if (cvalue == null) {
+            return CompareResult.NULL;
+        }
+        return SQLRecordPredicateFunctions.compareConsiderNull(RawString.newUnpooledRawString(array, offset, len), cvalue);
+    }
+
+    @Override
+    public String toString() {
+        return "SerializedRecordMatcher{" + "terms=" + terms.length + ", fullCondition=" + fullCondition + '}';
+    }
+}
@@ -24,6 +24,7 @@ import herddb.core.MemoryManager;
 import herddb.core.PostCheckpointAction;
 import herddb.core.RecordSetFactory;
 import herddb.index.KeyToPageIndex;
+import herddb.index.OffHeapKeyToPageIndex;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
 import herddb.model.Record;
@@ -51,6 +52,36 @@ public abstract class DataStorageManager implements AutoCloseable {
 
     private static final Logger LOG = Logger.getLogger(DataStorageManager.class.getName());
 
+    private volatile boolean offHeapKeyToPageIndex;
+    private volatile boolean offHeapKeyToPageLeaves;
+
+    /**
+     * Use {@link OffHeapKeyToPageIndex} for the primary key index of tables created after this call
+     *
+     * @param offHeapKeyToPageIndex
+     */
+    public void setOffHeapKeyToPageIndex(boolean offHeapKeyToPageIndex) {
+        this.offHeapKeyToPageIndex = offHeapKeyToPageIndex;
+    }
+
+    public boolean isOffHeapKeyToPageIndex() {
+        return offHeapKeyToPageIndex;
+    }
+
+    /**
+     * Keep loaded leaves of {@link herddb.index.blink.BLinkKeyToPageIndex} off-heap for the primary key
+     * index of tables created after this call
+     *
+     * @param offHeapKeyToPageLeaves
+     */
+    public void setOffHeapKeyToPageLeaves(boolean offHeapKeyToPageLeaves) {
+        this.offHeapKeyToPageLeaves = offHeapKeyToPageLeaves;
+    }
+
+    public boolean isOffHeapKeyToPageLeaves() {
+        return offHeapKeyToPageLeaves;
+    }
+
     /**
      * Load a data page in memory
      *
@@ -63,6 +94,22 @@ public abstract class DataStorageManager implements AutoCloseable {
     public abstract List<Record> readPage(String tableSpace, String uuid, Long pageId)
             throws DataStorageManagerException;
 
+    /**
+     * Load a data page reading records in place, without building {@link Record} objects. This is an
+     * optional operation, to be used only for immutable pages.
+     *
+     * @param tableSpace
+     * @param uuid
+     * @param pageId
+     * @return a read only view of the page or null if the page cannot be read in place, in this case the
+     * page must be loaded using {@link #readPage(java.lang.String, java.lang.String, java.lang.Long)}
+     * @throws herddb.storage.DataStorageManagerException
+     */
+    public InPlaceRecordsMap readPageInPlace(String tableSpace, String uuid, Long pageId)
+            throws DataStorageManagerException {
+        return null;
+    }
+
     public abstract void initIndex(String tableSpace, String uuid) throws DataStorageManagerException;
 
     public abstract void initTable(String tableSpace, String uuid) throws DataStorageManagerException;
@@ -72,6 +119,29 @@ public abstract class DataStorageManager implements AutoCloseable {
 
     public abstract void initTablespace(String tableSpace) throws DataStorageManagerException;
 
+    /**
+     * Configures the compression codec to be used for the data pages of a table. Pages already written
+     * with a different codec are still readable.
+     *
+     * @param tableSpace
+     * @param uuid
+     * @param codec
+     */
+    public void configureTablePageCompression(String tableSpace, String uuid, PageCompressionCodec codec) {
+    }
+
+    /**
+     * Ratio between the logical size and the size on disk of the data pages of a table, which have been
+     * written or read since the boot.
+     *
+     * @param tableSpace
+     * @param uuid
+     * @return the compression ratio, 1 if no page has been compressed
+     */
+    public double getPageCompressionRatio(String tableSpace, String uuid) {
+        return 1;
+    }
+
     @FunctionalInterface
     public interface DataReader<X> {
 
@@ -0,0 +1,447 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.storage;
+
+import herddb.model.Record;
+import herddb.utils.Bytes;
+import herddb.utils.SizeAwareObject;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read only view of the records of a data page, read in place from a (usually memory mapped) buffer.
+ * <p>
+ * Instead of an {@link java.util.HashMap} of {@link Record} objects only a compact table of offsets,
+ * sorted by key, is kept on the heap. Lookups are binary searches which compare keys directly on the
+ * buffer, a {@link Record} is copied to the heap only when it is actually requested.
+ * </p>
+ * <p>
+ * The buffer is released (unmapped) when the owner calls {@link #close()} and there are no more
+ * concurrent readers: every access to the buffer is guarded by a reference count. After the release
+ * lookups do not find any record, see {@link #isReleased()}, and iterations fail with a
+ * {@link DataStorageManagerException}.
+ * </p>
+ */
+public final class InPlaceRecordsMap extends AbstractMap<Bytes, Record> implements SizeAwareObject {
+
+    /**
+     * Heap size of the instance, not considering the offsets table
+     */
+    private static final int CONSTANT_BYTE_SIZE = 64;
+
+    private static final int ENTRY_INTS = 4;
+    private static final int KEY_OFFSET = 0;
+    private static final int KEY_LEN = 1;
+    private static final int VALUE_OFFSET = 2;
+    private static final int VALUE_LEN = 3;
+
+    private final ByteBuffer buffer;
+    private final Runnable releaser;
+
+    /**
+     * One reference held by the owner until {@link #close()}, plus one for each access in progress
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * For each record (sorted by key): key offset, key length, value offset, value length
+     */
+    private final int[] entries;
+
+    private final int size;
+
+    private InPlaceRecordsMap(ByteBuffer buffer, int[] entries, Runnable releaser) {
+        this.buffer = buffer;
+        this.releaser = releaser;
+        this.entries = entries;
+        this.size = entries.length / ENTRY_INTS;
+    }
+
+    /**
+     * Builds the offsets table scanning a sequence of records, each one written as two arrays (key and
+     * value) with a vint length prefix.
+     *
+     * @param buffer     buffer, it will not be copied
+     * @param position   offset of the first record
+     * @param numRecords number of records
+     * @param releaser   action which releases the buffer, null if the buffer does not need to be released
+     * @return the map
+     * @throws IOException if the buffer is not well formed
+     */
+    public static InPlaceRecordsMap build(ByteBuffer buffer, int position, int numRecords, Runnable releaser) throws IOException {
+        final int[] entries = new int[numRecords * ENTRY_INTS];
+        int pos = position;
+        for (int i = 0; i < numRecords; i++) {
+            int base = i * ENTRY_INTS;
+            int keyLen = readVInt(buffer, pos);
+            pos += vIntSize(keyLen);
+            checkReadable(buffer, pos, keyLen);
+            entries[base +  KEY_OFFSET] = pos;
+            entries[base +  KEY_LEN] = keyLen;
+            pos += keyLen;
+            int valueLen = readVInt(buffer, pos);
+            pos += vIntSize(valueLen);
+            checkReadable(buffer, pos, valueLen);
+            entries[base +  VALUE_OFFSET] = pos;
+            entries[base +  VALUE_LEN] = valueLen;
+            pos += valueLen;
+        }
+
+        sort(buffer, entries, numRecords);
+        return new InPlaceRecordsMap(buffer, entries, releaser);
+    }
+
+    /**
+     * In place heap sort of the offsets table, no allocation is needed
+     */
+    private static void sort(ByteBuffer buffer, int[] entries, int size) {
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(buffer, entries, i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(entries, 0, end);
+            siftDown(buffer, entries, 0, end);
+        }
+    }
+
+    private static void siftDown(ByteBuffer buffer, int[] entries, int root, int size) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && compareEntries(buffer, entries, child, child + 1) < 0) {
+                child++;
+            }
+            if (compareEntries(buffer, entries, root, child) >= 0) {
+                return;
+            }
+            swap(entries, root, child);
+            root = child;
+        }
+    }
+
+    private static int compareEntries(ByteBuffer buffer, int[] entries, int a, int b) {
+        final int aBase = a * ENTRY_INTS;
+        final int bBase = b * ENTRY_INTS;
+        return compare(buffer,
+                entries[aBase + KEY_OFFSET], entries[aBase + KEY_LEN],
+                entries[bBase + KEY_OFFSET], entries[bBase + KEY_LEN]);
+    }
+
+    private static void swap(int[] entries, int a, int b) {
+        final int aBase = a * ENTRY_INTS;
+        final int bBase = b * ENTRY_INTS;
+        for (int i = 0; i < ENTRY_INTS; i++) {
+            int tmp = entries[aBase + i];
+            entries[aBase + i] = entries[bBase + i];
+            entries[bBase + i] = tmp;
+        }
+    }
+
+    /**
+     * Drops the reference of the owner, the buffer will be released as soon as there are no more accesses in
+     * progress. Calling this method more than once has no effect.
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    /**
+     * @return true if the buffer has been released, the map cannot be accessed anymore
+     */
+    public boolean isReleased() {
+        return refCount.get() <= 0;
+    }
+
+    private boolean retain() {
+        while (true) {
+            int current = refCount.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (refCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release() {
+        if (refCount.decrementAndGet() == 0 && releaser != null) {
+            releaser.run();
+        }
+    }
+
+    /**
+     * Copies all of the records to the heap
+     *
+     * @return the records, or null if the buffer has already been released
+     */
+    public List<Record> copyRecords() {
+        if (!retain()) {
+            return null;
+        }
+        try {
+            List<Record> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                final int base = i * ENTRY_INTS;
+                result.add(new Record(copy(base + KEY_OFFSET), copy(base + VALUE_OFFSET)));
+            }
+            return result;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Position after the last record, useful to locate data written after records
+     */
+    public static int skipRecords(ByteBuffer buffer, int position, int numRecords) throws IOException {
+        int pos = position;
+        for (int i = 0; i < numRecords * 2; i++) {
+            int len = readVInt(buffer, pos);
+            pos += vIntSize(len);
+            checkReadable(buffer, pos, len);
+            pos += len;
+        }
+        return pos;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return CONSTANT_BYTE_SIZE + entries.length * 4L;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof Bytes) || !retain()) {
+            return false;
+        }
+        try {
+            return indexOf((Bytes) key) >= 0;
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public Record get(Object key) {
+        if (!(key instanceof Bytes)) {
+            return null;
+        }
+        if (!retain()) {
+            return null;
+        }
+        try {
+            final Bytes bytes = (Bytes) key;
+            final int index = indexOf(bytes);
+            if (index < 0) {
+                return null;
+            }
+            // the key is equal to the given one, no need to copy it
+            return new Record(bytes, copy(index * ENTRY_INTS + VALUE_OFFSET));
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public Record put(Bytes key, Record value) {
+        throw new UnsupportedOperationException("read only page");
+    }
+
+    @Override
+    public Record remove(Object key) {
+        throw new UnsupportedOperationException("read only page");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("read only page");
+    }
+
+    @Override
+    public Collection<Record> values() {
+        return new AbstractCollection<Record>() {
+            @Override
+            public Iterator<Record> iterator() {
+                return recordsForIteration().iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Bytes, Record>> entrySet() {
+        return new AbstractSet<Entry<Bytes, Record>>() {
+            @Override
+            public Iterator<Entry<Bytes, Record>> iterator() {
+                final Iterator<Record> records = recordsForIteration().iterator();
+                return new Iterator<Entry<Bytes, Record>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return records.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Bytes, Record> next() {
+                        Record record = records.next();
+                        return new SimpleImmutableEntry<>(record.key, record);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Records are copied all at once while the buffer is retained, so an
+     * iteration is never interrupted by a concurrent release of the buffer
+     */
+    private List<Record> recordsForIteration() {
+        List<Record> records = copyRecords();
+        if (records == null) {
+            throw new DataStorageManagerException("page buffer already released");
+        }
+        return records;
+    }
+
+    private Bytes copy(int entry) {
+        final int len = entries[entry + 1];
+        if (len == 0) {
+            return Bytes.EMPTY_ARRAY;
+        }
+        final byte[] data = new byte[len];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(entries[entry]);
+        view.get(data);
+        return Bytes.from_array(data);
+    }
+
+    private int indexOf(Bytes key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int base = mid * ENTRY_INTS;
+            final int cmp = compare(buffer, entries[base + KEY_OFFSET], entries[base + KEY_LEN], key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Unsigned lexicographic comparison, shorter keys come first
+     */
+    private static int compare(ByteBuffer buffer, int aOffset, int aLen, int bOffset, int bLen) {
+        final int len = Math.min(aLen, bLen);
+        for (int i = 0; i < len; i++) {
+            int cmp = Integer.compare(buffer.get(aOffset + i) & 0xff, buffer.get(bOffset + i) & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(aLen, bLen);
+    }
+
+    private static int compare(ByteBuffer buffer, int aOffset, int aLen, Bytes b) {
+        final byte[] bArray = b.getBuffer();
+        final int bOffset = b.getOffset();
+        final int bLen = b.getLength();
+        final int len = Math.min(aLen, bLen);
+        for (int i = 0; i < len; i++) {
+            int cmp = Integer.compare(buffer.get(aOffset + i) & 0xff, bArray[bOffset + i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(aLen, bLen);
+    }
+
+    private static int readVInt(ByteBuffer buffer, int position) throws IOException {
+        int pos = position;
+        checkReadable(buffer, pos, 1);
+        byte b = buffer.get(pos++);
+        int i = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            checkReadable(buffer, pos, 1);
+            b = buffer.get(pos++);
+            i |= (b & 0x7F) << shift;
+        }
+        if (i < 0) {
+            throw new IOException("corrupted data, negative array length " + i);
+        }
+        return i;
+    }
+
+    private static int vIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void checkReadable(ByteBuffer buffer, int position, int len) throws EOFException {
+        if (position + len > buffer.limit()) {
+            throw new EOFException("buffer len " + buffer.limit() + ", pos " + position + ", try to read " + len + " bytes");
+        }
+    }
+}
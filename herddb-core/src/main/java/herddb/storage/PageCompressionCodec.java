@@ -0,0 +1,163 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.storage;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Block compression codecs for data pages.
+ * <p>
+ * The {@link #getId() id} of the codec is persisted inside every compressed page, so ids must never be
+ * reused or changed.
+ * </p>
+ */
+public enum PageCompressionCodec {
+
+    /**
+     * No compression, pages are written using the legacy format
+     */
+    NONE(0, "none") {
+        @Override
+        public int maxCompressedLength(int length) {
+            return length;
+        }
+
+        @Override
+        public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxDestLen) {
+            System.arraycopy(src, srcOff, dest, destOff, srcLen);
+            return srcLen;
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcOff, byte[] dest, int destOff, int destLen) {
+            System.arraycopy(src, srcOff, dest, destOff, destLen);
+        }
+    },
+    /**
+     * Fast LZ4 compression
+     */
+    LZ4(1, "lz4") {
+        @Override
+        public int maxCompressedLength(int length) {
+            return Holder.LZ4_FAST.maxCompressedLength(length);
+        }
+
+        @Override
+        public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxDestLen) {
+            return Holder.LZ4_FAST.compress(src, srcOff, srcLen, dest, destOff, maxDestLen);
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcOff, byte[] dest, int destOff, int destLen) {
+            Holder.DECOMPRESSOR.decompress(src, srcOff, dest, destOff, destLen);
+        }
+    },
+    /**
+     * LZ4 High Compression, slower on writes but with a better ratio. Decompression speed is the same as
+     * {@link #LZ4}
+     */
+    LZ4HC(2, "lz4hc") {
+        @Override
+        public int maxCompressedLength(int length) {
+            return Holder.LZ4_HIGH.maxCompressedLength(length);
+        }
+
+        @Override
+        public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxDestLen) {
+            return Holder.LZ4_HIGH.compress(src, srcOff, srcLen, dest, destOff, maxDestLen);
+        }
+
+        @Override
+        public void decompress(byte[] src, int srcOff, byte[] dest, int destOff, int destLen) {
+            Holder.DECOMPRESSOR.decompress(src, srcOff, dest, destOff, destLen);
+        }
+    };
+
+    private final int id;
+    private final String codecName;
+
+    PageCompressionCodec(int id, String codecName) {
+        this.id = id;
+        this.codecName = codecName;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getCodecName() {
+        return codecName;
+    }
+
+    /**
+     * Maximum number of bytes needed to compress a block of the given length
+     */
+    public abstract int maxCompressedLength(int length);
+
+    /**
+     * Compress a block of data
+     *
+     * @return the number of bytes written on dest
+     */
+    public abstract int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxDestLen);
+
+    /**
+     * Decompress a block of data, the original (uncompressed) length must be known.
+     */
+    public abstract void decompress(byte[] src, int srcOff, byte[] dest, int destOff, int destLen);
+
+    public static PageCompressionCodec fromId(int id) {
+        for (PageCompressionCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("unknown page compression codec id " + id);
+    }
+
+    /**
+     * Parses a codec from configuration, a null or empty value means {@link #NONE}
+     */
+    public static PageCompressionCodec fromName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return NONE;
+        }
+        for (PageCompressionCodec codec : values()) {
+            if (codec.codecName.equalsIgnoreCase(name.trim())) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("unknown page compression codec " + name);
+    }
+
+    /**
+     * Lazy initialization of native/unsafe LZ4 instances
+     */
+    private static final class Holder {
+
+        private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+        private static final LZ4Compressor LZ4_FAST = FACTORY.fastCompressor();
+        private static final LZ4Compressor LZ4_HIGH = FACTORY.highCompressor();
+        private static final LZ4FastDecompressor DECOMPRESSOR = FACTORY.fastDecompressor();
+    }
+}
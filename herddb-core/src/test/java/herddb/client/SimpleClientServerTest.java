@@ -39,6 +39,7 @@ import herddb.network.ChannelEventListener;
 import herddb.network.ServerHostData;
 import herddb.network.netty.NettyChannel;
 import herddb.proto.Pdu;
+import herddb.proto.PduCodec;
 import herddb.server.Server;
 import herddb.server.ServerConfiguration;
 import herddb.server.ServerSideConnectionPeer;
@@ -48,10 +49,18 @@ import herddb.utils.TestUtils;
 import io.netty.channel.socket.SocketChannel;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -753,6 +762,242 @@ public class SimpleClientServerTest {
         }
     }
 
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        try (Server server = new Server(new ServerConfiguration(baseDir))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            // all of the requests are in flight on the same socket
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, 1);
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true, Collections.emptyList()).updateCount);
+
+                List<CompletableFuture<DMLResult>> updates = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    updates.add(connection.executeUpdateAsync(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,s1) values(?,?)", TransactionContext.NOTRANSACTION_ID, false, true, Arrays.asList(i, "test" + i)));
+                }
+                for (CompletableFuture<DMLResult> update : updates) {
+                    assertEquals(1, update.get().updateCount);
+                }
+
+                List<CompletableFuture<ScanResultSet>> scans = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    scans.add(connection.executeScanAsync(TableSpace.DEFAULT,
+                            "SELECT s1 FROM mytable WHERE id>=?", true, Arrays.asList(i * 5), TransactionContext.NOTRANSACTION_ID, 0, 10));
+                }
+                for (int i = 0; i < 100; i++) {
+                    try (ScanResultSet scanner = scans.get(i).get()) {
+                        assertEquals(500 - i * 5, scanner.consume().size());
+                    }
+                }
+
+                // errors are reported to the single request
+                CompletableFuture<ScanResultSet> wrongQuery = connection.executeScanAsync(TableSpace.DEFAULT,
+                        "SELECT * FROM notexists", true, Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 10);
+                try {
+                    wrongQuery.get();
+                    fail();
+                } catch (ExecutionException err) {
+                    assertThat(err.getCause(), instanceOf(HDBException.class));
+                }
+                try (ScanResultSet scanner = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT id FROM mytable", true, Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 10)) {
+                    assertEquals(500, scanner.consume().size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Server which records the name of the thread which handles each request
+     */
+    private static Server newThreadTrackingServer(ServerConfiguration serverConfiguration, Map<String, Set<String>> threads) {
+        return new Server(serverConfiguration) {
+            @Override
+            protected ServerSideConnectionPeer buildPeer(Channel channel) {
+                return new ServerSideConnectionPeer(channel, this) {
+                    @Override
+                    public void requestReceived(Pdu message, Channel channel) {
+                        String request;
+                        if (message.type == Pdu.TYPE_KEY_VALUE_OPERATION) {
+                            request = (PduCodec.KeyValueOperation.readOperation(message) == PduCodec.KeyValueOperation.OPERATION_GET ? "get" : "write")
+                                    + (PduCodec.KeyValueOperation.readTx(message) != TransactionContext.NOTRANSACTION_ID ? "-tx" : "");
+                        } else {
+                            request = "type" + message.type;
+                        }
+                        threads.computeIfAbsent(request, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+                        super.requestReceived(message, channel);
+                    }
+                };
+            }
+        };
+    }
+
+    @Test
+    public void testInlineRequestsAndCallbackAffinity() throws Exception {
+        // only requests which never wait are executed on the event loop
+        try (Pdu ddl = PduCodec.decodePdu(PduCodec.ExecuteStatement.write(1, TableSpace.DEFAULT,
+                "CREATE TABLE t1 (id int primary key)", 0, false, 0, Collections.emptyList()));
+             Pdu get = PduCodec.decodePdu(PduCodec.KeyValueOperation.write(2, TableSpace.DEFAULT, "t1",
+                     PduCodec.KeyValueOperation.OPERATION_GET, 0, Arrays.asList(1)));
+             Pdu getInTransaction = PduCodec.decodePdu(PduCodec.KeyValueOperation.write(3, TableSpace.DEFAULT, "t1",
+                     PduCodec.KeyValueOperation.OPERATION_GET, 1, Arrays.asList(1)));
+             Pdu delete = PduCodec.decodePdu(PduCodec.KeyValueOperation.write(4, TableSpace.DEFAULT, "t1",
+                     PduCodec.KeyValueOperation.OPERATION_DELETE, 0, Arrays.asList(1)));
+             Pdu fetch = PduCodec.decodePdu(PduCodec.FetchScannerData.write(5, 1, 10));
+             Pdu close = PduCodec.decodePdu(PduCodec.CloseScanner.write(6, 1))) {
+            assertFalse(ServerSideConnectionPeer.isShortRequest(ddl));
+            assertFalse(ServerSideConnectionPeer.isShortRequest(get));
+            assertFalse(ServerSideConnectionPeer.isShortRequest(getInTransaction));
+            assertFalse(ServerSideConnectionPeer.isShortRequest(delete));
+            assertFalse(ServerSideConnectionPeer.isShortRequest(fetch));
+            assertTrue(ServerSideConnectionPeer.isShortRequest(close));
+        }
+
+        Path baseDir = folder.newFolder().toPath();
+        ServerConfiguration serverConfiguration = new ServerConfiguration(baseDir);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_CALLBACK_AFFINITY, true);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_INLINE_SHORT_REQUESTS, true);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_CALLBACK_THREADS, 4);
+        Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+        try (Server server = newThreadTrackingServer(serverConfiguration, threads)) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            // use the real network in order to pass through the event loop
+            clientConfiguration.set(ClientConfiguration.PROPERTY_CLIENT_CONNECT_LOCALVM_SERVER, false);
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, 1);
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true, Collections.emptyList()).updateCount);
+
+                List<CompletableFuture<DMLResult>> updates = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    updates.add(connection.executeUpdateAsync(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,s1) values(?,?)", TransactionContext.NOTRANSACTION_ID, false, true, Arrays.asList(i, "test" + i)));
+                }
+                for (CompletableFuture<DMLResult> update : updates) {
+                    assertEquals(1, update.get().updateCount);
+                }
+
+                Map<String, Object> record = new HashMap<>();
+                record.put("id", 1000);
+                record.put("s1", "kv");
+                assertEquals(1, connection.executePutByKey(TableSpace.DEFAULT, "mytable", TransactionContext.NOTRANSACTION_ID, record).updateCount);
+                GetResult get = connection.executeGetByKey(TableSpace.DEFAULT, "mytable", TransactionContext.NOTRANSACTION_ID, Arrays.asList(1000));
+                assertTrue(get.isFound());
+                assertEquals(RawString.of("kv"), get.getData().get(RawString.of("s1")));
+
+                long tx = connection.beginTransaction(TableSpace.DEFAULT);
+                assertTrue(connection.executeGetByKey(TableSpace.DEFAULT, "mytable", tx, Arrays.asList(1000)).isFound());
+                connection.rollbackTransaction(TableSpace.DEFAULT, tx);
+
+                // scans fetch more than one chunk
+                try (ScanResultSet scanner = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT id FROM mytable", true, Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 10)) {
+                    assertEquals(201, scanner.consume().size());
+                }
+                // a scanner which is not consumed is released by the client
+                try (ScanResultSet scanner = connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT id FROM mytable", true, Collections.emptyList(), TransactionContext.NOTRANSACTION_ID, 0, 10)) {
+                    assertTrue(scanner.hasNext());
+                }
+                TestUtils.waitForCondition(() -> threads.containsKey("type" + Pdu.TYPE_CLOSESCANNER), TestUtils.NOOP, 10);
+            }
+        }
+        // every request is executed by the callback threads but for the release of the scanners which is inlined on the event loop
+        Set<String> callbackThreads = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : threads.entrySet()) {
+            if (!entry.getKey().equals("type" + Pdu.TYPE_CLOSESCANNER)) {
+                callbackThreads.addAll(entry.getValue());
+            }
+        }
+        assertTrue(threads.containsKey("get"));
+        assertTrue(threads.containsKey("write"));
+        assertTrue(threads.containsKey("get-tx"));
+        assertTrue(threads.containsKey("type" + Pdu.TYPE_EXECUTE_STATEMENT));
+        for (String callbackThread : callbackThreads) {
+            assertTrue(callbackThread, callbackThread.startsWith("herddb-srvcall-"));
+        }
+        Set<String> eventLoopThreads = threads.get("type" + Pdu.TYPE_CLOSESCANNER);
+        assertEquals(1, eventLoopThreads.size());
+        assertFalse(callbackThreads.contains(eventLoopThreads.iterator().next()));
+    }
+
+    @Test
+    public void testCallbackAffinityExecutesRequestsInOrder() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        ServerConfiguration serverConfiguration = new ServerConfiguration(baseDir);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_CALLBACK_AFFINITY, true);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_NETWORK_CALLBACK_THREADS, 2);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_WRITELOCK_TIMEOUT, 30);
+        Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+        try (Server server = newThreadTrackingServer(serverConfiguration, threads)) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            clientConfiguration.set(ClientConfiguration.PROPERTY_CLIENT_CONNECT_LOCALVM_SERVER, false);
+            clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, 1);
+            // each connection has its own socket, so its own queue on the server
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection1 = client.openConnection();
+                 HDBConnection other = client.openConnection();
+                 HDBConnection connection2 = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                // sockets are opened in this order, pinning the connections to the two
+                // threads round robin would make connection1 and connection2 share a thread
+                assertTrue(connection1.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+                assertTrue(other.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+                assertTrue(connection2.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                connection1.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id int primary key, s1 string)", 0, false, true, Collections.emptyList());
+                assertEquals(1, connection1.executeUpdate(TableSpace.DEFAULT,
+                        "INSERT INTO mytable (id,s1) values(?,?)", TransactionContext.NOTRANSACTION_ID, false, true, Arrays.asList(1, "a")).updateCount);
+
+                long tx1 = connection1.beginTransaction(TableSpace.DEFAULT);
+                long tx2 = connection2.beginTransaction(TableSpace.DEFAULT);
+                assertEquals(1, connection1.executeUpdate(TableSpace.DEFAULT,
+                        "UPDATE mytable SET s1=? WHERE id=?", tx1, false, true, Arrays.asList("tx1", 1)).updateCount);
+
+                // tx2 waits for the lock held by tx1 and keeps one of the two callback threads busy,
+                // the commit of tx1 comes from the other connection and goes through
+                CompletableFuture<DMLResult> update2 = connection2.executeUpdateAsync(TableSpace.DEFAULT,
+                        "UPDATE mytable SET s1=? WHERE id=?", tx2, false, true, Arrays.asList("tx2", 1));
+                Thread.sleep(500);
+                assertFalse(update2.isDone());
+                connection1.commitTransaction(TableSpace.DEFAULT, tx1);
+
+                // now tx2 gets the lock
+                assertEquals(1, update2.get(30, TimeUnit.SECONDS).updateCount);
+                connection2.commitTransaction(TableSpace.DEFAULT, tx2);
+
+                GetResult get = connection1.executeGetByKey(TableSpace.DEFAULT, "mytable", TransactionContext.NOTRANSACTION_ID, Arrays.asList(1));
+                assertEquals(RawString.of("tx2"), get.getData().get(RawString.of("s1")));
+            }
+        }
+        Set<String> allThreads = new HashSet<>();
+        threads.values().forEach(allThreads::addAll);
+        for (String thread : allThreads) {
+            assertTrue(thread, thread.startsWith("herddb-srvcall-"));
+        }
+    }
+
     @Test
     public void testEnsureOpen() throws Exception {
         Path baseDir = folder.newFolder().toPath();
@@ -0,0 +1,174 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.core.stats.TableManagerStats;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.model.planner.BatchScanner;
+import herddb.utils.DataAccessor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests about queries executed in batch mode
+ */
+public class BatchExecutionTest {
+
+    private static final int ROWS = 3000;
+
+    private static Integer n1(int i) {
+        return i % 7 == 0 ? null : i % 100;
+    }
+
+    private static Long l1(int i) {
+        return i % 11 == 0 ? null : i * 1000L;
+    }
+
+    private static Double d1(int i) {
+        return i % 13 == 0 ? null : i / 4.0;
+    }
+
+    private static double sum(Integer n, Double d) {
+        return (n == null ? 0 : n) + d;
+    }
+
+    @Test
+    public void aggregatesAndFilters() throws Exception {
+        assertTrue(BatchScanner.ENABLED);
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId, new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 string primary key, n1 int, l1 long, d1 double)", Collections.emptyList());
+            for (int i = 0; i < ROWS; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,l1,d1) values(?,?,?,?)",
+                        Arrays.asList("k" + i, n1(i), l1(i), d1(i)));
+            }
+            TableManagerStats stats = manager.getTableSpaceManager("tblspace1").getTableManager("tsql").getStats();
+
+            long count = 0;
+            long sumN1 = 0;
+            long sumD1 = 0;
+            Long minL1 = null;
+            Double maxD1 = null;
+            for (int i = 0; i < ROWS; i++) {
+                Integer n = n1(i);
+                if (n == null || n < 50) {
+                    continue;
+                }
+                count++;
+                sumN1 += n;
+                if (d1(i) != null) {
+                    sumD1 += d1(i).longValue();
+                    maxD1 = maxD1 == null ? d1(i) : Math.max(maxD1, d1(i));
+                }
+                if (l1(i) != null) {
+                    minL1 = minL1 == null ? l1(i) : Math.min(minL1, l1(i));
+                }
+            }
+            long aggregationsBefore = stats.getBatchAggregations();
+            long rowsBefore = stats.getBatchRowsRead();
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*), SUM(n1), SUM(d1), MIN(l1), MAX(d1) "
+                    + "FROM tblspace1.tsql WHERE n1 >= 50", Collections.emptyList())) {
+                List<DataAccessor> result = scan.consume();
+                assertEquals(1, result.size());
+                Object[] values = result.get(0).getValues();
+                assertEquals(count, ((Number) values[0]).longValue());
+                assertEquals(sumN1, ((Number) values[1]).longValue());
+                assertEquals(sumD1, ((Number) values[2]).longValue());
+                assertEquals(minL1, Long.valueOf(((Number) values[3]).longValue()));
+                assertEquals(maxD1, ((Number) values[4]).doubleValue(), 0);
+            }
+            // the aggregation has been computed on batches, not on the row path
+            assertEquals(aggregationsBefore + 1, stats.getBatchAggregations());
+            // the predicate is evaluated by the table scan, only matching rows are batched
+            assertEquals(count, stats.getBatchRowsRead() - rowsBefore);
+
+            // aggregates on an expression, no matching rows
+            aggregationsBefore = stats.getBatchAggregations();
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*), MAX(n1 * 2) "
+                    + "FROM tblspace1.tsql WHERE l1 > ?", Arrays.asList(ROWS * 1000L))) {
+                Object[] values = scan.consume().get(0).getValues();
+                assertEquals(0L, ((Number) values[0]).longValue());
+                assertNull(values[1]);
+            }
+            assertEquals(aggregationsBefore + 1, stats.getBatchAggregations());
+
+            // filter on a projected expression, a NULL operand of an addition
+            // counts as 0 unless both operands are NULL
+            int expected = 0;
+            for (int i = 0; i < ROWS; i++) {
+                if (d1(i) != null && sum(n1(i), d1(i)) > 600) {
+                    expected++;
+                }
+            }
+            rowsBefore = stats.getBatchRowsRead();
+            try (DataScanner scan = scan(manager, "SELECT * FROM (SELECT k1, n1 + d1 as s FROM tblspace1.tsql) t "
+                    + "WHERE s > 600", Collections.emptyList())) {
+                List<DataAccessor> result = scan.consume();
+                assertEquals(expected, result.size());
+                for (DataAccessor row : result) {
+                    int i = Integer.parseInt(row.get(0).toString().substring(1));
+                    assertEquals(sum(n1(i), d1(i)), ((Number) row.get(1)).doubleValue(), 0);
+                }
+            }
+            // the filter is pushed down to the table scan
+            assertEquals(expected, stats.getBatchRowsRead() - rowsBefore);
+
+            // a LIMIT reads only a few rows, the projection of an expression
+            // is not pushed down to the scan so the limit is applied on batches
+            int matching = 0;
+            for (int i = 0; i < ROWS; i++) {
+                if (n1(i) != null && n1(i) == 3) {
+                    matching++;
+                }
+            }
+            rowsBefore = stats.getBatchRowsRead();
+            try (DataScanner scan = scan(manager, "SELECT k1, n1 + 1 FROM tblspace1.tsql WHERE n1 = 3 LIMIT 2", Collections.emptyList())) {
+                List<DataAccessor> result = scan.consume();
+                assertEquals(2, result.size());
+                for (DataAccessor row : result) {
+                    assertEquals(4, ((Number) row.get(1)).intValue());
+                }
+            }
+            long rowsRead = stats.getBatchRowsRead() - rowsBefore;
+            assertTrue("rows read " + rowsRead, rowsRead > 0);
+            assertTrue("rows read " + rowsRead + ", matching " + matching, rowsRead < matching);
+        }
+    }
+}
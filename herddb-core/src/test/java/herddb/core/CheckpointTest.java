@@ -26,11 +26,13 @@ import static herddb.core.TestUtils.scan;
 import static herddb.model.TransactionContext.NO_TRANSACTION;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import herddb.core.stats.TableManagerStats;
 import herddb.file.FileCommitLogManager;
 import herddb.file.FileDataStorageManager;
 import herddb.file.FileMetadataStorageManager;
+import herddb.log.LogSequenceNumber;
 import herddb.mem.MemoryCommitLogManager;
 import herddb.mem.MemoryDataStorageManager;
 import herddb.mem.MemoryMetadataStorageManager;
@@ -41,6 +43,7 @@ import herddb.model.StatementExecutionException;
 import herddb.model.TransactionContext;
 import herddb.model.commands.CreateTableSpaceStatement;
 import herddb.server.ServerConfiguration;
+import herddb.storage.DataStorageManagerException;
 import herddb.utils.DataAccessor;
 import herddb.utils.RandomString;
 import herddb.utils.RawString;
@@ -50,9 +53,17 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -814,4 +825,220 @@ public class CheckpointTest {
 
         }
     }
+
+    /**
+     * Writes are not blocked while tables are checkpointed, tables checkpoints are after the tablespace
+     * checkpoint position
+     */
+    @Test
+    public void incrementalCheckpointTest() throws Exception {
+        String nodeId = "localhost";
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_INCREMENTAL, true);
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (k1 string, n1 int, primary key(k1))", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.t2 (k1 string, n1 int, primary key(k1))", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("a" + i, i));
+                executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("a" + i, i));
+            }
+
+            AtomicBoolean done = new AtomicBoolean();
+            manager.getTableSpaceManager("tblspace1").setAfterTableCheckPointAction(() -> {
+                if (done.compareAndSet(false, true)) {
+                    // the checkpoint is holding the tablespace lock, writes must not be blocked
+                    CompletableFuture<Void> writes = CompletableFuture.runAsync(() -> {
+                        try {
+                            for (int i = 10; i < 20; i++) {
+                                executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("a" + i, i));
+                                executeUpdate(manager, "INSERT INTO tblspace1.t2(k1,n1) values(?,?)", Arrays.asList("a" + i, i));
+                            }
+                        } catch (Exception err) {
+                            throw new RuntimeException(err);
+                        }
+                    });
+                    try {
+                        writes.get(10, TimeUnit.SECONDS);
+                    } catch (Exception err) {
+                        throw new RuntimeException(err);
+                    }
+                }
+            });
+            manager.checkpoint();
+            assertTrue(done.get());
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (String table : Arrays.asList("t1", "t2")) {
+                try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1." + table, Collections.emptyList())) {
+                    assertEquals(20, scan.consume().size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelCheckpointTest() throws Exception {
+        String nodeId = "localhost";
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_THREADS, 4);
+
+        int numTables = 10;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (int t = 0; t < numTables; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (k1 string, n1 int, primary key(k1))", Collections.emptyList());
+                execute(manager, "CREATE INDEX ix" + t + " ON tblspace1.t" + t + "(n1)", Collections.emptyList());
+                for (int i = 0; i < 100; i++) {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(k1,n1) values(?,?)", Arrays.asList("a" + i, i));
+                }
+            }
+
+            AtomicInteger checkpointedTables = new AtomicInteger();
+            manager.getTableSpaceManager("tblspace1").setAfterTableCheckPointAction(checkpointedTables::incrementAndGet);
+            manager.checkpoint();
+            assertEquals(numTables, checkpointedTables.get());
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (int t = 0; t < numTables; t++) {
+                try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.t" + t + " WHERE n1 >= 50", Collections.emptyList())) {
+                    assertEquals(50, scan.consume().size());
+                }
+            }
+        }
+    }
+
+    /**
+     * A full checkpoint which completes while an incremental checkpoint is checkpointing the tables
+     * supersedes it, the older position must not be recorded as the latest checkpoint
+     */
+    @Test
+    public void incrementalCheckpointSupersededByFullCheckpointTest() throws Exception {
+        String nodeId = "localhost";
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_INCREMENTAL, true);
+
+        Map<String, List<LogSequenceNumber>> checkpoints = new ConcurrentHashMap<>();
+        long tx;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath) {
+                    @Override
+                    public Collection<PostCheckpointAction> writeCheckpointSequenceNumber(String tableSpace, LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+                        checkpoints.computeIfAbsent(tableSpace, t -> new CopyOnWriteArrayList<>()).add(sequenceNumber);
+                        return super.writeCheckpointSequenceNumber(tableSpace, sequenceNumber);
+                    }
+                },
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (k1 string, n1 int, primary key(k1))", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("a" + i, i));
+            }
+            // the transaction must be recovered from the transactions file of the latest checkpoint
+            tx = TestUtils.beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("tx", 0), new TransactionContext(tx));
+
+            TableSpaceManager tableSpaceManager = manager.getTableSpaceManager("tblspace1");
+            AtomicInteger fullCheckpoints = new AtomicInteger();
+            tableSpaceManager.setBeforeCheckpointEndAction(() -> {
+                try {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t1(k1,n1) values(?,?)", Arrays.asList("a10", 10));
+                    // like a dump or a restore, from another thread
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            tableSpaceManager.checkpoint(true, false, false);
+                            fullCheckpoints.incrementAndGet();
+                        } catch (Exception err) {
+                            throw new RuntimeException(err);
+                        }
+                    }).get(10, TimeUnit.SECONDS);
+                } catch (Exception err) {
+                    throw new RuntimeException(err);
+                }
+            });
+            checkpoints.clear();
+            manager.checkpoint();
+            assertEquals(1, fullCheckpoints.get());
+
+            // only the full checkpoint has been recorded
+            List<LogSequenceNumber> recorded = checkpoints.get(tableSpaceManager.getTableSpaceUUID());
+            assertEquals(1, recorded.size());
+            assertEquals(recorded.get(0), manager.getDataStorageManager().getLastcheckpointSequenceNumber(tableSpaceManager.getTableSpaceUUID()));
+
+            // recovery will find the transaction
+            Set<Long> transactions = new HashSet<>();
+            manager.getDataStorageManager().loadTransactions(recorded.get(0), tableSpaceManager.getTableSpaceUUID(),
+                    t -> transactions.add(t.transactionId));
+            assertEquals(Collections.singleton(tx), transactions);
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            // pending transactions are rolled back by the new leader
+            assertNull(manager.getTableSpaceManager("tblspace1").getTransaction(tx));
+            try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.t1", Collections.emptyList())) {
+                assertEquals(11, scan.consume().size());
+            }
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.core.stats.TableManagerStats;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.utils.DataAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiPredicate;
+import org.junit.Test;
+
+/**
+ * Tests about joins between a small input and a big table, which are executed
+ * by looking up the big table using its primary key or a secondary index
+ */
+public class IndexLookupJoinTest {
+
+    private static final int BIG_TABLE_SIZE = 2000;
+
+    private static List<String> expected(List<Integer[]> small, boolean leftOuter,
+            BiPredicate<Integer[], Integer> condition) {
+        List<String> result = new ArrayList<>();
+        for (Integer[] s : small) {
+            boolean matched = false;
+            for (int id = 0; id < BIG_TABLE_SIZE; id++) {
+                if (condition.test(s, id)) {
+                    result.add(s[0] + "," + id);
+                    matched = true;
+                }
+            }
+            if (!matched && leftOuter) {
+                result.add(s[0] + ",null");
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> actual(DBManager manager, String query) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (DataScanner scan = scan(manager, query, Collections.emptyList())) {
+            for (DataAccessor t : scan.consume()) {
+                result.add(t.get("sid") + "," + t.get("id"));
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Runs the query, checking that the big table is accessed by index
+     * lookups and that the results are the same of an hash join, which is
+     * forced by reading the big table through a LIMIT
+     */
+    private static List<String> actualByLookup(DBManager manager, boolean secondaryIndex, String query) throws Exception {
+        TableManagerStats stats = manager.getTableSpaceManager("tblspace1").getTableManager("big").getStats();
+        long primaryKeyLookups = stats.getJoinPrimaryKeyLookups();
+        long secondaryIndexLookups = stats.getJoinSecondaryIndexLookups();
+        List<String> result = actual(manager, query);
+        if (secondaryIndex) {
+            assertEquals(primaryKeyLookups, stats.getJoinPrimaryKeyLookups());
+            assertTrue(stats.getJoinSecondaryIndexLookups() > secondaryIndexLookups);
+        } else {
+            assertTrue(stats.getJoinPrimaryKeyLookups() > primaryKeyLookups);
+            assertEquals(secondaryIndexLookups, stats.getJoinSecondaryIndexLookups());
+        }
+
+        primaryKeyLookups = stats.getJoinPrimaryKeyLookups();
+        secondaryIndexLookups = stats.getJoinSecondaryIndexLookups();
+        List<String> byHashJoin = actual(manager, query.replace("tblspace1.big",
+                "(SELECT * FROM tblspace1.big LIMIT " + BIG_TABLE_SIZE * 2 + ") big"));
+        assertEquals(primaryKeyLookups, stats.getJoinPrimaryKeyLookups());
+        assertEquals(secondaryIndexLookups, stats.getJoinSecondaryIndexLookups());
+        assertEquals(byHashJoin, result);
+        return result;
+    }
+
+    @Test
+    public void joinOnPrimaryKeyAndSecondaryIndex() throws Exception {
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId, new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.big (id int primary key, k int, s string)", Collections.emptyList());
+            execute(manager, "CREATE HASH INDEX big_k ON tblspace1.big (k)", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.small (sid int primary key, refid int)", Collections.emptyList());
+            for (int i = 0; i < BIG_TABLE_SIZE; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.big(id,k,s) values(?,?,?)", Arrays.asList(i, i % 500, "s" + (i % 3)));
+            }
+            List<Integer[]> small = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                // some references are NULL or do not match any record
+                Integer refid = i % 10 == 0 ? null : i * 97 % (BIG_TABLE_SIZE + 300);
+                executeUpdate(manager, "INSERT INTO tblspace1.small(sid,refid) values(?,?)", Arrays.asList(i, refid));
+                small.add(new Integer[]{i, refid});
+            }
+
+            // primary key
+            assertEquals(expected(small, false, (s, id) -> s[1] != null && s[1].equals(id)),
+                    actualByLookup(manager, false, "SELECT sid, id FROM tblspace1.small JOIN tblspace1.big ON refid = id"));
+            assertEquals(expected(small, true, (s, id) -> s[1] != null && s[1].equals(id)),
+                    actualByLookup(manager, false, "SELECT sid, id FROM tblspace1.small LEFT JOIN tblspace1.big ON refid = id"));
+            assertEquals(expected(small, false, (s, id) -> s[1] != null && s[1].equals(id)),
+                    actualByLookup(manager, false, "SELECT sid, id FROM tblspace1.big JOIN tblspace1.small ON id = refid"));
+            assertEquals(expected(small, true, (s, id) -> s[1] != null && s[1].equals(id)),
+                    actualByLookup(manager, false, "SELECT sid, id FROM tblspace1.big RIGHT JOIN tblspace1.small ON id = refid"));
+
+            // secondary index, with filters on the big table and non equi conditions
+            assertEquals(expected(small, false, (s, id) -> s[1] != null && s[1] == id % 500),
+                    actualByLookup(manager, true, "SELECT sid, id FROM tblspace1.small JOIN tblspace1.big ON refid = k"));
+            assertEquals(expected(small, true, (s, id) -> s[1] != null && s[1] == id % 500 && id % 3 == 1),
+                    actualByLookup(manager, true, "SELECT sid, id FROM tblspace1.small LEFT JOIN "
+                            + "(SELECT * FROM tblspace1.big WHERE s = 's1') b ON refid = k"));
+            assertEquals(expected(small, true, (s, id) -> s[1] != null && s[1] == id % 500 && id > s[0] * 50),
+                    actualByLookup(manager, true, "SELECT sid, id FROM tblspace1.small LEFT JOIN tblspace1.big ON refid = k AND id > sid * 50"));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.bookkeeper.test.TestStatsProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about queries served only by the entries of a secondary index
+ */
+public class IndexOnlyScanTest {
+
+    private static final int ROWS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Integer n1(int i) {
+        return i % 9 == 0 ? null : i % 50;
+    }
+
+    private static String s1(int i) {
+        return "s" + (i % 20);
+    }
+
+    private static List<String> rows(DataScanner scan) throws Exception {
+        List<String> result = new ArrayList<>();
+        for (DataAccessor row : scan.consume()) {
+            result.add(Arrays.toString(row.getValues()));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> sorted(List<String> rows) {
+        Collections.sort(rows);
+        return rows;
+    }
+
+    @Test
+    public void indexOnlyScans() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 string primary key, n1 int, s1 string, d1 string)", Collections.emptyList());
+            execute(manager, "CREATE HASH INDEX ihash ON tblspace1.tsql (n1)", Collections.emptyList());
+            execute(manager, "CREATE BRIN INDEX ibrin ON tblspace1.tsql (s1, n1)", Collections.emptyList());
+            for (int i = 0; i < ROWS; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1,d1) values(?,?,?,?)",
+                        Arrays.asList("k" + i, n1(i), s1(i), "d" + i));
+            }
+            manager.checkpoint();
+        }
+
+        // scans may read pages without loading them into the main buffer,
+        // so the reads are counted by the storage
+        TestStatsProvider.TestStatsLogger statsLogger = new TestStatsProvider().getStatsLogger("test");
+        TestStatsProvider.TestOpStatsLogger dataPageReads = (TestStatsProvider.TestOpStatsLogger) statsLogger
+                .scope("filedatastore").getOpStatsLogger("data_pagereads");
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath, dataPath.resolve("tmp"),
+                        ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT,
+                        ServerConfiguration.PROPERTY_REQUIRE_FSYNC_DEFAULT,
+                        ServerConfiguration.PROPERTY_PAGE_USE_ODIRECT_DEFAULT,
+                        ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT_DEFAULT,
+                        ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED_DEFAULT,
+                        ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED_DEFAULT,
+                        statsLogger),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+            long pageReads = dataPageReads.getSuccessCount();
+
+            // hash index
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                if (Integer.valueOf(7).equals(n1(i))) {
+                    expected.add(Arrays.toString(new Object[]{"k" + i, 7}));
+                }
+            }
+            try (DataScanner scan = scan(manager, "SELECT k1, n1 FROM tblspace1.tsql WHERE n1=?", Arrays.asList(7))) {
+                assertEquals(sorted(expected), rows(scan));
+            }
+
+            // BRIN index, rows with a null value in n1 are in the index too
+            expected = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                if (s1(i).equals("s3")) {
+                    expected.add(Arrays.toString(new Object[]{"s3", n1(i), "k" + i}));
+                }
+            }
+            try (DataScanner scan = scan(manager, "SELECT s1, n1, k1 FROM tblspace1.tsql WHERE s1=?", Arrays.asList("s3"))) {
+                assertEquals(sorted(expected), rows(scan));
+            }
+
+            // conditions on the PK and on the other columns of the index
+            expected = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                if (s1(i).equals("s3") && n1(i) != null && n1(i) >= 20 && !("k" + i).equals("k23")) {
+                    expected.add(Arrays.toString(new Object[]{"k" + i}));
+                }
+            }
+            try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.tsql WHERE s1=? AND n1>=? AND k1<>?",
+                    Arrays.asList("s3", 20, "k23"))) {
+                assertEquals(sorted(expected), rows(scan));
+            }
+            try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.tsql WHERE s1=? AND n1>=? AND k1<>? LIMIT 3",
+                    Arrays.asList("s3", 20, "k23"))) {
+                assertEquals(3, scan.consume().size());
+            }
+
+            assertEquals(pageReads, dataPageReads.getSuccessCount());
+
+            // d1 is not in the index, records are read from the data pages
+            expected = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                if (Integer.valueOf(7).equals(n1(i))) {
+                    expected.add(Arrays.toString(new Object[]{"k" + i, "d" + i}));
+                }
+            }
+            try (DataScanner scan = scan(manager, "SELECT k1, d1 FROM tblspace1.tsql WHERE n1=?", Arrays.asList(7))) {
+                assertEquals(sorted(expected), rows(scan));
+            }
+            assertTrue(dataPageReads.getSuccessCount() > pageReads);
+
+            // deleted records are not returned
+            executeUpdate(manager, "DELETE FROM tblspace1.tsql WHERE n1=?", Arrays.asList(7));
+            try (DataScanner scan = scan(manager, "SELECT k1, n1 FROM tblspace1.tsql WHERE n1=?", Arrays.asList(7))) {
+                assertEquals(Collections.emptyList(), rows(scan));
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.utils.DataAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Tests about ORDER BY clauses served by the order of the primary key or of a
+ * secondary index
+ */
+public class IndexOrderScanTest {
+
+    private static final int ROWS = 2000;
+
+    private static List<String> column(DataScanner scan, int column) throws Exception {
+        List<String> result = new ArrayList<>();
+        for (DataAccessor row : scan.consume()) {
+            result.add(row.get(column).toString());
+        }
+        return result;
+    }
+
+    private static List<String> expected(Map<String, String> data, boolean values, boolean descending, int offset, int limit) {
+        Comparator<String> comparator = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        return (values ? data.values().stream() : data.keySet().stream())
+                .sorted(comparator)
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static void checkQueries(DBManager manager, Map<String, String> data) throws Exception {
+        // secondary index
+        try (DataScanner scan = scan(manager, "SELECT k1, s1 FROM tblspace1.tsql ORDER BY s1 LIMIT 10", Collections.emptyList())) {
+            assertEquals(expected(data, true, false, 0, 10), column(scan, 1));
+        }
+        try (DataScanner scan = scan(manager, "SELECT k1, s1 FROM tblspace1.tsql ORDER BY s1 DESC LIMIT 10", Collections.emptyList())) {
+            assertEquals(expected(data, true, true, 0, 10), column(scan, 1));
+        }
+        try (DataScanner scan = scan(manager, "SELECT s1 FROM tblspace1.tsql ORDER BY s1 DESC LIMIT 10 OFFSET 5", Collections.emptyList())) {
+            assertEquals(expected(data, true, true, 5, 10), column(scan, 0));
+        }
+        try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.tsql WHERE s1 <= ? ORDER BY s1 DESC LIMIT 7", Arrays.asList("s0250"))) {
+            Map<String, String> filtered = new TreeMap<>(data);
+            filtered.values().removeIf(s -> s.compareTo("s0250") > 0);
+            assertEquals(expected(filtered, true, true, 0, 7), column(scan, 2));
+        }
+        // primary key
+        try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.tsql ORDER BY k1 DESC LIMIT 10", Collections.emptyList())) {
+            assertEquals(expected(data, false, true, 0, 10), column(scan, 0));
+        }
+        try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.tsql ORDER BY k1 DESC", Collections.emptyList())) {
+            assertEquals(expected(data, false, true, 0, ROWS * 2), column(scan, 0));
+        }
+        try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.tsql ORDER BY k1 LIMIT 10", Collections.emptyList())) {
+            assertEquals(expected(data, false, false, 0, 10), column(scan, 0));
+        }
+    }
+
+    @Test
+    public void orderBySortedIndexes() throws Exception {
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId, new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 string primary key, n1 int, s1 string not null)", Collections.emptyList());
+            execute(manager, "CREATE BRIN INDEX index1 ON tblspace1.tsql (s1)", Collections.emptyList());
+
+            Map<String, String> data = new TreeMap<>();
+            for (int i = 0; i < ROWS; i++) {
+                String k1 = String.format("k%05d", i);
+                // values are repeated
+                String s1 = String.format("s%04d", (i * 7919) % 500);
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(k1, i, s1));
+                data.put(k1, s1);
+            }
+            checkQueries(manager, data);
+
+            manager.checkpoint();
+            for (int i = 0; i < ROWS; i += 3) {
+                String k1 = String.format("k%05d", i);
+                executeUpdate(manager, "DELETE FROM tblspace1.tsql WHERE k1=?", Arrays.asList(k1));
+                data.remove(k1);
+            }
+            for (int i = 1; i < ROWS; i += 5) {
+                String k1 = String.format("k%05d", i);
+                String s1 = String.format("s%04d", (i * 31) % 700);
+                executeUpdate(manager, "UPDATE tblspace1.tsql SET s1=? WHERE k1=?", Arrays.asList(s1, k1));
+                // deleted records are not updated
+                data.replace(k1, s1);
+            }
+            checkQueries(manager, data);
+
+            // inside a transaction the secondary index does not see the changes
+            long tx = beginTransaction(manager, "tblspace1");
+            TransactionContext transaction = new TransactionContext(tx);
+            executeUpdate(manager, "UPDATE tblspace1.tsql SET s1='a' WHERE k1=?", Arrays.asList("k00700"), transaction);
+            executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList("k99999", 1, "z"), transaction);
+            try (DataScanner scan = scan(manager, "SELECT k1, s1 FROM tblspace1.tsql ORDER BY s1 LIMIT 1", Collections.emptyList(), transaction)) {
+                assertEquals(Arrays.asList("k00700"), column(scan, 0));
+            }
+            try (DataScanner scan = scan(manager, "SELECT k1, s1 FROM tblspace1.tsql ORDER BY s1 DESC LIMIT 1", Collections.emptyList(), transaction)) {
+                assertEquals(Arrays.asList("k99999"), column(scan, 0));
+            }
+            try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.tsql ORDER BY k1 DESC LIMIT 2", Collections.emptyList(), transaction)) {
+                assertEquals(Arrays.asList("k99999", expected(data, false, true, 0, 1).get(0)), column(scan, 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.core.stats.TableManagerStats;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.Record;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.utils.Bytes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests about the off-heap cache of unloaded data pages
+ */
+public class OffHeapPageCacheTest {
+
+    private static List<Record> records(int count, int valueSize) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new Record(Bytes.from_string("k" + i), Bytes.from_array(new byte[valueSize])));
+        }
+        return records;
+    }
+
+    @Test
+    public void lruEviction() throws Exception {
+        AtomicInteger evictions = new AtomicInteger();
+        OffHeapPageCache.Owner owner = pageId -> evictions.incrementAndGet();
+        OffHeapPageCache cache = new OffHeapPageCache(3000);
+        try {
+            assertTrue(cache.put(owner, 1, records(10, 100)));
+            assertTrue(cache.put(owner, 2, records(10, 100)));
+            assertEquals(2, cache.getCachedPages());
+
+            // access page 1, page 2 becomes the eldest
+            List<Record> page1 = cache.get(owner, 1);
+            assertEquals(records(10, 100), page1);
+
+            assertTrue(cache.put(owner, 3, records(10, 100)));
+            assertEquals(1, evictions.get());
+            assertNull(cache.get(owner, 2));
+            assertNotNull(cache.get(owner, 1));
+            assertNotNull(cache.get(owner, 3));
+            assertTrue(cache.getUsedMemory() <= 3000);
+
+            // too big
+            assertTrue(!cache.put(owner, 4, records(10, 1000)));
+            assertNull(cache.get(owner, 4));
+
+            cache.remove(owner, 1);
+            assertNull(cache.get(owner, 1));
+
+            OffHeapPageCache.Owner other = pageId -> {
+            };
+            assertTrue(cache.put(other, 1, records(1, 10)));
+            cache.removeAll(owner);
+            assertEquals(1, cache.getCachedPages());
+            assertEquals(records(1, 10), cache.get(other, 1));
+        } finally {
+            cache.clear();
+        }
+        assertEquals(0, cache.getUsedMemory());
+    }
+
+    @Test
+    public void reloadUnloadedPages() throws Exception {
+        int testSize = 5000;
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(),
+                new MemoryCommitLogManager(), null, null)) {
+            manager.setMaxMemoryReference(128 * 1024);
+            manager.setMaxLogicalPageSize(32 * 1024);
+            manager.setMaxPKUsedMemory(manager.getMaxLogicalPageSize() * 2);
+            manager.setMaxOffHeapPageCacheMemory(16 * 1024 * 1024);
+            manager.start();
+
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id string primary key, name string)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList("k" + i, "testname" + i));
+            }
+            manager.checkpoint();
+
+            TableManagerStats stats = manager.getTableSpaceManager("tblspace1").getTableManager("t1").getStats();
+            for (int i = 0; i < 3; i++) {
+                try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.t1", Collections.emptyList())) {
+                    assertEquals(testSize, scan.consume().size());
+                }
+            }
+            // the table does not fit in memory, pages are unloaded and then loaded again from the cache
+            assertTrue(stats.getUnloadedPagesCount() > 0);
+            assertTrue(stats.getPageCacheHits() > 0);
+
+            // updated records are moved to new pages, old pages are dropped at checkpoint
+            executeUpdate(manager, "UPDATE tblspace1.t1 set name='changed'", Collections.emptyList());
+            manager.checkpoint();
+            try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.t1 WHERE name='changed'", Collections.emptyList())) {
+                assertEquals(testSize, scan.consume().size());
+            }
+            assertTrue(manager.getMemoryManager().getDataPageCache().getUsedMemory() > 0);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import herddb.core.stats.TableManagerStats;
+import herddb.file.FileDataStorageManager;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import herddb.utils.RawString;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about parallel scans of tables
+ */
+public class ParallelScanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelScanAndAggregation() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path tmpDir = folder.newFolder("tmp").toPath();
+        String nodeId = "localhost";
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_SCAN_PARALLELISM, 4);
+        config.set(ServerConfiguration.PROPERTY_SCAN_PARALLEL_MIN_RECORDS, 1);
+        int rows = 10000;
+        int groups = 7;
+        try (DBManager manager = new DBManager(nodeId,
+                new MemoryMetadataStorageManager(),
+                new FileDataStorageManager(dataPath),
+                new MemoryCommitLogManager(), tmpDir, null, config, null)) {
+            manager.start();
+            assertNotNull(manager.getParallelScanPool());
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, k1 string, n1 long)", Collections.emptyList());
+            Map<String, Long> expectedSums = new HashMap<>();
+            Map<String, Long> expectedCounts = new HashMap<>();
+            long sum = 0;
+            for (int i = 0; i < rows; i++) {
+                String k1 = "g" + (i % groups);
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,k1,n1) values(?,?,?)",
+                        Arrays.asList(i, k1, (long) i));
+                expectedSums.merge(k1, (long) i, Long::sum);
+                expectedCounts.merge(k1, 1L, Long::sum);
+                sum += i;
+                if (i == rows / 2) {
+                    // part of the records will be read from stored pages
+                    manager.checkpoint();
+                }
+            }
+
+            TableManagerStats stats = manager.getTableSpaceManager("tblspace1").getTableManager("t1").getStats();
+            long partitions = stats.getParallelScanPartitions();
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) as cc, SUM(n1) as ss, MIN(n1) as mi, MAX(n1) as ma FROM tblspace1.t1",
+                    Collections.emptyList())) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(1, res.size());
+                assertEquals(Long.valueOf(rows), res.get(0).get("cc"));
+                assertEquals(Long.valueOf(sum), res.get(0).get("ss"));
+                assertEquals(Long.valueOf(0), res.get(0).get("mi"));
+                assertEquals(Long.valueOf(rows - 1), res.get(0).get("ma"));
+            }
+            partitions = assertParallelScan(stats, partitions);
+
+            try (DataScanner scan = scan(manager, "SELECT k1, COUNT(*) as cc, SUM(n1) as ss FROM tblspace1.t1 WHERE n1 >= 0 GROUP BY k1",
+                    Collections.emptyList())) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(groups, res.size());
+                for (DataAccessor t : res) {
+                    String key = t.get("k1").toString();
+                    assertEquals(expectedCounts.get(key), t.get("cc"));
+                    assertEquals(expectedSums.get(key), t.get("ss"));
+                }
+            }
+            partitions = assertParallelScan(stats, partitions);
+
+            // empty result
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) as cc, MAX(n1) as ma FROM tblspace1.t1 WHERE n1 < 0",
+                    Collections.emptyList())) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(1, res.size());
+                assertEquals(Long.valueOf(0), res.get(0).get("cc"));
+                assertEquals(null, res.get(0).get("ma"));
+            }
+            partitions = assertParallelScan(stats, partitions);
+
+            try (DataScanner scan = scan(manager, "SELECT id, k1 FROM tblspace1.t1 WHERE n1 % 3 = 0",
+                    Collections.emptyList())) {
+                assertEquals((rows + 2) / 3, scan.consume().size());
+            }
+            partitions = assertParallelScan(stats, partitions);
+
+            // every worker sees the same current timestamp
+            try (DataScanner scan = scan(manager, "SELECT id, CURRENT_TIMESTAMP as ts FROM tblspace1.t1",
+                    Collections.emptyList())) {
+                Set<Object> timestamps = new HashSet<>();
+                List<DataAccessor> res = scan.consume();
+                assertEquals(rows, res.size());
+                for (DataAccessor t : res) {
+                    timestamps.add(t.get("ts"));
+                }
+                assertEquals(1, timestamps.size());
+            }
+            partitions = assertParallelScan(stats, partitions);
+
+            try (DataScanner scan = scan(manager, "SELECT id FROM tblspace1.t1 LIMIT 100",
+                    Collections.emptyList())) {
+                assertEquals(100, scan.consume().size());
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.t1 ORDER BY n1 LIMIT 3 OFFSET 1",
+                    Collections.emptyList())) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(3, res.size());
+                assertEquals(1, res.get(0).get("id"));
+                assertEquals(2, res.get(1).get("id"));
+                assertEquals(3, res.get(2).get("id"));
+            }
+            partitions = assertParallelScan(stats, partitions);
+
+            // transactions are scanned by the calling thread, they see their own changes
+            long tx = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,k1,n1) values(?,?,?)",
+                    Arrays.asList(-1, "g0", 1L), new TransactionContext(tx));
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) as cc FROM tblspace1.t1 WHERE k1='g0'",
+                    Collections.emptyList(), new TransactionContext(tx))) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(expectedCounts.get("g0") + 1, res.get(0).get("cc"));
+            }
+            assertEquals(partitions, stats.getParallelScanPartitions());
+            commitTransaction(manager, "tblspace1", tx);
+
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) as cc FROM tblspace1.t1 WHERE k1=?",
+                    Arrays.asList(RawString.of("g0")))) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(expectedCounts.get("g0") + 1, res.get(0).get("cc"));
+            }
+            assertParallelScan(stats, partitions);
+        }
+    }
+
+    /**
+     * Checks that the last query has been executed by the workers of the
+     * parallel scan
+     */
+    private static long assertParallelScan(TableManagerStats stats, long partitionsBefore) {
+        long partitions = stats.getParallelScanPartitions();
+        assertTrue("partitions " + partitions + ", before " + partitionsBefore, partitions > partitionsBefore);
+        return partitions;
+    }
+}
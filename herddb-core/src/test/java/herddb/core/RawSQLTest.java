@@ -20,6 +20,7 @@
 
 package herddb.core;
 
+import static herddb.core.TestUtils.beginTransaction;
 import static herddb.core.TestUtils.commitTransaction;
 import static herddb.core.TestUtils.execute;
 import static herddb.core.TestUtils.executeUpdate;
@@ -1927,6 +1928,85 @@ public class RawSQLTest {
         }
     }
 
+    @Test
+    public void orderByLimitInTransactionTest() throws Exception {
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 string primary key,n1 int,s1 string)", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(1, executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)", Arrays.asList("k" + i, Integer.valueOf(i * 10))).getUpdateCount());
+            }
+
+            long tx = beginTransaction(manager, "tblspace1");
+            TransactionContext transactionContext = new TransactionContext(tx);
+            assertEquals(1, executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)", Arrays.asList("kx", Integer.valueOf(5)), transactionContext).getUpdateCount());
+            assertEquals(1, executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)", Arrays.asList("ky", Integer.valueOf(1000)), transactionContext).getUpdateCount());
+            // k9 enters the top records, k1 leaves them
+            assertEquals(1, executeUpdate(manager, "UPDATE tblspace1.tsql set n1=? WHERE k1=?", Arrays.asList(Integer.valueOf(2), "k9"), transactionContext).getUpdateCount());
+            assertEquals(1, executeUpdate(manager, "UPDATE tblspace1.tsql set n1=? WHERE k1=?", Arrays.asList(Integer.valueOf(500), "k1"), transactionContext).getUpdateCount());
+            assertEquals(1, executeUpdate(manager, "DELETE FROM tblspace1.tsql WHERE k1=?", Arrays.asList("k0"), transactionContext).getUpdateCount());
+
+            {
+                TranslatedQuery translate1 = manager.getPlanner().translate(TableSpace.DEFAULT, "SELECT k1 FROM tblspace1.tsql order by n1 limit 3", Collections.emptyList(), true, true, false, -1);
+                ScanStatement scan = translate1.plan.mainStatement.unwrap(ScanStatement.class);
+                try (DataScanner scan1 = manager.scan(scan, translate1.context, transactionContext)) {
+                    List<DataAccessor> result = scan1.consume();
+                    assertEquals(3, result.size());
+                    assertEquals(RawString.of("k9"), result.get(0).get(0));
+                    assertEquals(RawString.of("kx"), result.get(1).get(0));
+                    assertEquals(RawString.of("k2"), result.get(2).get(0));
+                }
+            }
+            {
+                TranslatedQuery translate1 = manager.getPlanner().translate(TableSpace.DEFAULT, "SELECT k1 FROM tblspace1.tsql order by n1 limit 1,3", Collections.emptyList(), true, true, false, -1);
+                ScanStatement scan = translate1.plan.mainStatement.unwrap(ScanStatement.class);
+                try (DataScanner scan1 = manager.scan(scan, translate1.context, transactionContext)) {
+                    List<DataAccessor> result = scan1.consume();
+                    assertEquals(3, result.size());
+                    assertEquals(RawString.of("kx"), result.get(0).get(0));
+                    assertEquals(RawString.of("k2"), result.get(1).get(0));
+                    assertEquals(RawString.of("k3"), result.get(2).get(0));
+                }
+            }
+            {
+                TranslatedQuery translate1 = manager.getPlanner().translate(TableSpace.DEFAULT, "SELECT k1 FROM tblspace1.tsql order by n1 desc limit 2", Collections.emptyList(), true, true, false, -1);
+                ScanStatement scan = translate1.plan.mainStatement.unwrap(ScanStatement.class);
+                try (DataScanner scan1 = manager.scan(scan, translate1.context, transactionContext)) {
+                    List<DataAccessor> result = scan1.consume();
+                    assertEquals(2, result.size());
+                    assertEquals(RawString.of("ky"), result.get(0).get(0));
+                    assertEquals(RawString.of("k1"), result.get(1).get(0));
+                }
+            }
+            {
+                // changes of the transaction are not visible outside of it
+                TranslatedQuery translate1 = manager.getPlanner().translate(TableSpace.DEFAULT, "SELECT k1 FROM tblspace1.tsql order by n1 limit 3", Collections.emptyList(), true, true, false, -1);
+                ScanStatement scan = translate1.plan.mainStatement.unwrap(ScanStatement.class);
+                try (DataScanner scan1 = manager.scan(scan, translate1.context, TransactionContext.NO_TRANSACTION)) {
+                    List<DataAccessor> result = scan1.consume();
+                    assertEquals(3, result.size());
+                    assertEquals(RawString.of("k0"), result.get(0).get(0));
+                    assertEquals(RawString.of("k1"), result.get(1).get(0));
+                    assertEquals(RawString.of("k2"), result.get(2).get(0));
+                }
+            }
+
+            commitTransaction(manager, "tblspace1", tx);
+            try (DataScanner scan1 = scan(manager, "SELECT k1 FROM tblspace1.tsql order by n1 desc limit 3", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(3, result.size());
+                assertEquals(RawString.of("ky"), result.get(0).get(0));
+                assertEquals(RawString.of("k1"), result.get(1).get(0));
+                assertEquals(RawString.of("k8"), result.get(2).get(0));
+            }
+        }
+    }
+
     @Test
     public void indexSeek() throws Exception {
         String nodeId = "localhost";
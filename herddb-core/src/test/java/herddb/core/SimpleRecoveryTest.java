@@ -20,6 +20,11 @@
 
 package herddb.core;
 
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -34,6 +39,7 @@ import herddb.log.LogSequenceNumber;
 import herddb.model.AutoIncrementPrimaryKeyRecordFunction;
 import herddb.model.ColumnTypes;
 import herddb.model.ConstValueRecordFunction;
+import herddb.model.DataScanner;
 import herddb.model.DMLStatementExecutionResult;
 import herddb.model.GetResult;
 import herddb.model.Record;
@@ -51,8 +57,10 @@ import herddb.model.commands.DeleteStatement;
 import herddb.model.commands.GetStatement;
 import herddb.model.commands.InsertStatement;
 import herddb.model.commands.UpdateStatement;
+import herddb.server.ServerConfiguration;
 import herddb.utils.Bytes;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import org.junit.Rule;
 import org.junit.Test;
@@ -1155,4 +1163,90 @@ public class SimpleRecoveryTest {
 
     }
 
+    @Test
+    public void parallelRecovery() throws Exception {
+
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmoDir = folder.newFolder("tmoDir").toPath();
+
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_RECOVERY_THREADS, 4);
+
+        String nodeId = "localhost";
+        int numTables = 6;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmoDir, null, config, null)) {
+            manager.start();
+
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            for (int t = 0; t < numTables; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (id int primary key, n1 int)", Collections.emptyList());
+                execute(manager, "CREATE INDEX ix" + t + " ON tblspace1.t" + t + "(n1)", Collections.emptyList());
+            }
+            // interleave entries of all of the tables
+            for (int i = 0; i < 500; i++) {
+                for (int t = 0; t < numTables; t++) {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(id,n1) values(?,?)", Arrays.asList(i, i));
+                }
+                if (i == 250) {
+                    // tables and indexes will be loaded at boot, then the log is replayed
+                    manager.checkpoint();
+                }
+            }
+            long tx = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t0(id,n1) values(?,?)", Arrays.asList(1000, 1000), new TransactionContext(tx));
+            executeUpdate(manager, "UPDATE tblspace1.t1 set n1=n1+1 WHERE id<100", Collections.emptyList(), new TransactionContext(tx));
+            executeUpdate(manager, "DELETE FROM tblspace1.t2 WHERE id<100", Collections.emptyList(), new TransactionContext(tx));
+            commitTransaction(manager, "tblspace1", tx);
+
+            executeUpdate(manager, "UPDATE tblspace1.t3 set n1=-1 WHERE id>=400", Collections.emptyList());
+            executeUpdate(manager, "TRUNCATE TABLE tblspace1.t4", Collections.emptyList());
+            executeUpdate(manager, "INSERT INTO tblspace1.t4(id,n1) values(?,?)", Arrays.asList(1, 1));
+
+            // DDL in the middle of data changes
+            execute(manager, "CREATE TABLE tblspace1.t6 (id int primary key, n1 int)", Collections.emptyList());
+            for (int i = 0; i < 10; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t6(id,n1) values(?,?)", Arrays.asList(i, i));
+                executeUpdate(manager, "DELETE FROM tblspace1.t5 WHERE id=?", Arrays.asList(i));
+            }
+
+            // not committed
+            long tx2 = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.t5(id,n1) values(?,?)", Arrays.asList(1000, 1000), new TransactionContext(tx2));
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmoDir, null, config, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            assertEquals(501, countRows(manager, "SELECT * FROM tblspace1.t0"));
+            assertEquals(100, countRows(manager, "SELECT * FROM tblspace1.t1 WHERE n1=id+1"));
+            assertEquals(400, countRows(manager, "SELECT * FROM tblspace1.t2"));
+            assertEquals(100, countRows(manager, "SELECT * FROM tblspace1.t3 WHERE n1=-1"));
+            assertEquals(1, countRows(manager, "SELECT * FROM tblspace1.t4"));
+            assertEquals(490, countRows(manager, "SELECT * FROM tblspace1.t5"));
+            assertEquals(10, countRows(manager, "SELECT * FROM tblspace1.t6"));
+            // secondary indexes
+            assertEquals(1, countRows(manager, "SELECT * FROM tblspace1.t0 WHERE n1=1000"));
+            assertEquals(0, countRows(manager, "SELECT * FROM tblspace1.t2 WHERE n1=50"));
+        }
+    }
+
+    private static int countRows(DBManager manager, String query) throws Exception {
+        try (DataScanner scan = scan(manager, query, Collections.emptyList())) {
+            return scan.consume().size();
+        }
+    }
 }
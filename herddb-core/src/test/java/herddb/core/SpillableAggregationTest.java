@@ -0,0 +1,108 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import herddb.file.FileDataStorageManager;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about GROUP BY with more groups than the memory budget
+ */
+public class SpillableAggregationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void groupByWithSpill() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path tmpDir = folder.newFolder("tmp").toPath();
+        int swapThreshold = 10;
+        int groups = 500;
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId,
+                new MemoryMetadataStorageManager(),
+                new FileDataStorageManager(dataPath, tmpDir, swapThreshold, false, false, false, false, false,
+                        NullStatsLogger.INSTANCE),
+                new MemoryCommitLogManager(), tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, k1 string, k2 int, n1 long)", Collections.emptyList());
+            Map<String, Long> expectedSums = new HashMap<>();
+            Map<String, Long> expectedCounts = new HashMap<>();
+            for (int i = 0; i < 3000; i++) {
+                String k1 = "g" + (i % groups);
+                int k2 = i % 2;
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,k1,k2,n1) values(?,?,?,?)",
+                        Arrays.asList(i, k1, k2, (long) i));
+                expectedSums.merge(k1 + "," + k2, (long) i, Long::sum);
+                expectedCounts.merge(k1 + "," + k2, 1L, Long::sum);
+            }
+
+            try (DataScanner scan = scan(manager, "SELECT k1, k2, COUNT(*) as cc, SUM(n1) as ss FROM tblspace1.t1 GROUP BY k1, k2",
+                    Collections.emptyList())) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(expectedSums.size(), res.size());
+                for (DataAccessor t : res) {
+                    String key = t.get("k1") + "," + t.get("k2");
+                    assertEquals(expectedCounts.get(key), t.get("cc"));
+                    assertEquals(expectedSums.get(key), t.get("ss"));
+                }
+            }
+
+            // groups with null values
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,k1,k2,n1) values(?,?,?,?)",
+                    Arrays.asList(-1, null, null, 1L));
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,k1,k2,n1) values(?,?,?,?)",
+                    Arrays.asList(-2, null, null, 2L));
+            try (DataScanner scan = scan(manager, "SELECT k1, COUNT(*) as cc FROM tblspace1.t1 GROUP BY k1",
+                    Collections.emptyList())) {
+                List<DataAccessor> res = scan.consume();
+                assertEquals(groups + 1, res.size());
+                long nulls = res.stream().filter(t -> t.get("k1") == null).mapToLong(t -> (Long) t.get("cc")).sum();
+                assertEquals(2, nulls);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import herddb.file.FileDataStorageManager;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiPredicate;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about hash joins with inputs bigger than the memory budget
+ */
+public class SpillableJoinTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> expected(List<Integer[]> left, List<Integer[]> right,
+            boolean leftOuter, boolean rightOuter, BiPredicate<Integer[], Integer[]> condition) {
+        List<String> result = new ArrayList<>();
+        boolean[] rightMatched = new boolean[right.size()];
+        for (Integer[] l : left) {
+            boolean matched = false;
+            for (int i = 0; i < right.size(); i++) {
+                Integer[] r = right.get(i);
+                if (l[1] != null && l[1].equals(r[1]) && condition.test(l, r)) {
+                    result.add(l[0] + "," + r[0]);
+                    matched = true;
+                    rightMatched[i] = true;
+                }
+            }
+            if (!matched && leftOuter) {
+                result.add(l[0] + ",null");
+            }
+        }
+        if (rightOuter) {
+            for (int i = 0; i < right.size(); i++) {
+                if (!rightMatched[i]) {
+                    result.add("null," + right.get(i)[0]);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> actual(DBManager manager, String query) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (DataScanner scan = scan(manager, query, Collections.emptyList())) {
+            for (DataAccessor t : scan.consume()) {
+                result.add(t.get("id1") + "," + t.get("id2"));
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void joinWithSpill() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path tmpDir = folder.newFolder("tmp").toPath();
+        int swapThreshold = 10;
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId,
+                new MemoryMetadataStorageManager(),
+                new FileDataStorageManager(dataPath, tmpDir, swapThreshold, false, false, false, false, false,
+                        NullStatsLogger.INSTANCE),
+                new MemoryCommitLogManager(), tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id1 int primary key, k1 int)", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.t2 (id2 int primary key, k2 int)", Collections.emptyList());
+            List<Integer[]> left = new ArrayList<>();
+            List<Integer[]> right = new ArrayList<>();
+            for (int i = 0; i < 600; i++) {
+                Integer k = i % 50 == 0 ? null : i % 200;
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id1,k1) values(?,?)", Arrays.asList(i, k));
+                left.add(new Integer[]{i, k});
+            }
+            for (int i = 0; i < 300; i++) {
+                Integer k = i % 70 == 0 ? null : i % 250;
+                executeUpdate(manager, "INSERT INTO tblspace1.t2(id2,k2) values(?,?)", Arrays.asList(i, k));
+                right.add(new Integer[]{i, k});
+            }
+
+            assertEquals(expected(left, right, false, false, (l, r) -> true),
+                    actual(manager, "SELECT id1, id2 FROM tblspace1.t1 JOIN tblspace1.t2 ON k1 = k2"));
+            assertEquals(expected(left, right, true, false, (l, r) -> true),
+                    actual(manager, "SELECT id1, id2 FROM tblspace1.t1 LEFT JOIN tblspace1.t2 ON k1 = k2"));
+            assertEquals(expected(left, right, false, true, (l, r) -> true),
+                    actual(manager, "SELECT id1, id2 FROM tblspace1.t1 RIGHT JOIN tblspace1.t2 ON k1 = k2"));
+            assertEquals(expected(left, right, false, false, (l, r) -> l[0] < r[0]),
+                    actual(manager, "SELECT id1, id2 FROM tblspace1.t1 JOIN tblspace1.t2 ON k1 = k2 AND id1 < id2"));
+            assertEquals(expected(left, right, true, false, (l, r) -> l[0] < r[0]),
+                    actual(manager, "SELECT id1, id2 FROM tblspace1.t1 LEFT JOIN tblspace1.t2 ON k1 = k2 AND id1 < id2"));
+        }
+    }
+}
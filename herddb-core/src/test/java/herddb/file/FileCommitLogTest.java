@@ -546,4 +546,66 @@ public class FileCommitLogTest {
             System.out.println("Read time: " + (_endRead - _endWrite) + " ms");
         }
     }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        TestStatsProvider testStatsProvider = new TestStatsProvider();
+        TestStatsProvider.TestStatsLogger statsLogger = testStatsProvider.getStatsLogger("test");
+        try (FileCommitLogManager manager = new FileCommitLogManager(
+                folder.newFolder().toPath(),
+                64 * 1024,
+                100,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_BYTES_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_SYNC_TIME_DEFAULT,
+                true /* require fsync */,
+                false, /* O_DIRECT */
+                ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT,
+                true /* group commit */,
+                statsLogger)) {
+            manager.start();
+
+            int writeCount = 0;
+            AtomicInteger completedOutOfOrder = new AtomicInteger();
+            try (FileCommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.startWriting(1);
+                Counter preallocatedFiles = statsLogger.scope("aa").getCounter("preallocatedfiles");
+                CommitLogResult last = null;
+                // write until at least a preallocated file has been used
+                for (int round = 0; round < 100; round++) {
+                    for (int i = 0; i < 1000; i++) {
+                        CommitLogResult previous = last;
+                        last = log.log(LogEntryFactory.beginTransaction(0), true);
+                        if (previous != null) {
+                            last.logSequenceNumber.thenAccept(lsn -> {
+                                if (!previous.logSequenceNumber.isDone()) {
+                                    completedOutOfOrder.incrementAndGet();
+                                }
+                            });
+                        }
+                        writeCount++;
+                    }
+                    last.getLogSequenceNumber();
+                    Long used = preallocatedFiles.get();
+                    if (used != null && used > 0) {
+                        break;
+                    }
+                }
+                last.getLogSequenceNumber();
+                assertTrue(preallocatedFiles.get() > 0);
+                TestStatsProvider.TestOpStatsLogger queueWait =
+                        (TestStatsProvider.TestOpStatsLogger) statsLogger.scope("aa").getOpStatsLogger("queueWait");
+                assertTrue(queueWait.getSuccessCount() > 0);
+            }
+            // futures completed in log order
+            assertEquals(0, completedOutOfOrder.get());
+
+            AtomicInteger readCount = new AtomicInteger();
+            try (CommitLog log = manager.createCommitLog("tt", "aa", "nodeid")) {
+                log.recovery(LogSequenceNumber.START_OF_TIME, (LogSequenceNumber t, LogEntry u) -> {
+                    readCount.incrementAndGet();
+                }, true);
+            }
+            assertEquals(writeCount, readCount.get());
+        }
+    }
 }
@@ -22,10 +22,25 @@ package herddb.file;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import herddb.model.Record;
+import herddb.server.ServerConfiguration;
+import herddb.storage.DataStorageManagerException;
+import herddb.storage.InPlaceRecordsMap;
+import herddb.storage.PageCompressionCodec;
 import herddb.utils.Bytes;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -50,6 +65,101 @@ public class FileDataStorageManagerTest {
         }
     }
 
+    @Test
+    public void testReadWriteCompressedDataPage() throws Exception {
+        try (FileDataStorageManager man = new FileDataStorageManager(folder.newFolder().toPath())) {
+            List<Record> page = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                page.add(new Record(Bytes.from_int(i), Bytes.from_string("a very compressible value " + (i % 10))));
+            }
+            man.initTable("test1", "table1");
+
+            // legacy format
+            man.writePage("test1", "table1", 1L, page);
+
+            man.configureTablePageCompression("test1", "table1", PageCompressionCodec.LZ4);
+            man.writePage("test1", "table1", 2L, page);
+
+            man.configureTablePageCompression("test1", "table1", PageCompressionCodec.LZ4HC);
+            man.writePage("test1", "table1", 3L, page);
+
+            man.configureTablePageCompression("test1", "table1", PageCompressionCodec.NONE);
+            assertEquals(page, man.readPage("test1", "table1", 1L));
+            assertEquals(page, man.readPage("test1", "table1", 2L));
+            assertEquals(page, man.readPage("test1", "table1", 3L));
+
+            List<Path> files = man.getTablePageFiles("test1", "table1");
+            assertEquals(3, files.size());
+            for (Path file : files) {
+                assertEquals(page, FileDataStorageManager.rawReadDataPage(file));
+            }
+            assertTrue(man.getPageCompressionRatio("test1", "table1") > 1);
+            assertEquals(1, man.getPageCompressionRatio("test1", "table2"), 0);
+        }
+    }
+
+    @Test
+    public void testReadDataPageInPlace() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        try (FileDataStorageManager man = new FileDataStorageManager(dir, dir.resolve("tmp"),
+                ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT, false, false, true, false,
+                true, true, new NullStatsLogger())) {
+            Map<Bytes, Record> page = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                Record record = new Record(Bytes.from_string("key" + i), Bytes.from_int(i));
+                page.put(record.key, record);
+            }
+            page.put(Bytes.from_string("empty"), new Record(Bytes.from_string("empty"), Bytes.EMPTY_ARRAY));
+            man.initTable("test1", "table1");
+            man.writePage("test1", "table1", 1L, page.values());
+
+            InPlaceRecordsMap result = man.readPageInPlace("test1", "table1", 1L);
+            assertEquals(page.size(), result.size());
+            assertEquals(page, result);
+            assertEquals(page.get(Bytes.from_string("key10")), result.get(Bytes.from_string("key10")));
+            assertTrue(result.containsKey(Bytes.from_string("empty")));
+            assertNull(result.get(Bytes.from_string("key100")));
+            assertNull(result.get(Bytes.from_string("")));
+
+            // records are sorted by key
+            Bytes previous = null;
+            for (Record record : result.values()) {
+                assertTrue(previous == null || previous.compareTo(record.key) < 0);
+                previous = record.key;
+            }
+            assertEquals(page.size(), result.copyRecords().size());
+
+            // the mapping is released when the owner closes the map,
+            // an iteration already started is not interrupted
+            Iterator<Record> iterator = result.values().iterator();
+            result.close();
+            result.close();
+            assertTrue(result.isReleased());
+            int count = 0;
+            while (iterator.hasNext()) {
+                assertNotNull(iterator.next());
+                count++;
+            }
+            assertEquals(page.size(), count);
+            assertNull(result.get(Bytes.from_string("key10")));
+            assertFalse(result.containsKey(Bytes.from_string("key10")));
+            assertNull(result.copyRecords());
+            try {
+                result.values().iterator();
+                fail();
+            } catch (DataStorageManagerException expected) {
+            }
+
+            // compressed pages cannot be read in place
+            man.configureTablePageCompression("test1", "table1", PageCompressionCodec.LZ4);
+            man.writePage("test1", "table1", 2L, page.values());
+            assertNull(man.readPageInPlace("test1", "table1", 2L));
+        }
+        try (FileDataStorageManager man = new FileDataStorageManager(dir)) {
+            assertNull(man.readPageInPlace("test1", "table1", 1L));
+        }
+    }
+
     @Test
     public void testReadWriteIndexPage() throws Exception {
         try (FileDataStorageManager man = new FileDataStorageManager(folder.newFolder().toPath())) {
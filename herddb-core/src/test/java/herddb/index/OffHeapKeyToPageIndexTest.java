@@ -0,0 +1,82 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index;
+
+import herddb.log.LogSequenceNumber;
+import herddb.model.StatementEvaluationContext;
+import herddb.utils.Bytes;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Base test suite for {@link OffHeapKeyToPageIndex}
+ */
+public class OffHeapKeyToPageIndexTest extends KeyToPageIndexTest {
+
+    @Override
+    KeyToPageIndex createIndex() {
+
+        return new OffHeapKeyToPageIndex();
+
+    }
+
+    @Test
+    public void removeAndScan() throws Exception {
+
+        int entries = 50000;
+
+        try (KeyToPageIndex index = createIndex()) {
+
+            index.start(LogSequenceNumber.START_OF_TIME, true);
+
+            for (int i = 0; i < entries; ++i) {
+                index.put(Bytes.from_string("key" + i), (long) i);
+            }
+
+            /* Remove half of the keys, slots are shifted back and key space is reclaimed on rebuild */
+            for (int i = 0; i < entries; i += 2) {
+                Assert.assertEquals(Long.valueOf(i), index.remove(Bytes.from_string("key" + i)));
+            }
+            for (int i = entries; i < entries + entries / 2; ++i) {
+                index.put(Bytes.from_string("key" + i), (long) i);
+            }
+
+            Assert.assertEquals(entries, index.size());
+            for (int i = 0; i < entries + entries / 2; ++i) {
+                Long expected = (i < entries && i % 2 == 0) ? null : Long.valueOf(i);
+                Assert.assertEquals(expected, index.get(Bytes.from_string("key" + i)));
+            }
+
+            long sum = index.scanner(null, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), null, null)
+                    .peek(entry -> Assert.assertEquals(entry.getKey(), Bytes.from_string("key" + entry.getValue())))
+                    .mapToLong(Map.Entry::getValue)
+                    .count();
+            Assert.assertEquals(entries, sum);
+
+            index.truncate();
+            Assert.assertEquals(0, index.size());
+            Assert.assertEquals(0, index.getUsedMemory());
+        }
+
+    }
+
+}
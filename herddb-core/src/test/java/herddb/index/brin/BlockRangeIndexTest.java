@@ -30,8 +30,12 @@ import herddb.index.brin.BlockRangeIndex.Block;
 import herddb.utils.Sized;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
 import org.junit.Assert;
@@ -535,4 +539,47 @@ public class BlockRangeIndexTest {
         assertEquals(Arrays.asList(s2, s2), block3.values.get(s2));
 
     }
+
+    @Test
+    public void testQuerySorted() {
+        BlockRangeIndex<Sized<Integer>, Sized<Integer>> index =
+                new BlockRangeIndex<>(400, new RandomPageReplacementPolicy(3));
+        index.boot(BlockRangeIndexMetadata.empty());
+        Map<Integer, Integer> keys = new HashMap<>();
+        Random random = new Random(1234);
+        for (int i = 0; i < 500; i++) {
+            // repeated keys
+            int key = random.nextInt(200);
+            index.put(Sized.valueOf(key), Sized.valueOf(i));
+            keys.put(i, key);
+        }
+        assertTrue(index.getNumBlocks() > 10);
+
+        // make the key range of the second block overlap with the ones of the following blocks
+        Block<Sized<Integer>, Sized<Integer>> block = index.getBlocks().higherEntry(index.getBlocks().firstKey()).getValue();
+        block.ensureBlockLoaded();
+        block.values.computeIfAbsent(Sized.valueOf(180), k -> new ArrayList<>()).add(Sized.valueOf(1000));
+        keys.put(1000, 180);
+
+        List<Integer> all = index.querySorted(null, null).map(v -> v.dummy).collect(Collectors.toList());
+        assertEquals(keys.size(), all.size());
+        checkSortedByKey(keys, all);
+
+        List<Integer> range = index.querySorted(Sized.valueOf(50), Sized.valueOf(180)).map(v -> v.dummy).collect(Collectors.toList());
+        List<Integer> unsorted = index.search(Sized.valueOf(50), Sized.valueOf(180)).stream().map(v -> v.dummy).collect(Collectors.toList());
+        assertEquals(new HashSet<>(unsorted), new HashSet<>(range));
+        assertEquals(unsorted.size(), range.size());
+        checkSortedByKey(keys, range);
+
+        assertEquals(0, index.querySorted(Sized.valueOf(180), Sized.valueOf(50)).count());
+    }
+
+    private static void checkSortedByKey(Map<Integer, Integer> keys, List<Integer> values) {
+        int last = Integer.MIN_VALUE;
+        for (Integer value : values) {
+            int key = keys.get(value);
+            assertTrue("value " + value + " has key " + key + " after " + last, key >= last);
+            last = key;
+        }
+    }
 }
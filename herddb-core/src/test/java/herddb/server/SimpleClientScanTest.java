@@ -25,14 +25,22 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import herddb.client.ClientConfiguration;
 import herddb.client.ClientSideMetadataProviderException;
+import herddb.client.ClientTestUtils;
 import herddb.client.HDBClient;
 import herddb.client.HDBConnection;
 import herddb.client.HDBException;
 import herddb.client.ScanResultSet;
 import herddb.model.TableSpace;
+import herddb.network.Channel;
+import herddb.network.ChannelEventListener;
+import herddb.proto.Pdu;
+import herddb.proto.PduCodec;
+import herddb.utils.DataAccessor;
 import herddb.utils.TestUtils;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.test.TestStatsProvider;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -154,6 +162,163 @@ public class SimpleClientScanTest {
         }
     }
 
+    @Test
+    public void scanStreaming() throws Exception {
+        try (Server server = new Server(new ServerConfiguration(folder.newFolder().toPath()))) {
+            server.start();
+            server.waitForStandaloneBoot();
+
+            for (int window : new int[]{0, 1, 4}) {
+                ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+                clientConfiguration.set(ClientConfiguration.PROPERTY_SCANNER_STREAMING_WINDOW, window);
+                // all of the requests go through the same channel
+                clientConfiguration.set(ClientConfiguration.PROPERTY_MAX_CONNECTIONS_PER_SERVER, 1);
+                TestStatsProvider.TestStatsLogger statsLogger = new TestStatsProvider().getStatsLogger("test");
+                try (HDBClient client = new HDBClient(clientConfiguration, statsLogger);
+                        HDBConnection connection = client.openConnection()) {
+                    client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "CREATE TABLE IF NOT EXISTS mytable (id int primary key, s1 string)", 0, false, true,
+                            Collections.emptyList());
+                    connection.executeUpdate(TableSpace.DEFAULT, "DELETE FROM mytable", 0, false, true,
+                            Collections.emptyList());
+                    for (int i = 0; i < 1000; i++) {
+                        Assert.assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT,
+                                "INSERT INTO mytable (id,s1) values(?,?)", 0, false, true, Arrays.
+                                        asList(i, "s" + i)).updateCount);
+                    }
+
+                    // chunks are consumed in the same order of the server
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT id, s1 FROM mytable ORDER BY id", true,
+                            Collections.emptyList(), 0, 0, 7)) {
+                        int i = 0;
+                        while (scan.hasNext()) {
+                            DataAccessor row = scan.next();
+                            assertEquals(i, ((Number) row.get("id")).intValue());
+                            assertEquals("s" + i, row.get("s1").toString());
+                            i++;
+                        }
+                        assertEquals(1000, i);
+                    }
+                    checkNoScannersOnTheServer(server);
+                    long pushed = statsLogger.scope("hdbclient").getCounter("pushedScannerChunks").get();
+                    long fetched = statsLogger.scope("hdbclient").getCounter("fetchedScannerChunks").get();
+                    if (window > 0) {
+                        // only the first chunk is returned by the open scanner request
+                        assertTrue("pushed " + pushed, pushed > 0);
+                        assertEquals(0, fetched);
+                    } else {
+                        assertEquals(0, pushed);
+                        assertTrue("fetched " + fetched, fetched > 0);
+                    }
+
+                    if (window >= 4) {
+                        // chunks are dispatched on different threads, the client must reorder them
+                        Channel channel = ClientTestUtils.getChannelToTableSpace(connection, TableSpace.DEFAULT);
+                        ChannelEventListener receiver = channel.getMessagesReceiver();
+                        SwapChunksReceiver swapChunksReceiver = new SwapChunksReceiver(receiver);
+                        channel.setMessagesReceiver(swapChunksReceiver);
+                        try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT id, s1 FROM mytable ORDER BY id", true,
+                                Collections.emptyList(), 0, 0, 7)) {
+                            int i = 0;
+                            while (scan.hasNext()) {
+                                DataAccessor row = scan.next();
+                                assertEquals(i, ((Number) row.get("id")).intValue());
+                                i++;
+                            }
+                            assertEquals(1000, i);
+                        } finally {
+                            channel.setMessagesReceiver(receiver);
+                        }
+                        assertTrue(swapChunksReceiver.swapped.get() > 0);
+                        checkNoScannersOnTheServer(server);
+                    }
+
+                    // the server stops pushing data when the client closes the scanner
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM mytable", true,
+                            Collections.emptyList(), 0, 0, 5)) {
+                        for (int i = 0; i < 20; i++) {
+                            assertTrue(scan.hasNext());
+                            scan.next();
+                        }
+                    }
+                    checkNoScannersOnTheServer(server);
+
+                    // an error while reading a chunk is sent to the client, which does not wait for its timeout
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT id, CAST(CASE WHEN id = 500 THEN s1 ELSE '1' END AS INTEGER) FROM mytable", true,
+                            Collections.emptyList(), 0, 0, 5)) {
+                        scan.consume();
+                        fail();
+                    } catch (HDBException expected) {
+                        assertTrue(expected.getMessage(), expected.getMessage().contains("s500"));
+                    }
+                    checkNoScannersOnTheServer(server);
+
+                    // transactions
+                    long tx = connection.beginTransaction(TableSpace.DEFAULT);
+                    connection.executeUpdate(TableSpace.DEFAULT, "DELETE FROM mytable WHERE id >= 500", tx, false, true,
+                            Collections.emptyList());
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM mytable", true,
+                            Collections.emptyList(), tx, 0, 3)) {
+                        assertEquals(500, scan.consume().size());
+                    }
+                    connection.rollbackTransaction(TableSpace.DEFAULT, tx);
+                    checkNoScannersOnTheServer(server);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers pushed chunks with an even sequence number after the following
+     * one. A chunk is held only if the client is going to receive the
+     * following chunk without consuming it, this is true if the streaming
+     * window is at least 4.
+     */
+    private static final class SwapChunksReceiver implements ChannelEventListener {
+
+        private final ChannelEventListener delegate;
+        private final AtomicInteger swapped = new AtomicInteger();
+        private Pdu held;
+        private int maxSequence = -1;
+
+        SwapChunksReceiver(ChannelEventListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void requestReceived(Pdu pdu, Channel channel) {
+            if (pdu.type != Pdu.TYPE_PUSH_RESULTSET_CHUNK) {
+                delegate.requestReceived(pdu, channel);
+                return;
+            }
+            Pdu previous;
+            synchronized (this) {
+                int sequence = PduCodec.PushResultSetChunk.readSequence(pdu);
+                boolean last = PduCodec.PushResultSetChunk.readStatus(pdu) != PduCodec.PushResultSetChunk.STATUS_DATA;
+                boolean hold = held == null && !last && sequence % 2 == 0 && sequence > maxSequence;
+                maxSequence = Math.max(maxSequence, sequence);
+                if (hold) {
+                    held = pdu;
+                    return;
+                }
+                previous = held;
+                held = null;
+            }
+            delegate.requestReceived(pdu, channel);
+            if (previous != null) {
+                swapped.incrementAndGet();
+                delegate.requestReceived(previous, channel);
+            }
+        }
+
+        @Override
+        public void channelClosed(Channel channel) {
+            delegate.channelClosed(channel);
+        }
+    }
+
     private void checkNoScannersOnTheServer(final Server server) throws Exception {
         TestUtils.waitForCondition(() -> {
             for (ServerSideConnectionPeer peer : server.getConnections().values()) {
@@ -157,6 +157,25 @@ public class CalcitePlannerTest {
                 assertThat(comparator, instanceOf(SortOp.class));
                 SortOp sortOp = (SortOp) comparator;
                 assertFalse(sortOp.isOnlyPrimaryKeyAndAscending());
+                assertEquals("n1", sortOp.getSortColumn());
+                assertTrue(sortOp.isSortAscending());
+            }
+
+            {
+                SortedBindableTableScanOp plan = assertInstanceOf(plan(manager, "select n1,k1 from tblspace1.tsql order by k1 desc"), SortedBindableTableScanOp.class);
+                TupleComparator comparator = plan.getStatement().getComparator();
+                System.out.println("comparator:" + comparator);
+                assertThat(comparator, instanceOf(SortOp.class));
+                SortOp sortOp = (SortOp) comparator;
+                assertFalse(sortOp.isOnlyPrimaryKeyAndAscending());
+                assertEquals("k1", sortOp.getSortColumn());
+                assertFalse(sortOp.isSortAscending());
+            }
+
+            {
+                SortedBindableTableScanOp plan = assertInstanceOf(plan(manager, "select n1,k1 from tblspace1.tsql order by n1, k1"), SortedBindableTableScanOp.class);
+                SortOp sortOp = (SortOp) plan.getStatement().getComparator();
+                assertNull(sortOp.getSortColumn());
             }
 
             {
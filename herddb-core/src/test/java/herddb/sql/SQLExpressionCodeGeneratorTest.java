@@ -0,0 +1,123 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.Tuple;
+import herddb.sql.expressions.AccessCurrentRowExpression;
+import herddb.sql.expressions.CompiledAddExpression;
+import herddb.sql.expressions.CompiledAndExpression;
+import herddb.sql.expressions.CompiledEqualsExpression;
+import herddb.sql.expressions.CompiledGreaterThenEqualsExpression;
+import herddb.sql.expressions.CompiledGreaterThenExpression;
+import herddb.sql.expressions.CompiledIsNullExpression;
+import herddb.sql.expressions.CompiledMinorThenExpression;
+import herddb.sql.expressions.CompiledMultiAndExpression;
+import herddb.sql.expressions.CompiledMultiOrExpression;
+import herddb.sql.expressions.CompiledMultiplyExpression;
+import herddb.sql.expressions.CompiledNotEqualsExpression;
+import herddb.sql.expressions.CompiledParenthesisExpression;
+import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.sql.expressions.CompiledSubtractExpression;
+import herddb.sql.expressions.ConstantExpression;
+import herddb.sql.expressions.GeneratedSQLExpression;
+import herddb.sql.expressions.JdbcParameterExpression;
+import herddb.sql.expressions.SQLExpressionCodeGenerator;
+import herddb.utils.RawString;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Generated expressions must return the same values of the original
+ * expressions
+ */
+public class SQLExpressionCodeGeneratorTest {
+
+    private static final String[] FIELDS = {"n1", "l1", "s1", "d1"};
+
+    private static final List<Tuple> ROWS = Arrays.asList(
+            new Tuple(FIELDS, new Object[]{1, 10L, RawString.of("a"), 1.5d}),
+            new Tuple(FIELDS, new Object[]{5, -3L, RawString.of("b"), 0d}),
+            new Tuple(FIELDS, new Object[]{null, 10L, null, null}),
+            new Tuple(FIELDS, new Object[]{Integer.MAX_VALUE, Long.MIN_VALUE, RawString.of("a"), -2.5d}),
+            new Tuple(FIELDS, new Object[]{null, null, null, null})
+    );
+
+    private static CompiledSQLExpression col(int index) {
+        return new AccessCurrentRowExpression(index);
+    }
+
+    private static CompiledSQLExpression value(Object value) {
+        return new ConstantExpression(value);
+    }
+
+    private static void check(CompiledSQLExpression expression) throws Exception {
+        CompiledSQLExpression generated = SQLExpressionCodeGenerator.generate(expression);
+        assertTrue(generated instanceof GeneratedSQLExpression);
+        StatementEvaluationContext context = new SQLStatementEvaluationContext("query", Arrays.asList(5, RawString.of("a")), false);
+        for (Tuple row : ROWS) {
+            assertEquals(expression + " on " + row, expression.evaluate(row, context), generated.evaluate(row, context));
+        }
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        check(new CompiledEqualsExpression(col(0), value(5L)));
+        check(new CompiledEqualsExpression(col(2), new JdbcParameterExpression(1)));
+        check(new CompiledNotEqualsExpression(col(1), value(10L)));
+        check(new CompiledGreaterThenExpression(col(1), value(0)));
+        check(new CompiledGreaterThenEqualsExpression(col(3), value(0d)));
+        check(new CompiledMinorThenExpression(col(0), new JdbcParameterExpression(0)));
+        // left side is not a column
+        check(new CompiledGreaterThenExpression(new CompiledAddExpression(col(0), value(1L)), value(5L)));
+        check(new CompiledEqualsExpression(new CompiledMultiplyExpression(col(0), col(1)), value(10L)));
+        check(new CompiledNotEqualsExpression(new CompiledSubtractExpression(col(1), value(3)), col(0)));
+        check(new CompiledMinorThenExpression(new CompiledAddExpression(col(3), col(0)), value(3d)));
+        check(new CompiledIsNullExpression(false, col(0)));
+        check(new CompiledIsNullExpression(true, col(2)));
+    }
+
+    @Test
+    public void testLogicalOperators() throws Exception {
+        CompiledSQLExpression gt = new CompiledGreaterThenExpression(col(1), value(0L));
+        CompiledSQLExpression eq = new CompiledEqualsExpression(col(2), value(RawString.of("a")));
+        CompiledSQLExpression isNull = new CompiledIsNullExpression(false, col(3));
+        check(new CompiledMultiAndExpression(new CompiledSQLExpression[]{gt, eq}));
+        check(new CompiledMultiOrExpression(new CompiledSQLExpression[]{gt, eq, isNull}));
+        check(new CompiledAndExpression(false, gt, isNull));
+        check(new CompiledAndExpression(true, eq, gt));
+        check(new CompiledParenthesisExpression(true, new CompiledMultiOrExpression(new CompiledSQLExpression[]{eq, isNull})));
+        check(new CompiledMultiAndExpression(new CompiledSQLExpression[]{
+            new CompiledParenthesisExpression(false, gt), value(true)}));
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        check(new CompiledAddExpression(col(0), value(1)));
+        check(new CompiledAddExpression(col(1), value(Long.MIN_VALUE)));
+        check(new CompiledSubtractExpression(col(0), col(1)));
+        check(new CompiledMultiplyExpression(col(3), value(2L)));
+        check(new CompiledMultiplyExpression(col(0), col(3)));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.codec.RecordSerializer;
+import herddb.model.ColumnTypes;
+import herddb.model.Record;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.Table;
+import herddb.sql.expressions.AccessCurrentRowExpression;
+import herddb.sql.expressions.CompiledAddExpression;
+import herddb.sql.expressions.CompiledEqualsExpression;
+import herddb.sql.expressions.CompiledGreaterThenEqualsExpression;
+import herddb.sql.expressions.CompiledGreaterThenExpression;
+import herddb.sql.expressions.CompiledIsNullExpression;
+import herddb.sql.expressions.CompiledLikeExpression;
+import herddb.sql.expressions.CompiledMinorThenEqualsExpression;
+import herddb.sql.expressions.CompiledMinorThenExpression;
+import herddb.sql.expressions.CompiledMultiAndExpression;
+import herddb.sql.expressions.CompiledMultiOrExpression;
+import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.sql.expressions.ConstantExpression;
+import herddb.sql.expressions.JdbcParameterExpression;
+import herddb.sql.expressions.SerializedRecordMatcher;
+import herddb.utils.RawString;
+import herddb.utils.SQLRecordPredicateFunctions;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Conditions evaluated on serialized records must give the same outcome of
+ * the evaluation on the DataAccessor
+ */
+public class SerializedRecordMatcherTest {
+
+    private static final Table TABLE = Table.builder()
+            .name("t1")
+            .column("pk", ColumnTypes.STRING)
+            .column("n", ColumnTypes.INTEGER)
+            .column("l", ColumnTypes.LONG)
+            .column("s", ColumnTypes.STRING)
+            .column("d", ColumnTypes.DOUBLE)
+            .column("t", ColumnTypes.TIMESTAMP)
+            .primaryKey("pk")
+            .build();
+
+    private static final List<Record> RECORDS = Arrays.asList(
+            RecordSerializer.makeRecord(TABLE, "pk", "a", "n", 1, "l", 10L, "s", "foo", "d", 1.5d, "t", new Timestamp(1000)),
+            RecordSerializer.makeRecord(TABLE, "pk", "b", "n", 5, "l", -3L, "s", "foobar", "d", 0d, "t", new Timestamp(2000)),
+            RecordSerializer.makeRecord(TABLE, "pk", "c", "l", 10L, "s", "bar"),
+            RecordSerializer.makeRecord(TABLE, "pk", "d", "n", Integer.MAX_VALUE, "l", Long.MIN_VALUE, "s", "fo", "d", -2.5d),
+            RecordSerializer.makeRecord(TABLE, "pk", "e")
+    );
+
+    private static CompiledSQLExpression col(String name) {
+        return new AccessCurrentRowExpression(Arrays.asList(TABLE.columnNames).indexOf(name));
+    }
+
+    private static CompiledSQLExpression value(Object value) {
+        return new ConstantExpression(value);
+    }
+
+    private static void check(CompiledSQLExpression where, boolean fullCondition) throws Exception {
+        SerializedRecordMatcher matcher = SerializedRecordMatcher.build(TABLE, where);
+        assertNotNull(matcher);
+        assertEquals(fullCondition, matcher.isFullCondition());
+        StatementEvaluationContext context = new SQLStatementEvaluationContext("query", Arrays.asList(5, "foo"), false);
+        for (Record record : RECORDS) {
+            boolean expected = SQLRecordPredicateFunctions.toBoolean(where.evaluate(record.getDataAccessor(TABLE), context));
+            boolean matches = matcher.matches(record.value, context);
+            if (fullCondition) {
+                assertEquals(where + " on " + record.toBean(TABLE), expected, matches);
+            } else if (expected) {
+                assertTrue(where + " on " + record.toBean(TABLE), matches);
+            }
+        }
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        check(new CompiledEqualsExpression(col("n"), value(5)), true);
+        check(new CompiledEqualsExpression(col("n"), value(5L)), true);
+        check(new CompiledEqualsExpression(col("l"), value(10)), true);
+        check(new CompiledEqualsExpression(col("s"), new JdbcParameterExpression(1)), true);
+        check(new CompiledEqualsExpression(col("s"), value(RawString.of("bar"))), true);
+        check(new CompiledGreaterThenExpression(col("l"), value(0L)), true);
+        check(new CompiledGreaterThenEqualsExpression(col("d"), value(0d)), true);
+        check(new CompiledGreaterThenEqualsExpression(col("d"), value(1)), true);
+        check(new CompiledMinorThenExpression(col("n"), new JdbcParameterExpression(0)), true);
+        check(new CompiledMinorThenEqualsExpression(col("s"), value("foo")), true);
+        check(new CompiledMinorThenEqualsExpression(col("t"), value(new Timestamp(1000))), true);
+        check(new CompiledGreaterThenExpression(col("t"), value(1500L)), true);
+        check(new CompiledEqualsExpression(col("n"), value(null)), true);
+        check(new CompiledIsNullExpression(false, col("n")), true);
+        check(new CompiledIsNullExpression(true, col("s")), true);
+    }
+
+    @Test
+    public void testInAndLike() throws Exception {
+        check(new CompiledMultiOrExpression(new CompiledSQLExpression[]{
+            new CompiledEqualsExpression(col("n"), value(1)),
+            new CompiledEqualsExpression(col("n"), new JdbcParameterExpression(0))}), true);
+        check(new CompiledLikeExpression(col("s"), value("foo%")), true);
+        check(new CompiledLikeExpression(col("s"), value("%")), true);
+    }
+
+    @Test
+    public void testConjunctions() throws Exception {
+        CompiledSQLExpression gt = new CompiledGreaterThenExpression(col("l"), value(0L));
+        CompiledSQLExpression like = new CompiledLikeExpression(col("s"), value("fo%"));
+        CompiledSQLExpression isNull = new CompiledIsNullExpression(false, col("d"));
+        CompiledSQLExpression notSupported = new CompiledEqualsExpression(
+                new CompiledAddExpression(col("n"), value(1)), value(2));
+        check(new CompiledMultiAndExpression(new CompiledSQLExpression[]{gt, like}), true);
+        check(new CompiledMultiAndExpression(new CompiledSQLExpression[]{gt, isNull}), true);
+        check(new CompiledMultiAndExpression(new CompiledSQLExpression[]{like, notSupported}), false);
+    }
+
+    @Test
+    public void testNotSupported() throws Exception {
+        // conditions on the primary key are evaluated on the key
+        assertNull(SerializedRecordMatcher.build(TABLE, new CompiledEqualsExpression(col("pk"), value("a"))));
+        // only prefix LIKE
+        assertNull(SerializedRecordMatcher.build(TABLE, new CompiledLikeExpression(col("s"), value("%foo"))));
+        assertNull(SerializedRecordMatcher.build(TABLE, new CompiledLikeExpression(col("s"), value("f_o%"))));
+        // OR on different columns
+        assertNull(SerializedRecordMatcher.build(TABLE, new CompiledMultiOrExpression(new CompiledSQLExpression[]{
+            new CompiledEqualsExpression(col("n"), value(1)),
+            new CompiledEqualsExpression(col("l"), value(1))})));
+        assertFalse(SerializedRecordMatcher.build(TABLE, new CompiledMultiAndExpression(new CompiledSQLExpression[]{
+            new CompiledEqualsExpression(col("pk"), value("a")),
+            new CompiledEqualsExpression(col("n"), value(1))})).isFullCondition());
+    }
+}
@@ -22,11 +22,14 @@ package herddb.jdbc;
 import static herddb.model.TransactionContext.AUTOTRANSACTION_ID;
 import static herddb.model.TransactionContext.NOTRANSACTION_ID;
 import herddb.client.ClientSideMetadataProviderException;
+import herddb.client.DMLResult;
+import herddb.client.GetResult;
 import herddb.client.HDBConnection;
 import herddb.client.HDBException;
 import herddb.jdbc.utils.SQLExceptionUtils;
 import herddb.model.TransactionContext;
 import herddb.utils.QueryUtils;
+import herddb.utils.RawString;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.CallableStatement;
@@ -43,6 +46,8 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
@@ -56,7 +61,7 @@ import java.util.logging.Logger;
  *
  * @author enrico.olivelli
  */
-public class HerdDBConnection implements java.sql.Connection {
+public class HerdDBConnection implements KeyValueConnection {
 
     private final HDBConnection connection;
     private long transactionId;
@@ -435,6 +440,46 @@ public class HerdDBConnection implements java.sql.Connection {
         return 0;
     }
 
+    @Override
+    public Map<String, Object> getByKey(String table, Object... key) throws SQLException {
+        try {
+            GetResult result = connection.executeGetByKey(tableSpace, table, ensureTransaction(), Arrays.asList(key));
+            bindToTransaction(result.transactionId);
+            if (!result.isFound()) {
+                return null;
+            }
+            Map<String, Object> record = new HashMap<>();
+            result.data.forEach((column, value) -> {
+                record.put(column.toString(), value instanceof RawString ? value.toString() : value);
+            });
+            return record;
+        } catch (ClientSideMetadataProviderException | HDBException err) {
+            throw SQLExceptionUtils.wrapException(err);
+        }
+    }
+
+    @Override
+    public int putByKey(String table, Map<String, Object> record) throws SQLException {
+        try {
+            DMLResult result = connection.executePutByKey(tableSpace, table, ensureTransaction(), record);
+            bindToTransaction(result.transactionId);
+            return (int) result.updateCount;
+        } catch (ClientSideMetadataProviderException | HDBException err) {
+            throw SQLExceptionUtils.wrapException(err);
+        }
+    }
+
+    @Override
+    public int deleteByKey(String table, Object... key) throws SQLException {
+        try {
+            DMLResult result = connection.executeDeleteByKey(tableSpace, table, ensureTransaction(), Arrays.asList(key));
+            bindToTransaction(result.transactionId);
+            return (int) result.updateCount;
+        } catch (ClientSideMetadataProviderException | HDBException err) {
+            throw SQLExceptionUtils.wrapException(err);
+        }
+    }
+
     @Override
     public <T> T unwrap(Class<T> iface) throws SQLException {
         return (T) this;
@@ -574,15 +574,42 @@ public class HerdDBPreparedStatement extends HerdDBStatement implements Prepared
 
     @Override
     public CompletableFuture<Long> executeLargeUpdateAsync() {
-        return doExecuteLargeUpdateWithParametersAsync(parameters, returnValues);
+        // parameters may be changed before the request completes
+        return doExecuteLargeUpdateWithParametersAsync(new ArrayList<>(parameters), returnValues);
     }
 
     @Override
     public CompletableFuture<Integer> executeUpdateAsync() {
-        return doExecuteLargeUpdateWithParametersAsync(parameters, returnValues)
+        return doExecuteLargeUpdateWithParametersAsync(new ArrayList<>(parameters), returnValues)
                 .thenApply(Number::intValue);
     }
 
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync() {
+        CompletableFuture<ResultSet> res = new CompletableFuture<>();
+        long tx;
+        try {
+            parent.discoverTableSpace(sql);
+            tx = parent.ensureTransaction();
+        } catch (SQLException err) {
+            res.completeExceptionally(err);
+            return res;
+        }
+        parent.getConnection()
+                .executeScanAsync(parent.getTableSpace(), sql, true, new ArrayList<>(parameters), tx, maxRows, fetchSize)
+                .whenComplete((scanResult, error) -> {
+                    if (error != null) {
+                        res.completeExceptionally(SQLExceptionUtils.wrapException(error));
+                        return;
+                    }
+                    parent.bindToTransaction(scanResult.transactionId);
+                    HerdDBResultSet resultSet = new HerdDBResultSet(scanResult, this);
+                    lastResultSet = resultSet;
+                    res.complete(resultSet);
+                });
+        return res;
+    }
+
     private CompletableFuture<Long> doExecuteLargeUpdateWithParametersAsync(List<Object> actualParameters,
                                                                             boolean returnValues) {
         CompletableFuture<Long> res = new CompletableFuture<>();
@@ -635,14 +662,17 @@ public class HerdDBPreparedStatement extends HerdDBStatement implements Prepared
             return res;
         }
 
+        // the application may start a new batch before the request completes
+        List<List<Object>> currentBatch = new ArrayList<>(this.batch);
+        this.batch.clear();
         parent.getConnection().executeUpdatesAsync(
                 parent.getTableSpace(), sql,
-                tx, false, true, this.batch)
+                tx, false, true, currentBatch)
                 .whenComplete((dmsresults, error) -> {
                     if (error != null) {
                         res.completeExceptionally(SQLExceptionUtils.wrapException(error));
                     } else {
-                        int[] results = new int[batch.size()];
+                        int[] results = new int[currentBatch.size()];
                         int i = 0;
                         for (DMLResult dmlresult : dmsresults) {
                             results[i++] = (int) dmlresult.updateCount;
@@ -652,7 +682,6 @@ public class HerdDBPreparedStatement extends HerdDBStatement implements Prepared
                         }
                         res.complete(results);
                     }
-                    batch.clear();
                 });
 
         return res;
@@ -0,0 +1,68 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * An extension to JDBC Connection which reads and writes single records by
+ * primary key. These operations do not use SQL, so the server does not need to
+ * parse and to plan any query. They run in the current transaction of the
+ * Connection and in its current tablespace.
+ */
+public interface KeyValueConnection extends Connection {
+
+    /**
+     * Reads a record.
+     *
+     * @param table
+     * @param key values of the columns of the primary key, in the order of the
+     * primary key
+     * @return the record or null if there is no record with the given key
+     * @throws SQLException
+     */
+    Map<String, Object> getByKey(String table, Object... key) throws SQLException;
+
+    /**
+     * Inserts or replaces a record. Columns which are not in the record are
+     * set to null.
+     *
+     * @param table
+     * @param record values of the columns, including the primary key
+     * @return the number of records written
+     * @throws SQLException
+     */
+    int putByKey(String table, Map<String, Object> record) throws SQLException;
+
+    /**
+     * Deletes a record.
+     *
+     * @param table
+     * @param key values of the columns of the primary key, in the order of the
+     * primary key
+     * @return the number of records deleted
+     * @throws SQLException
+     */
+    int deleteByKey(String table, Object... key) throws SQLException;
+
+}
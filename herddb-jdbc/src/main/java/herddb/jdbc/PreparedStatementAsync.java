@@ -21,6 +21,7 @@
 package herddb.jdbc;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -36,4 +37,6 @@ public interface PreparedStatementAsync extends PreparedStatement {
 
     CompletableFuture<Integer> executeUpdateAsync();
 
+    CompletableFuture<ResultSet> executeQueryAsync();
+
 }
@@ -0,0 +1,179 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.client.ClientConfiguration;
+import herddb.client.HDBClient;
+import herddb.server.Server;
+import herddb.server.ServerConfiguration;
+import herddb.server.StaticClientSideMetadataProvider;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about reads and writes by primary key without SQL
+ */
+public class KeyValueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<String, Object> record(Object... values) {
+        Map<String, Object> record = new HashMap<>();
+        for (int i = 0; i < values.length; i += 2) {
+            record.put((String) values[i], values[i + 1]);
+        }
+        return record;
+    }
+
+    @Test
+    public void testKeyValueOperations() throws Exception {
+        try (Server server = new Server(new ServerConfiguration(folder.newFolder().toPath()))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            try (HDBClient client = new HDBClient(new ClientConfiguration(folder.newFolder().toPath()))) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                try (BasicHerdDBDataSource dataSource = new BasicHerdDBDataSource(client);
+                     Connection con = dataSource.getConnection();
+                     Statement statement = con.createStatement()) {
+                    statement.execute("CREATE TABLE mytable (k1 string primary key, n1 int, l1 long)");
+                    statement.execute("CREATE TABLE mytable2 (k1 string, k2 int, s1 string, primary key(k1, k2))");
+                    statement.execute("CREATE TABLE mytable3 (k1 blob primary key, n1 int)");
+                    statement.execute("CREATE TABLE mytable4 (k1 string primary key, s1 string not null default 'x', n1 int default 3)");
+                    statement.execute("CREATE TABLE mytable5 (k1 string primary key, s1 string not null)");
+                    KeyValueConnection kv = con.unwrap(KeyValueConnection.class);
+
+                    assertNull(kv.getByKey("mytable", "a"));
+                    assertEquals(1, kv.putByKey("mytable", record("k1", "a", "n1", 1, "l1", 2)));
+                    // values are converted to the types of the columns
+                    assertEquals(1, kv.putByKey("mytable", record("k1", "b", "n1", 3L)));
+                    assertEquals(record("k1", "a", "n1", 1, "l1", 2L), kv.getByKey("mytable", "a"));
+                    assertEquals(record("k1", "b", "n1", 3), kv.getByKey("mytable", "b"));
+
+                    // PUT replaces the whole record
+                    assertEquals(1, kv.putByKey("mytable", record("k1", "a", "l1", 5)));
+                    assertEquals(record("k1", "a", "l1", 5L), kv.getByKey("mytable", "a"));
+                    try (ResultSet rs = statement.executeQuery("SELECT n1, l1 FROM mytable WHERE k1='a'")) {
+                        assertTrue(rs.next());
+                        assertNull(rs.getObject(1));
+                        assertEquals(5L, rs.getLong(2));
+                    }
+
+                    assertEquals(1, kv.deleteByKey("mytable", "a"));
+                    assertEquals(0, kv.deleteByKey("mytable", "a"));
+                    assertNull(kv.getByKey("mytable", "a"));
+
+                    // multi column primary key
+                    assertEquals(1, kv.putByKey("mytable2", record("k1", "a", "k2", 1, "s1", "x")));
+                    assertEquals(1, kv.putByKey("mytable2", record("k1", "a", "k2", 2, "s1", "y")));
+                    assertEquals(record("k1", "a", "k2", 2, "s1", "y"), kv.getByKey("mytable2", "a", 2));
+                    assertNull(kv.getByKey("mytable2", "a", 3));
+                    try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM mytable2 WHERE k1='a'")) {
+                        assertTrue(rs.next());
+                        assertEquals(2, rs.getInt(1));
+                    }
+
+                    // transactions
+                    con.setAutoCommit(false);
+                    assertEquals(1, kv.putByKey("mytable", record("k1", "c", "n1", 7)));
+                    assertEquals(record("k1", "c", "n1", 7), kv.getByKey("mytable", "c"));
+                    con.rollback();
+                    assertNull(kv.getByKey("mytable", "c"));
+                    assertEquals(1, kv.deleteByKey("mytable", "b"));
+                    con.commit();
+                    con.setAutoCommit(true);
+                    assertNull(kv.getByKey("mytable", "b"));
+
+                    // errors
+                    try {
+                        kv.getByKey("notexists", "a");
+                        fail();
+                    } catch (SQLException expected) {
+                    }
+                    try {
+                        kv.getByKey("mytable2", "a");
+                        fail();
+                    } catch (SQLException expected) {
+                        assertTrue(expected.getMessage().contains("primary key"));
+                    }
+                    try {
+                        kv.putByKey("mytable", record("k1", "d", "notexists", 1));
+                        fail();
+                    } catch (SQLException expected) {
+                    }
+                    try {
+                        kv.putByKey("mytable", record("n1", 1));
+                        fail();
+                    } catch (SQLException expected) {
+                    }
+                    // a key of the wrong type for the column cannot be serialized
+                    try {
+                        kv.getByKey("mytable3", 1);
+                        fail();
+                    } catch (SQLException expected) {
+                    }
+                    try {
+                        kv.putByKey("mytable3", record("k1", 1L, "n1", 1));
+                        fail();
+                    } catch (SQLException expected) {
+                    }
+                    assertEquals(1, kv.putByKey("mytable3", record("k1", new byte[]{1, 2}, "n1", 1)));
+                    assertEquals(1, kv.getByKey("mytable3", new byte[]{1, 2}).get("n1"));
+
+                    // missing columns get their default value, like with an INSERT
+                    assertEquals(1, kv.putByKey("mytable4", record("k1", "a")));
+                    assertEquals(record("k1", "a", "s1", "x", "n1", 3), kv.getByKey("mytable4", "a"));
+                    assertEquals(1, kv.putByKey("mytable4", record("k1", "a", "s1", "y", "n1", null)));
+                    assertEquals(record("k1", "a", "s1", "y"), kv.getByKey("mytable4", "a"));
+                    try {
+                        kv.putByKey("mytable4", record("k1", "b", "s1", null));
+                        fail();
+                    } catch (SQLException expected) {
+                    }
+
+                    // a not null column without default value must be in the record
+                    try {
+                        kv.putByKey("mytable5", record("k1", "a"));
+                        fail();
+                    } catch (SQLException expected) {
+                        assertTrue(expected.getMessage().contains("s1"));
+                    }
+                    assertNull(kv.getByKey("mytable5", "a"));
+                    assertEquals(1, kv.putByKey("mytable5", record("k1", "a", "s1", "z")));
+                    assertEquals(record("k1", "a", "s1", "z"), kv.getByKey("mytable5", "a"));
+                    assertFalse(con.isClosed());
+                }
+            }
+        }
+    }
+}
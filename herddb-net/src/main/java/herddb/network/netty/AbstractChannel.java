@@ -30,6 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +50,7 @@ public abstract class AbstractChannel extends Channel {
     protected boolean ioErrors = false;
     private final long id = idGenerator.incrementAndGet();
     private final String remoteAddress;
+    private volatile Predicate<Pdu> inlineRequests;
 
     public AbstractChannel(
             String name, String remoteAddress,
@@ -67,6 +69,18 @@ public abstract class AbstractChannel extends Channel {
         return id;
     }
 
+    /**
+     * Requests accepted by the given predicate are processed by the thread
+     * which received them (usually the network event loop) instead of being
+     * handed off to the callback executor.
+     *
+     * @param inlineRequests a predicate, or null in order to always use the
+     * callback executor
+     */
+    public final void setInlineRequests(Predicate<Pdu> inlineRequests) {
+        this.inlineRequests = inlineRequests;
+    }
+
     /**
      * This method is intended to be used while serving a PDU coming from Network
      * @param message
@@ -101,6 +115,11 @@ public abstract class AbstractChannel extends Channel {
     }
 
     private void handlePduRequest(Pdu request) {
+        Predicate<Pdu> inline = inlineRequests;
+        if (inline != null && inline.test(request)) {
+            processRequest(request);
+            return;
+        }
         submitCallback(() -> {
             processRequest(request);
         });
@@ -21,6 +21,7 @@
 package herddb.network.netty;
 
 import herddb.network.ServerSideConnectionAcceptor;
+import herddb.proto.Pdu;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -36,7 +37,10 @@ import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.concurrent.EventExecutorGroup;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.NonStickyEventExecutorGroup;
+import io.netty.util.concurrent.UnorderedThreadPoolEventExecutor;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -49,6 +53,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.bookkeeper.stats.Gauge;
@@ -80,6 +85,9 @@ public class NettyChannelAcceptor implements AutoCloseable {
     private int callbackThreads = 64;
     private ExecutorService callbackExecutor;
     private BlockingQueue callbackExecutorQueue;
+    private EventExecutorGroup callbackExecutorGroup;
+    private boolean callbackAffinity;
+    private Predicate<Pdu> inlineRequests;
     private boolean enableRealNetwork = true;
     private boolean enableJVMNetwork = true;
     private final LocalVMChannelAcceptor localVMChannelAcceptor;
@@ -108,6 +116,40 @@ public class NettyChannelAcceptor implements AutoCloseable {
         this.callbackThreads = callbackThreads;
     }
 
+    public boolean isCallbackAffinity() {
+        return callbackAffinity;
+    }
+
+    /**
+     * Give every connection its own serial queue on the shared pool of
+     * callback threads, so that the requests coming from the same client are
+     * processed one at a time, in the order they were received. A request
+     * which waits, for instance for a row lock, delays the following requests
+     * of the same connection, but it holds only one thread of the pool and
+     * the other connections go on.
+     *
+     * @param callbackAffinity
+     */
+    public void setCallbackAffinity(boolean callbackAffinity) {
+        this.callbackAffinity = callbackAffinity;
+    }
+
+    public Predicate<Pdu> getInlineRequests() {
+        return inlineRequests;
+    }
+
+    /**
+     * Requests accepted by this predicate are executed directly on the event
+     * loop of the connection, without passing through the callback executor.
+     * Only short, non blocking requests should be selected, as a slow request
+     * delays every other connection served by the same event loop.
+     *
+     * @param inlineRequests
+     */
+    public void setInlineRequests(Predicate<Pdu> inlineRequests) {
+        this.inlineRequests = inlineRequests;
+    }
+
     public int getWorkerThreads() {
         return workerThreads;
     }
@@ -219,7 +261,12 @@ public class NettyChannelAcceptor implements AutoCloseable {
 
         }
 
-        if (callbackThreads == 0) {
+        if (callbackAffinity && callbackThreads > 0) {
+            UnorderedThreadPoolEventExecutor pool = new UnorderedThreadPoolEventExecutor(callbackThreads, threadFactory);
+            callbackExecutorQueue = pool.getQueue();
+            callbackExecutor = pool;
+            callbackExecutorGroup = new NonStickyEventExecutorGroup(pool);
+        } else if (callbackThreads == 0) {
             callbackExecutorQueue = new SynchronousQueue<Runnable>();
             callbackExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
                     60L, TimeUnit.SECONDS,
@@ -254,12 +301,16 @@ public class NettyChannelAcceptor implements AutoCloseable {
         ChannelInitializer<io.netty.channel.Channel> channelInitialized = new ChannelInitializer<io.netty.channel.Channel>() {
             @Override
             public void initChannel(io.netty.channel.Channel ch) throws Exception {
-                NettyChannel session = new NettyChannel("unnamed", ch, callbackExecutor);
+                // with affinity every connection gets its own serial queue on the shared pool
+                ExecutorService executor = callbackExecutorGroup != null ? callbackExecutorGroup.next() : callbackExecutor;
+                NettyChannel session = new NettyChannel("unnamed", ch, executor);
+                session.setInlineRequests(inlineRequests);
                 if (acceptor != null) {
                     acceptor.createConnection(session);
                 }
 
 //                        ch.pipeline().addLast(new LoggingHandler());
+                NetworkUtils.addFlushConsolidationHandler(ch.pipeline());
                 // Add SSL handler first to encrypt and decrypt everything.
                 if (ssl) {
                     ch.pipeline().addLast(sslCtx.newHandler(ch.alloc()));
@@ -274,11 +325,11 @@ public class NettyChannelAcceptor implements AutoCloseable {
         };
         if (enableRealNetwork) {
             if (NetworkUtils.isEnableEpoolNative()) {
-                bossGroup = new EpollEventLoopGroup(workerThreads);
+                bossGroup = new EpollEventLoopGroup(1);
                 workerGroup = new EpollEventLoopGroup(workerThreads);
                 LOGGER.log(Level.FINE, "Using netty-native-epoll network type");
             } else {
-                bossGroup = new NioEventLoopGroup(workerThreads);
+                bossGroup = new NioEventLoopGroup(1);
                 workerGroup = new NioEventLoopGroup(workerThreads);
                 LOGGER.log(Level.FINE, "Using nio network type");
             }
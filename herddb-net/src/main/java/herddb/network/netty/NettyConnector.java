@@ -105,6 +105,7 @@ public class NettyConnector {
                                     ch, callbackExecutor);
                             result.set(channel);
                             channel.setMessagesReceiver(receiver);
+                            NetworkUtils.addFlushConsolidationHandler(ch.pipeline());
                             if (ssl) {
                                 ch.pipeline().addLast(sslCtx.newHandler(ch.alloc(), host, port));
                             }
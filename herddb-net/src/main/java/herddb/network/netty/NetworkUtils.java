@@ -20,7 +20,9 @@
 
 package herddb.network.netty;
 
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.epoll.Epoll;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -55,6 +57,27 @@ public class NetworkUtils {
         return nettyEpoolNativeAvailable;
     }
 
+    /**
+     * Maximum number of flushes which are merged into a single write to the
+     * socket, zero disables flush consolidation
+     */
+    private static final int FLUSH_CONSOLIDATION_MAX_FLUSHES =
+            Integer.getInteger("herddb.network.flushconsolidation.maxflushes", 256);
+
+    /**
+     * When many requests are in flight on the same channel (or many replies
+     * are sent by the server) each message is flushed separately, with a
+     * syscall for each message. This handler merges the flushes which happen
+     * while the event loop is busy, in order to write many messages at once
+     *
+     * @param pipeline
+     */
+    static void addFlushConsolidationHandler(ChannelPipeline pipeline) {
+        if (FLUSH_CONSOLIDATION_MAX_FLUSHES > 0) {
+            pipeline.addLast("flushconsolidation", new FlushConsolidationHandler(FLUSH_CONSOLIDATION_MAX_FLUSHES, true));
+        }
+    }
+
     public static String getAddress(InetSocketAddress address) {
         if (address.getAddress() != null) {
             return address.getAddress().getHostAddress();
@@ -145,6 +145,8 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
     private final BLinkIndexDataStorage<K, V> storage;
     private final PageReplacementPolicy policy;
 
+    private final LeafMapFactory<K, V> leafMapFactory;
+
     private final AtomicBoolean closed;
 
     private final LongAdder size;
@@ -223,9 +225,43 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
     }
 
+    /**
+     * Builds the sorted maps holding leaf node entries.
+     * <p>
+     * Maps are created when a leaf is allocated or loaded and are {@link Map#clear() cleared} when the leaf
+     * is unloaded: implementations holding resources outside the heap must release them on clear. Leaf maps
+     * are only accessed through {@code get/put/putIfAbsent/computeIfPresent/remove/putAll/forEach}, the
+     * entry set iterator (with removal) and the entry set of range views.
+     * </p>
+     */
+    @FunctionalInterface
+    public interface LeafMapFactory<X, Y> {
+
+        /**
+         * Default factory, leaf entries are kept in a {@link TreeMap} on the heap
+         */
+        @SuppressWarnings("rawtypes")
+        LeafMapFactory HEAP = TreeMap::new;
+
+        NavigableMap<X, Y> newLeafMap();
+
+        @SuppressWarnings("unchecked")
+        static <X, Y> LeafMapFactory<X, Y> heap() {
+            return HEAP;
+        }
+    }
+
     public BLink(
             long maxSize, SizeEvaluator<K, V> evaluator,
             PageReplacementPolicy policy, BLinkIndexDataStorage<K, V> storage
+    ) {
+        this(maxSize, evaluator, policy, storage, LeafMapFactory.heap());
+    }
+
+    public BLink(
+            long maxSize, SizeEvaluator<K, V> evaluator,
+            PageReplacementPolicy policy, BLinkIndexDataStorage<K, V> storage,
+            LeafMapFactory<K, V> leafMapFactory
     ) {
         this.positiveInfinity = evaluator.getPosiviveInfinityKey();
         if (this.positiveInfinity != evaluator.getPosiviveInfinityKey()) {
@@ -265,6 +301,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
         this.storage = storage;
         this.policy = policy;
+        this.leafMapFactory = leafMapFactory;
 
         this.nextID = new AtomicLong(1L);
         this.closed = new AtomicBoolean(false);
@@ -287,6 +324,14 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             long maxSize, SizeEvaluator<K, V> evaluator,
             PageReplacementPolicy policy, BLinkIndexDataStorage<K, V> storage,
             BLinkMetadata<K> metadata
+    ) {
+        this(maxSize, evaluator, policy, storage, metadata, LeafMapFactory.heap());
+    }
+
+    public BLink(
+            long maxSize, SizeEvaluator<K, V> evaluator,
+            PageReplacementPolicy policy, BLinkIndexDataStorage<K, V> storage,
+            BLinkMetadata<K> metadata, LeafMapFactory<K, V> leafMapFactory
     ) {
         this.positiveInfinity = evaluator.getPosiviveInfinityKey();
         if (this.positiveInfinity != evaluator.getPosiviveInfinityKey()) {
@@ -326,6 +371,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
         this.storage = storage;
         this.policy = policy;
+        this.leafMapFactory = leafMapFactory;
 
         this.nextID = new AtomicLong(metadata.nextID);
         this.closed = new AtomicBoolean(false);
@@ -688,6 +734,29 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                 /* No parallel */ false);
     }
 
+    /**
+     * Like {@link #scan(Comparable, Comparable, boolean)} but entries are
+     * returned in descending order of the keys.
+     * <p>
+     * Leaves are linked only to the right, so every step locates the leaf
+     * which covers the current upper bound, copies its entries and then moves
+     * the bound to the left separator of the leaf.
+     * </p>
+     *
+     * @param from        inclusive (if not empty)
+     * @param to          upper bound (if not empty)
+     * @param toInclusive whether the upper bound is inclusive
+     * @return
+     */
+    public Stream<Entry<K, V>> scanDescending(K from, K to, boolean toInclusive) {
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(
+                        new DescendingScanIterator(from, to, toInclusive),
+                        /* No characteristics */ 0),
+                /* No parallel */ false);
+    }
+
     //    function insert(v: value): boolean;
 //    var
 //        n: nodeptr;
@@ -860,6 +929,15 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
      * @return
      */
     private Node<K, V> locate_leaf(K v, int lastlock, Deque<ResultCouple<K, V>> descent) throws IOException {
+        return locate_leaf_with_leftsep(v, lastlock, descent).node;
+    }
+
+    /**
+     * Like {@link #locate_leaf(Comparable, int, Deque)} but returns the
+     * ubleftsep of the leaf too. It is {@link #positiveInfinity} for the
+     * leftmost leaf.
+     */
+    private ResultCouple<K, V> locate_leaf_with_leftsep(K v, int lastlock, Deque<ResultCouple<K, V>> descent) throws IOException {
 
         Node<K, V> n, m;
         int h, enterheight;
@@ -901,11 +979,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             n = m;
         }
 
-        ResultCouple<K, V> move_right = move_right(v, n, ubleftsep, lastlock); // v € coverset(n)
-        n = move_right.node;
-        ubleftsep = move_right.ubleftsep;
-
-        return n;
+        return move_right(v, n, ubleftsep, lastlock); // v € coverset(n)
 
     }
 
@@ -1854,7 +1928,12 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             this.dirty = true;
         }
 
-        private static <A, B> NavigableMap<A, B> newNodeMap() {
+        @SuppressWarnings("unchecked")
+        private NavigableMap<X, Object> newNodeMap() {
+            if (leaf) {
+                /* Cast to Object: is a leaf, values are Y */
+                return (NavigableMap<X, Object>) owner.leafMapFactory.newLeafMap();
+            }
             return new TreeMap<>();
         }
 
@@ -1963,7 +2042,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
                     // let JVM reclaim map memory
                     right.map.clear();
-                    right.map = newNodeMap();
+                    right.map = right.newNodeMap();
 
                     // add copied size
                     size += right.size - NODE_CONSTANT_SIZE; // just one node!
@@ -2923,7 +3002,14 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
         private void readLeafPage(long pageId) throws IOException {
             map = newNodeMap();
-            owner.storage.loadLeafPage(pageId, (Map<X, Y>) map);
+            try {
+                owner.storage.loadLeafPage(pageId, (Map<X, Y>) map);
+            } catch (IOException | RuntimeException err) {
+                /* Release partially loaded data, the node will stay unloaded */
+                map.clear();
+                map = null;
+                throw err;
+            }
 
             /* Recalculate size if needed */
             if (size == UNKNOWN_SIZE) {
@@ -3225,6 +3311,109 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
     }
 
+    private final class DescendingScanIterator implements Iterator<Entry<K, V>> {
+
+        private final K start;
+
+        /* Upper bound of the next leaf to read, null is +inf */
+        private K end;
+        private boolean inclusive;
+
+        private Iterator<Entry<K, V>> current;
+        private boolean finished;
+
+        public DescendingScanIterator(K start, K end, boolean inclusive) {
+
+            this.start = start;
+            this.end = end;
+            this.inclusive = end != null && inclusive;
+
+            this.current = Collections.emptyIterator();
+            this.finished = start != null && end != null && start.compareTo(end) > 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            while (!current.hasNext()) {
+
+                if (finished) {
+                    return false;
+                }
+
+                readLeaf();
+            }
+
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return current.next();
+        }
+
+        private void readLeaf() {
+
+            @SuppressWarnings("unchecked")
+            Deque<ResultCouple<K, V>> descent = DummyDeque.INSTANCE;
+
+            final ResultCouple<K, V> located;
+            try {
+
+                located = locate_leaf_with_leftsep(end == null ? positiveInfinity : end, READ_LOCK, descent);
+
+            } catch (IOException ex) {
+
+                throw new UncheckedIOException("failed to scan from " + start + " to " + end, ex);
+            }
+
+            final Node<K, V> node = located.node;
+            final List<Entry<K, V>> list;
+            try {
+                /* Copy values to quickly release read lock */
+                list = node.copyRange(start, start != null, end, inclusive);
+
+            } catch (IOException e) {
+
+                throw new UncheckedIOException("failed to copy data from node " + node.pageId, e);
+
+            } finally {
+                unlock(node, READ_LOCK);
+            }
+
+            final K leftsep = located.ubleftsep;
+
+            if (leftsep == positiveInfinity || (start != null && leftsep.compareTo(start) < 0)) {
+
+                /* Leftmost leaf, or there is no interesting data at left */
+                finished = true;
+
+            } else if (end != null && leftsep.compareTo(end) >= 0) {
+
+                /*
+                 * ubleftsep is only an upper bound on leftsep: concurrent changes moved the separators and
+                 * the leaf doesn't let us go left. Read what remains with a plain scan.
+                 */
+                list.clear();
+                scan(start, end, inclusive).forEachOrdered(list::add);
+                finished = true;
+
+            } else {
+
+                end = leftsep;
+                inclusive = true;
+            }
+
+            Collections.reverse(list);
+            current = list.iterator();
+        }
+    }
+
     private final class ScanIterator implements Iterator<Entry<K, V>> {
 
         private boolean nextChecked;
@@ -0,0 +1,573 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index.blink;
+
+import herddb.utils.Bytes;
+import herddb.utils.CompareBytesUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Sorted map of {@link Bytes} keys to primitive {@code long} values stored outside the Java heap, to be used as
+ * {@link BLink} leaf map with {@link #FACTORY}.
+ * <p>
+ * Entries are appended to a direct memory slab taken from the netty pooled allocator as
+ * {@code key length (int), value (long), key bytes}, and only an array of slab offsets sorted by key is kept
+ * on the heap. Keys are compared in place with {@link CompareBytesUtils}. Removed entries leave garbage in the
+ * slab which is compacted when the slab needs to grow; the slab is given back to the pool when the map is
+ * {@link #clear() cleared} (that is when the leaf is unloaded) or when its last entry is removed, so paging
+ * leaves in and out reuses pooled memory.
+ * </p>
+ * <p>
+ * Keys and entries returned by the map are heap copies. Range views are live, read-only and support
+ * navigation; {@link #descendingMap()}, {@link #navigableKeySet()} and {@link #descendingKeySet()} are not
+ * supported. The map is not thread safe: concurrent readers are fine, writers must be exclusive, as granted
+ * by {@link BLink} node locks.
+ * </p>
+ */
+public final class OffHeapLeafMap extends AbstractMap<Bytes, Long> implements NavigableMap<Bytes, Long> {
+
+    /**
+     * Factory of off-heap leaf maps for {@code BLink<Bytes, Long>} trees
+     */
+    public static final BLink.LeafMapFactory<Bytes, Long> FACTORY = OffHeapLeafMap::new;
+
+    private static final int ENTRY_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int VALUE_OFFSET = Integer.BYTES;
+    private static final int INITIAL_SLAB_SIZE = 4096;
+    private static final int[] NO_OFFSETS = new int[0];
+
+    /**
+     * Entries storage, shared between a map and its range views
+     */
+    private static final class Slab {
+
+        /* Lazily allocated, empty leaves don't hold direct memory */
+        ByteBuf buffer;
+        int[] offsets = NO_OFFSETS;
+        int count;
+        int garbage;
+
+        int keyLength(int index) {
+            return buffer.getInt(offsets[index]);
+        }
+
+        long value(int index) {
+            return buffer.getLong(offsets[index] + VALUE_OFFSET);
+        }
+
+        Bytes key(int index) {
+            final int offset = offsets[index];
+            final byte[] key = new byte[buffer.getInt(offset)];
+            buffer.getBytes(offset + ENTRY_HEADER_SIZE, key);
+            return Bytes.from_array(key);
+        }
+
+        int compare(int index, Bytes key) {
+            final int offset = offsets[index] + ENTRY_HEADER_SIZE;
+            return CompareBytesUtils.compare(buffer, offset, offset + buffer.getInt(offsets[index]),
+                    key.getBuffer(), key.getOffset(), key.getOffset() + key.getLength());
+        }
+
+        /**
+         * Binary search of a key
+         *
+         * @return index of the key if present, otherwise {@code -(insertion point) - 1}
+         */
+        int search(Bytes key) {
+            if (key == Bytes.POSITIVE_INFINITY) {
+                return -count - 1;
+            }
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int cmp = compare(mid, key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Index of the first entry greater than (or equal if inclusive) the key
+         */
+        int ceiling(Bytes key, boolean inclusive) {
+            final int index = search(key);
+            if (index >= 0) {
+                return inclusive ? index : index + 1;
+            }
+            return -index - 1;
+        }
+
+        /**
+         * Index of the last entry lower than (or equal if inclusive) the key
+         */
+        int floor(Bytes key, boolean inclusive) {
+            final int index = search(key);
+            if (index >= 0) {
+                return inclusive ? index : index - 1;
+            }
+            return -index - 2;
+        }
+
+        void insert(int index, Bytes key, long value) {
+            final int length = key.getLength();
+            ensureWritable(ENTRY_HEADER_SIZE + length);
+
+            final int offset = buffer.writerIndex();
+            buffer.writeInt(length);
+            buffer.writeLong(value);
+            buffer.writeBytes(key.getBuffer(), key.getOffset(), length);
+
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(16, count * 2));
+            }
+            System.arraycopy(offsets, index, offsets, index + 1, count - index);
+            offsets[index] = offset;
+            ++count;
+        }
+
+        long remove(int index) {
+            final long value = value(index);
+            garbage += ENTRY_HEADER_SIZE + keyLength(index);
+            System.arraycopy(offsets, index + 1, offsets, index, count - index - 1);
+            --count;
+            if (count == 0) {
+                release();
+            }
+            return value;
+        }
+
+        void release() {
+            if (buffer != null) {
+                buffer.release();
+                buffer = null;
+            }
+            offsets = NO_OFFSETS;
+            count = 0;
+            garbage = 0;
+        }
+
+        private void ensureWritable(int size) {
+            if (buffer == null) {
+                buffer = PooledByteBufAllocator.DEFAULT.directBuffer(Math.max(INITIAL_SLAB_SIZE, size));
+                return;
+            }
+            if (buffer.capacity() - buffer.writerIndex() >= size) {
+                return;
+            }
+
+            final int live = buffer.writerIndex() - garbage;
+            int capacity = buffer.capacity();
+
+            /* Just compact if it gives back enough space, otherwise grow */
+            if (garbage < capacity / 4 || live + size > capacity) {
+                capacity *= 2;
+                while (capacity < live + size) {
+                    capacity *= 2;
+                }
+            }
+
+            final ByteBuf relocated = PooledByteBufAllocator.DEFAULT.directBuffer(capacity);
+            for (int i = 0; i < count; ++i) {
+                final int offset = offsets[i];
+                offsets[i] = relocated.writerIndex();
+                relocated.writeBytes(buffer, offset, ENTRY_HEADER_SIZE + buffer.getInt(offset));
+            }
+            buffer.release();
+            buffer = relocated;
+            garbage = 0;
+        }
+    }
+
+    private final Slab slab;
+
+    /* Range view bounds, null if unbounded */
+    private final Bytes lo;
+    private final boolean loInclusive;
+    private final Bytes hi;
+    private final boolean hiInclusive;
+    private final boolean view;
+
+    public OffHeapLeafMap() {
+        this(new Slab(), null, false, null, false, false);
+    }
+
+    private OffHeapLeafMap(Slab slab, Bytes lo, boolean loInclusive, Bytes hi, boolean hiInclusive, boolean view) {
+        this.slab = slab;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.view = view;
+    }
+
+    /**
+     * Direct memory currently held by the map
+     */
+    public int getSlabSize() {
+        return slab.buffer == null ? 0 : slab.buffer.capacity();
+    }
+
+    /* Index of the first entry in range */
+    private int fromIndex() {
+        return lo == null ? 0 : slab.ceiling(lo, loInclusive);
+    }
+
+    /* Index after the last entry in range */
+    private int toIndex() {
+        return hi == null ? slab.count : slab.floor(hi, hiInclusive) + 1;
+    }
+
+    private boolean inRange(Bytes key) {
+        if (lo != null) {
+            final int cmp = key.compareTo(lo);
+            if (cmp < 0 || cmp == 0 && !loInclusive) {
+                return false;
+            }
+        }
+        if (hi != null) {
+            final int cmp = key.compareTo(hi);
+            if (cmp > 0 || cmp == 0 && !hiInclusive) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkWritable() {
+        if (view) {
+            throw new UnsupportedOperationException("Off-heap leaf map range views are read only");
+        }
+    }
+
+    private Entry<Bytes, Long> entry(int index) {
+        if (index < fromIndex() || index >= toIndex()) {
+            return null;
+        }
+        return new SimpleImmutableEntry<>(slab.key(index), slab.value(index));
+    }
+
+    private Bytes key(int index) {
+        if (index < fromIndex() || index >= toIndex()) {
+            return null;
+        }
+        return slab.key(index);
+    }
+
+    private static Bytes toKey(Object key) {
+        return (Bytes) Objects.requireNonNull(key);
+    }
+
+    @Override
+    public int size() {
+        return view ? Math.max(0, toIndex() - fromIndex()) : slab.count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final Bytes k = toKey(key);
+        return inRange(k) && slab.search(k) >= 0;
+    }
+
+    @Override
+    public Long get(Object key) {
+        final Bytes k = toKey(key);
+        if (!inRange(k)) {
+            return null;
+        }
+        final int index = slab.search(k);
+        return index < 0 ? null : slab.value(index);
+    }
+
+    @Override
+    public Long put(Bytes key, Long value) {
+        checkWritable();
+        Objects.requireNonNull(value);
+        if (key == Bytes.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("positive infinity cannot be stored in a leaf");
+        }
+        final int index = slab.search(Objects.requireNonNull(key));
+        if (index >= 0) {
+            final long old = slab.value(index);
+            slab.buffer.setLong(slab.offsets[index] + VALUE_OFFSET, value);
+            return old;
+        }
+        slab.insert(-index - 1, key, value);
+        return null;
+    }
+
+    @Override
+    public Long remove(Object key) {
+        checkWritable();
+        final int index = slab.search(toKey(key));
+        return index < 0 ? null : slab.remove(index);
+    }
+
+    /**
+     * Removes any entry and gives the slab back to the pool
+     */
+    @Override
+    public void clear() {
+        checkWritable();
+        slab.release();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Bytes, ? super Long> action) {
+        for (int i = fromIndex(), to = toIndex(); i < to; ++i) {
+            action.accept(slab.key(i), slab.value(i));
+        }
+    }
+
+    @Override
+    public Set<Entry<Bytes, Long>> entrySet() {
+        return new AbstractSet<Entry<Bytes, Long>>() {
+
+            @Override
+            public Iterator<Entry<Bytes, Long>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return OffHeapLeafMap.this.size();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<Bytes, Long>> {
+
+        private int next = fromIndex();
+        private int to = toIndex();
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < to;
+        }
+
+        @Override
+        public Entry<Bytes, Long> next() {
+            if (next >= to) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new SimpleImmutableEntry<>(slab.key(last), slab.value(last));
+        }
+
+        @Override
+        public void remove() {
+            checkWritable();
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            slab.remove(last);
+            next = last;
+            --to;
+            last = -1;
+        }
+    }
+
+    @Override
+    public Comparator<? super Bytes> comparator() {
+        return null;
+    }
+
+    @Override
+    public Entry<Bytes, Long> lowerEntry(Bytes key) {
+        return entry(Math.min(toIndex() - 1, slab.floor(key, false)));
+    }
+
+    @Override
+    public Bytes lowerKey(Bytes key) {
+        return key(Math.min(toIndex() - 1, slab.floor(key, false)));
+    }
+
+    @Override
+    public Entry<Bytes, Long> floorEntry(Bytes key) {
+        return entry(Math.min(toIndex() - 1, slab.floor(key, true)));
+    }
+
+    @Override
+    public Bytes floorKey(Bytes key) {
+        return key(Math.min(toIndex() - 1, slab.floor(key, true)));
+    }
+
+    @Override
+    public Entry<Bytes, Long> ceilingEntry(Bytes key) {
+        return entry(Math.max(fromIndex(), slab.ceiling(key, true)));
+    }
+
+    @Override
+    public Bytes ceilingKey(Bytes key) {
+        return key(Math.max(fromIndex(), slab.ceiling(key, true)));
+    }
+
+    @Override
+    public Entry<Bytes, Long> higherEntry(Bytes key) {
+        return entry(Math.max(fromIndex(), slab.ceiling(key, false)));
+    }
+
+    @Override
+    public Bytes higherKey(Bytes key) {
+        return key(Math.max(fromIndex(), slab.ceiling(key, false)));
+    }
+
+    @Override
+    public Entry<Bytes, Long> firstEntry() {
+        return entry(fromIndex());
+    }
+
+    @Override
+    public Entry<Bytes, Long> lastEntry() {
+        return entry(toIndex() - 1);
+    }
+
+    @Override
+    public Entry<Bytes, Long> pollFirstEntry() {
+        checkWritable();
+        final Entry<Bytes, Long> entry = firstEntry();
+        if (entry != null) {
+            slab.remove(0);
+        }
+        return entry;
+    }
+
+    @Override
+    public Entry<Bytes, Long> pollLastEntry() {
+        checkWritable();
+        final Entry<Bytes, Long> entry = lastEntry();
+        if (entry != null) {
+            slab.remove(slab.count - 1);
+        }
+        return entry;
+    }
+
+    @Override
+    public Bytes firstKey() {
+        final Bytes key = key(fromIndex());
+        if (key == null) {
+            throw new NoSuchElementException();
+        }
+        return key;
+    }
+
+    @Override
+    public Bytes lastKey() {
+        final Bytes key = key(toIndex() - 1);
+        if (key == null) {
+            throw new NoSuchElementException();
+        }
+        return key;
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> subMap(Bytes fromKey, boolean fromInclusive, Bytes toKey, boolean toInclusive) {
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return range(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> headMap(Bytes toKey, boolean inclusive) {
+        return range(null, false, Objects.requireNonNull(toKey), inclusive);
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> tailMap(Bytes fromKey, boolean inclusive) {
+        return range(Objects.requireNonNull(fromKey), inclusive, null, false);
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> subMap(Bytes fromKey, Bytes toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> headMap(Bytes toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> tailMap(Bytes fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    private NavigableMap<Bytes, Long> range(Bytes fromKey, boolean fromInclusive, Bytes toKey, boolean toInclusive) {
+        if (fromKey != null && !inRange(fromKey) || toKey != null && !inRange(toKey)) {
+            throw new IllegalArgumentException("key out of range");
+        }
+        /* Narrow only given bounds, keep the others */
+        return new OffHeapLeafMap(slab,
+                fromKey == null ? lo : fromKey, fromKey == null ? loInclusive : fromInclusive,
+                toKey == null ? hi : toKey, toKey == null ? hiInclusive : toInclusive,
+                true);
+    }
+
+    @Override
+    public NavigableMap<Bytes, Long> descendingMap() {
+        throw new UnsupportedOperationException("Off-heap leaf maps don't support descending views");
+    }
+
+    @Override
+    public NavigableSet<Bytes> navigableKeySet() {
+        throw new UnsupportedOperationException("Off-heap leaf maps don't support key set views");
+    }
+
+    @Override
+    public NavigableSet<Bytes> descendingKeySet() {
+        throw new UnsupportedOperationException("Off-heap leaf maps don't support descending views");
+    }
+
+    /**
+     * Copies every entry of the given map, it doesn't need to be sorted
+     */
+    @Override
+    public void putAll(Map<? extends Bytes, ? extends Long> m) {
+        checkWritable();
+        m.forEach(this::put);
+    }
+}
@@ -35,6 +35,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
@@ -84,6 +86,8 @@ public abstract class PduCodec {
     public static final byte TYPE_SHORT = 8;
     public static final byte TYPE_BYTE = 9;
 
+    private static final byte CHUNK_FORMAT_COLUMNAR = 1;
+
     public abstract static class ExecuteStatementsResult {
 
         public static ByteBuf write(long replyId, List<Long> updateCounts, List<Map<String, Object>> otherdata, long tx) {
@@ -603,6 +607,14 @@ public abstract class PduCodec {
                 long messageId, String tableSpace, String query,
                 long scannerId, long tx, List<Object> params, long statementId, int fetchSize, int maxRows
         ) {
+            return write(messageId, tableSpace, query, scannerId, tx, params, statementId, fetchSize, maxRows, false);
+        }
+
+        public static ByteBuf write(
+                long messageId, String tableSpace, String query,
+                long scannerId, long tx, List<Object> params, long statementId, int fetchSize, int maxRows,
+                boolean columnar
+        ) {
 
             ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
                     .directBuffer(
@@ -617,7 +629,8 @@ public abstract class PduCodec {
                                     + ONE_LONG
                                     + 1 + tableSpace.length()
                                     + 2 + query.length()
-                                    + 1 + params.size() * 8);
+                                    + 1 + params.size() * 8
+                                    + ONE_BYTE);
 
             byteBuf.writeByte(VERSION_3);
             byteBuf.writeByte(Pdu.FLAGS_ISREQUEST);
@@ -635,6 +648,10 @@ public abstract class PduCodec {
             for (Object p : params) {
                 writeObject(byteBuf, p);
             }
+            if (columnar) {
+                // optional trailing field, old servers do not read it
+                byteBuf.writeByte(CHUNK_FORMAT_COLUMNAR);
+            }
 
             return byteBuf;
 
@@ -738,16 +755,37 @@ public abstract class PduCodec {
             int numParams = ByteBufUtils.readVInt(buffer);
             return new ObjectListReader(pdu, numParams);
         }
+
+        /**
+         * Tells whether the client is able to decode ResultSet chunks in the
+         * {@link ColumnarTuplesList} format. This field follows the parameters,
+         * so it must be read after all of the parameters.
+         *
+         * @param pdu
+         * @return
+         */
+        public static boolean readColumnarFormat(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.isReadable() && buffer.readByte() == CHUNK_FORMAT_COLUMNAR;
+        }
     }
 
     public static class ResultSetChunk {
 
+        private static final byte FLAG_LAST = 1;
+        private static final byte FLAG_COLUMNAR = 2;
+
         private static int estimateTupleListSize(TuplesList data) {
             return data.tuples.size() * 1024 + data.columnNames.length * 64;
         }
 
         public static ByteBuf write(long messageId, TuplesList tuplesList, boolean last, long tx) {
-            int dataSize = estimateTupleListSize(tuplesList);
+            return write(messageId, tuplesList, last, tx, false);
+        }
+
+        public static ByteBuf write(long messageId, TuplesList tuplesList, boolean last, long tx, boolean columnar) {
+            ColumnarTuplesList.Encoder encoder = columnar ? new ColumnarTuplesList.Encoder(tuplesList) : null;
+            int dataSize = columnar ? encoder.estimateSize() : estimateTupleListSize(tuplesList);
             ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
                     .directBuffer(
                             VERSION_SIZE
@@ -763,8 +801,16 @@ public abstract class PduCodec {
             byteBuf.writeByte(Pdu.TYPE_RESULTSET_CHUNK);
             byteBuf.writeLong(messageId);
             byteBuf.writeLong(tx);
-            byteBuf.writeByte(last ? 1 : 0);
+            byteBuf.writeByte((last ? FLAG_LAST : 0) | (columnar ? FLAG_COLUMNAR : 0));
+            if (columnar) {
+                encoder.write(byteBuf);
+            } else {
+                writeTuplesList(byteBuf, tuplesList);
+            }
+            return byteBuf;
+        }
 
+        private static void writeTuplesList(ByteBuf byteBuf, TuplesList tuplesList) {
             int numColumns = tuplesList.columnNames.length;
             byteBuf.writeInt(numColumns);
             for (String columnName : tuplesList.columnNames) {
@@ -773,19 +819,22 @@ public abstract class PduCodec {
 
             // num records
             byteBuf.writeInt(tuplesList.tuples.size());
-            for (DataAccessor da : tuplesList.tuples) {
-                IntHolder currentColumn = new IntHolder();
-                da.forEach((String key, Object value) -> {
-                    String expectedColumnName = tuplesList.columnNames[currentColumn.value];
-                    while (!key.equals(expectedColumnName)) {
-                        // nulls are not returned for some special accessors, like DataAccessorForFullRecord
-                        writeObject(byteBuf, null);
-                        currentColumn.value++;
-                        expectedColumnName = tuplesList.columnNames[currentColumn.value];
-                    }
-                    writeObject(byteBuf, value);
+            // the same consumer is used for every record
+            IntHolder currentColumn = new IntHolder();
+            BiConsumer<String, Object> writer = (String key, Object value) -> {
+                String expectedColumnName = tuplesList.columnNames[currentColumn.value];
+                while (!key.equals(expectedColumnName)) {
+                    // nulls are not returned for some special accessors, like DataAccessorForFullRecord
+                    writeObject(byteBuf, null);
                     currentColumn.value++;
-                });
+                    expectedColumnName = tuplesList.columnNames[currentColumn.value];
+                }
+                writeObject(byteBuf, value);
+                currentColumn.value++;
+            };
+            for (DataAccessor da : tuplesList.tuples) {
+                currentColumn.value = 0;
+                da.forEach(writer);
                 // fill with nulls
                 while (currentColumn.value < numColumns) {
                     writeObject(byteBuf, null);
@@ -795,7 +844,6 @@ public abstract class PduCodec {
                     throw new RuntimeException("unexpected number of columns " + currentColumn.value + " > " + numColumns);
                 }
             }
-            return byteBuf;
         }
 
         public static long readTx(Pdu pdu) {
@@ -806,17 +854,22 @@ public abstract class PduCodec {
                     + MSGID_SIZE);
         }
 
-        public static boolean readIsLast(Pdu pdu) {
+        private static byte readFlags(Pdu pdu) {
             ByteBuf buffer = pdu.buffer;
             return buffer.getByte(VERSION_SIZE
                     + FLAGS_SIZE
                     + TYPE_SIZE
                     + MSGID_SIZE
                     + ONE_LONG
-            ) == 1;
+            );
+        }
+
+        public static boolean readIsLast(Pdu pdu) {
+            return (readFlags(pdu) & FLAG_LAST) == FLAG_LAST;
         }
 
         public static RecordsBatch startReadingData(Pdu pdu) {
+            boolean columnar = (readFlags(pdu) & FLAG_COLUMNAR) == FLAG_COLUMNAR;
             ByteBuf buffer = pdu.buffer;
             buffer.readerIndex(VERSION_SIZE
                     + FLAGS_SIZE
@@ -824,7 +877,439 @@ public abstract class PduCodec {
                     + MSGID_SIZE
                     + ONE_LONG
                     + ONE_BYTE);
-            return new RecordsBatch(pdu);
+            return new RecordsBatch(pdu, columnar);
+        }
+    }
+
+    /**
+     * Column-major encoding of a {@link TuplesList}, used for ResultSet chunks
+     * when the client declares that it is able to decode it (see
+     * {@link OpenScanner#readColumnarFormat(Pdu)}).
+     * <p>
+     * The header (column names and number of records) is the same of the row
+     * based format, then every column is written as a whole: the type is
+     * written only once, null values are tracked with a bitmap, repeated
+     * strings are written with a dictionary and longs/timestamps are written
+     * as deltas from the previous value. Columns containing values of
+     * different types fall back to the row based encoding of every value.
+     * </p>
+     */
+    public static class ColumnarTuplesList {
+
+        private static final byte COLUMN_MIXED = -1;
+
+        private static final byte ENCODING_PLAIN = 0;
+        private static final byte ENCODING_DICTIONARY = 1;
+        private static final byte ENCODING_DELTA = 2;
+
+        private static byte typeOf(Object v) {
+            if (v instanceof RawString || v instanceof String) {
+                return TYPE_STRING;
+            } else if (v instanceof Long) {
+                return TYPE_LONG;
+            } else if (v instanceof Integer) {
+                return TYPE_INTEGER;
+            } else if (v instanceof Boolean) {
+                return TYPE_BOOLEAN;
+            } else if (v instanceof java.util.Date) {
+                return TYPE_TIMESTAMP;
+            } else if (v instanceof Double || v instanceof Float) {
+                return TYPE_DOUBLE;
+            } else if (v instanceof Short) {
+                return TYPE_SHORT;
+            } else if (v instanceof byte[]) {
+                return TYPE_BYTEARRAY;
+            } else if (v instanceof Byte) {
+                return TYPE_BYTE;
+            } else {
+                throw new IllegalArgumentException("bad data type " + v.getClass());
+            }
+        }
+
+        private static int estimateStringSize(Object v) {
+            if (v instanceof RawString) {
+                return ONE_INT + ONE_BYTE + ((RawString) v).getLength();
+            }
+            return ONE_INT + ONE_BYTE + ((String) v).length() * 3;
+        }
+
+        /**
+         * Upper bound of the size of a value written by
+         * {@link PduCodec#writeObject(io.netty.buffer.ByteBuf, java.lang.Object)}
+         */
+        private static int estimateObjectSize(Object v) {
+            if (v == null) {
+                return ONE_BYTE;
+            }
+            switch (typeOf(v)) {
+                case TYPE_STRING:
+                    return ONE_BYTE + estimateStringSize(v);
+                case TYPE_BYTEARRAY:
+                    return ONE_BYTE + ONE_INT + ONE_BYTE + ((byte[]) v).length;
+                case TYPE_INTEGER:
+                    return ONE_BYTE + ONE_INT;
+                case TYPE_BOOLEAN:
+                case TYPE_BYTE:
+                    return ONE_BYTE + ONE_BYTE;
+                default:
+                    return ONE_BYTE + ONE_LONG;
+            }
+        }
+
+        /**
+         * Collects the values of the tuples column by column and writes them.
+         * The same instance is used as consumer for every tuple in order not
+         * to allocate objects for each row.
+         */
+        public static final class Encoder implements BiConsumer<String, Object> {
+
+            private final String[] columnNames;
+            private final int numRecords;
+            private final Object[][] columns;
+            private final byte[] types;
+            private final boolean[] hasNulls;
+            private Map<Object, Integer> dictionary;
+            private Object[] dictionaryValues;
+            private int currentRow;
+            private int currentColumn;
+
+            public Encoder(TuplesList tuplesList) {
+                this.columnNames = tuplesList.columnNames;
+                this.numRecords = tuplesList.tuples.size();
+                int numColumns = columnNames.length;
+                this.columns = new Object[numColumns][numRecords];
+                this.types = new byte[numColumns];
+                this.hasNulls = new boolean[numColumns];
+                for (DataAccessor da : tuplesList.tuples) {
+                    currentColumn = 0;
+                    da.forEach(this);
+                    currentRow++;
+                }
+                for (int i = 0; i < numColumns; i++) {
+                    Object[] values = columns[i];
+                    byte type = TYPE_NULL;
+                    for (int row = 0; row < numRecords; row++) {
+                        Object v = values[row];
+                        if (v == null) {
+                            hasNulls[i] = true;
+                        } else if (type == TYPE_NULL) {
+                            type = typeOf(v);
+                        } else if (type != COLUMN_MIXED && type != typeOf(v)) {
+                            type = COLUMN_MIXED;
+                        }
+                    }
+                    types[i] = type;
+                }
+            }
+
+            @Override
+            public void accept(String key, Object value) {
+                // nulls are not returned for some special accessors, like DataAccessorForFullRecord
+                while (currentColumn < columnNames.length && !key.equals(columnNames[currentColumn])) {
+                    currentColumn++;
+                }
+                if (currentColumn == columnNames.length) {
+                    throw new RuntimeException("unexpected column " + key + ", expected columns are " + Arrays.toString(columnNames));
+                }
+                if (value instanceof RawString) {
+                    // pooled RawStrings are recycled as soon as the accessor moves to the next value,
+                    // the encoder keeps the values until write, only the data of the record is stable
+                    RawString string = (RawString) value;
+                    value = RawString.newUnpooledRawString(string.getData(), string.getOffset(), string.getLength());
+                }
+                columns[currentColumn++][currentRow] = value;
+            }
+
+            public int estimateSize() {
+                int size = ONE_INT + ONE_INT;
+                for (String columnName : columnNames) {
+                    size += ONE_INT + ONE_BYTE + columnName.length() * 3;
+                }
+                int bitmapSize = (numRecords + 7) / 8;
+                for (int i = 0; i < columnNames.length; i++) {
+                    Object[] values = columns[i];
+                    size += ONE_BYTE + ONE_BYTE + ONE_BYTE + bitmapSize;
+                    switch (types[i]) {
+                        case TYPE_NULL:
+                            break;
+                        case TYPE_STRING:
+                            for (Object v : values) {
+                                if (v != null) {
+                                    size += estimateStringSize(v);
+                                }
+                            }
+                            break;
+                        case TYPE_BYTEARRAY:
+                            for (Object v : values) {
+                                if (v != null) {
+                                    size += ONE_INT + ONE_BYTE + ((byte[]) v).length;
+                                }
+                            }
+                            break;
+                        case TYPE_LONG:
+                        case TYPE_TIMESTAMP:
+                            // zig-zag encoded deltas need at most 10 bytes
+                            size += numRecords * (ONE_LONG + 2);
+                            break;
+                        case COLUMN_MIXED:
+                            for (Object v : values) {
+                                size += estimateObjectSize(v);
+                            }
+                            break;
+                        default:
+                            size += numRecords * ONE_LONG;
+                            break;
+                    }
+                }
+                return size;
+            }
+
+            public void write(ByteBuf byteBuf) {
+                int numColumns = columnNames.length;
+                byteBuf.writeInt(numColumns);
+                for (String columnName : columnNames) {
+                    ByteBufUtils.writeString(byteBuf, columnName);
+                }
+                byteBuf.writeInt(numRecords);
+                for (int i = 0; i < numColumns; i++) {
+                    writeColumn(byteBuf, columns[i], types[i], hasNulls[i]);
+                }
+            }
+
+            private void writeColumn(ByteBuf byteBuf, Object[] values, byte type, boolean nulls) {
+                byteBuf.writeByte(type);
+                if (type == TYPE_NULL) {
+                    return;
+                }
+                if (type == COLUMN_MIXED) {
+                    for (Object v : values) {
+                        writeObject(byteBuf, v);
+                    }
+                    return;
+                }
+                byte encoding = ENCODING_PLAIN;
+                int dictionarySize = 0;
+                if (type == TYPE_STRING) {
+                    dictionarySize = buildDictionary(values);
+                    if (dictionarySize > 0) {
+                        encoding = ENCODING_DICTIONARY;
+                    }
+                } else if (type == TYPE_LONG || type == TYPE_TIMESTAMP) {
+                    encoding = ENCODING_DELTA;
+                }
+                byteBuf.writeByte(encoding);
+                byteBuf.writeBoolean(nulls);
+                if (nulls) {
+                    for (int start = 0; start < numRecords; start += 8) {
+                        int bits = 0;
+                        int end = Math.min(start + 8, numRecords);
+                        for (int row = start; row < end; row++) {
+                            if (values[row] == null) {
+                                bits |= 1 << (row - start);
+                            }
+                        }
+                        byteBuf.writeByte(bits);
+                    }
+                }
+                switch (type) {
+                    case TYPE_STRING:
+                        if (encoding == ENCODING_DICTIONARY) {
+                            ByteBufUtils.writeVInt(byteBuf, dictionarySize);
+                            for (int i = 0; i < dictionarySize; i++) {
+                                writeString(byteBuf, dictionaryValues[i]);
+                            }
+                            for (Object v : values) {
+                                if (v != null) {
+                                    ByteBufUtils.writeVInt(byteBuf, dictionary.get(v));
+                                }
+                            }
+                        } else {
+                            for (Object v : values) {
+                                if (v != null) {
+                                    writeString(byteBuf, v);
+                                }
+                            }
+                        }
+                        break;
+                    case TYPE_LONG:
+                    case TYPE_TIMESTAMP: {
+                        boolean first = true;
+                        long previous = 0;
+                        for (Object v : values) {
+                            if (v != null) {
+                                long current = type == TYPE_LONG ? (Long) v : ((java.util.Date) v).getTime();
+                                if (first) {
+                                    byteBuf.writeLong(current);
+                                    first = false;
+                                } else {
+                                    ByteBufUtils.writeZLong(byteBuf, current - previous);
+                                }
+                                previous = current;
+                            }
+                        }
+                        break;
+                    }
+                    case TYPE_INTEGER:
+                        for (Object v : values) {
+                            if (v != null) {
+                                byteBuf.writeInt((Integer) v);
+                            }
+                        }
+                        break;
+                    case TYPE_DOUBLE:
+                        for (Object v : values) {
+                            if (v != null) {
+                                byteBuf.writeDouble(((Number) v).doubleValue());
+                            }
+                        }
+                        break;
+                    case TYPE_BOOLEAN:
+                        for (Object v : values) {
+                            if (v != null) {
+                                byteBuf.writeBoolean((Boolean) v);
+                            }
+                        }
+                        break;
+                    case TYPE_SHORT:
+                        for (Object v : values) {
+                            if (v != null) {
+                                byteBuf.writeShort((Short) v);
+                            }
+                        }
+                        break;
+                    case TYPE_BYTE:
+                        for (Object v : values) {
+                            if (v != null) {
+                                byteBuf.writeByte((Byte) v);
+                            }
+                        }
+                        break;
+                    case TYPE_BYTEARRAY:
+                        for (Object v : values) {
+                            if (v != null) {
+                                ByteBufUtils.writeArray(byteBuf, (byte[]) v);
+                            }
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("bad column type " + type);
+                }
+            }
+
+            /**
+             * Builds the dictionary of the values of a column of strings.
+             *
+             * @return the number of distinct values, 0 if the column contains too
+             * many distinct values and so it is better not to use a dictionary
+             */
+            private int buildDictionary(Object[] values) {
+                if (dictionary == null) {
+                    dictionary = new HashMap<>();
+                    dictionaryValues = new Object[numRecords];
+                } else {
+                    dictionary.clear();
+                }
+                int maxSize = numRecords / 2;
+                int size = 0;
+                for (Object v : values) {
+                    if (v != null && dictionary.putIfAbsent(v, size) == null) {
+                        if (size == maxSize) {
+                            return 0;
+                        }
+                        dictionaryValues[size++] = v;
+                    }
+                }
+                return size;
+            }
+
+            private static void writeString(ByteBuf byteBuf, Object v) {
+                if (v instanceof RawString) {
+                    ByteBufUtils.writeRawString(byteBuf, (RawString) v);
+                } else {
+                    ByteBufUtils.writeString(byteBuf, (String) v);
+                }
+            }
+        }
+
+        /**
+         * Decodes the columns written by {@link Encoder}, values are returned
+         * with the same types of {@link PduCodec#readObject(io.netty.buffer.ByteBuf)}
+         *
+         * @param buffer
+         * @param numColumns
+         * @param numRecords
+         * @return the values, column by column
+         */
+        public static Object[][] read(ByteBuf buffer, int numColumns, int numRecords) {
+            Object[][] columns = new Object[numColumns][];
+            for (int i = 0; i < numColumns; i++) {
+                Object[] values = new Object[numRecords];
+                columns[i] = values;
+                byte type = buffer.readByte();
+                if (type == TYPE_NULL) {
+                    continue;
+                }
+                if (type == COLUMN_MIXED) {
+                    for (int row = 0; row < numRecords; row++) {
+                        values[row] = readObject(buffer);
+                    }
+                    continue;
+                }
+                byte encoding = buffer.readByte();
+                boolean nulls = buffer.readBoolean();
+                int bitmapStart = buffer.readerIndex();
+                if (nulls) {
+                    buffer.skipBytes((numRecords + 7) / 8);
+                }
+                RawString[] dictionary = null;
+                if (encoding == ENCODING_DICTIONARY) {
+                    dictionary = new RawString[ByteBufUtils.readVInt(buffer)];
+                    for (int d = 0; d < dictionary.length; d++) {
+                        dictionary[d] = ByteBufUtils.readUnpooledRawString(buffer);
+                    }
+                }
+                boolean first = true;
+                long previous = 0;
+                for (int row = 0; row < numRecords; row++) {
+                    if (nulls && (buffer.getByte(bitmapStart + row / 8) & (1 << (row % 8))) != 0) {
+                        continue;
+                    }
+                    switch (type) {
+                        case TYPE_STRING:
+                            values[row] = dictionary != null
+                                    ? dictionary[ByteBufUtils.readVInt(buffer)]
+                                    : ByteBufUtils.readUnpooledRawString(buffer);
+                            break;
+                        case TYPE_LONG:
+                        case TYPE_TIMESTAMP:
+                            previous = first ? buffer.readLong() : previous + ByteBufUtils.readZLong(buffer);
+                            first = false;
+                            values[row] = type == TYPE_LONG ? (Object) previous : new java.sql.Timestamp(previous);
+                            break;
+                        case TYPE_INTEGER:
+                            values[row] = buffer.readInt();
+                            break;
+                        case TYPE_DOUBLE:
+                            values[row] = buffer.readDouble();
+                            break;
+                        case TYPE_BOOLEAN:
+                            values[row] = buffer.readBoolean();
+                            break;
+                        case TYPE_SHORT:
+                            values[row] = buffer.readShort();
+                            break;
+                        case TYPE_BYTE:
+                            values[row] = buffer.readByte();
+                            break;
+                        case TYPE_BYTEARRAY:
+                            values[row] = ByteBufUtils.readArray(buffer);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("bad column type " + type);
+                    }
+                }
+            }
+            return columns;
         }
     }
 
@@ -893,6 +1378,186 @@ public abstract class PduCodec {
         }
     }
 
+    public static class StreamScannerData {
+
+        public static ByteBuf write(long messageId, long scannerId, int fetchSize, int credit, boolean start) {
+            ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
+                    .directBuffer(
+                            VERSION_SIZE
+                                    + FLAGS_SIZE
+                                    + TYPE_SIZE
+                                    + MSGID_SIZE
+                                    + ONE_LONG
+                                    + ONE_INT
+                                    + ONE_INT
+                                    + ONE_BYTE);
+            byteBuf.writeByte(VERSION_3);
+            byteBuf.writeByte(Pdu.FLAGS_ISREQUEST);
+            byteBuf.writeByte(Pdu.TYPE_STREAMSCANNERDATA);
+            byteBuf.writeLong(messageId);
+            byteBuf.writeLong(scannerId);
+            byteBuf.writeInt(fetchSize);
+            byteBuf.writeInt(credit);
+            byteBuf.writeByte(start ? 1 : 0);
+            return byteBuf;
+        }
+
+        public static long readScannerId(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getLong(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE);
+        }
+
+        public static int readFetchSize(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getInt(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG);
+        }
+
+        public static int readCredit(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getInt(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG
+                    + ONE_INT);
+        }
+
+        /**
+         * The first message of a stream requires an answer, the following ones
+         * only grant more credit to the server and they are not acknowledged
+         *
+         * @param pdu
+         * @return
+         */
+        public static boolean readIsStart(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getByte(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG
+                    + ONE_INT
+                    + ONE_INT) == 1;
+        }
+    }
+
+    public static class PushResultSetChunk {
+
+        public static final byte STATUS_DATA = 0;
+        public static final byte STATUS_LAST = 1;
+        public static final byte STATUS_ERROR = 2;
+
+        private static final byte STATUS_MASK = 0x0F;
+        private static final byte FLAG_COLUMNAR = 0x10;
+
+        private static final int HEADER_SIZE = VERSION_SIZE
+                + FLAGS_SIZE
+                + TYPE_SIZE
+                + MSGID_SIZE
+                + ONE_LONG
+                + ONE_INT
+                + ONE_BYTE
+                + ONE_LONG;
+
+        private static ByteBuf writeHeader(int size, long messageId, long scannerId, int sequence, byte status, long tx) {
+            ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
+                    .directBuffer(HEADER_SIZE + size);
+            byteBuf.writeByte(VERSION_3);
+            byteBuf.writeByte(Pdu.FLAGS_ISREQUEST);
+            byteBuf.writeByte(Pdu.TYPE_PUSH_RESULTSET_CHUNK);
+            byteBuf.writeLong(messageId);
+            byteBuf.writeLong(scannerId);
+            byteBuf.writeInt(sequence);
+            byteBuf.writeByte(status);
+            byteBuf.writeLong(tx);
+            return byteBuf;
+        }
+
+        public static ByteBuf write(long messageId, long scannerId, int sequence, TuplesList tuplesList, boolean last, long tx, boolean columnar) {
+            byte status = last ? STATUS_LAST : STATUS_DATA;
+            if (columnar) {
+                ColumnarTuplesList.Encoder encoder = new ColumnarTuplesList.Encoder(tuplesList);
+                ByteBuf byteBuf = writeHeader(encoder.estimateSize(),
+                        messageId, scannerId, sequence, (byte) (status | FLAG_COLUMNAR), tx);
+                encoder.write(byteBuf);
+                return byteBuf;
+            }
+            ByteBuf byteBuf = writeHeader(ResultSetChunk.estimateTupleListSize(tuplesList),
+                    messageId, scannerId, sequence, status, tx);
+            ResultSetChunk.writeTuplesList(byteBuf, tuplesList);
+            return byteBuf;
+        }
+
+        public static ByteBuf writeError(long messageId, long scannerId, int sequence, String error) {
+            ByteBuf byteBuf = writeHeader(error.length() * 2 + ONE_INT,
+                    messageId, scannerId, sequence, STATUS_ERROR, 0);
+            ByteBufUtils.writeString(byteBuf, error);
+            return byteBuf;
+        }
+
+        public static long readScannerId(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getLong(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE);
+        }
+
+        public static int readSequence(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getInt(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG);
+        }
+
+        private static byte readStatusAndFlags(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getByte(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG
+                    + ONE_INT);
+        }
+
+        public static byte readStatus(Pdu pdu) {
+            return (byte) (readStatusAndFlags(pdu) & STATUS_MASK);
+        }
+
+        public static long readTx(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getLong(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG
+                    + ONE_INT
+                    + ONE_BYTE);
+        }
+
+        public static String readError(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(HEADER_SIZE);
+            return ByteBufUtils.readString(buffer);
+        }
+
+        public static RecordsBatch startReadingData(Pdu pdu) {
+            boolean columnar = (readStatusAndFlags(pdu) & FLAG_COLUMNAR) == FLAG_COLUMNAR;
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(HEADER_SIZE);
+            return new RecordsBatch(pdu, columnar);
+        }
+    }
+
     public static class ExecuteStatements {
 
         public static ByteBuf write(
@@ -1118,6 +1783,123 @@ public abstract class PduCodec {
 
     }
 
+    /**
+     * Get, put or delete of a single record by primary key. This request
+     * does not carry SQL, the server does not need to parse and plan it.
+     * The reply is a {@link ExecuteStatementResult}
+     */
+    public static class KeyValueOperation {
+
+        public static final byte OPERATION_GET = 1;
+        /**
+         * Insert or replace the whole record
+         */
+        public static final byte OPERATION_PUT = 2;
+        public static final byte OPERATION_DELETE = 3;
+
+        /**
+         * Writes the request
+         *
+         * @param messageId
+         * @param tableSpace
+         * @param table
+         * @param operation
+         * @param tx
+         * @param values values of the columns of the primary key for GET
+         * and DELETE, for PUT a list of (column name, value) pairs
+         * @return
+         */
+        public static ByteBuf write(
+                long messageId, String tableSpace, String table, byte operation, long tx,
+                List<Object> values
+        ) {
+            ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
+                    .directBuffer(
+                            VERSION_SIZE
+                                    + FLAGS_SIZE
+                                    + TYPE_SIZE
+                                    + MSGID_SIZE
+                                    + ONE_BYTE
+                                    + ONE_LONG
+                                    + tableSpace.length()
+                                    + table.length()
+                                    + ONE_BYTE
+                                    + values.size() * 8);
+            byteBuf.writeByte(VERSION_3);
+            byteBuf.writeByte(Pdu.FLAGS_ISREQUEST);
+            byteBuf.writeByte(Pdu.TYPE_KEY_VALUE_OPERATION);
+            byteBuf.writeLong(messageId);
+            byteBuf.writeByte(operation);
+            byteBuf.writeLong(tx);
+            ByteBufUtils.writeString(byteBuf, tableSpace);
+            ByteBufUtils.writeString(byteBuf, table);
+
+            ByteBufUtils.writeVInt(byteBuf, values.size());
+            for (Object p : values) {
+                writeObject(byteBuf, p);
+            }
+            return byteBuf;
+        }
+
+        public static byte readOperation(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getByte(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE);
+        }
+
+        public static long readTx(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            return buffer.getLong(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_BYTE);
+        }
+
+        public static String readTablespace(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_BYTE
+                    + ONE_LONG
+            );
+            return ByteBufUtils.readString(buffer);
+        }
+
+        public static String readTable(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_BYTE
+                    + ONE_LONG
+            );
+            ByteBufUtils.skipArray(buffer); // tablespace
+            return ByteBufUtils.readString(buffer);
+        }
+
+        public static ObjectListReader startReadValues(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_BYTE
+                    + ONE_LONG
+            );
+            ByteBufUtils.skipArray(buffer); // tablespace
+            ByteBufUtils.skipArray(buffer); // table
+            int numValues = ByteBufUtils.readVInt(buffer);
+            return new ObjectListReader(pdu, numValues);
+        }
+
+    }
+
     public static class PrepareStatement {
 
         public static ByteBuf write(long messageId, String tableSpace, String query) {
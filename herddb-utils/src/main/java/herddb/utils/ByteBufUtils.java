@@ -223,11 +223,11 @@ public class ByteBufUtils {
     }
 
     public static void writeZLong(ByteBuf buffer, long i) {
-        writeVLong(buffer, zigZagEncode(i));
+        writeSignedVLong(buffer, zigZagEncode(i));
     }
 
     public static long readZLong(ByteBuf buffer) {
-        return zigZagDecode(readVLong(buffer));
+        return zigZagDecode(readVLong(buffer, true));
     }
 
     public static void writeDouble(ByteBuf buffer, double i) {
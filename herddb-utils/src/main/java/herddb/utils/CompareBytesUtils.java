@@ -20,6 +20,7 @@
 
 package herddb.utils;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.util.internal.PlatformDependent;
 import java.util.Arrays;
 
@@ -63,6 +64,26 @@ public final class CompareBytesUtils {
         return len1 - len2;
     }
 
+    /**
+     * Compares bytes stored in a {@link ByteBuf} (even off-heap) with bytes of an array, using the same
+     * ordering of {@link #compare(byte[], int, int, byte[], int, int)}
+     */
+    public static int compare(
+            ByteBuf left, int fromIndex, int toIndex,
+            byte[] right, int fromIndex2, int toIndex2
+    ) {
+        for (int i = fromIndex, j = fromIndex2; i < toIndex && j < toIndex2; i++, j++) {
+            int a = left.getUnsignedByte(i);
+            int b = (right[j] & 0xff);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        int len1 = (toIndex - fromIndex);
+        int len2 = (toIndex2 - fromIndex2);
+        return len1 - len2;
+    }
+
     public static boolean arraysEquals(
             byte[] left, int fromIndex, int toIndex,
             byte[] right, int fromIndex2, int toIndex2
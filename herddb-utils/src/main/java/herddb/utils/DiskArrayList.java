@@ -26,9 +26,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.jpountz.lz4.LZ4BlockInputStream;
@@ -121,6 +127,128 @@ public final class DiskArrayList<T> implements AutoCloseable, Iterable<T> {
         buffer.sort(comparator);
     }
 
+    /**
+     * Sorts the list with an external merge sort, at most {@code runSize} elements are loaded in memory at
+     * once.
+     * <p>
+     * The list is read once and split in runs of {@code runSize} elements, each run is sorted in memory
+     * and spilled to its own swap file. Runs are then k-way merged, at most {@link #MERGE_FAN_IN} at a time
+     * (every open run holds its own read buffers), until the whole list is merged into a new list.
+     * </p>
+     *
+     * @return a new finished list holding sorted elements, this list is left untouched and must still be
+     * closed by the caller
+     */
+    public DiskArrayList<T> sort(Comparator<? super T> comparator, int runSize) {
+        if (!written) {
+            throw new IllegalArgumentException("call finish() before sort operations");
+        }
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("invalid run size " + runSize);
+        }
+
+        Deque<DiskArrayList<T>> runs = new ArrayDeque<>();
+        try {
+            splitRuns(comparator, runSize, runs);
+
+            logger.log(Level.FINE, "sorting {0} elements, {1} runs", new Object[]{size, runs.size()});
+
+            while (runs.size() > 1) {
+                /* Merge pass, groups of runs are merged keeping their order to keep the sort stable */
+                Deque<DiskArrayList<T>> merged = new ArrayDeque<>();
+                try {
+                    while (!runs.isEmpty()) {
+                        List<DiskArrayList<T>> merging = new ArrayList<>(MERGE_FAN_IN);
+                        while (merging.size() < MERGE_FAN_IN && !runs.isEmpty()) {
+                            merging.add(runs.poll());
+                        }
+                        try {
+                            merged.add(merge(merging, comparator));
+                        } finally {
+                            merging.forEach(DiskArrayList::close);
+                        }
+                    }
+                } finally {
+                    runs.addAll(merged);
+                }
+            }
+            return runs.poll();
+        } catch (RuntimeException err) {
+            runs.forEach(DiskArrayList::close);
+            throw err;
+        }
+    }
+
+    private void splitRuns(Comparator<? super T> comparator, int runSize, Deque<DiskArrayList<T>> runs) {
+        List<T> run = new ArrayList<>();
+        for (T element : this) {
+            run.add(element);
+            if (run.size() >= runSize) {
+                runs.add(spillRun(run, comparator));
+                run.clear();
+            }
+        }
+        if (!run.isEmpty() || runs.isEmpty()) {
+            runs.add(spillRun(run, comparator));
+        }
+    }
+
+    private DiskArrayList<T> newSwappedList() {
+        /* Always swapped, it already holds data not fitting in memory */
+        DiskArrayList<T> list = new DiskArrayList<>(-1, tmpDir, serializer);
+        if (compressionEnabled) {
+            list.enableCompression();
+        }
+        return list;
+    }
+
+    private DiskArrayList<T> spillRun(List<T> run, Comparator<? super T> comparator) {
+        run.sort(comparator);
+        DiskArrayList<T> list = newSwappedList();
+        try {
+            run.forEach(list::add);
+            list.finish();
+            return list;
+        } catch (RuntimeException err) {
+            list.close();
+            throw err;
+        }
+    }
+
+    private DiskArrayList<T> merge(List<DiskArrayList<T>> runs, Comparator<? super T> comparator) {
+        /* Heads of the runs, with the index of the run in the array */
+        PriorityQueue<Map.Entry<T, Integer>> heads = new PriorityQueue<>(runs.size(), (a, b) -> {
+            int cmp = comparator.compare(a.getKey(), b.getKey());
+            /* On ties prefer the earlier run, as a stable sort would do */
+            return cmp != 0 ? cmp : Integer.compare(a.getValue(), b.getValue());
+        });
+        List<Iterator<T>> iterators = new ArrayList<>(runs.size());
+        for (DiskArrayList<T> run : runs) {
+            Iterator<T> iterator = run.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new AbstractMap.SimpleImmutableEntry<>(iterator.next(), iterators.size()));
+            }
+            iterators.add(iterator);
+        }
+
+        DiskArrayList<T> merged = newSwappedList();
+        try {
+            while (!heads.isEmpty()) {
+                Map.Entry<T, Integer> head = heads.poll();
+                merged.add(head.getKey());
+                Iterator<T> iterator = iterators.get(head.getValue());
+                if (iterator.hasNext()) {
+                    heads.add(new AbstractMap.SimpleImmutableEntry<>(iterator.next(), head.getValue()));
+                }
+            }
+            merged.finish();
+            return merged;
+        } catch (RuntimeException err) {
+            merged.close();
+            throw err;
+        }
+    }
+
     public void finish() {
         closeWriter();
     }
@@ -201,6 +329,11 @@ public final class DiskArrayList<T> implements AutoCloseable, Iterable<T> {
 
     private static final int DISK_BUFFER_SIZE = 1024 * 128;
 
+    /**
+     * Maximum number of runs merged at once during {@link #sort(Comparator, int)}
+     */
+    static final int MERGE_FAN_IN = 32;
+
     private void openReader() {
         if (!written) {
             throw new IllegalStateException("prima bisogna riempire la lista e chiamare finish()");
@@ -44,7 +44,16 @@ public class RecordsBatch {
     private boolean finished;
     public Map<String, Integer> columnNameToPosition;
 
+    /**
+     * Values decoded from the columnar format, column by column
+     */
+    private final Object[][] columns;
+
     public RecordsBatch(Pdu message) {
+        this(message, false);
+    }
+
+    public RecordsBatch(Pdu message, boolean columnar) {
         this.buffer = message.buffer;
         this.message = message;
         this.buffer = message.buffer;
@@ -58,6 +67,7 @@ public class RecordsBatch {
         if (numRecords == 0) {
             finished = true;
         }
+        this.columns = columnar ? PduCodec.ColumnarTuplesList.read(buffer, numColumns, numRecords) : null;
     }
 
     private void ensureColumnNameToPosition() {
@@ -111,6 +121,12 @@ public class RecordsBatch {
 
     private DataAccessor readRecordAtCurrentPosition() {
         Object[] values = new Object[columnNames.length];
+        if (columns != null) {
+            for (int i = 0; i < columnNames.length; i++) {
+                values[i] = columns[i][currentRecordIndex];
+            }
+            return new RowDataAccessor(values);
+        }
         for (int i = 0; i < columnNames.length; i++) {
             values[i] = PduCodec.readObject(buffer);
         }
@@ -422,6 +422,63 @@ public class BLinkTest {
         }
     }
 
+    @Test
+    public void testScanDescending() throws Exception {
+
+        BLinkIndexDataStorage<Sized<Long>, Long> storage = new DummyBLinkIndexDataStorage<>();
+
+        try (BLink<Sized<Long>, Long> blink = new BLink<>(2048L, new LongSizeEvaluator(), new RandomPageReplacementPolicy(10), storage)) {
+
+            final long inserts = 500;
+
+            /* Only even keys, to look for missing bounds too */
+            for (long l = 0; l < inserts; l++) {
+                blink.insert(Sized.valueOf(l * 2), l * 2);
+            }
+
+            BLinkMetadata<Sized<Long>> metadata = blink.checkpoint();
+
+            /* Require at least two nodes! */
+            assertNotEquals(1, metadata.nodes.size());
+
+            List<Long> all = new ArrayList<>();
+            blink.scanDescending(null, null, false).forEach(entry -> all.add(entry.getValue()));
+            assertEquals(inserts, all.size());
+            for (int i = 0; i < all.size(); i++) {
+                assertEquals((inserts - 1 - i) * 2, (long) all.get(i));
+            }
+
+            for (long from = 0; from < inserts * 2; from += 37) {
+                for (long to = from; to < inserts * 2 + 3; to += 53) {
+                    for (boolean toInclusive : new boolean[]{true, false}) {
+
+                        List<Long> expected = new ArrayList<>();
+                        blink.scan(Sized.valueOf(from), Sized.valueOf(to), toInclusive)
+                                .forEach(entry -> expected.add(0, entry.getValue()));
+
+                        List<Long> result = new ArrayList<>();
+                        blink.scanDescending(Sized.valueOf(from), Sized.valueOf(to), toInclusive)
+                                .forEach(entry -> result.add(entry.getValue()));
+
+                        assertEquals("from " + from + " to " + to + " " + toInclusive, expected, result);
+                    }
+                }
+            }
+
+            /* Unbounded sides */
+            List<Long> head = new ArrayList<>();
+            blink.scanDescending(null, Sized.valueOf(100L), false).forEach(entry -> head.add(entry.getValue()));
+            assertEquals(50, head.size());
+            assertEquals(98L, (long) head.get(0));
+            assertEquals(0L, (long) head.get(49));
+
+            List<Long> tail = new ArrayList<>();
+            blink.scanDescending(Sized.valueOf(901L), null, false).forEach(entry -> tail.add(entry.getValue()));
+            assertEquals(Arrays.asList(998L, 996L, 994L, 992L, 990L), tail.subList(0, 5));
+            assertEquals(49, tail.size());
+        }
+    }
+
     @Test
     public void testScanHeadNotExistent() throws Exception {
 
@@ -0,0 +1,177 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index.blink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.core.RandomPageReplacementPolicy;
+import herddb.index.blink.BLink.SizeEvaluator;
+import herddb.index.blink.BLinkTest.DummyBLinkIndexDataStorage;
+import herddb.utils.Bytes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Tests about {@link OffHeapLeafMap}
+ */
+public class OffHeapLeafMapTest {
+
+    private static final class BytesSizeEvaluator implements SizeEvaluator<Bytes, Long> {
+
+        @Override
+        public long evaluateKey(Bytes key) {
+            return key.getEstimatedSize();
+        }
+
+        @Override
+        public long evaluateValue(Long value) {
+            return 24;
+        }
+
+        @Override
+        public long evaluateAll(Bytes key, Long value) {
+            return evaluateKey(key) + evaluateValue(value);
+        }
+
+        @Override
+        public Bytes getPosiviveInfinityKey() {
+            return Bytes.POSITIVE_INFINITY;
+        }
+    }
+
+    private static Bytes key(int i) {
+        return Bytes.from_string("key" + i);
+    }
+
+    @Test
+    public void sameBehaviourAsTreeMap() throws Exception {
+        Random random = new Random(1234);
+        TreeMap<Bytes, Long> expected = new TreeMap<>();
+        OffHeapLeafMap map = new OffHeapLeafMap();
+        try {
+            for (int i = 0; i < 20000; i++) {
+                Bytes k = key(random.nextInt(2000));
+                long v = random.nextLong();
+                switch (random.nextInt(4)) {
+                    case 0:
+                    case 1:
+                        assertEquals(expected.put(k, v), map.put(k, v));
+                        break;
+                    case 2:
+                        assertEquals(expected.remove(k), map.remove(k));
+                        break;
+                    default:
+                        assertEquals(expected.get(k), map.get(k));
+                        assertEquals(expected.ceilingEntry(k), map.ceilingEntry(k));
+                        assertEquals(expected.higherEntry(k), map.higherEntry(k));
+                        assertEquals(expected.lowerKey(k), map.lowerKey(k));
+                        assertEquals(expected.floorKey(k), map.floorKey(k));
+                        break;
+                }
+                assertEquals(expected.size(), map.size());
+            }
+            assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+            assertEquals(expected.firstEntry(), map.firstEntry());
+
+            // range views
+            Bytes from = key(1500);
+            Bytes to = key(500);
+            assertEquals(new ArrayList<>(expected.subMap(from, true, to, false).entrySet()),
+                    new ArrayList<>(map.subMap(from, true, to, false).entrySet()));
+            assertEquals(new ArrayList<>(expected.headMap(to, true).entrySet()),
+                    new ArrayList<>(map.headMap(to, true).entrySet()));
+            assertEquals(new ArrayList<>(expected.tailMap(from, false).entrySet()),
+                    new ArrayList<>(map.tailMap(from, false).entrySet()));
+            assertEquals(expected.subMap(from, true, to, false).lastEntry(), map.subMap(from, true, to, false).lastEntry());
+            assertEquals(expected.subMap(from, true, to, false).ceilingKey(key(1)), map.subMap(from, true, to, false).ceilingKey(key(1)));
+
+            // split like removal while iterating
+            int half = map.size() / 2;
+            TreeMap<Bytes, Long> right = new TreeMap<>();
+            Iterator<Entry<Bytes, Long>> it = map.entrySet().iterator();
+            for (int i = 0; it.hasNext(); i++) {
+                Entry<Bytes, Long> entry = it.next();
+                if (i >= half) {
+                    right.put(entry.getKey(), entry.getValue());
+                    it.remove();
+                }
+            }
+            assertEquals(half, map.size());
+            assertEquals(expected.headMap(right.firstKey()), new TreeMap<>(map));
+
+            map.putAll(right);
+            assertEquals(expected, new TreeMap<>(map));
+            assertTrue(map.getSlabSize() > 0);
+        } finally {
+            map.clear();
+        }
+        assertEquals(0, map.getSlabSize());
+        assertNull(map.firstEntry());
+    }
+
+    @Test
+    public void blinkWithOffHeapLeaves() throws Exception {
+        int count = 10000;
+        BLinkIndexDataStorage<Bytes, Long> storage = new DummyBLinkIndexDataStorage<>();
+        BLinkMetadata<Bytes> metadata;
+        try (BLink<Bytes, Long> blink = new BLink<>(2048L, new BytesSizeEvaluator(),
+                new RandomPageReplacementPolicy(5), storage, OffHeapLeafMap.FACTORY)) {
+            for (int i = 0; i < count; i++) {
+                blink.insert(key(i), (long) i);
+            }
+            for (int i = 0; i < count; i += 2) {
+                assertEquals(Long.valueOf(i), blink.delete(key(i)));
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals(i % 2 == 0 ? null : Long.valueOf(i), blink.search(key(i)));
+            }
+            assertEquals(count / 2, blink.size());
+
+            List<Long> scanned = blink.scan(key(100), key(200))
+                    .map(Entry::getValue).collect(Collectors.toList());
+            long expected = 0;
+            for (int i = 1; i < count; i += 2) {
+                if (key(i).compareTo(key(100)) >= 0 && key(i).compareTo(key(200)) < 0) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, scanned.size());
+
+            metadata = blink.checkpoint();
+        }
+
+        // reboot, leaves are loaded again into off-heap maps
+        try (BLink<Bytes, Long> blink = new BLink<>(2048L, new BytesSizeEvaluator(),
+                new RandomPageReplacementPolicy(5), storage, metadata, OffHeapLeafMap.FACTORY)) {
+            for (int i = 1; i < count; i += 2) {
+                assertEquals(Long.valueOf(i), blink.search(key(i)));
+            }
+            assertEquals(count / 2, blink.scan(null, null).count());
+        }
+    }
+}
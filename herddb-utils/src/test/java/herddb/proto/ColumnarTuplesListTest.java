@@ -0,0 +1,178 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.proto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import herddb.utils.DataAccessor;
+import herddb.utils.MapDataAccessor;
+import herddb.utils.RawString;
+import herddb.utils.RecordsBatch;
+import herddb.utils.TuplesList;
+import io.netty.buffer.ByteBuf;
+import java.sql.Timestamp;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.junit.Test;
+
+/**
+ * Tests about the columnar encoding of ResultSet chunks
+ */
+public class ColumnarTuplesListTest {
+
+    private static final String[] COLUMNS = {"s1", "s2", "l1", "t1", "n1", "d1", "b1", "a1", "m1", "z1"};
+
+    private static Object[] row(int i) {
+        return new Object[]{
+            // repeated values, dictionary
+            i % 7 == 0 ? null : RawString.of("category" + (i % 5)),
+            // unique values
+            i % 3 == 0 ? "string" + i : RawString.of("raw" + i),
+            // deltas which overflow
+            i % 4 == 0 ? Long.MIN_VALUE : i % 4 == 1 ? Long.MAX_VALUE : (long) i * 1000,
+            i % 9 == 0 ? null : new Timestamp(1_500_000_000_000L + i * 1000L),
+            i,
+            i % 2 == 0 ? null : i / 3.0,
+            i % 2 == 0,
+            i % 5 == 0 ? null : new byte[]{(byte) i, 1, 2},
+            // values of different types
+            i % 2 == 0 ? (Object) i : RawString.of("m" + i),
+            // only nulls
+            null
+        };
+    }
+
+    private static TuplesList tuples(int numRecords) {
+        List<DataAccessor> records = new ArrayList<>();
+        for (int i = 0; i < numRecords; i++) {
+            Object[] values = row(i);
+            Map<String, Object> map = new HashMap<>();
+            for (int c = 0; c < COLUMNS.length; c++) {
+                map.put(COLUMNS[c], values[c]);
+            }
+            // nulls are not returned by forEach
+            records.add(new MapDataAccessor(map, COLUMNS));
+        }
+        return new TuplesList(COLUMNS, records);
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof byte[]) {
+            return Arrays.toString((byte[]) value);
+        } else if (value instanceof RawString || value instanceof String) {
+            return value.toString();
+        } else if (value instanceof Number && !(value instanceof Double)) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    private static int checkRoundTrip(int numRecords, boolean columnar) throws Exception {
+        ByteBuf buffer = PduCodec.ResultSetChunk.write(1, tuples(numRecords), true, 5, columnar);
+        int size = buffer.readableBytes();
+        Pdu pdu = PduCodec.decodePdu(buffer);
+        assertTrue(PduCodec.ResultSetChunk.readIsLast(pdu));
+        assertEquals(5, PduCodec.ResultSetChunk.readTx(pdu));
+        RecordsBatch batch = PduCodec.ResultSetChunk.startReadingData(pdu);
+        try {
+            assertArrayEquals(COLUMNS, batch.columnNames);
+            assertEquals(numRecords, batch.numRecords);
+            for (int i = 0; i < numRecords; i++) {
+                assertTrue(batch.hasNext());
+                DataAccessor record = batch.next();
+                Object[] expected = row(i);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    assertEquals("row " + i + " column " + COLUMNS[c], normalize(expected[c]), normalize(record.get(c)));
+                }
+            }
+            assertFalse(batch.hasNext());
+        } finally {
+            batch.release();
+        }
+        return size;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        for (int numRecords : new int[]{0, 1, 2, 9, 1000}) {
+            checkRoundTrip(numRecords, false);
+            checkRoundTrip(numRecords, true);
+        }
+        assertTrue(checkRoundTrip(1000, true) < checkRoundTrip(1000, false));
+    }
+
+    @Test
+    public void recycledValues() throws Exception {
+        // like the accessors of the records, pooled RawStrings are recycled after each value
+        String[] columns = {"s1"};
+        List<DataAccessor> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            byte[] data = ("xxvalue" + i).getBytes(StandardCharsets.UTF_8);
+            records.add(new MapDataAccessor(Collections.emptyMap(), columns) {
+                @Override
+                public void forEach(BiConsumer<String, Object> consumer) {
+                    RawString value = RawString.newPooledRawString(data, 2, data.length - 2);
+                    consumer.accept("s1", value);
+                    value.recycle();
+                }
+            });
+        }
+        ByteBuf buffer = PduCodec.ResultSetChunk.write(1, new TuplesList(columns, records), true, 0, true);
+        Pdu pdu = PduCodec.decodePdu(buffer);
+        RecordsBatch batch = PduCodec.ResultSetChunk.startReadingData(pdu);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(batch.hasNext());
+                assertEquals("value" + i, batch.next().get(0).toString());
+            }
+            assertFalse(batch.hasNext());
+        } finally {
+            batch.release();
+        }
+    }
+
+    @Test
+    public void pushedChunks() throws Exception {
+        ByteBuf buffer = PduCodec.PushResultSetChunk.write(1, 2, 3, tuples(100), false, 4, true);
+        Pdu pdu = PduCodec.decodePdu(buffer);
+        assertEquals(PduCodec.PushResultSetChunk.STATUS_DATA, PduCodec.PushResultSetChunk.readStatus(pdu));
+        assertEquals(3, PduCodec.PushResultSetChunk.readSequence(pdu));
+        RecordsBatch batch = PduCodec.PushResultSetChunk.startReadingData(pdu);
+        try {
+            int count = 0;
+            while (batch.hasNext()) {
+                assertEquals(normalize(row(count)[1]), normalize(batch.next().get("s2")));
+                count++;
+            }
+            assertEquals(100, count);
+        } finally {
+            batch.release();
+        }
+    }
+}
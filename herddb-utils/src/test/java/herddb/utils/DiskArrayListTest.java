@@ -24,6 +24,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -141,6 +145,44 @@ public class DiskArrayListTest {
         }
     }
 
+    @Test
+    public void externalSort() throws IOException {
+        Random random = new Random(42);
+        List<String> expected = new ArrayList<>();
+        try (DiskArrayList<String> list = new DiskArrayList<>(1000, testFolder.getRoot().toPath(), new StringSerializer())) {
+            list.enableCompression();
+            for (int i = 0; i < 10000; i++) {
+                // many duplicates, the sequence number checks stability
+                String s = random.nextInt(500) + "_" + i;
+                list.add(s);
+                expected.add(s);
+            }
+            list.finish();
+            assertTrue(list.isSwapped());
+
+            Comparator<String> byPrefix = Comparator.comparing(s -> Integer.parseInt(s.substring(0, s.indexOf('_'))));
+            expected.sort(byPrefix);
+
+            // 100 runs, two merge passes
+            try (DiskArrayList<String> sorted = list.sort(byPrefix, 100)) {
+                assertTrue(sorted.isSwapped());
+                assertEquals(expected.size(), sorted.size());
+                List<String> actual = new ArrayList<>();
+                sorted.forEach(actual::add);
+                assertEquals(expected, actual);
+            }
+
+            // single run
+            try (DiskArrayList<String> sorted = list.sort(byPrefix, 20000)) {
+                List<String> actual = new ArrayList<>();
+                sorted.forEach(actual::add);
+                assertEquals(expected, actual);
+            }
+        }
+        // runs and sorted lists are removed from disk
+        assertEquals(0, testFolder.getRoot().list().length);
+    }
+
     private static class StringSerializer implements DiskArrayList.Serializer<String> {
 
         public StringSerializer() {